@@ -20,6 +20,7 @@
 package org.crosswire.jsword.book;
 
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Set;
 
 import org.crosswire.common.activate.Activatable;
@@ -52,6 +53,40 @@ public interface Book extends Activatable, Comparable<Book> {
      */
     Key getGlobalKeyList();
 
+    /**
+     * Get the keys that begin with the prefix, in the order of the book,
+     * stopping after maxCount keys have been found. This is intended for
+     * completing partially typed keys in books whose keys have a meaningful
+     * sort, such as dictionaries.
+     * 
+     * @param prefix
+     *            the start of the desired keys
+     * @param maxCount
+     *            the most keys to return
+     * @return A Key holding at most maxCount matching Keys
+     */
+    default Key getKeysWithPrefix(String prefix, int maxCount) {
+        Key result = createEmptyKeyList();
+        if (prefix == null || maxCount < 1) {
+            return result;
+        }
+
+        // Without knowledge of how the keys are stored, look at each of them,
+        // ignoring case according to the language of the book.
+        Locale sortLocale = new Locale(getLanguage().getCode());
+        String target = prefix.toLowerCase(sortLocale);
+        int count = 0;
+        for (Key key : getGlobalKeyList()) {
+            if (key.getName().toLowerCase(sortLocale).startsWith(target)) {
+                result.addAll(key);
+                if (++count >= maxCount) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Get a complete list of entries. Create a Key that encompasses all
      * of the existing entries in the book. For most modules this will be the
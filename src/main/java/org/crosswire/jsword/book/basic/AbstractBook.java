@@ -40,6 +40,8 @@ import org.crosswire.jsword.index.IndexStatus;
 import org.crosswire.jsword.index.IndexStatusEvent;
 import org.crosswire.jsword.index.IndexStatusListener;
 import org.crosswire.jsword.index.search.DefaultSearchRequest;
+import org.crosswire.jsword.index.search.SearchCache;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.index.search.SearchRequest;
 import org.crosswire.jsword.index.search.Searcher;
 import org.crosswire.jsword.index.search.SearcherFactory;
@@ -124,7 +126,17 @@ public abstract class AbstractBook implements Book {
             }
         }
 
-        return searcher.search(request);
+        // Results are cached in a compact form, and a new copy is made each time.
+        // They are not kept if the index changes while searching.
+        SearchCache cache = SearchCache.instance();
+        SearchContext context = SearchContext.from(request.getSearchModifier());
+        long generation = cache.getGeneration(this);
+        Key results = cache.get(this, request.getRequest(), context);
+        if (results == null) {
+            results = searcher.search(request);
+            cache.put(this, request.getRequest(), context, results, generation);
+        }
+        return results;
     }
 
     public void resetSearcher() {
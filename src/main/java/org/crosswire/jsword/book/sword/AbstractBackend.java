@@ -24,7 +24,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PrimitiveIterator;
 
+import org.crosswire.common.compress.CompressorType;
 import org.crosswire.common.crypt.Sapphire;
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.JSOtherMsg;
@@ -39,6 +41,8 @@ import org.crosswire.jsword.passage.Passage;
 import org.crosswire.jsword.passage.RestrictionType;
 import org.crosswire.jsword.passage.Verse;
 import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
 import org.jdom2.Content;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -76,6 +80,50 @@ public abstract class AbstractBackend<T extends OpenFileState> implements Statef
         return bmd;
     }
 
+    /**
+     * Get the versification of the book. This is needed for every verse that
+     * is read, so it is looked up once rather than each time.
+     *
+     * @return the versification of the book
+     */
+    protected Versification getVersification() {
+        Versification result = v11n;
+        if (result == null) {
+            String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
+            result = Versifications.instance().getVersification(v11nName);
+            v11n = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get the Java charset of the book, looked up once rather than each time.
+     *
+     * @return the charset of the book
+     */
+    protected String getBookCharset() {
+        String result = charset;
+        if (result == null) {
+            result = getBookMetaData().getBookCharset();
+            charset = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get how the book is compressed, looked up once rather than each time.
+     *
+     * @return the compressor type of the book
+     */
+    protected CompressorType getCompressorType() {
+        CompressorType result = compressorType;
+        if (result == null) {
+            result = CompressorType.fromString(getBookMetaData().getProperty(SwordBookMetaData.KEY_COMPRESS_TYPE));
+            compressorType = result;
+        }
+        return result;
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.sword.Backend#decipher(byte[])
      */
@@ -128,6 +176,44 @@ public abstract class AbstractBackend<T extends OpenFileState> implements Statef
         }
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.Backend#getRawTexts(org.crosswire.jsword.passage.VerseRange)
+     */
+    public String[] getRawTexts(VerseRange range) throws BookException {
+        T state = null;
+        try {
+            state = initState();
+            return readRawContents(state, range);
+        } catch (IOException e) {
+            throw new BookException("Unable to obtain raw content from backend for key='" + range + '\'', e);
+        } finally {
+            OpenFileStateManager.instance().release(state);
+        }
+    }
+
+    /**
+     * Read the raw text for each verse in a range. By default this reads one
+     * verse at a time. Backends that can compute the span of what is to be read
+     * should override this.
+     * 
+     * @param state
+     *            the state object containing all the open random access files
+     * @param range
+     *            the verses that are sought
+     * @return the raw text, one entry per verse in range order
+     * @throws BookException
+     * @throws IOException
+     *             something went wrong when reading the verses
+     */
+    protected String[] readRawContents(T state, VerseRange range) throws BookException, IOException {
+        String[] texts = new String[range.getCardinality()];
+        int i = 0;
+        for (Key verse : range) {
+            texts[i++] = readRawContent(state, verse);
+        }
+        return texts;
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.sword.Backend#setAliasKey(org.crosswire.jsword.passage.Key, org.crosswire.jsword.passage.Key)
      */
@@ -246,22 +332,36 @@ public abstract class AbstractBackend<T extends OpenFileState> implements Statef
             VerseRange range = rit.next();
             processor.preRange(range, content);
 
-            // FIXME(CJB): can this now be optimized since we can calculate
-            // the buffer size of what to read?
+            // Read the whole range at once, which allows the backend to
+            // read the data for all the verses together.
+            String[] rawTexts = null;
+            try {
+                rawTexts = readRawContents(openFileState, range);
+            } catch (IOException e) {
+                if (!ignoreReadErrors) {
+                    throw new BookException("Error in uncompression", e);
+                }
+                // Fall back to reading verse by verse so that only the bad verses are lost
+                LOGGER.error(e.getMessage(), e);
+            }
+
             // now iterate through all verses in range
-            for (Key verseInRange : range) {
-                currentVerse = KeyUtil.getVerse(verseInRange);
+            Versification rangeV11n = range.getVersification();
+            int i = 0;
+            PrimitiveIterator.OfInt ordinals = range.ordinalIterator();
+            while (ordinals.hasNext()) {
+                currentVerse = rangeV11n.decodeOrdinal(ordinals.nextInt());
+                if (rawTexts != null) {
+                    processor.postVerse(currentVerse, content, rawTexts[i++]);
+                    continue;
+                }
                 try {
                     String rawText = readRawContent(openFileState, currentVerse);
-                    processor.postVerse(verseInRange, content, rawText);
+                    processor.postVerse(currentVerse, content, rawText);
                 } catch (IOException e) {
-                    if(!ignoreReadErrors) {
-                        throw new BookException("Error in uncompression", e);
-                    } else {
-                        //some versifications have more verses than modules contain - so can't throw
-                        //an error here...
-                        LOGGER.error(e.getMessage(), e);
-                    }
+                    //some versifications have more verses than modules contain - so can't throw
+                    //an error here...
+                    LOGGER.error(e.getMessage(), e);
                 }
             }
         }
@@ -323,5 +423,14 @@ public abstract class AbstractBackend<T extends OpenFileState> implements Statef
     }
 
     private SwordBookMetaData bmd;
+
+    /**
+     * These are properties of the book that are needed on every read,
+     * so they are remembered once looked up.
+     * Note: the cipher key is not, as it changes when the book is unlocked.
+     */
+    private transient volatile Versification v11n;
+    private transient volatile String charset;
+    private transient volatile CompressorType compressorType;
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractBackend.class);
 }
@@ -27,6 +27,7 @@ import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.sword.processing.RawTextToXmlProcessor;
 import org.crosswire.jsword.book.sword.state.OpenFileState;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.VerseRange;
 import org.jdom2.Content;
 
 /**
@@ -85,6 +86,17 @@ public interface Backend<T extends OpenFileState> {
      */
     String getRawText(Key key) throws BookException;
 
+    /**
+     * Get the text as it is found in the Book for each verse in a range. This
+     * allows a backend to read the whole range with fewer reads than one per
+     * verse.
+     * 
+     * @param range the verses for which the raw text is desired.
+     * @return the text from the module, one entry per verse in range order
+     * @throws BookException 
+     */
+    String[] getRawTexts(VerseRange range) throws BookException;
+
     void setAliasKey(Key alias, Key source) throws BookException;
 
     /**
@@ -0,0 +1,281 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.BooksEvent;
+import org.crosswire.jsword.book.BooksListener;
+import org.crosswire.jsword.versification.Testament;
+
+/**
+ * A process wide cache of uncompressed blocks of compressed books, shared by
+ * all readers of all books. Without it, each open file state only remembers the
+ * last block it uncompressed, so concurrent readers of the same passage each
+ * uncompress the same block and a reader moving around a book uncompresses
+ * blocks again and again.
+ * 
+ * <p>
+ * The cache is bounded by the total number of uncompressed bytes held and
+ * evicts the least recently used blocks first. The blocks handed out are
+ * shared and must not be modified by the caller.
+ * </p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class BlockCache {
+    /**
+     * Prevent instantiation
+     */
+    private BlockCache() {
+        blocks = new LinkedHashMap<>(64, 0.75f, true);
+        maxBytes = DEFAULT_MAX_BYTES;
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        evictions = new AtomicLong();
+    }
+
+    /**
+     * @return the one and only block cache
+     */
+    public static BlockCache instance() {
+        BlockCache cache = instance;
+        if (cache == null) {
+            cache = create();
+        }
+        return cache;
+    }
+
+    /**
+     * Create the block cache, which forgets the blocks of a book whenever it
+     * is installed or removed.
+     * 
+     * @return the one and only block cache
+     */
+    private static synchronized BlockCache create() {
+        if (instance == null) {
+            final BlockCache created = new BlockCache();
+            instance = created;
+            // The blocks of a book that is removed or replaced are no longer wanted.
+            Books.installed().addBooksListener(new BooksListener() {
+                public void bookAdded(BooksEvent ev) {
+                    created.invalidate(ev.getBook().getBookMetaData());
+                }
+
+                public void bookRemoved(BooksEvent ev) {
+                    created.invalidate(ev.getBook().getBookMetaData());
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * Get an uncompressed block.
+     * 
+     * @param bmd the book the block belongs to
+     * @param testament the testament of the block, or null if the book does not have testaments
+     * @param blockNum the number of the block
+     * @return the uncompressed block, or null if it is not cached
+     */
+    public byte[] get(BookMetaData bmd, Testament testament, long blockNum) {
+        BlockKey key = new BlockKey(bmd, testament, blockNum);
+        byte[] block;
+        synchronized (blocks) {
+            block = blocks.get(key);
+        }
+        if (block == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return block;
+    }
+
+    /**
+     * Store an uncompressed block, evicting the least recently used blocks
+     * as needed. Blocks larger than the cache are not stored.
+     * 
+     * @param bmd the book the block belongs to
+     * @param testament the testament of the block, or null if the book does not have testaments
+     * @param blockNum the number of the block
+     * @param block the uncompressed block
+     */
+    public void put(BookMetaData bmd, Testament testament, long blockNum, byte[] block) {
+        if (block == null || block.length > maxBytes) {
+            return;
+        }
+
+        BlockKey key = new BlockKey(bmd, testament, blockNum);
+        synchronized (blocks) {
+            byte[] old = blocks.put(key, block);
+            if (old != null) {
+                size -= old.length;
+            }
+            size += block.length;
+            trim();
+        }
+    }
+
+    /**
+     * Remove all the blocks belonging to a book, for example when it is deleted.
+     * 
+     * @param bmd the book whose blocks are to be removed
+     */
+    public void invalidate(BookMetaData bmd) {
+        synchronized (blocks) {
+            Iterator<Map.Entry<BlockKey, byte[]>> iter = blocks.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<BlockKey, byte[]> entry = iter.next();
+                if (entry.getKey().bmd.equals(bmd)) {
+                    size -= entry.getValue().length;
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all the blocks from the cache.
+     */
+    public void clear() {
+        synchronized (blocks) {
+            blocks.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * @return the maximum number of uncompressed bytes held by the cache
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Set the maximum number of uncompressed bytes held by the cache.
+     * Setting it to 0 disables the cache.
+     * 
+     * @param maxBytes the new maximum
+     */
+    public void setMaxBytes(long maxBytes) {
+        synchronized (blocks) {
+            this.maxBytes = maxBytes;
+            trim();
+        }
+    }
+
+    /**
+     * @return the number of uncompressed bytes held by the cache
+     */
+    public long getSize() {
+        synchronized (blocks) {
+            return size;
+        }
+    }
+
+    /**
+     * @return the number of times a block was found in the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of times a block was not found in the cache
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of blocks evicted to make room for others
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Evict the least recently used blocks until the cache fits.
+     * The caller must hold the lock on blocks.
+     */
+    private void trim() {
+        Iterator<byte[]> iter = blocks.values().iterator();
+        while (size > maxBytes && iter.hasNext()) {
+            size -= iter.next().length;
+            iter.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Identifies a block within a book.
+     */
+    private static final class BlockKey {
+        BlockKey(BookMetaData bmd, Testament testament, long blockNum) {
+            this.bmd = bmd;
+            this.testament = testament;
+            this.blockNum = blockNum;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BlockKey)) {
+                return false;
+            }
+            BlockKey that = (BlockKey) obj;
+            return blockNum == that.blockNum && testament == that.testament && bmd.equals(that.bmd);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = bmd.hashCode();
+            result = 31 * result + (testament == null ? 0 : testament.hashCode());
+            return 31 * result + (int) (blockNum ^ (blockNum >>> 32));
+        }
+
+        private final BookMetaData bmd;
+        private final Testament testament;
+        private final long blockNum;
+    }
+
+    /**
+     * By default hold up to 16MB of uncompressed text.
+     */
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    private static volatile BlockCache instance;
+
+    /**
+     * The blocks in least recently used order. Also the lock for size.
+     */
+    private final Map<BlockKey, byte[]> blocks;
+    private long size;
+    private volatile long maxBytes;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+}
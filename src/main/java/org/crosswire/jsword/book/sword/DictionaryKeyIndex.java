@@ -0,0 +1,368 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+import org.crosswire.common.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory copy of the keys of a dictionary, in index order, together with
+ * the offset and size of each entry in the data file. This allows a dictionary
+ * to be searched without reading the index and data files for every probe.
+ *
+ * <p>The index can be persisted next to the module's index file so that it
+ * does not need to be rebuilt each time the application starts. A persisted
+ * index is only used while the module's index file is unchanged.</p>
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class DictionaryKeyIndex {
+    /**
+     * Create a key index from the keys of a dictionary.
+     *
+     * @param keys
+     *            the keys as stored in the module, in index order
+     * @param offsets
+     *            the offset of each entry in the data file
+     * @param sizes
+     *            the size of each entry in the data file
+     * @param foldCase
+     *            whether keys are compared without regard to case
+     */
+    public DictionaryKeyIndex(String[] keys, int[] offsets, int[] sizes, boolean foldCase) {
+        assert keys.length == offsets.length && keys.length == sizes.length;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.sizes = sizes;
+        if (foldCase) {
+            searchKeys = new String[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                searchKeys[i] = keys[i].toUpperCase(Locale.US);
+            }
+        } else {
+            searchKeys = keys;
+        }
+    }
+
+    /**
+     * @return the number of entries in the dictionary
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Get the key of an entry as it is stored in the module.
+     *
+     * @param entry
+     *            the position of the entry in the index
+     * @return the key
+     */
+    public String getKey(int entry) {
+        return keys[entry];
+    }
+
+    /**
+     * Get the key of an entry normalized for searching.
+     *
+     * @param entry
+     *            the position of the entry in the index
+     * @return the normalized key
+     */
+    public String getSearchKey(int entry) {
+        return searchKeys[entry];
+    }
+
+    /**
+     * @param entry
+     *            the position of the entry in the index
+     * @return the offset of the entry in the data file
+     */
+    public int getOffset(int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * @param entry
+     *            the position of the entry in the index
+     * @return the size of the entry in the data file
+     */
+    public int getSize(int entry) {
+        return sizes[entry];
+    }
+
+    /**
+     * Find the first entry whose key is exactly the one given. Unlike a search
+     * on the normalized keys, this does not depend upon the order of the
+     * entries in the module.
+     *
+     * @param key
+     *            the key as stored in the module
+     * @return the position of the entry or -1 if not found
+     */
+    public int find(String key) {
+        int[] order = getKeyOrder();
+        int low = 0;
+        int high = order.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keys[order[mid]].compareTo(key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                // The sort is stable, so step back to the earliest entry
+                while (mid > 0 && keys[order[mid - 1]].equals(key)) {
+                    mid--;
+                }
+                return order[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first entry, at or after from, whose normalized key is not less
+     * than the one given. Entries without data are passed over.
+     *
+     * @param searchKey
+     *            the normalized key
+     * @param from
+     *            the first entry to consider
+     * @return the position of the entry or size() if there is none
+     */
+    public int lowerBound(String searchKey, int from) {
+        int low = from;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int probe = mid;
+            while (probe < high && sizes[probe] == 0) {
+                probe++;
+            }
+            if (probe < high && searchKeys[probe].compareTo(searchKey) < 0) {
+                low = probe + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Save this index next to the module's index file.
+     *
+     * @param idxFile
+     *            the module's index file
+     */
+    public void store(File idxFile) {
+        File storeFile = getStoreFile(idxFile);
+        File tempFile = new File(storeFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeLong(idxFile.length());
+            out.writeLong(idxFile.lastModified());
+            out.writeInt(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                out.writeInt(offsets[i]);
+                out.writeInt(sizes[i]);
+                out.writeUTF(keys[i]);
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(storeFile)) {
+                // Windows will not rename over an existing file
+                if (!storeFile.delete() || !tempFile.renameTo(storeFile)) {
+                    log.warn("Unable to save key index {}", storeFile);
+                }
+            }
+        } catch (IOException e) {
+            // The module may be in a read-only location.
+            log.warn("Unable to save key index {}: {}", storeFile, e.getMessage());
+        } finally {
+            IOUtil.close(out);
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.warn("Unable to delete {}", tempFile);
+            }
+        }
+    }
+
+    /**
+     * Load an index that was saved next to the module's index file.
+     *
+     * @param idxFile
+     *            the module's index file
+     * @param foldCase
+     *            whether keys are compared without regard to case
+     * @return the index or null if there is no usable saved index
+     */
+    public static DictionaryKeyIndex load(File idxFile, boolean foldCase) {
+        File storeFile = getStoreFile(idxFile);
+        if (!storeFile.canRead()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)));
+            if (in.readInt() != MAGIC || in.readLong() != idxFile.length() || in.readLong() != idxFile.lastModified()) {
+                // The saved index is out of date. It will be replaced.
+                return null;
+            }
+            int count = in.readInt();
+            String[] keys = new String[count];
+            int[] offsets = new int[count];
+            int[] sizes = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readInt();
+                sizes[i] = in.readInt();
+                keys[i] = in.readUTF();
+            }
+            return new DictionaryKeyIndex(keys, offsets, sizes, foldCase);
+        } catch (IOException e) {
+            log.warn("Unable to read key index {}: {}", storeFile, e.getMessage());
+            return null;
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Whether key indexes are saved next to the modules so that they do not
+     * need to be rebuilt when the application is restarted.
+     *
+     * @return true if key indexes are saved
+     */
+    public static boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * Set whether key indexes are saved next to the modules. This requires
+     * that the module directories are writable. By default they are not saved.
+     *
+     * @param persistent
+     *            true to save key indexes
+     */
+    public static void setPersistent(boolean persistent) {
+        DictionaryKeyIndex.persistent = persistent;
+    }
+
+    /**
+     * Get the positions of the entries sorted by their keys as stored in the
+     * module.
+     *
+     * @return the sort order
+     */
+    private int[] getKeyOrder() {
+        int[] order = keyOrder;
+        if (order == null) {
+            Integer[] sorted = new Integer[keys.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = Integer.valueOf(i);
+            }
+            Arrays.sort(sorted, new Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    return keys[o1.intValue()].compareTo(keys[o2.intValue()]);
+                }
+            });
+            order = new int[sorted.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = sorted[i].intValue();
+            }
+            keyOrder = order;
+        }
+        return order;
+    }
+
+    /**
+     * The saved index for a module lives beside its index file.
+     *
+     * @param idxFile
+     *            the module's index file
+     * @return the file holding the saved index
+     */
+    private static File getStoreFile(File idxFile) {
+        String path = idxFile.getPath();
+        if (path.endsWith(SwordConstants.EXTENSION_INDEX)) {
+            path = path.substring(0, path.length() - SwordConstants.EXTENSION_INDEX.length());
+        }
+        return new File(path + SwordConstants.EXTENSION_KEY_INDEX);
+    }
+
+    /**
+     * The keys as stored in the module.
+     */
+    private final String[] keys;
+
+    /**
+     * The keys normalized for searching. These are the same as the keys when
+     * the case is significant.
+     */
+    private final String[] searchKeys;
+
+    /**
+     * The offset of each entry in the data file.
+     */
+    private final int[] offsets;
+
+    /**
+     * The size of each entry in the data file.
+     */
+    private final int[] sizes;
+
+    /**
+     * The positions of the entries in key order. This is only built when an
+     * exact key is looked up.
+     */
+    private volatile int[] keyOrder;
+
+    /**
+     * Whether key indexes are saved.
+     */
+    private static volatile boolean persistent;
+
+    /**
+     * Identifies a saved key index and its format.
+     */
+    private static final int MAGIC = 0x4B445801;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(DictionaryKeyIndex.class);
+}
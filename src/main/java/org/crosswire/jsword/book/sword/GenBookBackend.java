@@ -20,9 +20,6 @@
 package org.crosswire.jsword.book.sword;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.BookMetaData;
@@ -69,20 +66,15 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
     @Override
     public int getRawTextLength(Key key) {
         try {
-            TreeNode node = find(key);
-
-            if (node == null) {
-                return 0;
-            }
-
-            byte[] userData = node.getUserData();
+            TreeKeyTable tree = getTree();
+            int node = tree.find(key);
 
             // Some entries may be empty.
-            if (userData.length == 8) {
-                return SwordUtil.decodeLittleEndian32(userData, 4);
+            if (node < 0 || tree.getDataStart(node) < 0) {
+                return 0;
             }
 
-            return 0;
+            return tree.getDataSize(node);
 
         } catch (IOException e) {
             return 0;
@@ -93,9 +85,10 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
      * @see org.crosswire.jsword.book.sword.StatefulFileBackedBackend#readRawContent(org.crosswire.jsword.book.sword.state.OpenFileState, org.crosswire.jsword.passage.Key)
      */
     public String readRawContent(GenBookBackendState state, Key key) throws IOException, BookException {
-        TreeNode node = find(key);
+        TreeKeyTable tree = getTree();
+        int node = tree.find(key);
 
-        if (node == null) {
+        if (node < 0) {
             // TRANSLATOR: Error condition: Indicates that something could
             // not be found in the book.
             // {0} is a placeholder for the unknown key.
@@ -103,12 +96,10 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
             throw new BookException(JSMsg.gettext("No entry for '{0}' in {1}.", key.getName(), getBookMetaData().getInitials()));
         }
 
-        byte[] userData = node.getUserData();
-
         // Some entries may be empty.
-        if (userData.length == 8) {
-            int start = SwordUtil.decodeLittleEndian32(userData, 0);
-            int size = SwordUtil.decodeLittleEndian32(userData, 4);
+        int start = tree.getDataStart(node);
+        if (start >= 0) {
+            int size = tree.getDataSize(node);
             byte[] data = SwordUtil.readRAF(state.getBdtRaf(), start, size);
             decipher(data);
             return SwordUtil.decode(key.getName(), data, getBookMetaData().getBookCharset());
@@ -118,52 +109,53 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
     }
 
     /**
-     * Given a Key, find the TreeNode for it.
+     * Get the key with the given path, where the path is the name of the
+     * key preceded by those of its ancestors, separated by '/'. This is the
+     * form given by {@link Key#getOsisRef()}. The key is the one in the tree
+     * last given by {@link #readIndex()}, so its children can be walked.
      * 
-     * @param key
-     *            The key to use for searching
-     * @return the found node, null otherwise
-     * @throws IOException
+     * @param path
+     *            the path of the desired key
+     * @return the key or null if there is none
      */
-    private TreeNode find(Key key) throws IOException {
-        // We need to search from the root, so navigate to the root, saving as
-        // we go.
-        List<String> path = new ArrayList<>();
-        for (Key parentKey = key; parentKey != null && parentKey.getName().length() > 0; parentKey = parentKey.getParent()) {
-            path.add(parentKey.getName());
-        }
-
-        TreeNode node = index.getRoot();
-
-        node = index.getFirstChild(node);
-
-        for (int i = path.size() - 1; i >= 0; i--) {
-            String name = path.get(i);
-
-            // Search among the siblings for the current level.
-            while (node != null && !name.equals(node.getName())) {
-                if (node.hasNextSibling()) {
-                    node = index.getNextSibling(node);
-                } else {
-                    log.error("Could not find {}", name);
-                    node = null;
-                }
+    public Key getKey(String path) {
+        try {
+            int node = getTree().find(path);
+            if (node < 0) {
+                return null;
             }
 
-            // If we have found it but have not exhausted the path
-            // we need to get more
-            if (node != null && name.equals(node.getName()) && i > 0) {
-                node = index.getFirstChild(node);
+            Key[] all = keys;
+            if (all == null) {
+                readIndex();
+                all = keys;
             }
+            return all == null ? null : all[node];
+        } catch (IOException e) {
+            log.error("Could not read GenBook index", e);
+            return null;
         }
+    }
 
-        // At this point we have either found it, returning it or have not,
-        // returning null
-        if (node != null && node.getName().equals(key.getName())) {
-            return node;
+    /**
+     * Get the memory resident copy of the book's tree, reading it on first
+     * use. It is shared by all readers of the book.
+     * 
+     * @return the tree
+     * @throws IOException
+     */
+    private TreeKeyTable getTree() throws IOException {
+        TreeKeyTable result = tree;
+        if (result == null) {
+            synchronized (index) {
+                result = tree;
+                if (result == null) {
+                    result = new TreeKeyTable(index);
+                    tree = result;
+                }
+            }
         }
-
-        return null;
+        return result;
     }
 
     @Override
@@ -172,9 +164,18 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
         Key reply = new DefaultKeyList(null, bmd.getName());
 
         try {
-            TreeNode node = index.getRoot();
-            reply = new TreeKey(node.getName(), null);
-            doReadIndex(node, reply);
+            TreeKeyTable tree = getTree();
+            // The table is in pre-order, so a parent is always seen before
+            // its children and children are seen in order.
+            Key[] nodeKeys = new Key[tree.size()];
+            nodeKeys[0] = new TreeKey(tree.getName(0), null);
+            for (int node = 1; node < nodeKeys.length; node++) {
+                Key parentKey = nodeKeys[tree.getParent(node)];
+                nodeKeys[node] = new TreeKey(tree.getName(node), parentKey);
+                parentKey.addAll(nodeKeys[node]);
+            }
+            keys = nodeKeys;
+            reply = nodeKeys[0];
         } catch (IOException e) {
             log.error("Could not get read GenBook index", e);
         }
@@ -197,37 +198,19 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
     }
 
     /**
-     * A helper function to recursively read the entire tree.
-     * 
-     * @param parentNode
-     *            the current node whose children are being sought
-     * @param parentKey
-     * @throws IOException
+     * The raw index file
      */
-    private void doReadIndex(TreeNode parentNode, Key parentKey) throws IOException {
-        TreeNode currentNode = parentNode;
-        if (currentNode.hasChildren()) {
-            TreeNode childNode = index.getFirstChild(currentNode);
-            do {
-                TreeKey childKey = new TreeKey(childNode.getName(), parentKey);
-                parentKey.addAll(childKey);
-
-                // Build the tree as deep as possible
-                doReadIndex(childNode, childKey);
-
-                if (!childNode.hasNextSibling()) {
-                    break;
-                }
+    private final TreeKeyIndex index;
 
-                childNode = index.getNextSibling(childNode);
-            } while (true);
-        }
-    }
+    /**
+     * The memory resident copy of the index, read on first use
+     */
+    private volatile TreeKeyTable tree;
 
     /**
-     * The raw index file
+     * The keys of the tree last read, by node
      */
-    private final TreeKeyIndex index;
+    private volatile Key[] keys;
 
     /**
      * The log stream
@@ -0,0 +1,173 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.crosswire.common.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Saves the ordinals of the verses present in a versified module next to the
+ * module, so that its global key list does not need to be computed again when
+ * the application is restarted. A saved list is only used while the files it
+ * was computed from are unchanged.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class GlobalKeyListStore {
+    /**
+     * Prevent instantiation
+     */
+    private GlobalKeyListStore() {
+    }
+
+    /**
+     * Whether global key lists are saved next to the modules.
+     *
+     * @return true if global key lists are saved
+     */
+    public static boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * Set whether global key lists are saved next to the modules. This
+     * requires that the module directories are writable. By default they are
+     * not saved.
+     *
+     * @param persistent
+     *            true to save global key lists
+     */
+    public static void setPersistent(boolean persistent) {
+        GlobalKeyListStore.persistent = persistent;
+    }
+
+    /**
+     * Load the ordinals saved in a module's directory.
+     *
+     * @param dir
+     *            the directory holding the module's data files
+     * @param sources
+     *            the files from which the ordinals were computed
+     * @return the ordinals or null if there is no usable saved list
+     */
+    public static BitSet load(File dir, File... sources) {
+        File storeFile = new File(dir, SwordConstants.FILE_GLOBAL_KEY_LIST);
+        if (!storeFile.canRead()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(storeFile)));
+            if (in.readInt() != MAGIC || in.readInt() != sources.length) {
+                return null;
+            }
+            for (File source : sources) {
+                if (in.readLong() != source.length() || in.readLong() != source.lastModified()) {
+                    // The saved list is out of date. It will be replaced.
+                    return null;
+                }
+            }
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return BitSet.valueOf(words);
+        } catch (IOException e) {
+            log.warn("Unable to read global key list {}: {}", storeFile, e.getMessage());
+            return null;
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Save the ordinals in a module's directory.
+     *
+     * @param dir
+     *            the directory holding the module's data files
+     * @param ordinals
+     *            the ordinals of the verses that are present
+     * @param sources
+     *            the files from which the ordinals were computed
+     */
+    public static void store(File dir, BitSet ordinals, File... sources) {
+        File storeFile = new File(dir, SwordConstants.FILE_GLOBAL_KEY_LIST);
+        File tempFile = new File(storeFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(sources.length);
+            for (File source : sources) {
+                out.writeLong(source.length());
+                out.writeLong(source.lastModified());
+            }
+            long[] words = ordinals.toLongArray();
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(storeFile)) {
+                // Windows will not rename over an existing file
+                if (!storeFile.delete() || !tempFile.renameTo(storeFile)) {
+                    log.warn("Unable to save global key list {}", storeFile);
+                }
+            }
+        } catch (IOException e) {
+            // The module may be in a read-only location.
+            log.warn("Unable to save global key list {}: {}", storeFile, e.getMessage());
+        } finally {
+            IOUtil.close(out);
+            if (tempFile.exists() && !tempFile.delete()) {
+                log.warn("Unable to delete {}", tempFile);
+            }
+        }
+    }
+
+    /**
+     * Whether global key lists are saved.
+     */
+    private static volatile boolean persistent;
+
+    /**
+     * Identifies a saved global key list and its format.
+     */
+    private static final int MAGIC = 0x474B4C01;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(GlobalKeyListStore.class);
+}
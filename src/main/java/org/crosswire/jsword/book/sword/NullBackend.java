@@ -20,12 +20,14 @@ package org.crosswire.jsword.book.sword;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.sword.processing.RawTextToXmlProcessor;
 import org.crosswire.jsword.passage.DefaultKeyList;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.VerseRange;
 
 /**
  * A NullBackend is not attached to resources.
@@ -78,6 +80,15 @@ public class NullBackend implements Backend {
         return "";
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.Backend#getRawTexts(org.crosswire.jsword.passage.VerseRange)
+     */
+    public String[] getRawTexts(VerseRange range) throws BookException {
+        String[] texts = new String[range.getCardinality()];
+        Arrays.fill(texts, "");
+        return texts;
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.sword.Backend#setAliasKey(org.crosswire.jsword.passage.Key, org.crosswire.jsword.passage.Key)
      */
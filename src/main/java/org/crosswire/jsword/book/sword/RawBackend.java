@@ -19,12 +19,14 @@
  */
 package org.crosswire.jsword.book.sword;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.BookException;
-import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
 import org.crosswire.jsword.book.sword.state.RawBackendState;
 import org.crosswire.jsword.passage.BitwisePassage;
@@ -32,9 +34,9 @@ import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.RocketPassage;
 import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
 import org.crosswire.jsword.versification.Testament;
 import org.crosswire.jsword.versification.Versification;
-import org.crosswire.jsword.versification.system.Versifications;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,8 +77,7 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
      */
     @Override
     public int getRawTextLength(Key key) {
-        String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
-        Versification v11n = Versifications.instance().getVersification(v11nName);
+        Versification v11n = getVersification();
         Verse verse = KeyUtil.getVerse(key);
 
         RawBackendState initState = null;
@@ -104,22 +105,38 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
         }
     }
 
+    /**
+     * Read each testament's whole index in one call, noting the verses that
+     * have content. When {@link GlobalKeyListStore#isPersistent()}, the result
+     * is saved beside the module and used until the index files change.
+     * 
+     * @see org.crosswire.jsword.book.sword.AbstractBackend#getGlobalKeyList()
+     */
     @Override
     public Key getGlobalKeyList() throws BookException {
         RawBackendState rafBook = null;
         try {
             rafBook = initState();
 
-            String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
-            Versification v11n = Versifications.instance().getVersification(v11nName);
+            Versification v11n = getVersification();
+
+            File[] sources = new File[] {
+                    rafBook.getIdxFile(Testament.OLD), rafBook.getIdxFile(Testament.NEW)
+            };
+            File dir = sources[0].getParentFile();
+            boolean persistent = GlobalKeyListStore.isPersistent();
+            if (persistent) {
+                BitSet ordinals = GlobalKeyListStore.load(dir, sources);
+                if (ordinals != null) {
+                    return createPassage(v11n, ordinals);
+                }
+            }
 
             Testament[] testaments = new Testament[] {
                     Testament.OLD, Testament.NEW
             };
 
-            BitwisePassage passage = new RocketPassage(v11n);
-            passage.raiseEventSuppresion();
-            passage.raiseNormalizeProtection();
+            BitSet ordinals = new BitSet(v11n.maximumOrdinal() + 1);
 
             for (Testament currentTestament : testaments) {
                 RandomAccessFile idxRaf = rafBook.getIdxRaf(currentTestament);
@@ -146,7 +163,7 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
                         // if (verseSize > 0) {
                         if (temp[ii + 4] != 0 || temp[ii + 5] != 0) {
                             int ordinal = ii / entrysize;
-                            passage.addVersifiedOrdinal(v11n.getOrdinal(currentTestament, ordinal));
+                            ordinals.set(v11n.getOrdinal(currentTestament, ordinal));
                         }
                     }
                 } else { // datasize == 4
@@ -156,16 +173,17 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
                         // if (verseSize > 0) {
                         if (temp[ii + 4] != 0 || temp[ii + 5] != 0 || temp[ii + 6] != 0 || temp[ii + 7] != 0) {
                             int ordinal = ii / entrysize;
-                            passage.addVersifiedOrdinal(v11n.getOrdinal(currentTestament, ordinal));
+                            ordinals.set(v11n.getOrdinal(currentTestament, ordinal));
                         }
                     }
                 }
             }
 
-            passage.lowerNormalizeProtection();
-            passage.lowerEventSuppressionAndTest();
+            if (persistent) {
+                GlobalKeyListStore.store(dir, ordinals, sources);
+            }
 
-            return passage;
+            return createPassage(v11n, ordinals);
         } catch (IOException e) {
             throw new BookException(JSMsg.gettext("Unable to read key list from book."));
         } finally {
@@ -173,6 +191,30 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
         }
     }
 
+    /**
+     * Create a passage holding the verses with the given ordinals.
+     * 
+     * @param v11n
+     *            the versification of the ordinals
+     * @param ordinals
+     *            the ordinals of the verses
+     * @return the passage
+     */
+    private static Key createPassage(Versification v11n, BitSet ordinals) {
+        BitwisePassage passage = new RocketPassage(v11n);
+        passage.raiseEventSuppresion();
+        passage.raiseNormalizeProtection();
+
+        for (int ordinal = ordinals.nextSetBit(0); ordinal >= 0; ordinal = ordinals.nextSetBit(ordinal + 1)) {
+            passage.addVersifiedOrdinal(ordinal);
+        }
+
+        passage.lowerNormalizeProtection();
+        passage.lowerEventSuppressionAndTest();
+
+        return passage;
+    }
+
     public T initState() throws BookException {
         return (T) OpenFileStateManager.instance().getRawBackendState(getBookMetaData());
     }
@@ -185,22 +227,137 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
      * @see org.crosswire.jsword.book.sword.AbstractBackend#getRawText(org.crosswire.jsword.passage.Key)
      */
     public String readRawContent(RawBackendState state, Key key) throws IOException {
-        String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
-        Versification v11n = Versifications.instance().getVersification(v11nName);
+        Versification v11n = getVersification();
         Verse verse = KeyUtil.getVerse(key);
 
         int index = verse.getOrdinal();
 
         Testament testament = v11n.getTestament(index);
         index = v11n.getTestamentOrdinal(index);
-        RawBackendState initState = null;
-        try {
-            initState = initState();
-            return getEntry(state, verse.getName(), testament, index);
-        } catch (BookException e) {
-            return "";
-        } finally {
-            OpenFileStateManager.instance().release(initState);
+        return getEntry(state, verse.getName(), testament, index);
+    }
+
+    /**
+     * Read the index entries of the range, for each testament it covers, in
+     * one read and the text of the range in another.
+     * 
+     * @see org.crosswire.jsword.book.sword.AbstractBackend#readRawContents(org.crosswire.jsword.book.sword.state.OpenFileState, org.crosswire.jsword.passage.VerseRange)
+     */
+    @Override
+    protected String[] readRawContents(RawBackendState state, VerseRange range) throws BookException, IOException {
+        Versification v11n = getVersification();
+
+        Verse[] verses = range.toVerseArray();
+        String[] texts = new String[verses.length];
+        int first = 0;
+        while (first < verses.length) {
+            // Gather the verses of the range that are in the same testament
+            Testament testament = v11n.getTestament(verses[first].getOrdinal());
+            int last = first + 1;
+            while (last < verses.length && v11n.getTestament(verses[last].getOrdinal()) == testament) {
+                last++;
+            }
+
+            getEntries(state, verses, first, last, testament, v11n.getTestamentOrdinal(verses[first].getOrdinal()), texts);
+            first = last;
+        }
+
+        return texts;
+    }
+
+    /**
+     * Get the text for consecutive indexed entries in the book. The index
+     * entries are read together and, when the text of the entries is stored
+     * together, as it is unless the book has been edited, so is the text.
+     * 
+     * @param state
+     *            the open files
+     * @param verses
+     *            the verses whose text is sought
+     * @param first
+     *            the position in verses of the first verse to get
+     * @param last
+     *            the position in verses after the last verse to get
+     * @param testament
+     *            the testament for the entries
+     * @param index
+     *            the entry of the first verse
+     * @param texts
+     *            where the text of the verses is stored, at the same positions as in verses
+     * @throws IOException
+     *             on a IO problem
+     */
+    protected void getEntries(RawBackendState state, Verse[] verses, int first, int last, Testament testament, long index, String[] texts) throws IOException {
+        Arrays.fill(texts, first, last, "");
+
+        final RandomAccessFile idxRaf = state.getIdxRaf(testament);
+        final RandomAccessFile txtRaf = state.getTextRaf(testament);
+
+        // It may be that this is a single testament Bible
+        if (idxRaf == null) {
+            return;
+        }
+
+        final int count = last - first;
+        byte[] buffer = SwordUtil.readRAF(idxRaf, index * entrysize, count * entrysize);
+        if (buffer == null) {
+            return;
+        }
+
+        // Decode the index, noting the span of the text file that is needed.
+        final int[] offsets = new int[count];
+        final int[] sizes = new int[count];
+        long spanStart = Long.MAX_VALUE;
+        long spanEnd = -1;
+        long total = 0;
+        for (int i = 0; i < count && (i + 1) * entrysize <= buffer.length; i++) {
+            offsets[i] = SwordUtil.decodeLittleEndian32(buffer, i * entrysize);
+            sizes[i] = datasize == 2 ? SwordUtil.decodeLittleEndian16(buffer, i * entrysize + 4) : SwordUtil.decodeLittleEndian32(buffer, i * entrysize + 4);
+            if (sizes[i] < 0) {
+                LOGGER.error("In {}: Verse {} has a bad index size of {}", getBookMetaData().getInitials(), verses[first + i].getName(), Integer.toString(sizes[i]));
+                sizes[i] = 0;
+            }
+            if (sizes[i] > 0) {
+                spanStart = Math.min(spanStart, offsets[i]);
+                spanEnd = Math.max(spanEnd, (long) offsets[i] + sizes[i]);
+                total += sizes[i];
+            }
+        }
+
+        // Nothing in the range
+        if (spanEnd < 0) {
+            return;
+        }
+
+        // When the entries are scattered, e.g. by editing, reading the whole
+        // span would read much more than is needed, so read each on its own.
+        byte[] span = null;
+        if (spanEnd - spanStart <= 2 * total + MAX_SPAN_GAP) {
+            span = SwordUtil.readRAF(txtRaf, spanStart, (int) (spanEnd - spanStart));
+        }
+
+        final String charset = getBookMetaData().getBookCharset();
+        for (int i = 0; i < count; i++) {
+            final int size = sizes[i];
+            if (size == 0) {
+                continue;
+            }
+
+            byte[] data;
+            if (span == null) {
+                data = SwordUtil.readRAF(txtRaf, offsets[i], size);
+            } else {
+                int start = (int) (offsets[i] - spanStart);
+                if (start + size > span.length) {
+                    continue;
+                }
+                data = new byte[size];
+                System.arraycopy(span, start, data, 0, size);
+            }
+
+            decipher(data);
+
+            texts[first + i] = SwordUtil.decode(verses[first + i].getName(), data, charset);
         }
     }
 
@@ -321,6 +478,12 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
      */
     protected static final int OFFSETSIZE = 4;
 
+    /**
+     * How many bytes of unwanted text can be read when reading the text of a
+     * range of entries together.
+     */
+    private static final int MAX_SPAN_GAP = 64 * 1024;
+
     /**
      * The log stream
      */
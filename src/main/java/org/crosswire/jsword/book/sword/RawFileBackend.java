@@ -29,7 +29,6 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 
 import org.crosswire.jsword.book.BookException;
-import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
 import org.crosswire.jsword.book.sword.state.RawBackendState;
 import org.crosswire.jsword.book.sword.state.RawFileBackendState;
@@ -38,7 +37,6 @@ import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.Verse;
 import org.crosswire.jsword.versification.Testament;
 import org.crosswire.jsword.versification.Versification;
-import org.crosswire.jsword.versification.system.Versifications;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -107,14 +105,26 @@ public class RawFileBackend extends RawBackend<RawFileBackendState> {
         }
     }
 
+    /**
+     * Each entry is stored in its own file, so there is no span of text to
+     * read together.
+     * 
+     * @see org.crosswire.jsword.book.sword.RawBackend#getEntries(org.crosswire.jsword.book.sword.state.RawBackendState, org.crosswire.jsword.passage.Verse[], int, int, org.crosswire.jsword.versification.Testament, long, java.lang.String[])
+     */
+    @Override
+    protected void getEntries(RawBackendState state, Verse[] verses, int first, int last, Testament testament, long index, String[] texts) throws IOException {
+        for (int i = first; i < last; i++) {
+            texts[i] = state.getIdxRaf(testament) == null ? "" : getEntry(state, verses[i].getName(), testament, index + i - first);
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.sword.RawBackend#setRawText(org.crosswire.jsword.passage.Key, java.lang.String)
      * 
      */
     public void setRawText(RawFileBackendState state, Key key, String text) throws BookException, IOException {
 
-        String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
-        Versification v11n = Versifications.instance().getVersification(v11nName);
+        Versification v11n = getVersification();
         Verse verse = KeyUtil.getVerse(key);
         int index = verse.getOrdinal();
         Testament testament = v11n.getTestament(index);
@@ -141,8 +151,7 @@ public class RawFileBackend extends RawBackend<RawFileBackendState> {
     }
 
     public void setAliasKey(RawFileBackendState state, Key alias, Key source) throws IOException {
-        String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
-        Versification v11n = Versifications.instance().getVersification(v11nName);
+        Versification v11n = getVersification();
         Verse aliasVerse = KeyUtil.getVerse(alias);
         Verse sourceVerse = KeyUtil.getVerse(source);
         int aliasIndex = aliasVerse.getOrdinal();
@@ -305,8 +314,7 @@ public class RawFileBackend extends RawBackend<RawFileBackendState> {
 
     private void prepopulateIndexFiles(RawFileBackendState state) throws IOException {
 
-        String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
-        Versification v11n = Versifications.instance().getVersification(v11nName);
+        Versification v11n = getVersification();
         int otCount = v11n.getCount(Testament.OLD);
         int ntCount = v11n.getCount(Testament.NEW) + 1;
         try (BufferedOutputStream otIdxBos = new BufferedOutputStream(new FileOutputStream(state.getIdxFile(Testament.OLD), false))) {
@@ -21,12 +21,17 @@ package org.crosswire.jsword.book.sword;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.text.DecimalFormat;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,6 +45,7 @@ import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.FeatureType;
 import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
 import org.crosswire.jsword.book.sword.state.RawLDBackendState;
+import org.crosswire.jsword.passage.DefaultKeyList;
 import org.crosswire.jsword.passage.DefaultLeafKeyList;
 import org.crosswire.jsword.passage.Key;
 
@@ -78,9 +84,10 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         if (key == null || key.length() == 0) {
             return "";
         }
-        int pos = search(state, key);
+        DictionaryKeyIndex keys = getKeyIndex(state);
+        int pos = search(keys, key);
         if (pos >= 0) {
-            DataIndex index = getIndex(state, pos);
+            DataIndex index = new DataIndex(keys.getOffset(pos), keys.getSize(pos));
             DataEntry entry = getEntry(state, key, index);
             entry = getEntry(state, entry);
             if (entry.isLinkEntry()) {
@@ -111,6 +118,11 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
      * @see org.crosswire.jsword.passage.Key#getCardinality()
      */
     public int getCardinality() {
+        DictionaryKeyIndex keys = keyIndex;
+        if (keys != null) {
+            return keys.size();
+        }
+
         RawLDBackendState state = null;
         try {
             state = initState();
@@ -132,14 +144,10 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
      * @see org.crosswire.jsword.passage.Key#get(int)
      */
     public Key get(int index) {
-        RawLDBackendState state = null;
         try {
-            state = initState();
-
-            if (index < getCardinality()) {
-                DataIndex dataIndex = getIndex(state, index);
-                DataEntry entry = getEntry(state, getBookMetaData().getInitials(), dataIndex);
-                String keytitle = internal2external(entry.getKey());
+            DictionaryKeyIndex keys = getKeyIndex();
+            if (index >= 0 && index < keys.size()) {
+                String keytitle = internal2external(keys.getKey(index));
                 return new DefaultLeafKeyList(keytitle);
             }
         } catch (BookException e) {
@@ -148,8 +156,6 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         } catch (IOException e) {
             // This is allowed
             // Fall through to throw an AIOOBE.
-        } finally {
-            OpenFileStateManager.instance().release(state);
         }
         throw new ArrayIndexOutOfBoundsException(index);
     }
@@ -158,16 +164,12 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
      * @see org.crosswire.jsword.passage.Key#indexOf(org.crosswire.jsword.passage.Key)
      */
     public int indexOf(Key that) {
-        RawLDBackendState state = null;
         try {
-            state = initState();
-            return search(state, that.getName());
+            return search(getKeyIndex(), that.getName());
         } catch (IOException e) {
             return -getCardinality() - 1;
         } catch (BookException e) {
             return -getCardinality() - 1;
-        } finally {
-            OpenFileStateManager.instance().release(state);
         }
     }
 
@@ -176,32 +178,260 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
      */
     @Override
     public int getRawTextLength(Key key) {
+        try {
+            DictionaryKeyIndex keys = getKeyIndex();
+            int entry = search(keys, key.getName());
+            if (entry < 0) {
+                return 0;
+            }
+            return keys.getSize(entry);
+        } catch (IOException e) {
+            return 0;
+        } catch (BookException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Get the keys that begin with the prefix, in the order of the module,
+     * stopping after maxCount keys have been found. The prefix is compared
+     * to the keys in the same way as the module sorts them, so this seeks
+     * directly to the first match. A Strong's number is looked for with each
+     * padding that a number starting with its digits could have in the
+     * module, so that H12 finds H00012, H00120 and H01200.
+     * 
+     * @param prefix
+     *            the start of the desired keys
+     * @param maxCount
+     *            the most keys to return
+     * @return the matching keys
+     */
+    public Key getKeysWithPrefix(String prefix, int maxCount) {
+        Key result = new DefaultKeyList();
+        DictionaryKeyIndex keys = null;
+        try {
+            keys = getKeyIndex();
+        } catch (IOException e) {
+            return result;
+        } catch (BookException e) {
+            return result;
+        }
+
+        int total = keys.size();
+        int count = 0;
+        if (BookCategory.DAILY_DEVOTIONS.equals(getBookMetaData().getBookCategory())) {
+            // The keys are stored as dates and not as they are shown.
+            for (int i = 0; i < total && count < maxCount; i++) {
+                String keytitle = internal2external(keys.getKey(i));
+                if (keytitle.startsWith(prefix)) {
+                    result.addAll(new DefaultLeafKeyList(keytitle));
+                    count++;
+                }
+            }
+            return result;
+        }
+
+        // Strong's numbers are stored zero padded, so H12 is looked for as H00012, H0012, H012 and H12.
+        // The first key may be an introduction, so take the form from the second.
+        List<String> targets = Collections.singletonList(prefix);
+        if (total > 0) {
+            targets = prefix2internal(prefix, keys.getKey(total > 1 ? 1 : 0));
+        }
+
+        // Many dictionaries have an introductory entry that is out of order.
+        if (total > 0 && keys.getSize(0) > 0) {
+            for (String target : targets) {
+                if (keys.getSearchKey(0).startsWith(normalizeForSearch(target))) {
+                    result.addAll(new DefaultLeafKeyList(keys.getKey(0)));
+                    count++;
+                    break;
+                }
+            }
+        }
+
+        // The matches of each target follow those of the one before,
+        // so each search starts no earlier than where the last stopped.
+        int from = 1;
+        for (String target : targets) {
+            String searchTarget = normalizeForSearch(target);
+            int i = Math.max(from, keys.lowerBound(searchTarget, 1));
+            for (; i < total && count < maxCount; i++) {
+                if (keys.getSize(i) == 0) {
+                    continue;
+                }
+                if (!keys.getSearchKey(i).startsWith(searchTarget)) {
+                    break;
+                }
+                result.addAll(new DefaultLeafKeyList(keys.getKey(i)));
+                count++;
+            }
+            from = i;
+        }
+        return result;
+    }
+
+    /**
+     * Convert the start of a key to the starts of the keys of the module that
+     * it could match. The start of a Strong's number is padded in each way a
+     * number beginning with its digits could be, so when the keys have five
+     * digits, H12 is 00012, 0012, 012 and 12, and H0001 is 00001 and 0001.
+     * 
+     * @param prefix the start of the external key
+     * @param pattern The first non-introduction key in the module.
+     * @return the starts of the internal keys, in the order of the keys
+     */
+    private List<String> prefix2internal(String prefix, String pattern) {
+        String internal = external2internal(prefix, pattern);
+        Matcher m = STRONGS_PATTERN.matcher(prefix);
+        if (internal.equals(prefix) || !m.matches() || m.group(3).length() > 0) {
+            return Collections.singletonList(internal);
+        }
+
+        // The internal key is some letters followed by the padded number.
+        int width = 0;
+        while (width < internal.length() && Character.isDigit(internal.charAt(internal.length() - width - 1))) {
+            width++;
+        }
+        String head = internal.substring(0, internal.length() - width);
+        String digits = m.group(2);
+        List<String> targets = new ArrayList<>();
+        StringBuilder buf = new StringBuilder();
+        for (int length = Math.max(width, digits.length()); length >= digits.length(); length--) {
+            buf.setLength(0);
+            buf.append(head);
+            for (int i = digits.length(); i < length; i++) {
+                buf.append('0');
+            }
+            buf.append(digits);
+            targets.add(buf.toString());
+        }
+        return targets;
+    }
+
+    /**
+     * Get the in-memory index of the keys of this dictionary, building it on
+     * first use.
+     * 
+     * @return the key index
+     * @throws IOException
+     * @throws BookException
+     */
+    protected DictionaryKeyIndex getKeyIndex() throws IOException, BookException {
+        DictionaryKeyIndex keys = keyIndex;
+        if (keys != null) {
+            return keys;
+        }
+
         RawLDBackendState state = null;
         try {
             state = initState();
-            int entry = search(state, key.getName());
-            // Read the offset and size for this key from the index
-            byte[] buffer = SwordUtil.readRAF(state.getIdxRaf(), entry * entrysize, entrysize);
-            int entrySize = 0;
+            return getKeyIndex(state);
+        } finally {
+            OpenFileStateManager.instance().release(state);
+        }
+    }
+
+    /**
+     * Get the in-memory index of the keys of this dictionary, building it on
+     * first use. A saved copy is used when there is one that is up to date.
+     * 
+     * @param state
+     *            the state object for the storage
+     * @return the key index
+     * @throws IOException
+     */
+    protected DictionaryKeyIndex getKeyIndex(RawLDBackendState state) throws IOException {
+        DictionaryKeyIndex keys = keyIndex;
+        if (keys == null) {
+            synchronized (this) {
+                keys = keyIndex;
+                if (keys == null) {
+                    boolean persistent = DictionaryKeyIndex.isPersistent();
+                    if (persistent) {
+                        keys = DictionaryKeyIndex.load(state.getIdxFile(), isCaseFolded());
+                    }
+                    if (keys == null) {
+                        keys = buildKeyIndex(state);
+                        if (persistent) {
+                            keys.store(state.getIdxFile());
+                        }
+                    }
+                    keyIndex = keys;
+                }
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Read every key of this dictionary in a single pass over the index and
+     * a single pass, in order of offset, over the data.
+     * 
+     * @param state
+     *            the state object for the storage
+     * @return the key index
+     * @throws IOException
+     */
+    private DictionaryKeyIndex buildKeyIndex(RawLDBackendState state) throws IOException {
+        int total = (int) (state.getIdxRaf().length() / entrysize);
+        byte[] buffer = SwordUtil.readRAF(state.getIdxRaf(), 0, total * entrysize);
+        String[] keys = new String[total];
+        int[] offsets = new int[total];
+        int[] sizes = new int[total];
+        // Each entry as its offset in the high half and its index in the low half,
+        // so that sorting them gives the order in which they are in the data.
+        long[] order = new long[total];
+        for (int i = 0; i < total; i++) {
+            int pos = i * entrysize;
+            offsets[i] = SwordUtil.decodeLittleEndian32(buffer, pos);
             switch (datasize) {
             case 2:
-                entrySize = SwordUtil.decodeLittleEndian16(buffer, 4);
+                sizes[i] = SwordUtil.decodeLittleEndian16(buffer, pos + OFFSETSIZE);
                 break;
             case 4:
-                entrySize = SwordUtil.decodeLittleEndian32(buffer, 4);
+                sizes[i] = SwordUtil.decodeLittleEndian32(buffer, pos + OFFSETSIZE);
                 break;
             default:
                 assert false : datasize;
             }
+            order[i] = ((offsets[i] & 0xFFFFFFFFL) << 32) | i;
+        }
+        Arrays.sort(order);
+
+        RandomAccessFile dat = state.getDatRaf();
+        long datLength = dat.length();
+        String name = getBookMetaData().getInitials();
+        String charset = getBookMetaData().getBookCharset();
+        byte[] chunk = new byte[0];
+        long chunkStart = 0;
+        for (long entry : order) {
+            int i = (int) entry;
+            long start = entry >>> 32;
+            // Occasionally there's a bogus index entry (size == 0),
+            // or one that points beyond the data.
+            long end = Math.min(start + sizes[i], datLength);
+            if (sizes[i] <= 0 || start >= end) {
+                keys[i] = "";
+                continue;
+            }
 
-            return entrySize;
-        } catch (IOException e) {
-            return 0;
-        } catch (BookException e) {
-            return 0;
-        } finally {
-            OpenFileStateManager.instance().release(state);
+            if (start < chunkStart || end > chunkStart + chunk.length) {
+                chunkStart = start;
+                chunk = new byte[(int) Math.min(Math.max(DAT_CHUNK_SIZE, end - start), datLength - start)];
+                dat.seek(chunkStart);
+                dat.readFully(chunk);
+            }
+
+            // The key is the first line of the entry.
+            int from = (int) (start - chunkStart);
+            int to = (int) (end - chunkStart);
+            int keyEnd = from;
+            while (keyEnd < to && chunk[keyEnd] != '\n') {
+                keyEnd++;
+            }
+            keys[i] = new DataEntry(name, Arrays.copyOfRange(chunk, from, Math.min(keyEnd + 1, to)), charset).getKey();
         }
+        return new DictionaryKeyIndex(keys, offsets, sizes, isCaseFolded());
     }
 
     /**
@@ -264,11 +494,11 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
      * Find a matching entry, returning it's index. Otherwise return &lt; 0, such
      * that (-pos - 1) gives the insertion index.
      * 
+     * @param keys the in-memory index of the keys of this dictionary
      * @param key
      * @return the match
-     * @throws IOException
      */
-    private int search(RawLDBackendState state, String key) throws IOException {
+    private int search(DictionaryKeyIndex keys, String key) {
         // Note: In some dictionaries, the first element is out of order and
         // represents the title of the work.
         // So, do the bin search from 1 to end and if not found, check the
@@ -276,31 +506,34 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         // If that does not match return the position found otherwise.
 
         // Initialize to one beyond both ends.
-        int total = getCardinality();
+        int total = keys.size();
+        if (total == 0) {
+            return -1;
+        }
         int low = 0;
         int high = total;
         int match = -1;
-        DataIndex dataIndex = null;
 
         String suppliedKey = null;
         while (high - low > 1) {
             // use >>> to keep mid always in range
             int mid = (low + high) >>> 1;
 
-            // Get the key for the item at "mid"
-            dataIndex = getIndex(state, mid);
             // Occasionally there's a bogus index entry (size == 0)
             // in the middle of the index. It needs to be skipped.
-            while (dataIndex.getSize() == 0) {
+            while (keys.getSize(mid) == 0) {
                 // reset mid toward the longer end
                 mid += high - mid > mid - low ? 1 : -1;
-                // ensure that we are in bounds.
-                if (mid < low || mid > high) {
+                // Stop if there is nothing left to look at between the ends.
+                if (mid <= low || mid >= high) {
+                    mid = -1;
                     break;
                 }
-                dataIndex = getIndex(state, mid);
             }
-            String entryKey = normalizeForSearch(getEntry(state, key, dataIndex).getKey());
+            if (mid < 0) {
+                break;
+            }
+            String entryKey = keys.getSearchKey(mid);
             // Normalize the key based upon the first entry looked at.
             if (suppliedKey == null) {
                 suppliedKey = normalizeForSearch(external2internal(key, entryKey));
@@ -322,8 +555,7 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         }
 
         // Many dictionaries have an introductory entry, so check it for a match.
-        dataIndex = getIndex(state, 0);
-        String entryKey = normalizeForSearch(getEntry(state, key, dataIndex).getKey());
+        String entryKey = keys.getSearchKey(0);
         if (suppliedKey == null) {
             suppliedKey = normalizeForSearch(external2internal(key, entryKey));
         }
@@ -331,14 +563,12 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
             return 0;
         }
 
-        // It wasn't found so see if it is present in a linear search if case sensitive keys are used.
+        // It wasn't found so see if it is present anywhere if case sensitive keys are used.
         if ("true".equalsIgnoreCase(getBookMetaData().getProperty(SwordBookMetaData.KEY_CASE_SENSITIVE_KEYS))) {
-           for (int i = 0; i < total; i++) {
-               dataIndex = getIndex(state, i);
-               if (getEntry(state, key, dataIndex).getKey().compareTo(key) == 0) {
-                   return i;
-               }
-           }
+            int pos = keys.find(key);
+            if (pos >= 0) {
+                return pos;
+            }
         }
 
         return -(high + 1);
@@ -486,14 +716,23 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
     }
 
     private String normalizeForSearch(String internalKey) {
-        BookMetaData bmd = getBookMetaData();
-        String keytitle = internalKey;
-        String caseSensitive = bmd.getProperty(SwordBookMetaData.KEY_CASE_SENSITIVE_KEYS);
-        if (!"true".equalsIgnoreCase(caseSensitive) && !BookCategory.DAILY_DEVOTIONS.equals(bmd.getBookCategory())) {
-            return keytitle.toUpperCase(Locale.US);
+        if (isCaseFolded()) {
+            return internalKey.toUpperCase(Locale.US);
         }
 
-        return keytitle;
+        return internalKey;
+    }
+
+    /**
+     * Keys are compared without regard to case unless the module says
+     * otherwise or the keys are dates.
+     * 
+     * @return whether the case of keys is ignored when searching
+     */
+    private boolean isCaseFolded() {
+        BookMetaData bmd = getBookMetaData();
+        String caseSensitive = bmd.getProperty(SwordBookMetaData.KEY_CASE_SENSITIVE_KEYS);
+        return !"true".equalsIgnoreCase(caseSensitive) && !BookCategory.DAILY_DEVOTIONS.equals(bmd.getBookCategory());
     }
 
     /**
@@ -642,6 +881,16 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
      */
     private static final int OFFSETSIZE = 4;
 
+    /**
+     * How much of the data is read at a time when building the key index.
+     */
+    private static final int DAT_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The in-memory index of the keys, built on first use
+     */
+    private transient volatile DictionaryKeyIndex keyIndex;
+
     /**
      * Serialization ID
      */
@@ -59,6 +59,16 @@ public final class SwordConstants {
      */
     public static final String EXTENSION_DATA = ".dat";
 
+    /**
+     * Extension for the saved in-memory key index of a dictionary
+     */
+    public static final String EXTENSION_KEY_INDEX = ".kdx";
+
+    /**
+     * The saved global key list of a versified module
+     */
+    public static final String FILE_GLOBAL_KEY_LIST = "keylist.bits";
+
     /**
      * Extension for config files
      */
@@ -131,6 +131,18 @@ public class SwordDictionary extends AbstractBook {
         return (AbstractKeyBackend) getBackend();
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.Book#getKeysWithPrefix(java.lang.String, int)
+     */
+    @Override
+    public Key getKeysWithPrefix(String prefix, int maxCount) {
+        Backend backend = getBackend();
+        if (backend instanceof RawLDBackend && prefix != null && maxCount > 0) {
+            return ((RawLDBackend<?>) backend).getKeysWithPrefix(prefix, maxCount);
+        }
+        return super.getKeysWithPrefix(prefix, maxCount);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.Book#getValidKey(java.lang.String)
      */
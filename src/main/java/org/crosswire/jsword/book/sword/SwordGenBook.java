@@ -19,10 +19,8 @@
  */
 package org.crosswire.jsword.book.sword;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 import org.crosswire.common.activate.Activator;
 import org.crosswire.common.activate.Lock;
@@ -60,7 +58,6 @@ public class SwordGenBook extends AbstractBook {
         }
 
         this.filter = sbmd.getFilter();
-        map = null;
         set = null;
         global = null;
         active = false;
@@ -75,11 +72,6 @@ public class SwordGenBook extends AbstractBook {
 
         set = getBackend().readIndex();
 
-        map = new HashMap<>();
-        for (Key key : set) {
-            map.put(key.getOsisRef(), key);
-        }
-
         global = new ReadOnlyKeyList(set, false);
 
         active = true;
@@ -95,7 +87,6 @@ public class SwordGenBook extends AbstractBook {
     public final void deactivate(Lock lock) {
         super.deactivate(lock);
 
-        map = null;
         set = null;
         global = null;
 
@@ -199,31 +190,43 @@ public class SwordGenBook extends AbstractBook {
     public Key getKey(String text) throws NoSuchKeyException {
         checkActive();
 
-        Key key = map.get(text);
-        if (key != null) {
-            return key;
-        }
-
-        // First check for keys that match ignoring case
-        for (String keyName : map.keySet()) {
-            if (keyName.equalsIgnoreCase(text)) {
-                return map.get(keyName);
+        // The backend can find a key from its path without looking at the others.
+        Backend backend = getBackend();
+        if (backend instanceof GenBookBackend) {
+            Key key = ((GenBookBackend) backend).getKey(text);
+            if (key != null) {
+                return key;
             }
         }
 
-        // Next keys that start with the given text
-        for (String keyName : map.keySet()) {
-            if (keyName.startsWith(text)) {
-                return map.get(keyName);
+        // Otherwise look for, in order of preference, keys that match
+        // exactly, that match ignoring case, that start with the given text
+        // and that contain the given text.
+        Key ignoreCaseMatch = null;
+        Key prefixMatch = null;
+        Key containsMatch = null;
+        for (Key key : set) {
+            String keyName = key.getOsisRef();
+            if (keyName.equals(text)) {
+                return key;
             }
-        }
-
-        // Next try keys that contain the given text
-        for (String keyName : map.keySet()) {
-            if (keyName.indexOf(text) != -1) {
-                return map.get(keyName);
+            if (ignoreCaseMatch == null && keyName.equalsIgnoreCase(text)) {
+                ignoreCaseMatch = key;
+            } else if (prefixMatch == null && keyName.startsWith(text)) {
+                prefixMatch = key;
+            } else if (containsMatch == null && keyName.indexOf(text) != -1) {
+                containsMatch = key;
             }
         }
+        if (ignoreCaseMatch != null) {
+            return ignoreCaseMatch;
+        }
+        if (prefixMatch != null) {
+            return prefixMatch;
+        }
+        if (containsMatch != null) {
+            return containsMatch;
+        }
 
         // TRANSLATOR: Error condition: Indicates that something could not be
         // found in the book.
@@ -258,11 +261,6 @@ public class SwordGenBook extends AbstractBook {
      */
     private boolean active;
 
-    /**
-     * So we can quickly find a Key given the text for the key
-     */
-    private Map<String, Key> map;
-
     /**
      * So we can implement getIndex() easily
      */
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 import org.crosswire.common.util.NetUtil;
 import org.crosswire.jsword.JSOtherMsg;
@@ -105,6 +106,51 @@ public final class SwordUtil {
         return read;
     }
 
+    /**
+     * Read from a memory mapped file. This has the same semantics as
+     * {@link #readRAF(RandomAccessFile, long, int)}. Note: the position of the
+     * buffer is changed, so it must not be shared between threads.
+     * 
+     * @param buffer
+     *            The mapped file to read
+     * @param offset
+     *            The start of the record to read
+     * @param theSize
+     *            The number of bytes to read
+     * @return the read data
+     */
+    protected static byte[] readMapped(ByteBuffer buffer, long offset, int theSize) {
+        int size = theSize;
+        int bufferSize = buffer.limit();
+
+        // It is common to have an entry that points to nothing.
+        // That is the equivalent of an empty string.
+        if (size == 0) {
+            return new byte[0];
+        }
+
+        if (size < 0) {
+            log.error("Nothing to read at offset = {} returning empty because negative size={}", Long.toString(offset), Integer.toString(size));
+            return new byte[0];
+        }
+
+        if (offset < 0 || offset >= bufferSize) {
+            log.error("Attempt to read beyond end. offset={} size={} but buffer.limit={}", Long.toString(offset), Integer.toString(size), Integer.toString(bufferSize));
+            return new byte[0];
+        }
+
+        if (offset + size > bufferSize) {
+            log.error("Need to reduce size to avoid BufferUnderflowException. offset={} size={} but buffer.limit={}", Long.toString(offset), Integer.toString(size), Integer.toString(bufferSize));
+            size = (int) (bufferSize - offset);
+        }
+
+        byte[] read = new byte[size];
+        buffer.position((int) offset);
+        buffer.get(read);
+
+        return read;
+    }
+
     /**
      * Writes "data" to a RandomAccessFile at the "offset" position
      * 
@@ -0,0 +1,423 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * A compact, memory resident copy of the tree held by a {@link TreeKeyIndex}.
+ * Each node is identified by its position in a pre-order walk of the tree,
+ * with the root at 0. Parent, child and sibling links are held in parallel int
+ * arrays and the names are shared where they repeat.
+ *
+ * <p>A node can be found from its full path, that is the names from the top of
+ * the tree down to the node separated by '/', using a hash of the path. As with
+ * a walk down the tree, when siblings share a name only the first of them can
+ * be found.</p>
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class TreeKeyTable {
+    /**
+     * Read the whole of a tree into memory.
+     *
+     * @param index
+     *            the tree as stored in the module
+     * @throws IOException
+     */
+    TreeKeyTable(TreeKeyIndex index) throws IOException {
+        int capacity = 64;
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        names = new String[capacity];
+        dataStarts = new int[capacity];
+        dataSizes = new int[capacity];
+        pathHashes = new int[capacity];
+        int[] lastChildren = new int[capacity];
+        Map<String, String> nameTable = new HashMap<String, String>();
+
+        // Walk the tree in pre-order, keeping the ancestors of the current
+        // node on a stack rather than recursing.
+        TreeNode[] ancestors = new TreeNode[16];
+        int depth = 0;
+        TreeNode current = index.getRoot();
+        int parent = -1;
+        while (true) {
+            if (size == names.length) {
+                capacity = size * 2;
+                parents = Arrays.copyOf(parents, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+                names = Arrays.copyOf(names, capacity);
+                dataStarts = Arrays.copyOf(dataStarts, capacity);
+                dataSizes = Arrays.copyOf(dataSizes, capacity);
+                pathHashes = Arrays.copyOf(pathHashes, capacity);
+                lastChildren = Arrays.copyOf(lastChildren, capacity);
+            }
+
+            int node = size++;
+            String name = current.getName();
+            String shared = nameTable.get(name);
+            if (shared == null) {
+                nameTable.put(name, name);
+                shared = name;
+            }
+            names[node] = shared;
+            parents[node] = parent;
+            firstChildren[node] = -1;
+            nextSiblings[node] = -1;
+            lastChildren[node] = -1;
+            if (parent >= 0) {
+                if (lastChildren[parent] == -1) {
+                    firstChildren[parent] = node;
+                } else {
+                    nextSiblings[lastChildren[parent]] = node;
+                }
+                lastChildren[parent] = node;
+            }
+
+            byte[] userData = current.getUserData();
+            // Some entries may be empty.
+            if (userData.length == 8) {
+                dataStarts[node] = SwordUtil.decodeLittleEndian32(userData, 0);
+                dataSizes[node] = SwordUtil.decodeLittleEndian32(userData, 4);
+            } else {
+                dataStarts[node] = -1;
+                dataSizes[node] = 0;
+            }
+
+            // The root is not part of any path.
+            if (parent <= 0) {
+                pathHashes[node] = shared.hashCode();
+            } else {
+                pathHashes[node] = extendHash(pathHashes[parent], shared);
+            }
+
+            if (current.hasChildren()) {
+                if (depth == ancestors.length) {
+                    ancestors = Arrays.copyOf(ancestors, depth * 2);
+                }
+                ancestors[depth++] = current;
+                parent = node;
+                current = index.getFirstChild(current);
+                continue;
+            }
+
+            // Go on to the next sibling of the closest node that has one.
+            // The root has no siblings.
+            while (!current.hasNextSibling() && depth > 0) {
+                current = ancestors[--depth];
+                parent = parents[parent];
+            }
+            if (depth == 0) {
+                break;
+            }
+            current = index.getNextSibling(current);
+        }
+
+        // Build the path lookup. Only the first of siblings sharing a name,
+        // and what is below it, can be found by walking down the tree.
+        // A parent always comes before its children.
+        boolean[] reachable = new boolean[size];
+        int tableSize = Integer.highestOneBit(Math.max(size, 1)) * 4;
+        table = new int[tableSize];
+        for (int node = 1; node < size; node++) {
+            int up = parents[node];
+            if (up != 0 && (up < 0 || !reachable[up])) {
+                continue;
+            }
+            int slot = findSlot(node);
+            if (table[slot] == 0) {
+                table[slot] = node + 1;
+                reachable[node] = true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of nodes in the tree, including the root
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param node
+     *            the node being worked upon
+     * @return the parent of the node or -1 for the root
+     */
+    int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * @param node
+     *            the node being worked upon
+     * @return the first child of the node or -1 if it has none
+     */
+    int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    /**
+     * @param node
+     *            the node being worked upon
+     * @return the next sibling of the node or -1 if it has none
+     */
+    int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /**
+     * @param node
+     *            the node being worked upon
+     * @return the name of the node
+     */
+    String getName(int node) {
+        return names[node];
+    }
+
+    /**
+     * @param node
+     *            the node being worked upon
+     * @return the start of the node's text in the data file or -1 if it has none
+     */
+    int getDataStart(int node) {
+        return dataStarts[node];
+    }
+
+    /**
+     * @param node
+     *            the node being worked upon
+     * @return the size of the node's text in the data file
+     */
+    int getDataSize(int node) {
+        return dataSizes[node];
+    }
+
+    /**
+     * Find the node for a key. The path of the key is given by its name and
+     * those of its parents, stopping at the first without a name.
+     *
+     * @param key
+     *            the key to find
+     * @return the node or -1 if it is not in the tree
+     */
+    int find(Key key) {
+        StringBuilder path = new StringBuilder(key.getName());
+        for (Key parentKey = key.getParent(); parentKey != null && parentKey.getName().length() > 0; parentKey = parentKey.getParent()) {
+            path.insert(0, '/');
+            path.insert(0, parentKey.getName());
+        }
+        return find(path.toString());
+    }
+
+    /**
+     * Find the node with the given path.
+     *
+     * @param path
+     *            the names of the node and its ancestors, separated by '/'
+     * @return the node or -1 if it is not in the tree
+     */
+    int find(String path) {
+        int hash = path.hashCode();
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int node = table[slot] - 1;
+            if (pathHashes[node] == hash && matches(node, path)) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the path of a node, suitable for {@link #find(String)}.
+     *
+     * @param node
+     *            the node being worked upon
+     * @return the path of the node
+     */
+    String getPath(int node) {
+        StringBuilder path = new StringBuilder(names[node]);
+        for (int ancestor = parents[node]; ancestor > 0; ancestor = parents[ancestor]) {
+            path.insert(0, '/');
+            path.insert(0, names[ancestor]);
+        }
+        return path.toString();
+    }
+
+    /**
+     * Find where a node belongs in the path lookup. This is either an empty
+     * slot or one holding a node with the same path.
+     *
+     * @param node
+     *            the node being worked upon
+     * @return the slot for the node
+     */
+    private int findSlot(int node) {
+        int hash = pathHashes[node];
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while (table[slot] != 0) {
+            int other = table[slot] - 1;
+            if (pathHashes[other] == hash && samePath(node, other)) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Determine whether the path of a node is the one given, without building
+     * the node's path.
+     *
+     * @param node
+     *            the node being worked upon
+     * @param path
+     *            the path to compare
+     * @return true if they match
+     */
+    private boolean matches(int node, String path) {
+        int end = path.length();
+        for (int current = node; current > 0; current = parents[current]) {
+            String name = names[current];
+            int start = end - name.length();
+            if (start < 0 || !path.regionMatches(start, name, 0, name.length())) {
+                return false;
+            }
+            if (parents[current] > 0) {
+                // There has to be a separator before the name
+                if (start == 0 || path.charAt(start - 1) != '/') {
+                    return false;
+                }
+                start--;
+            }
+            end = start;
+        }
+        return end == 0;
+    }
+
+    /**
+     * Determine whether two nodes have the same path.
+     *
+     * @param first
+     *            a node
+     * @param second
+     *            another node
+     * @return true if they have the same path
+     */
+    private boolean samePath(int first, int second) {
+        int a = first;
+        int b = second;
+        while (a > 0 && b > 0) {
+            if (!names[a].equals(names[b])) {
+                return false;
+            }
+            a = parents[a];
+            b = parents[b];
+        }
+        return a <= 0 && b <= 0;
+    }
+
+    /**
+     * Compute the hash of "parentPath/name" from the hash of parentPath, giving
+     * the same result as String.hashCode().
+     *
+     * @param parentHash
+     *            the hash of the parent's path
+     * @param name
+     *            the name being appended
+     * @return the hash of the whole path
+     */
+    private static int extendHash(int parentHash, String name) {
+        int hash = 31 * parentHash + '/';
+        int len = name.length();
+        for (int i = 0; i < len; i++) {
+            hash *= 31;
+        }
+        return hash + name.hashCode();
+    }
+
+    /**
+     * Spread the bits of a hash so that the low bits can be used as a slot.
+     *
+     * @param hash
+     *            the hash to spread
+     * @return the spread hash
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * The number of nodes in the tree.
+     */
+    private int size;
+
+    /**
+     * The parent of each node.
+     */
+    private int[] parents;
+
+    /**
+     * The first child of each node.
+     */
+    private int[] firstChildren;
+
+    /**
+     * The next sibling of each node.
+     */
+    private int[] nextSiblings;
+
+    /**
+     * The name of each node. Repeated names are shared.
+     */
+    private String[] names;
+
+    /**
+     * The start of each node's text in the data file.
+     */
+    private int[] dataStarts;
+
+    /**
+     * The size of each node's text in the data file.
+     */
+    private int[] dataSizes;
+
+    /**
+     * The hash of each node's path.
+     */
+    private int[] pathHashes;
+
+    /**
+     * An open addressed hash table of nodes, offset by one so that 0 is empty.
+     */
+    private final int[] table;
+}
@@ -22,7 +22,6 @@ package org.crosswire.jsword.book.sword;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 
-import org.crosswire.common.compress.CompressorType;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
 import org.crosswire.jsword.book.sword.state.RawLDBackendState;
@@ -77,6 +76,14 @@ public class ZLDBackend extends RawLDBackend<ZLDBackendState> {
         if (blockNum == state.getLastBlockNum()) {
             uncompressed = state.getLastUncompressed();
         } else {
+            uncompressed = BlockCache.instance().get(getBookMetaData(), null, blockNum);
+            if (uncompressed != null) {
+                state.setLastBlockNum(blockNum);
+                state.setLastUncompressed(uncompressed);
+            }
+        }
+
+        if (uncompressed == null) {
             byte[] temp;
             try {
                 temp = SwordUtil.readRAF(state.getZdxRaf(), blockNum * ZDX_ENTRY_SIZE, ZDX_ENTRY_SIZE);
@@ -91,8 +98,10 @@ public class ZLDBackend extends RawLDBackend<ZLDBackendState> {
 
                 decipher(temp);
 
-                String compressType = getBookMetaData().getProperty(SwordBookMetaData.KEY_COMPRESS_TYPE);
-                uncompressed = CompressorType.fromString(compressType).getCompressor(temp).uncompress().toByteArray();
+                uncompressed = getCompressorType().getCompressor(temp).uncompress().toByteArray();
+
+                // share the uncompressed data with other readers
+                BlockCache.instance().put(getBookMetaData(), null, blockNum, uncompressed);
 
                 // cache the uncompressed data for next time
                 state.setLastBlockNum(blockNum);
@@ -21,8 +21,8 @@ package org.crosswire.jsword.book.sword;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
-import org.crosswire.common.compress.CompressorType;
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.BookMetaData;
@@ -33,9 +33,9 @@ import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.RocketPassage;
 import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
 import org.crosswire.jsword.versification.Testament;
 import org.crosswire.jsword.versification.Versification;
-import org.crosswire.jsword.versification.system.Versifications;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -165,8 +165,7 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
         try {
             rafBook = initState();
 
-            String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
-            Versification v11n = Versifications.instance().getVersification(v11nName);
+            Versification v11n = getVersification();
             Verse verse = KeyUtil.getVerse(key);
 
             int index = verse.getOrdinal();
@@ -180,6 +179,18 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
                 return 0;
             }
 
+            ByteBuffer idxBuffer = rafBook.getIdxBuffer(testament);
+            if (idxBuffer != null) {
+                long offset = 1L * index * entrysize;
+                if (offset + entrysize > idxBuffer.limit()) {
+                    return 0;
+                }
+                if (datasize == 2) {
+                    return idxBuffer.getShort((int) offset + 8) & 0xFFFF;
+                }
+                return idxBuffer.getInt((int) offset + 8);
+            }
+
             // entrysize because the index is entrysize bytes long for each verse
             byte[] temp = SwordUtil.readRAF(idxRaf, 1L * index * entrysize, entrysize);
 
@@ -218,8 +229,7 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
         try {
             rafBook = initState();
 
-            String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
-            Versification v11n = Versifications.instance().getVersification(v11nName);
+            Versification v11n = getVersification();
 
             Testament[] testaments = new Testament[] {
                     Testament.OLD, Testament.NEW
@@ -295,24 +305,17 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
      */
     public String readRawContent(ZVerseBackendState rafBook, Key key) throws IOException {
 
-        BookMetaData bookMetaData = getBookMetaData();
-        final String charset = bookMetaData.getBookCharset();
-        final String compressType = bookMetaData.getProperty(SwordBookMetaData.KEY_COMPRESS_TYPE);
+        final String charset = getBookCharset();
 
-        final String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
-        final Versification v11n = Versifications.instance().getVersification(v11nName);
+        final Versification v11n = getVersification();
         Verse verse = KeyUtil.getVerse(key);
 
         int index = verse.getOrdinal();
         final Testament testament = v11n.getTestament(index);
         index = v11n.getTestamentOrdinal(index);
         final RandomAccessFile idxRaf;
-        final RandomAccessFile compRaf;
-        final RandomAccessFile textRaf;
 
         idxRaf = rafBook.getIdxRaf(testament);
-        compRaf = rafBook.getCompRaf(testament);
-        textRaf = rafBook.getTextRaf(testament);
 
         // If Bible does not contain the desired testament, return nothing.
         if (idxRaf == null) {
@@ -321,62 +324,208 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
 
         //dumpIdxRaf(v11n, 0, compRaf);
         //dumpCompRaf(idxRaf);
-        // entrysize because the index is entrysize bytes long for each verse
-        byte[] temp = SwordUtil.readRAF(idxRaf, 1L * index * entrysize, entrysize);
+        final long blockNum;
+        final int verseStart;
+        final int verseSize;
+        final ByteBuffer idxBuffer = rafBook.getIdxBuffer(testament);
+        if (idxBuffer != null) {
+            // Decode straight from the mapped index
+            final long offset = 1L * index * entrysize;
+            if (offset + entrysize > idxBuffer.limit()) {
+                return "";
+            }
+            blockNum = idxBuffer.getInt((int) offset);
+            verseStart = idxBuffer.getInt((int) offset + 4);
+            if (datasize == 2) {
+                verseSize = idxBuffer.getShort((int) offset + 8) & 0xFFFF;
+            } else { // datasize == 4:
+                verseSize = idxBuffer.getInt((int) offset + 8);
+            }
+        } else {
+            // entrysize because the index is entrysize bytes long for each verse
+            byte[] temp = SwordUtil.readRAF(idxRaf, 1L * index * entrysize, entrysize);
 
-        // If the Bible does not contain the desired verse, return nothing.
-        // Some Bibles have different versification, so the requested verse
-        // may not exist.
-        if (temp == null || temp.length == 0) {
+            // If the Bible does not contain the desired verse, return nothing.
+            // Some Bibles have different versification, so the requested verse
+            // may not exist.
+            if (temp == null || temp.length == 0) {
+                return "";
+            }
+
+            // The data is little endian - extract the blockNum, verseStart
+            // and
+            // verseSize
+            blockNum = SwordUtil.decodeLittleEndian32(temp, 0);
+            verseStart = SwordUtil.decodeLittleEndian32(temp, 4);
+            if (datasize == 2) {
+                verseSize = SwordUtil.decodeLittleEndian16(temp, 8);
+            } else { // datasize == 4:
+                verseSize = SwordUtil.decodeLittleEndian32(temp, 8);
+            }
+        }
+
+        byte[] uncompressed = getBlock(rafBook, testament, blockNum);
+        if (uncompressed == null) {
             return "";
         }
 
-        // The data is little endian - extract the blockNum, verseStart
-        // and
-        // verseSize
-        final long blockNum = SwordUtil.decodeLittleEndian32(temp, 0);
-        final int verseStart = SwordUtil.decodeLittleEndian32(temp, 4);
-        final int verseSize;
-        if (datasize == 2) {
-            verseSize = SwordUtil.decodeLittleEndian16(temp, 8);
-        } else { // datasize == 4:
-            verseSize = SwordUtil.decodeLittleEndian32(temp, 8);
+        // and cut out the required section.
+        final byte[] chopped = new byte[verseSize];
+        System.arraycopy(uncompressed, verseStart, chopped, 0, verseSize);
+
+        return SwordUtil.decode(key.getName(), chopped, charset);
+
+    }
+
+    /**
+     * Read the whole of the index for the range, for each testament it
+     * covers, in one read and uncompress each block that is needed once.
+     * 
+     * @see org.crosswire.jsword.book.sword.AbstractBackend#readRawContents(org.crosswire.jsword.book.sword.state.OpenFileState, org.crosswire.jsword.passage.VerseRange)
+     */
+    @Override
+    protected String[] readRawContents(ZVerseBackendState rafBook, VerseRange range) throws BookException, IOException {
+        final String charset = getBookCharset();
+        final Versification v11n = getVersification();
+
+        final Verse[] verses = range.toVerseArray();
+        final String[] texts = new String[verses.length];
+        int first = 0;
+        while (first < verses.length) {
+            // Gather the verses of the range that are in the same testament
+            final Testament testament = v11n.getTestament(verses[first].getOrdinal());
+            int last = first + 1;
+            while (last < verses.length && v11n.getTestament(verses[last].getOrdinal()) == testament) {
+                last++;
+            }
+
+            final int count = last - first;
+            final int index = v11n.getTestamentOrdinal(verses[first].getOrdinal());
+            final RandomAccessFile idxRaf = rafBook.getIdxRaf(testament);
+            final ByteBuffer idxBuffer = rafBook.getIdxBuffer(testament);
+
+            // If Bible does not contain the desired testament, return nothing.
+            byte[] temp = null;
+            int tempOffset = 0;
+            if (idxRaf != null && idxBuffer == null) {
+                temp = SwordUtil.readRAF(idxRaf, 1L * index * entrysize, count * entrysize);
+            }
+
+            for (int i = 0; i < count; i++) {
+                final String name = verses[first + i].getName();
+                texts[first + i] = "";
+
+                final long blockNum;
+                final int verseStart;
+                final int verseSize;
+                if (idxBuffer != null) {
+                    final long offset = 1L * (index + i) * entrysize;
+                    if (offset + entrysize > idxBuffer.limit()) {
+                        continue;
+                    }
+                    blockNum = idxBuffer.getInt((int) offset);
+                    verseStart = idxBuffer.getInt((int) offset + 4);
+                    verseSize = datasize == 2 ? idxBuffer.getShort((int) offset + 8) & 0xFFFF : idxBuffer.getInt((int) offset + 8);
+                } else {
+                    // The Bible does not contain the desired testament or verse.
+                    if (temp == null || tempOffset + entrysize > temp.length) {
+                        continue;
+                    }
+                    blockNum = SwordUtil.decodeLittleEndian32(temp, tempOffset);
+                    verseStart = SwordUtil.decodeLittleEndian32(temp, tempOffset + 4);
+                    verseSize = datasize == 2 ? SwordUtil.decodeLittleEndian16(temp, tempOffset + 8) : SwordUtil.decodeLittleEndian32(temp, tempOffset + 8);
+                    tempOffset += entrysize;
+                }
+
+                if (verseSize <= 0) {
+                    continue;
+                }
+
+                // Consecutive verses are almost always in the same block,
+                // which is remembered by the state.
+                final byte[] uncompressed = getBlock(rafBook, testament, blockNum);
+                if (uncompressed != null) {
+                    final byte[] chopped = new byte[verseSize];
+                    System.arraycopy(uncompressed, verseStart, chopped, 0, verseSize);
+                    texts[first + i] = SwordUtil.decode(name, chopped, charset);
+                }
+            }
+
+            first = last;
         }
 
+        return texts;
+    }
+
+    /**
+     * Get an uncompressed block, from the state's last block, from the shared
+     * block cache or by reading and uncompressing it.
+     * 
+     * @param rafBook the open files
+     * @param testament the testament of the block
+     * @param blockNum the number of the block in the testament
+     * @return the uncompressed block or null if it could not be read
+     * @throws IOException
+     */
+    private byte[] getBlock(ZVerseBackendState rafBook, Testament testament, long blockNum) throws IOException {
+        final BookMetaData bookMetaData = getBookMetaData();
+
         // Can we get the data from the cache
-        byte[] uncompressed = null;
         if (blockNum == rafBook.getLastBlockNum() && testament == rafBook.getLastTestament()) {
-            uncompressed = rafBook.getLastUncompressed();
-        } else {
-            // Then seek using this index into the idx file
-            temp = SwordUtil.readRAF(compRaf, blockNum * COMP_ENTRY_SIZE, COMP_ENTRY_SIZE);
-            if (temp == null || temp.length == 0) {
-                return "";
-            }
+            return rafBook.getLastUncompressed();
+        }
+
+        byte[] uncompressed = BlockCache.instance().get(bookMetaData, testament, blockNum);
+
+        if (uncompressed == null) {
+            final int blockStart;
+            final int blockSize;
+            final int uncompressedSize;
+            final ByteBuffer compBuffer = rafBook.getCompBuffer(testament);
+            if (compBuffer != null) {
+                // Decode straight from the mapped comp index
+                final long offset = blockNum * COMP_ENTRY_SIZE;
+                if (offset < 0 || offset + COMP_ENTRY_SIZE > compBuffer.limit()) {
+                    return null;
+                }
+                blockStart = compBuffer.getInt((int) offset);
+                blockSize = compBuffer.getInt((int) offset + 4);
+                uncompressedSize = compBuffer.getInt((int) offset + 8);
+            } else {
+                // Then seek using this index into the idx file
+                byte[] temp = SwordUtil.readRAF(rafBook.getCompRaf(testament), blockNum * COMP_ENTRY_SIZE, COMP_ENTRY_SIZE);
+                if (temp == null || temp.length == 0) {
+                    return null;
+                }
 
-            final int blockStart = SwordUtil.decodeLittleEndian32(temp, 0);
-            final int blockSize = SwordUtil.decodeLittleEndian32(temp, 4);
-            final int uncompressedSize = SwordUtil.decodeLittleEndian32(temp, 8);
+                blockStart = SwordUtil.decodeLittleEndian32(temp, 0);
+                blockSize = SwordUtil.decodeLittleEndian32(temp, 4);
+                uncompressedSize = SwordUtil.decodeLittleEndian32(temp, 8);
+            }
 
             // Read from the data file.
-            final byte[] data = SwordUtil.readRAF(textRaf, blockStart, blockSize);
+            final ByteBuffer textBuffer = rafBook.getTextBuffer(testament);
+            final byte[] data;
+            if (textBuffer != null) {
+                data = SwordUtil.readMapped(textBuffer, blockStart, blockSize);
+            } else {
+                data = SwordUtil.readRAF(rafBook.getTextRaf(testament), blockStart, blockSize);
+            }
 
             decipher(data);
 
-            uncompressed = CompressorType.fromString(compressType).getCompressor(data).uncompress(uncompressedSize).toByteArray();
+            uncompressed = getCompressorType().getCompressor(data).uncompress(uncompressedSize).toByteArray();
 
-            // cache the uncompressed data for next time
-            rafBook.setLastBlockNum(blockNum);
-            rafBook.setLastTestament(testament);
-            rafBook.setLastUncompressed(uncompressed);
+            // share the uncompressed data with other readers
+            BlockCache.instance().put(bookMetaData, testament, blockNum, uncompressed);
         }
 
-        // and cut out the required section.
-        final byte[] chopped = new byte[verseSize];
-        System.arraycopy(uncompressed, verseStart, chopped, 0, verseSize);
-
-        return SwordUtil.decode(key.getName(), chopped, charset);
+        // cache the uncompressed data for next time
+        rafBook.setLastBlockNum(blockNum);
+        rafBook.setLastTestament(testament);
+        rafBook.setLastUncompressed(uncompressed);
 
+        return uncompressed;
     }
 
     /* (non-Javadoc)
@@ -19,6 +19,8 @@
  */
 package org.crosswire.jsword.book.sword.state;
 
+import java.io.RandomAccessFile;
+
 import org.crosswire.jsword.book.BookMetaData;
 
 /**
@@ -68,6 +70,22 @@ public abstract class AbstractOpenFileState implements OpenFileState {
         this.lastAccess = lastAccess;
     }
 
+    /**
+     * Count the files that are open, that is, not null.
+     * 
+     * @param files the files held by a state
+     * @return the number of open files
+     */
+    protected static int countOpen(RandomAccessFile... files) {
+        int count = 0;
+        for (RandomAccessFile file : files) {
+            if (file != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * The BookMetaData for this OpenFileState. Used to locate files.
      */
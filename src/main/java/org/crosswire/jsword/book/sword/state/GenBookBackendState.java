@@ -89,6 +89,13 @@ public class GenBookBackendState extends AbstractOpenFileState {
         bdtRaf = null;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileState#getOpenFileCount()
+     */
+    public int getOpenFileCount() {
+        return countOpen(bdtRaf);
+    }
+
     /**
      * @return the bdtRaf
      */
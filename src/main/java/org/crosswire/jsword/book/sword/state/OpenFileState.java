@@ -36,6 +36,11 @@ public interface OpenFileState extends Closeable {
 
     void releaseResources();
 
+    /**
+     * @return the number of files currently held open by this state
+     */
+    int getOpenFileCount();
+
     /**
      * @return latest access before releasing back to the pool
      */
@@ -19,11 +19,14 @@
  */
 package org.crosswire.jsword.book.sword.state;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
@@ -31,6 +34,9 @@ import java.util.concurrent.TimeUnit;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.BooksEvent;
+import org.crosswire.jsword.book.BooksListener;
 import org.crosswire.jsword.book.sword.BlockType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +54,17 @@ import org.slf4j.LoggerFactory;
  * lookup by {@link BookMetaData}, which then gives us a pool of available
  * file states... We create some more if none are available.
  * 
+ * <p>
+ * Each pool is bounded. At most {@link #getMaxIdleStates()} states are kept
+ * for reuse, the oldest being closed first. At most
+ * {@link #getMaxOpenStates()} states are open at once. When that many are in
+ * use, a request waits up to {@link #getMaxWait()} milliseconds for one to be
+ * released. If none is, a state is opened anyway, and is closed rather than
+ * kept when it is released. This prevents a thread that already holds a
+ * state from deadlocking when it asks for another. When a book is removed
+ * from or replaced in {@link Books}, its idle states are closed.
+ * </p>
+ * 
  * In order to prevent memory leaks (OpenFileStates might be quite heavy as they do some internal caching of file data..
  * In order to avoid many file references piling up in memory, we implement a background cleaning thread which will clean
  * up redundant keys every so often.
@@ -61,9 +78,9 @@ import org.slf4j.LoggerFactory;
  */
 public final class OpenFileStateManager {
     /**
-     * prevent instantiation
+     * Only the singleton is used, but tests may make their own.
      */
-    private OpenFileStateManager(final int cleanupIntervalSeconds, final int maxExpiry) {
+    OpenFileStateManager(final int cleanupIntervalSeconds, final int maxExpiry) {
         // no op
         this.monitoringThread = Executors.newScheduledThreadPool(1, new ThreadFactory() {
             public Thread newThread(Runnable r) {
@@ -74,20 +91,14 @@ public final class OpenFileStateManager {
 
         }).scheduleWithFixedDelay(new Runnable() {
             public void run() {
-                // check the state of the maps and queues... The queues may have too much in them and that will in turn max out
+                // check the state of the pools... The pools may have too much in them and that will in turn max out
                 // the heap.
-                long currentTime = System.currentTimeMillis();
-
-                for (Queue<OpenFileState> e : OpenFileStateManager.this.metaToStates.values()) {
-                    for (Iterator<OpenFileState> iterator = e.iterator(); iterator.hasNext(); ) {
-                        final OpenFileState state = iterator.next();
-                        if (state.getLastAccess() + maxExpiry * 1000 < currentTime) {
-                            //release resources
-                            state.releaseResources();
-
-                            //remove from the queues
-                            iterator.remove();
-                        }
+                long expiry = System.currentTimeMillis() - maxExpiry * 1000L;
+
+                for (StatePool pool : OpenFileStateManager.this.metaToStates.values()) {
+                    for (OpenFileState state : pool.expire(expiry)) {
+                        //release resources
+                        state.releaseResources();
                     }
                 }
             }
@@ -103,7 +114,18 @@ public final class OpenFileStateManager {
      */
     public static synchronized void init(final int cleanupIntervalSeconds, final int maxExpiry) {
         if (manager == null) {
-            manager = new OpenFileStateManager(cleanupIntervalSeconds, maxExpiry);
+            final OpenFileStateManager created = new OpenFileStateManager(cleanupIntervalSeconds, maxExpiry);
+            // The files of a book that is removed or replaced are no longer wanted.
+            Books.installed().addBooksListener(new BooksListener() {
+                public void bookAdded(BooksEvent ev) {
+                    created.closeStates(ev.getBook().getBookMetaData());
+                }
+
+                public void bookRemoved(BooksEvent ev) {
+                    created.closeStates(ev.getBook().getBookMetaData());
+                }
+            });
+            manager = created;
         } else {
             // already initialized
             LOGGER.warn("The OpenFileStateManager has already been initialised, potentially with its default settings. The following values were ignored: cleanUpInterval [{}], maxExpiry=[{}]", Integer.toString(cleanupIntervalSeconds), Integer.toString(maxExpiry));
@@ -124,108 +146,94 @@ public final class OpenFileStateManager {
         return manager;
     }
 
-    public RawBackendState getRawBackendState(BookMetaData metadata) throws BookException {
-        ensureNotShuttingDown();
-
-        RawBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new RawBackendState(metadata);
-        }
-
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    public RawBackendState getRawBackendState(final BookMetaData metadata) throws BookException {
+        return getInstance(metadata, new StateFactory<RawBackendState>() {
+            public RawBackendState create() throws BookException {
+                return new RawBackendState(metadata);
+            }
+        });
     }
 
-    public RawFileBackendState getRawFileBackendState(BookMetaData metadata) throws BookException {
-        ensureNotShuttingDown();
-
-        RawFileBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new RawFileBackendState(metadata);
-        }
-
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    public RawFileBackendState getRawFileBackendState(final BookMetaData metadata) throws BookException {
+        return getInstance(metadata, new StateFactory<RawFileBackendState>() {
+            public RawFileBackendState create() throws BookException {
+                return new RawFileBackendState(metadata);
+            }
+        });
     }
 
-    public GenBookBackendState getGenBookBackendState(BookMetaData metadata) throws BookException {
-        ensureNotShuttingDown();
-
-        GenBookBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new GenBookBackendState(metadata);
-        }
-
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    public GenBookBackendState getGenBookBackendState(final BookMetaData metadata) throws BookException {
+        return getInstance(metadata, new StateFactory<GenBookBackendState>() {
+            public GenBookBackendState create() throws BookException {
+                return new GenBookBackendState(metadata);
+            }
+        });
     }
 
-    public RawLDBackendState getRawLDBackendState(BookMetaData metadata) throws BookException {
-        ensureNotShuttingDown();
-
-        RawLDBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new RawLDBackendState(metadata);
-        }
-
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    public RawLDBackendState getRawLDBackendState(final BookMetaData metadata) throws BookException {
+        return getInstance(metadata, new StateFactory<RawLDBackendState>() {
+            public RawLDBackendState create() throws BookException {
+                return new RawLDBackendState(metadata);
+            }
+        });
     }
 
-    public ZLDBackendState getZLDBackendState(BookMetaData metadata) throws BookException {
-        ensureNotShuttingDown();
-
-        ZLDBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new ZLDBackendState(metadata);
-        }
-
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    public ZLDBackendState getZLDBackendState(final BookMetaData metadata) throws BookException {
+        return getInstance(metadata, new StateFactory<ZLDBackendState>() {
+            public ZLDBackendState create() throws BookException {
+                return new ZLDBackendState(metadata);
+            }
+        });
     }
 
-    public ZVerseBackendState getZVerseBackendState(BookMetaData metadata, BlockType blockType) throws BookException {
-        ensureNotShuttingDown();
-
-        ZVerseBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new ZVerseBackendState(metadata, blockType);
-        }
-
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    public ZVerseBackendState getZVerseBackendState(final BookMetaData metadata, final BlockType blockType) throws BookException {
+        return getInstance(metadata, new StateFactory<ZVerseBackendState>() {
+            public ZVerseBackendState create() throws BookException {
+                return new ZVerseBackendState(metadata, blockType);
+            }
+        });
     }
 
+    /**
+     * Get a state from the pool for the book, creating one if none are available.
+     */
     @SuppressWarnings("unchecked")
-    private <T extends OpenFileState> T getInstance(BookMetaData metadata) {
-        Queue<OpenFileState> availableStates = getQueueForMeta(metadata);
-        final T state = (T) availableStates.poll();
+    <T extends OpenFileState> T getInstance(BookMetaData metadata, StateFactory<T> factory) throws BookException {
+        ensureNotShuttingDown();
+
+        StatePool pool = getPool(metadata);
+        final T state = (T) pool.acquire(maxOpenStates, maxWait);
 
-        //while not strictly necessary, the documentation suggests that iterating through the collection
-        //gives you a snapshot at some point in time, though not necessarily consistent, so just in case this remains
-        //in access of the iterator() functionality, we update the last access date to avoid it being destroyed while we
+        //while not strictly necessary, the expiry sweep may be looking at the state,
+        //so we update the last access date to avoid it being destroyed while we
         //use it
         if (state != null) {
+            LOGGER.trace("Reusing: {}", metadata.getInitials());
             state.setLastAccess(System.currentTimeMillis());
+            return state;
+        }
+
+        // A place has been reserved in the pool for a new state
+        LOGGER.trace("Initializing: {}", metadata.getInitials());
+        T created = null;
+        try {
+            created = factory.create();
+            return created;
+        } finally {
+            pool.opened(created);
         }
-        return state;
     }
 
-    private Queue<OpenFileState> getQueueForMeta(BookMetaData metadata) {
-        Queue<OpenFileState> availableStates = metaToStates.get(metadata);
-        if (availableStates == null) {
-            synchronized (OpenFileState.class) {
-                availableStates = new ConcurrentLinkedQueue<>();
-                metaToStates.put(metadata, availableStates);
+    private StatePool getPool(BookMetaData metadata) {
+        StatePool pool = metaToStates.get(metadata);
+        if (pool == null) {
+            StatePool created = new StatePool();
+            pool = metaToStates.putIfAbsent(metadata, created);
+            if (pool == null) {
+                pool = created;
             }
         }
-        return availableStates;
+        return pool;
     }
 
     public void release(OpenFileState fileState) {
@@ -237,16 +245,33 @@ public final class OpenFileStateManager {
 
         fileState.setLastAccess(System.currentTimeMillis());
 
-        // instead of releasing, we add to our queue
+        // instead of releasing, we add to our pool
         BookMetaData bmd = fileState.getBookMetaData();
-        Queue<OpenFileState> queueForMeta = getQueueForMeta(bmd);
         LOGGER.trace("Offering to releasing: {}", bmd.getInitials());
-        boolean offered = queueForMeta.offer(fileState);
+        List<OpenFileState> closed = getPool(bmd).release(fileState, shuttingDown ? 0 : maxIdleStates, maxOpenStates);
 
-        // ignore if we couldn't offer to the queue
-        if (!offered) {
+        // close the states the pool could not keep
+        for (OpenFileState state : closed) {
             LOGGER.trace("Released: {}", bmd.getInitials());
-            fileState.releaseResources();
+            state.releaseResources();
+        }
+    }
+
+    /**
+     * Close the states of a book that are not in use, and forget its pool, as
+     * when the book is closed. A state that is in use is returned to a new pool
+     * when it is released.
+     * 
+     * @param bmd the book
+     */
+    public void closeStates(BookMetaData bmd) {
+        StatePool pool = metaToStates.remove(bmd);
+        if (pool == null) {
+            return;
+        }
+        for (OpenFileState state : pool.expire(Long.MAX_VALUE)) {
+            LOGGER.trace("Closed: {}", bmd.getInitials());
+            state.releaseResources();
         }
     }
 
@@ -256,23 +281,283 @@ public final class OpenFileStateManager {
     public void shutDown() {
         shuttingDown = true;
         this.monitoringThread.cancel(true);
-        for (Queue<OpenFileState> e : metaToStates.values()) {
-            OpenFileState state = null;
-            while ((state = e.poll()) != null) {
+        for (StatePool pool : metaToStates.values()) {
+            for (OpenFileState state : pool.expire(Long.MAX_VALUE)) {
                 state.releaseResources();
             }
         }
     }
 
+    /**
+     * @return the maximum number of unused states kept open for each book
+     */
+    public int getMaxIdleStates() {
+        return maxIdleStates;
+    }
+
+    /**
+     * @param maxIdleStates the maximum number of unused states kept open for each book
+     */
+    public void setMaxIdleStates(int maxIdleStates) {
+        this.maxIdleStates = maxIdleStates;
+    }
+
+    /**
+     * @return the maximum number of states open at once for each book, before requests wait
+     */
+    public int getMaxOpenStates() {
+        return maxOpenStates;
+    }
+
+    /**
+     * @param maxOpenStates the maximum number of states open at once for each book, before requests wait
+     */
+    public void setMaxOpenStates(int maxOpenStates) {
+        this.maxOpenStates = maxOpenStates;
+    }
+
+    /**
+     * @return the number of milliseconds to wait for a state when the maximum are open
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * @param maxWait the number of milliseconds to wait for a state when the maximum are open
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @param bmd the book
+     * @return the number of states open for the book, both in use and idle
+     */
+    public int getOpenStateCount(BookMetaData bmd) {
+        StatePool pool = metaToStates.get(bmd);
+        return pool == null ? 0 : pool.getOpenCount();
+    }
+
+    /**
+     * @param bmd the book
+     * @return the number of states kept open for reuse for the book
+     */
+    public int getIdleStateCount(BookMetaData bmd) {
+        StatePool pool = metaToStates.get(bmd);
+        return pool == null ? 0 : pool.getIdleCount();
+    }
+
+    /**
+     * @param bmd the book
+     * @return the number of file descriptors held open by the states of the book
+     */
+    public int getOpenFileCount(BookMetaData bmd) {
+        StatePool pool = metaToStates.get(bmd);
+        return pool == null ? 0 : pool.getOpenFileCount();
+    }
+
+    /**
+     * @param bmd the book
+     * @return the number of requests for a state of the book that had to wait
+     */
+    public long getWaitCount(BookMetaData bmd) {
+        StatePool pool = metaToStates.get(bmd);
+        return pool == null ? 0 : pool.getWaitCount();
+    }
+
+    /**
+     * @param bmd the book
+     * @return the total number of milliseconds requests waited for a state of the book
+     */
+    public long getWaitTime(BookMetaData bmd) {
+        StatePool pool = metaToStates.get(bmd);
+        return pool == null ? 0 : TimeUnit.NANOSECONDS.toMillis(pool.getWaitNanos());
+    }
+
     private void ensureNotShuttingDown() throws BookException {
         if (shuttingDown) {
             throw new BookException("Unable to read book, application is shutting down.");
         }
     }
 
+    /**
+     * Creates a new state, when the pool has none to reuse.
+     */
+    interface StateFactory<T extends OpenFileState> {
+        T create() throws BookException;
+    }
+
+    /**
+     * The states of a single book. The states that are not in use are held
+     * oldest first.
+     */
+    private static final class StatePool {
+        /**
+         * Take the most recently used idle state, or reserve a place for a new
+         * one. If the maximum are open, wait for one to be released, up to maxWait.
+         * 
+         * @return an idle state or null if the caller is to create one
+         */
+        synchronized OpenFileState acquire(int maxOpen, long maxWait) {
+            long start = 0;
+            try {
+                while (true) {
+                    if (!idle.isEmpty()) {
+                        return idle.removeLast();
+                    }
+
+                    if (open < maxOpen) {
+                        open++;
+                        return null;
+                    }
+
+                    long now = System.nanoTime();
+                    if (start == 0) {
+                        start = now;
+                        waits++;
+                    }
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(maxWait) - (now - start);
+                    if (remaining <= 0) {
+                        // Open one more rather than fail. It'll be closed on release.
+                        LOGGER.warn("Timed out waiting for an open file state, opening another");
+                        open++;
+                        return null;
+                    }
+
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        open++;
+                        return null;
+                    }
+                }
+            } finally {
+                if (start != 0) {
+                    waitNanos += System.nanoTime() - start;
+                }
+            }
+        }
+
+        /**
+         * Record the outcome of creating a state for a reserved place.
+         * 
+         * @param state the new state or null if it could not be created
+         */
+        synchronized void opened(OpenFileState state) {
+            if (state == null) {
+                open--;
+                notify();
+            } else {
+                states.add(state);
+            }
+        }
+
+        /**
+         * Return a state to the pool.
+         * 
+         * @return the states that are to be closed
+         */
+        synchronized List<OpenFileState> release(OpenFileState state, int maxIdle, int maxOpen) {
+            if (states.add(state)) {
+                // Not created by this pool, take ownership of it.
+                open++;
+            }
+
+            List<OpenFileState> closed = new ArrayList<>();
+            if (open > maxOpen) {
+                // Opened while waiting timed out
+                closed.add(state);
+            } else {
+                idle.addLast(state);
+                // Close the oldest when there are too many
+                while (idle.size() > maxIdle) {
+                    closed.add(idle.removeFirst());
+                }
+            }
+
+            for (OpenFileState dead : closed) {
+                states.remove(dead);
+                open--;
+            }
+            notify();
+            return closed;
+        }
+
+        /**
+         * Remove the idle states that were last used before expiry.
+         * 
+         * @return the states that are to be closed
+         */
+        synchronized List<OpenFileState> expire(long expiry) {
+            if (idle.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            List<OpenFileState> expired = new ArrayList<>();
+            while (!idle.isEmpty() && idle.getFirst().getLastAccess() < expiry) {
+                OpenFileState state = idle.removeFirst();
+                states.remove(state);
+                open--;
+                expired.add(state);
+            }
+            notifyAll();
+            return expired;
+        }
+
+        synchronized int getOpenCount() {
+            return open;
+        }
+
+        synchronized int getIdleCount() {
+            return idle.size();
+        }
+
+        synchronized int getOpenFileCount() {
+            int count = 0;
+            for (OpenFileState state : states) {
+                count += state.getOpenFileCount();
+            }
+            return count;
+        }
+
+        synchronized long getWaitCount() {
+            return waits;
+        }
+
+        synchronized long getWaitNanos() {
+            return waitNanos;
+        }
+
+        /**
+         * The states that are not in use, least recently used first
+         */
+        private final LinkedList<OpenFileState> idle = new LinkedList<>();
+
+        /**
+         * All the states that have been created, in use or not.
+         */
+        private final Set<OpenFileState> states = Collections.newSetFromMap(new IdentityHashMap<OpenFileState, Boolean>());
+
+        /**
+         * The number of states open or being opened.
+         */
+        private int open;
+        private long waits;
+        private long waitNanos;
+    }
+
     private final ScheduledFuture<?> monitoringThread;
-    private final Map<BookMetaData, Queue<OpenFileState>> metaToStates = new HashMap<>();
+    private final ConcurrentMap<BookMetaData, StatePool> metaToStates = new ConcurrentHashMap<>();
     private volatile boolean shuttingDown;
+    private volatile int maxIdleStates = DEFAULT_MAX_IDLE_STATES;
+    private volatile int maxOpenStates = DEFAULT_MAX_OPEN_STATES;
+    private volatile long maxWait = DEFAULT_MAX_WAIT;
+
+    private static final int DEFAULT_MAX_IDLE_STATES = 8;
+    private static final int DEFAULT_MAX_OPEN_STATES = 64;
+    private static final long DEFAULT_MAX_WAIT = 1000L;
 
     private static volatile OpenFileStateManager manager;
     private static final Logger LOGGER = LoggerFactory.getLogger(OpenFileStateManager.class);
@@ -142,6 +142,13 @@ public class RawBackendState extends AbstractOpenFileState {
         otTextRaf = null;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileState#getOpenFileCount()
+     */
+    public int getOpenFileCount() {
+        return countOpen(otIdxRaf, otTextRaf, ntIdxRaf, ntTextRaf);
+    }
+
     /**
      * Get the index file for the given testament.
      * 
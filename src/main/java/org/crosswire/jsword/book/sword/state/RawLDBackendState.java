@@ -114,6 +114,13 @@ public class RawLDBackendState extends AbstractOpenFileState  {
         datRaf = null;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileState#getOpenFileCount()
+     */
+    public int getOpenFileCount() {
+        return countOpen(idxRaf, datRaf);
+    }
+
     /**
      * @return the size
      */
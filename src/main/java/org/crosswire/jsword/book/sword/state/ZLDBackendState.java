@@ -115,6 +115,14 @@ public class ZLDBackendState extends RawLDBackendState {
             zdtRaf = null;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileState#getOpenFileCount()
+     */
+    @Override
+    public int getOpenFileCount() {
+        return super.getOpenFileCount() + countOpen(zdxRaf, zdtRaf);
+    }
+
     /**
      * @return the zdxRaf
      */
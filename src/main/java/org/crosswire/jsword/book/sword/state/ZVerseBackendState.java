@@ -21,8 +21,12 @@ package org.crosswire.jsword.book.sword.state;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.crosswire.common.util.FileUtil;
 import org.crosswire.common.util.IOUtil;
@@ -39,6 +43,12 @@ import org.slf4j.LoggerFactory;
 /**
  * Stores the random access files required for processing the passage request.
  * 
+ * <p>
+ * When memory mapping is enabled, the idx, comp and text files are also mapped
+ * into memory so that they can be read without a seek and read per entry. If a
+ * file cannot be mapped, the random access file is used instead.
+ * </p>
+ * 
  * The caller is required to close to correctly free resources and avoid File
  * pointer leaks.
  * 
@@ -83,6 +93,9 @@ public class ZVerseBackendState extends AbstractOpenFileState {
                 assert false : ex;
                 LOGGER.error("Could not open OT", ex);
             }
+            otCompBuffer = map(otCompRaf);
+            otTextBuffer = map(otTextRaf);
+            otIdxBuffer = map(otIdxRaf);
         }
 
         // why do swallow the exception and log. Can Books have one testament
@@ -101,7 +114,56 @@ public class ZVerseBackendState extends AbstractOpenFileState {
                 assert false : ex;
                 LOGGER.error("Could not open OT", ex);
             }
+            ntCompBuffer = map(ntCompRaf);
+            ntTextBuffer = map(ntTextRaf);
+            ntIdxBuffer = map(ntIdxRaf);
+        }
+    }
+
+    /**
+     * Whether the data files of newly opened states are to be memory mapped.
+     * Note: on some platforms, e.g. Windows, a mapped file cannot be deleted
+     * until the mapping has been garbage collected.
+     * 
+     * @param mapped true if the files are to be memory mapped
+     */
+    public static void setMemoryMapped(boolean mapped) {
+        memoryMapped = mapped;
+    }
+
+    /**
+     * @return whether the data files of newly opened states are memory mapped
+     */
+    public static boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Map the whole of a file into memory, read only and little endian.
+     * 
+     * @param raf the file to map
+     * @return the mapped file or null if it was not mapped
+     */
+    private static MappedByteBuffer map(RandomAccessFile raf) {
+        if (!memoryMapped || raf == null) {
+            return null;
+        }
+
+        try {
+            long size = raf.length();
+            // A buffer is limited to 2**31 bytes, let the RAF handle anything larger.
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        } catch (IOException ex) {
+            LOGGER.warn("Unable to memory map file, falling back to random access", ex);
+        } catch (UnsupportedOperationException ex) {
+            LOGGER.warn("Memory mapping is not supported, falling back to random access", ex);
         }
+        return null;
     }
 
     public void releaseResources() {
@@ -117,6 +179,20 @@ public class ZVerseBackendState extends AbstractOpenFileState {
         otCompRaf = null;
         otTextRaf = null;
         otIdxRaf = null;
+        // The mappings are released when they are garbage collected.
+        ntCompBuffer = null;
+        ntTextBuffer = null;
+        ntIdxBuffer = null;
+        otCompBuffer = null;
+        otTextBuffer = null;
+        otIdxBuffer = null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileState#getOpenFileCount()
+     */
+    public int getOpenFileCount() {
+        return countOpen(otIdxRaf, otCompRaf, otTextRaf, ntIdxRaf, ntCompRaf, ntTextRaf);
     }
 
     /**
@@ -149,6 +225,36 @@ public class ZVerseBackendState extends AbstractOpenFileState {
         return testament == Testament.NEW ? ntIdxRaf : otIdxRaf;
     }
 
+    /**
+     * Get the memory mapped compression file for the given testament.
+     * 
+     * @param testament the testament for the index
+     * @return the mapped file, or null if it is not mapped
+     */
+    public MappedByteBuffer getCompBuffer(Testament testament) {
+        return testament == Testament.NEW ? ntCompBuffer : otCompBuffer;
+    }
+
+    /**
+     * Get the memory mapped text file for the given testament.
+     * 
+     * @param testament the testament for the index
+     * @return the mapped file, or null if it is not mapped
+     */
+    public MappedByteBuffer getTextBuffer(Testament testament) {
+        return testament == Testament.NEW ? ntTextBuffer : otTextBuffer;
+    }
+
+    /**
+     * Get the memory mapped index file for the given testament.
+     * 
+     * @param testament the testament for the index
+     * @return the mapped file, or null if it is not mapped
+     */
+    public MappedByteBuffer getIdxBuffer(Testament testament) {
+        return testament == Testament.NEW ? ntIdxBuffer : otIdxBuffer;
+    }
+
     /**
      * @return the lastTestament
      */
@@ -216,6 +322,22 @@ public class ZVerseBackendState extends AbstractOpenFileState {
      */
     private RandomAccessFile otIdxRaf;
     private RandomAccessFile ntIdxRaf;
+
+    /**
+     * The memory mapped files, null when not mapped
+     */
+    private MappedByteBuffer otCompBuffer;
+    private MappedByteBuffer ntCompBuffer;
+    private MappedByteBuffer otTextBuffer;
+    private MappedByteBuffer ntTextBuffer;
+    private MappedByteBuffer otIdxBuffer;
+    private MappedByteBuffer ntIdxBuffer;
+
+    /**
+     * Whether newly opened states memory map their files.
+     */
+    private static volatile boolean memoryMapped;
+
     private Testament lastTestament;
     private long lastBlockNum = -1;
     private byte[] lastUncompressed;
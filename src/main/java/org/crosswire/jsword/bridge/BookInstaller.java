@@ -19,6 +19,8 @@
  */
 package org.crosswire.jsword.bridge;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -216,6 +218,19 @@ public class BookInstaller {
         installer.install(book);
     }
 
+    /**
+     * Prepare installed books for use, so that the first request for each
+     * does not pay for opening it. The books are prepared in parallel.
+     * 
+     * @param bookInitials
+     *            the initials of the books to prepare
+     * @return the books that were prepared
+     * @see BookPreloader
+     */
+    public static List<Book> preloadBooks(Collection<String> bookInitials) {
+        return new BookPreloader().preload(bookInitials);
+    }
+
     private InstallManager installManager;
 
     /**
@@ -255,6 +270,11 @@ public class BookInstaller {
      * <td>repositoryName bookName</td>
      * <td>Install a book from a repository</td>
      * </tr>
+     * <tr>
+     * <td>preload</td>
+     * <td>bookName ...</td>
+     * <td>Prepare installed books for use and report the time taken</td>
+     * </tr>
      * </table>
      * 
      * @param args
@@ -335,6 +355,14 @@ public class BookInstaller {
             } else {
                 usage();
             }
+        } else if ("preload".equalsIgnoreCase(operation)) {
+            if (args.length >= 2) {
+                for (Book book : BookInstaller.preloadBooks(Arrays.asList(args).subList(1, args.length))) {
+                    System.out.println(book.getInitials());
+                }
+            } else {
+                usage();
+            }
         } else {
             usage();
         }
@@ -349,5 +377,6 @@ public class BookInstaller {
         System.err.println("    list      repositoryName           List available books from a repository");
         System.err.println("    reload    repositoryName           Reload local cache for a repository");
         System.err.println("    install   repositoryName bookName  Install a book from a repository");
+        System.err.println("    preload   bookName ...             Prepare installed books for use");
     }
 }
@@ -0,0 +1,226 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2008 - 2016
+ *
+ */
+package org.crosswire.jsword.bridge;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.crosswire.common.progress.JobManager;
+import org.crosswire.common.progress.Progress;
+import org.crosswire.jsword.JSMsg;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
+import org.crosswire.jsword.index.IndexManager;
+import org.crosswire.jsword.index.IndexManagerFactory;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.VersificationsMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BookPreloader does the work that is otherwise done on the first request for
+ * a book, so that an application can pay for it at startup. For each book it:
+ * <ul>
+ * <li>loads the book's configuration</li>
+ * <li>loads its versification and the mappings to other versifications</li>
+ * <li>computes its list of keys</li>
+ * <li>opens its files by reading its first entry</li>
+ * <li>opens its search index, if it has one</li>
+ * </ul>
+ * Books are prepared in parallel, with at most a given number at a time. The
+ * time taken by each step is reported as the progress of a job.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class BookPreloader {
+
+    /**
+     * Preload books using as many threads as there are processors.
+     */
+    public BookPreloader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Preload books using at most the given number of threads.
+     * 
+     * @param maxThreads
+     *            the most books to prepare at the same time
+     */
+    public BookPreloader(int maxThreads) {
+        this.maxThreads = Math.max(1, maxThreads);
+    }
+
+    /**
+     * Prepare the installed books with the given initials, waiting until they
+     * are all done. Initials that do not match an installed book are reported
+     * and ignored.
+     * 
+     * @param initials
+     *            the initials of the books to prepare
+     * @return the books that were prepared without error
+     */
+    public List<Book> preload(Collection<String> initials) {
+        Collection<String> names = new LinkedHashSet<>(initials);
+        if (names.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // TRANSLATOR: Progress label for getting books ready for use at startup.
+        String jobName = JSMsg.gettext("Preparing books");
+        final Progress job = JobManager.createJob(jobName);
+        job.beginJob(jobName, names.size() * STAGE_COUNT);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxThreads, names.size()));
+        try {
+            List<Future<Book>> results = new ArrayList<>();
+            for (final String name : names) {
+                results.add(executor.submit(new Callable<Book>() {
+                    public Book call() throws BookException {
+                        return preload(name, job);
+                    }
+                }));
+            }
+
+            List<Book> loaded = new ArrayList<>();
+            Iterator<String> nameIter = names.iterator();
+            for (Future<Book> result : results) {
+                String name = nameIter.next();
+                try {
+                    Book book = result.get();
+                    if (book != null) {
+                        loaded.add(book);
+                    }
+                } catch (ExecutionException e) {
+                    log.warn("Cannot preload {}", name, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return loaded;
+        } finally {
+            // Do not interrupt books that are still being prepared, as an
+            // interrupt closes the files of a search index that is being opened.
+            executor.shutdown();
+            job.done();
+        }
+    }
+
+    /**
+     * Prepare a single book, reporting each step to the job.
+     * 
+     * @param initials
+     *            the initials of the book to prepare
+     * @param job
+     *            the job to which progress is reported
+     * @return the book or null if it is not installed
+     * @throws BookException
+     */
+    private Book preload(String initials, Progress job) throws BookException {
+        // The first lookup reads the configuration of every installed book.
+        long start = System.nanoTime();
+        Book book = Books.installed().getBook(initials);
+        if (book == null) {
+            log.warn("Cannot preload {}: Book not found", initials);
+            job.incrementWorkDone(STAGE_COUNT);
+            return null;
+        }
+        start = report(job, initials, "configuration", start);
+
+        if (book instanceof AbstractPassageBook) {
+            Versification v11n = ((AbstractPassageBook) book).getVersification();
+            VersificationsMapper.instance().ensureMappingDataLoaded(v11n);
+        }
+        start = report(job, initials, "versification", start);
+
+        Key keys = book.getGlobalKeyList();
+        start = report(job, initials, "keys", start);
+
+        // Reading an entry opens the book's files and leaves them ready for reuse.
+        if (keys != null && !keys.isEmpty()) {
+            try {
+                book.getRawText(keys.iterator().next());
+            } catch (BookException e) {
+                // Some entries, such as the root of a general book, have no text.
+                log.debug("No text for the first entry of {}", initials, e);
+            }
+        }
+        start = report(job, initials, "files", start);
+
+        IndexManager indexManager = IndexManagerFactory.getIndexManager();
+        if (indexManager.isIndexed(book)) {
+            indexManager.getIndex(book);
+        }
+        report(job, initials, "search index", start);
+
+        return book;
+    }
+
+    /**
+     * Report the time taken by a step.
+     * 
+     * @param job
+     *            the job to which progress is reported
+     * @param initials
+     *            the book being prepared
+     * @param stage
+     *            the step that has finished
+     * @param start
+     *            when the step started, in nanoseconds
+     * @return when the step finished, in nanoseconds
+     */
+    private long report(Progress job, String initials, String stage, long start) {
+        long now = System.nanoTime();
+        long millis = (now - start) / 1000000L;
+        job.setSectionName(initials + ": " + stage + " (" + millis + " ms)");
+        job.incrementWorkDone(1);
+        log.info("Preloaded {} {} in {} ms", initials, stage, Long.valueOf(millis));
+        return now;
+    }
+
+    /**
+     * The most books to prepare at the same time.
+     */
+    private final int maxThreads;
+
+    /**
+     * The number of steps reported for each book.
+     */
+    private static final int STAGE_COUNT = 5;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(BookPreloader.class);
+}
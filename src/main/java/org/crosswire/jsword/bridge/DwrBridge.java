@@ -173,34 +173,10 @@ public class DwrBridge {
         // Need to use the locale of the book so that we can find stuff in the
         // proper order
         Locale sortLocale = new Locale(book.getLanguage().getCode());
-        String target = searchRequest.toLowerCase(sortLocale);
 
-        // Get everything with target as the prefix.
-        // In Unicode \uFFFF is reserved for internal use
-        // and is greater than every character defined in Unicode
-        String endTarget = target + '\uffff';
-
-        // This whole getGlobalKeyList is messy.
-        // 1) Some drivers cache the list which is slow.
-        // 2) Binary lookup would be much better.
-        // 3) Caching the whole list here is dumb.
-        // What is needed is that all this be pushed into JSword proper.
-        // TODO(dms): Push this into Book interface.
         List<String> result = new ArrayList<>();
-        int count = 0;
-        for (Key key : book.getGlobalKeyList()) {
-            String entry = key.getName().toLowerCase(sortLocale);
-            if (entry.compareTo(target) >= 0) {
-                if (entry.compareTo(endTarget) < 0) {
-                    result.add(entry);
-                    count++;
-                }
-
-                // Have we seen enough?
-                if (count >= maxMatchCount) {
-                    break;
-                }
-            }
+        for (Key key : book.getKeysWithPrefix(searchRequest, maxMatchCount)) {
+            result.add(key.getName().toLowerCase(sortLocale));
         }
 
         return result.toArray(new String[result.size()]);
@@ -0,0 +1,124 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.examples;
+
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * DecodeBench is a command line utility that measures how quickly the verses
+ * of a whole Bible can be walked, both by decoding each ordinal and by
+ * iterating over a passage holding every verse. Each is run with and without
+ * the cache of verses kept by the Versification.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class DecodeBench {
+    private DecodeBench() {
+    }
+
+    /**
+     * Run the benchmark.
+     * 
+     * @param args the name of the versification followed by the number of rounds
+     */
+    public static void main(String[] args) {
+        String name = args.length > 0 ? args[0] : Versifications.DEFAULT_V11N;
+        if (!Versifications.instance().isDefined(name)) {
+            System.out.println("Usage: DecodeBench [<versification> [<rounds>]]");
+            System.out.println("  where <versification> is the name of a versification, such as KJV.");
+            return;
+        }
+
+        Versification v11n = Versifications.instance().getVersification(name);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        Passage whole = (Passage) PassageKeyFactory.instance().getGlobalKeyList(v11n);
+
+        boolean wasCaching = Versification.isCachingVerses();
+        try {
+            for (boolean caching : new boolean[] { false, true }) {
+                Versification.setCachingVerses(caching);
+                String label = caching ? "cached" : "uncached";
+
+                // Warm up
+                decode(v11n, rounds);
+                iterate(whole, rounds);
+
+                long elapsed = decode(v11n, rounds);
+                report(v11n.getName() + " decode " + label, (long) rounds * (v11n.maximumOrdinal() + 1), elapsed);
+                elapsed = iterate(whole, rounds);
+                report(v11n.getName() + " iterate " + label, (long) rounds * whole.getCardinality(), elapsed);
+            }
+        } finally {
+            Versification.setCachingVerses(wasCaching);
+        }
+    }
+
+    /**
+     * Decode every ordinal of the versification.
+     * 
+     * @return the number of nanoseconds taken
+     */
+    private static long decode(Versification v11n, int rounds) {
+        int max = v11n.maximumOrdinal();
+        long check = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (int ordinal = 0; ordinal <= max; ordinal++) {
+                check += v11n.decodeOrdinal(ordinal).getVerse();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += check;
+        return elapsed;
+    }
+
+    /**
+     * Iterate over every verse in the passage.
+     * 
+     * @return the number of nanoseconds taken
+     */
+    private static long iterate(Passage whole, int rounds) {
+        long check = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (Key key : whole) {
+                check += ((Verse) key).getChapter();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += check;
+        return elapsed;
+    }
+
+    private static void report(String what, long verses, long nanos) {
+        System.out.println(what + ": " + (long) (verses * 1.0e9 / Math.max(nanos, 1)) + " verses/s");
+    }
+
+    /**
+     * Keeps the results alive so that the work is not optimized away.
+     */
+    private static long sink;
+}
@@ -0,0 +1,138 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.examples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookFilters;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.KeyUtil;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.Verse;
+
+/**
+ * ReadBench is a command line utility that measures how verse reads scale as
+ * the number of threads reading a Bible increases. Each thread reads every verse
+ * of the Bible, one at a time, as a server handling many requests would. If
+ * something serializes the readers, the verses read per second stop growing
+ * with the number of threads. Each number of threads is run several times and
+ * the best is reported.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class ReadBench {
+    private ReadBench() {
+    }
+
+    /**
+     * Run the benchmark.
+     * 
+     * @param args the initials of the Bible to read followed by the largest number of threads to use
+     * @throws BookException
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws BookException, InterruptedException {
+        Book bible = null;
+        if (args.length > 0) {
+            bible = Books.installed().getBook(args[0]);
+        } else {
+            List<Book> bibles = Books.installed().getBooks(BookFilters.getOnlyBibles());
+            if (!bibles.isEmpty()) {
+                bible = bibles.get(0);
+            }
+        }
+
+        if (bible == null) {
+            System.out.println("Usage: ReadBench [<initials> [<max threads>]]");
+            System.out.println("  where <initials> is an installed Bible to read.");
+            return;
+        }
+
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        // Get the verses up front, so only the reads are measured.
+        Passage verses = KeyUtil.getPassage(bible.getGlobalKeyList());
+        List<Verse> toRead = new ArrayList<>(verses.getCardinality());
+        for (Key key : verses) {
+            toRead.add((Verse) key);
+        }
+
+        // Warm up
+        run(bible, toRead, 1);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            // A single run varies too much to compare, so take the best of several.
+            long elapsed = Long.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++) {
+                elapsed = Math.min(elapsed, run(bible, toRead, threads));
+            }
+            double perSecond = 1000.0 * threads * toRead.size() / Math.max(elapsed, 1);
+            System.out.println(bible.getInitials() + ": " + threads + " threads read " + (int) perSecond + " verses/s");
+        }
+    }
+
+    /**
+     * Have each thread read all the verses.
+     * 
+     * @return the number of milliseconds taken
+     */
+    private static long run(final Book bible, final List<Verse> toRead, int threads) throws InterruptedException {
+        final AtomicLong failures = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (Verse verse : toRead) {
+                        try {
+                            bible.getRawText(verse);
+                        } catch (BookException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+        }
+
+        long start = System.currentTimeMillis();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        if (failures.get() > 0) {
+            System.out.println("  " + failures.get() + " verses could not be read");
+        }
+        return elapsed;
+    }
+
+    /**
+     * How often each number of threads is run.
+     */
+    private static final int RUNS = 5;
+}
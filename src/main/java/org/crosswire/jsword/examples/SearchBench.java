@@ -0,0 +1,162 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.examples;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookFilters;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.index.IndexManagerFactory;
+import org.crosswire.jsword.index.search.DefaultSearchModifier;
+import org.crosswire.jsword.index.search.DefaultSearchRequest;
+import org.crosswire.jsword.index.search.SearchRequest;
+
+/**
+ * SearchBench is a command line utility that measures how searches of one
+ * Bible scale as the number of threads searching it increases. Each thread
+ * runs the same mix of ranked and unranked searches, as a server handling many
+ * requests would. The Bible must already be indexed. If something serializes
+ * the searches, the searches per second stop growing with the number of
+ * threads.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class SearchBench {
+    private SearchBench() {
+    }
+
+    /**
+     * Run the benchmark.
+     * 
+     * @param args the initials of the Bible to search followed by the largest number of threads to use
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Book bible = null;
+        if (args.length > 0) {
+            bible = Books.installed().getBook(args[0]);
+        } else {
+            List<Book> bibles = Books.installed().getBooks(BookFilters.getOnlyBibles());
+            for (Book book : bibles) {
+                if (IndexManagerFactory.getIndexManager().isIndexed(book)) {
+                    bible = book;
+                    break;
+                }
+            }
+        }
+
+        if (bible == null || !IndexManagerFactory.getIndexManager().isIndexed(bible)) {
+            System.out.println("Usage: SearchBench [<initials> [<max threads>]]");
+            System.out.println("  where <initials> is an installed and indexed Bible to search.");
+            return;
+        }
+
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        SearchRequest[] requests = getRequests();
+
+        // Warm up
+        run(bible, requests, 1);
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long elapsed = run(bible, requests, threads);
+            double perSecond = 1000.0 * threads * ROUNDS * requests.length / Math.max(elapsed, 1);
+            System.out.println(bible.getInitials() + ": " + threads + " threads ran " + (int) perSecond + " searches/s");
+        }
+    }
+
+    /**
+     * Each search is asked for both with and without ranking, so that
+     * searches which need different modifiers run side by side.
+     * 
+     * @return the searches to run
+     */
+    private static SearchRequest[] getRequests() {
+        SearchRequest[] requests = new SearchRequest[SEARCHES.length * 2];
+        for (int i = 0; i < SEARCHES.length; i++) {
+            DefaultSearchModifier ranked = new DefaultSearchModifier();
+            ranked.setRanked(true);
+            ranked.setMaxResults(35);
+            requests[2 * i] = new DefaultSearchRequest(SEARCHES[i], ranked);
+            requests[2 * i + 1] = new DefaultSearchRequest(SEARCHES[i], new DefaultSearchModifier());
+        }
+        return requests;
+    }
+
+    /**
+     * Have each thread run all the searches a number of times.
+     * 
+     * @return the number of milliseconds taken
+     */
+    private static long run(final Book bible, final SearchRequest[] requests, int threads) throws InterruptedException {
+        final AtomicLong failures = new AtomicLong();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (SearchRequest request : requests) {
+                            try {
+                                bible.find(request);
+                            } catch (BookException e) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        long start = System.currentTimeMillis();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        if (failures.get() > 0) {
+            System.out.println("  " + failures.get() + " searches failed");
+        }
+        return elapsed;
+    }
+
+    /**
+     * The number of times each thread runs the searches.
+     */
+    private static final int ROUNDS = 20;
+
+    /**
+     * The searches to run.
+     */
+    private static final String[] SEARCHES = {
+        "god",
+        "aaron & manna",
+        "moses | aaron",
+        "\"in the beginning\"",
+        "love -hate",
+        "+[Gen-Deu] covenant",
+    };
+}
@@ -18,7 +18,10 @@
  */
 package org.crosswire.jsword.index;
 
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.index.search.SearchModifier;
+import org.crosswire.jsword.passage.Key;
 
 /**
  * A simple implementation of an Index that provides the set/get for
@@ -30,6 +33,15 @@ import org.crosswire.jsword.index.search.SearchModifier;
 
 public abstract class AbstractIndex implements Index {
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.crosswire.jsword.index.Index#find(java.lang.String)
+     */
+    public Key find(String query) throws BookException {
+        return find(query, SearchContext.from(modifier));
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -37,6 +49,7 @@ public abstract class AbstractIndex implements Index {
      * org.crosswire.jsword.index.search.Index#setSearchModifier(org.crosswire
      * .jsword.index.search.SearchModifier)
      */
+    @Deprecated
     public void setSearchModifier(SearchModifier theModifier) {
         modifier = theModifier;
     }
@@ -46,6 +59,7 @@ public abstract class AbstractIndex implements Index {
      * 
      * @see org.crosswire.jsword.index.search.Index#getSearchModifier()
      */
+    @Deprecated
     public SearchModifier getSearchModifier() {
         return modifier;
     }
@@ -20,6 +20,7 @@
 package org.crosswire.jsword.index;
 
 import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.NoSuchKeyException;
@@ -45,6 +46,34 @@ public interface Index {
      */
     Key find(String query) throws BookException;
 
+    /**
+     * Find the set of references that satisfy the query, as modified by the
+     * context of the search. An index that overrides this does not depend upon
+     * any SearchModifier set on it, so it may be called by many threads at
+     * once. By default the context is set as the search modifier of this index
+     * for the duration of {@link #find(String)}, so that an index written
+     * before contexts existed still honors it.
+     * 
+     * @param query
+     *            The text to search for
+     * @param context
+     *            how to modify the search and its results
+     * @return The references to the word
+     * @throws BookException 
+     */
+    @SuppressWarnings("deprecation")
+    default Key find(String query, SearchContext context) throws BookException {
+        synchronized (this) {
+            SearchModifier previous = getSearchModifier();
+            setSearchModifier(context);
+            try {
+                return find(query);
+            } finally {
+                setSearchModifier(previous);
+            }
+        }
+    }
+
     /**
      * An index must be able to create KeyLists for users in a similar way to
      * the Book that it is indexing.
@@ -64,14 +93,19 @@ public interface Index {
      * 
      * @param modifier
      *            how to modify the search and its results.
+     * @deprecated the modifier is shared by all searches of this index. Use
+     *             {@link #find(String, SearchContext)} instead.
      */
+    @Deprecated
     void setSearchModifier(SearchModifier modifier);
 
     /**
      * Get the current SearchModifier. If there is none then return null.
      * 
      * @return the current search modifier, or null if there is not one.
+     * @deprecated use {@link #find(String, SearchContext)} instead.
      */
+    @Deprecated
     SearchModifier getSearchModifier();
 
     /**
@@ -86,4 +86,28 @@ public interface IndexPolicy {
      * @return whether there can only be one Book indexed at a time.
      */
     boolean isSerial();
+
+    /**
+     * The number of threads that may be used to build the index of a
+     * single Book. Verses are read, converted to OSIS and analyzed on
+     * each thread and handed to a shared index writer. A value of 1 or
+     * less builds the index on the calling thread, in key order.
+     * Adapter default: 1.
+     * 
+     * @return the number of threads used to build one index.
+     */
+    int getIndexingThreads();
+
+    /**
+     * The number of keys indexed between checkpoints. At each checkpoint
+     * the work done so far is committed to disk, so that an index build
+     * that is interrupted can carry on from there when it is next started.
+     * It also allows an index to be brought up to date with a new version
+     * of its Book by indexing only the keys whose text has changed.
+     * A value of 0 or less turns checkpoints off, and an index is always
+     * built from the start. Adapter default: 2000.
+     * 
+     * @return the number of keys between checkpoints.
+     */
+    int getCheckpointInterval();
 }
@@ -80,4 +80,18 @@ public class IndexPolicyAdapter implements IndexPolicy {
         return false;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexPolicy#getIndexingThreads()
+     */
+    public int getIndexingThreads() {
+        return 1;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexPolicy#getCheckpointInterval()
+     */
+    public int getCheckpointInterval() {
+        return 2000;
+    }
+
 }
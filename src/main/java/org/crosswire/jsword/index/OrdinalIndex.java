@@ -0,0 +1,53 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.index;
+
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * An index of a verse keyed Book that can give its results as sets of verse
+ * ordinals, held as bits in a long[] as described by
+ * {@link org.crosswire.jsword.passage.VerseBits}. This allows a query to be
+ * worked out without making a Passage for each part of it.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public interface OrdinalIndex extends Index {
+    /**
+     * Get the versification of the indexed Book.
+     * 
+     * @return the versification or null if the Book is not verse keyed, in
+     *         which case {@link #findOrdinals(String)} cannot be used
+     */
+    Versification getVersification();
+
+    /**
+     * Find the verses that satisfy the query. If the query is null then no
+     * verses are found.
+     * 
+     * @param query
+     *            The text to search for
+     * @return the ordinals of the verses that were found
+     * @throws BookException 
+     */
+    long[] findOrdinals(String query) throws BookException;
+}
@@ -0,0 +1,352 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2007 - 2016
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.index.IndexPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records how far the build of an index has got. The record is kept in the
+ * user data of the index's commits, so that it is always in step with the
+ * documents that have been written. An interrupted build can carry on from
+ * its last commit, and a finished index remembers the version of the Book
+ * that it was built from.
+ *
+ * <p>Keys are identified by their position in a depth first walk of the
+ * Book's keys, counting only the leaf keys. Keys that are done may be marked
+ * from several threads.</p>
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class IndexCheckpoint {
+    /**
+     * Start the record of a build of the index of a Book.
+     *
+     * @param book
+     *            the book being indexed
+     * @param policy
+     *            how the index is built
+     */
+    IndexCheckpoint(Book book, IndexPolicy policy) {
+        Object version = book.getBookMetaData().getProperty(PROPERTY_VERSION);
+        this.indexVersion = Float.toString(IndexMetadata.instance().getLatestIndexVersion(book));
+        this.moduleVersion = version == null ? "" : version.toString();
+        this.policyName = getPolicyName(policy);
+        this.keyCount = Integer.toString(LeafKeyIterator.count(book.getGlobalKeyList()));
+        this.interval = policy.getCheckpointInterval();
+        this.done = new BitSet();
+    }
+
+    /**
+     * @return whether checkpoints are taken at all
+     */
+    boolean isEnabled() {
+        return interval > 0;
+    }
+
+    /**
+     * Pick up the record of an earlier build of the same index. This is only
+     * possible if it was made from the same version of the Book, with the
+     * same policy and for the same version of the index.
+     *
+     * @param directory
+     *            where the earlier build was written
+     * @return true if the build can carry on from where it was left
+     */
+    boolean resume(Directory directory) {
+        Map<String, String> userData = readUserData(directory);
+        if (userData == null
+                || !indexVersion.equals(userData.get(INDEX_VERSION))
+                || !policyName.equals(userData.get(POLICY))
+                || !moduleVersion.equals(userData.get(MODULE_VERSION))
+                || !keyCount.equals(userData.get(KEY_COUNT))) {
+            return false;
+        }
+
+        String ranges = userData.get(DONE);
+        if (ranges != null && ranges.length() > 0) {
+            try {
+                for (String range : ranges.split(",")) {
+                    int dash = range.indexOf('-');
+                    done.set(Integer.parseInt(range.substring(0, dash)), Integer.parseInt(range.substring(dash + 1)));
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Unable to read the checkpoint of {}: {}", directory, e.getMessage());
+                done.clear();
+                return false;
+            }
+        }
+        resumed = true;
+        log.info("Resuming index build with {} keys already indexed", Integer.toString(done.cardinality()));
+        return true;
+    }
+
+    /**
+     * Determine whether a finished index can be brought up to date in place
+     * by indexing only the keys whose text has changed. This is possible
+     * when it was built for the same version of the index with the same
+     * policy, whatever the version of the Book it was built from.
+     *
+     * @param directory
+     *            where the index is
+     * @return true if the index can be updated
+     */
+    boolean canUpdate(Directory directory) {
+        Map<String, String> userData = readUserData(directory);
+        if (userData == null
+                || !isComplete(userData)
+                || !indexVersion.equals(userData.get(INDEX_VERSION))
+                || !policyName.equals(userData.get(POLICY))) {
+            return false;
+        }
+        previous = userData;
+        return true;
+    }
+
+    /**
+     * @return whether this is the record of an earlier build being carried on
+     */
+    boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * @param position
+     *            the position of a leaf key
+     * @return whether the key has already been indexed and committed
+     */
+    synchronized boolean isDone(int position) {
+        return done.get(position);
+    }
+
+    /**
+     * Mark a run of leaf keys as done. They must have been added to the
+     * IndexWriter before this is called.
+     *
+     * @param from
+     *            the position of the first key, inclusive
+     * @param to
+     *            the position of the last key, exclusive
+     * @return true if it is time for a checkpoint
+     */
+    synchronized boolean done(int from, int to) {
+        for (int i = done.nextClearBit(from); i < to; i = done.nextClearBit(i + 1)) {
+            done.set(i);
+            pending++;
+        }
+        return isEnabled() && pending >= interval;
+    }
+
+    /**
+     * Commit what has been written so far, along with the keys that are done.
+     * It never records keys whose documents are not part of its commit.
+     * Checkpoints are committed one at a time, so that the last one committed
+     * has all the keys that were done by then.
+     *
+     * @param writer
+     *            the writer of the index
+     * @throws IOException
+     */
+    synchronized void checkpoint(IndexWriter writer) throws IOException {
+        pending = 0;
+        writer.commit(getUserData(false));
+    }
+
+    /**
+     * Commit what has been written so far during an update in place. The index
+     * keeps the record of the Book it was first built from until the update
+     * is finished. Should the update be interrupted the next one will find
+     * fewer changes to make.
+     *
+     * @param writer
+     *            the writer of the index
+     * @throws IOException
+     */
+    void checkpointUpdate(IndexWriter writer) throws IOException {
+        synchronized (this) {
+            pending = 0;
+        }
+        writer.commit(previous);
+    }
+
+    /**
+     * Commit the finished index, recording the Book that it was built from.
+     * Lucene makes no commit when nothing has been written since the last
+     * one, so an index whose last checkpoint has all the keys done is also
+     * taken to be finished.
+     *
+     * @param writer
+     *            the writer of the index
+     * @throws IOException
+     */
+    synchronized void finish(IndexWriter writer) throws IOException {
+        pending = 0;
+        writer.commit(getUserData(true));
+    }
+
+    /**
+     * Compute a hash of the raw text of a key. This is stored with the key's
+     * document so that changes to the text can be found without indexing it.
+     *
+     * @param text
+     *            the raw text of a key
+     * @return the hash as a hex string
+     */
+    static String hash(String text) {
+        // 64 bit FNV-1a, over the chars of the text.
+        long hash = 0xcbf29ce484222325L;
+        int len = text.length();
+        for (int i = 0; i < len; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    /**
+     * Build the user data for a commit.
+     *
+     * @param complete
+     *            whether the index is finished
+     * @return the user data
+     */
+    private Map<String, String> getUserData(boolean complete) {
+        Map<String, String> userData = new HashMap<String, String>();
+        userData.put(INDEX_VERSION, indexVersion);
+        userData.put(MODULE_VERSION, moduleVersion);
+        userData.put(POLICY, policyName);
+        userData.put(KEY_COUNT, keyCount);
+        userData.put(COMPLETE, Boolean.toString(complete));
+        if (!complete) {
+            StringBuilder ranges = new StringBuilder();
+            for (int from = done.nextSetBit(0); from >= 0; from = done.nextSetBit(from)) {
+                int to = done.nextClearBit(from);
+                if (ranges.length() > 0) {
+                    ranges.append(',');
+                }
+                ranges.append(from).append('-').append(to);
+                from = to;
+            }
+            userData.put(DONE, ranges.toString());
+        }
+        return userData;
+    }
+
+    /**
+     * Determine whether a commit is of a finished index.
+     *
+     * @param userData
+     *            the user data of the commit
+     * @return true if all the keys had been indexed
+     */
+    private static boolean isComplete(Map<String, String> userData) {
+        if (Boolean.parseBoolean(userData.get(COMPLETE))) {
+            return true;
+        }
+        String keyCount = userData.get(KEY_COUNT);
+        return keyCount != null && ("0-" + keyCount).equals(userData.get(DONE));
+    }
+
+    /**
+     * Read the user data of the last commit of an index.
+     *
+     * @param directory
+     *            where the index is
+     * @return the user data or null if there is no readable index
+     */
+    private static Map<String, String> readUserData(Directory directory) {
+        try {
+            if (!IndexReader.indexExists(directory)) {
+                return null;
+            }
+            return IndexReader.getCommitUserData(directory);
+        } catch (IOException e) {
+            log.warn("Unable to read the checkpoint of {}: {}", directory, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The parts of the policy that determine what is in the index.
+     *
+     * @param policy
+     *            how the index is built
+     * @return a name for the policy
+     */
+    private static String getPolicyName(IndexPolicy policy) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(policy.isStrongsIndexed() ? 'S' : 's');
+        buf.append(policy.isMorphIndexed() ? 'M' : 'm');
+        buf.append(policy.isNoteIndexed() ? 'N' : 'n');
+        buf.append(policy.isTitleIndexed() ? 'T' : 't');
+        buf.append(policy.isXrefIndexed() ? 'X' : 'x');
+        return buf.toString();
+    }
+
+    private final String indexVersion;
+    private final String moduleVersion;
+    private final String policyName;
+    private final String keyCount;
+    private final int interval;
+
+    /**
+     * The positions of the leaf keys that are done.
+     */
+    private final BitSet done;
+
+    /**
+     * The number of keys done since the last checkpoint.
+     */
+    private int pending;
+
+    /**
+     * Whether an earlier build is being carried on.
+     */
+    private boolean resumed;
+
+    /**
+     * The user data of an index being updated in place.
+     */
+    private Map<String, String> previous;
+
+    private static final String PROPERTY_VERSION = "Version";
+    private static final String INDEX_VERSION = "JSword.Index.Version";
+    private static final String MODULE_VERSION = "JSword.Module.Version";
+    private static final String POLICY = "JSword.Index.Policy";
+    private static final String KEY_COUNT = "JSword.Key.Count";
+    private static final String COMPLETE = "JSword.Complete";
+    private static final String DONE = "JSword.Done";
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(IndexCheckpoint.class);
+}
@@ -0,0 +1,179 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2007 - 2016
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * Walks the leaf keys of a Key in document order. Bibles and verse based
+ * commentaries don't have keys with children, so for them this is the same
+ * as iterating the Key. Tree keyed Books do, and only their leaf keys are
+ * indexed. The tree is walked with an explicit stack of the open nodes and
+ * the position reached in each, so only as much state as the depth of the
+ * tree is held and no more than one level is ever on the Java stack.
+ * 
+ * <p>Note: iterating a TreeKey gives the key itself and then all of the keys
+ * below it, so its children are got by position instead.</p>
+ * 
+ * <p>The walk is over the Key as given, which for a SwordGenBook is the tree
+ * of TreeKeys that it reads from its TreeKeyIndex when it is activated. The
+ * tree is already in memory then, so the walk does not read the index
+ * again and only saves the recursion.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class LeafKeyIterator implements Iterator<Key> {
+    /**
+     * Walk the leaf keys of a Key.
+     * 
+     * @param key the keys to walk
+     */
+    LeafKeyIterator(Key key) {
+        if (isTree(key)) {
+            push(key);
+        } else {
+            flat = key.iterator();
+        }
+    }
+
+    /**
+     * Count the leaf keys of a Key, without holding on to them.
+     * 
+     * @param key the keys to count
+     * @return the number of leaf keys
+     */
+    static int count(Key key) {
+        if (!key.canHaveChildren()) {
+            return key.getCardinality();
+        }
+
+        int count = 0;
+        for (Iterator<Key> iter = new LeafKeyIterator(key); iter.hasNext(); iter.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext() {
+        if (next == null) {
+            next = advance();
+        }
+        return next != null;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Iterator#next()
+     */
+    public Key next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Key result = next;
+        next = null;
+        return result;
+    }
+
+    /* (non-Javadoc)
+     * @see java.util.Iterator#remove()
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Find the next leaf key.
+     * 
+     * @return the leaf key or null if there are no more
+     */
+    private Key advance() {
+        while (true) {
+            Key child = null;
+            if (depth > 0) {
+                Key parent = parents[depth - 1];
+                int position = positions[depth - 1];
+                if (position == parent.getChildCount()) {
+                    // Done with this node. Forget it so that it can be collected.
+                    parents[--depth] = null;
+                    continue;
+                }
+                positions[depth - 1] = position + 1;
+                child = parent.get(position);
+            } else if (flat != null && flat.hasNext()) {
+                child = flat.next();
+            } else {
+                return null;
+            }
+
+            if (!isTree(child)) {
+                return child;
+            }
+            push(child);
+        }
+    }
+
+    /**
+     * Open a node so that its children are walked next.
+     * 
+     * @param node the node to open
+     */
+    private void push(Key node) {
+        if (depth == parents.length) {
+            parents = Arrays.copyOf(parents, depth * 2);
+            positions = Arrays.copyOf(positions, depth * 2);
+        }
+        parents[depth] = node;
+        positions[depth] = 0;
+        depth++;
+    }
+
+    /**
+     * @param key the key to test
+     * @return true if the key has children to walk
+     */
+    private static boolean isTree(Key key) {
+        return key.canHaveChildren() && key.getChildCount() > 0;
+    }
+
+    /**
+     * The keys of a Key without children.
+     */
+    private Iterator<Key> flat;
+
+    /**
+     * The open nodes of a tree, from the top down, and the position of the
+     * next child to walk in each.
+     */
+    private Key[] parents = new Key[16];
+    private int[] positions = new int[16];
+    private int depth;
+
+    /**
+     * The next leaf key, if it has been found.
+     */
+    private Key next;
+}
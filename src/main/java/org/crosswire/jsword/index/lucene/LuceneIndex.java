@@ -24,19 +24,34 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Searcher;
-import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
@@ -48,22 +63,25 @@ import org.crosswire.common.util.NetUtil;
 import org.crosswire.common.util.Reporter;
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookCategory;
 import org.crosswire.jsword.book.BookData;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.FeatureType;
 import org.crosswire.jsword.book.OSISUtil;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
 import org.crosswire.jsword.index.AbstractIndex;
 import org.crosswire.jsword.index.IndexPolicy;
 import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.index.OrdinalIndex;
 import org.crosswire.jsword.index.lucene.analysis.LuceneAnalyzer;
-import org.crosswire.jsword.index.search.SearchModifier;
-import org.crosswire.jsword.passage.AbstractPassage;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.NoSuchKeyException;
 import org.crosswire.jsword.passage.NoSuchVerseException;
+import org.crosswire.jsword.passage.Passage;
 import org.crosswire.jsword.passage.PassageTally;
 import org.crosswire.jsword.passage.Verse;
-import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.passage.VerseBits;
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
 import org.jdom2.Element;
@@ -76,7 +94,7 @@ import org.slf4j.LoggerFactory;
  * @see gnu.lgpl.License The GNU Lesser General Public License for details.
  * @author Joe Walker
  */
-public class LuceneIndex extends AbstractIndex implements Closeable {
+public class LuceneIndex extends AbstractIndex implements OrdinalIndex, Closeable {
     /*
      * The following fields are named the same as Sword in the hopes of sharing
      * indexes.
@@ -135,12 +153,34 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
 
     public static final String FIELD_INTRO_STEM = "introStem";
 
+    /**
+     * The stored hash of the raw text of a key, used to find the keys that
+     * have changed when an index is brought up to date.
+     */
+    private static final String FIELD_HASH = "hash";
+
     /**
      * An estimate of the percent of time spent indexing.
      * The remaining time, if any, is spent doing cleanup.
      */
     private static final int WORK_ESTIMATE = 98;
 
+    /**
+     * When indexing with several threads, the fewest keys in a batch
+     * before a change of root name ends it.
+     */
+    private static final int MIN_BATCH_SIZE = 64;
+
+    /**
+     * When indexing with several threads, the most keys in a batch.
+     */
+    private static final int MAX_BATCH_SIZE = 2048;
+
+    /**
+     * The number of parsed searches to keep.
+     */
+    private static final int QUERY_CACHE_SIZE = 64;
+
     /**
      * Read an existing index and use it.
      * 
@@ -192,18 +232,15 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
         List<Key> errors = new ArrayList<>();
         // Build to another location and rename in the end.
         File tempPath = new File(path + '.' + IndexStatus.CREATING.toString());
-
-        // Ensure that the temp path is gone
-        // It is not good for it to have been leftover from before.
-        if (tempPath.exists()) {
-            FileUtil.delete(tempPath);
-        }
+        IndexCheckpoint checkpoint = new IndexCheckpoint(book, policy);
 
         // Lock on metadata to allow creation of multiple indexes, so long as they are on different books.
         // Otherwise lock on a single object to make this serial
         Object mutex = policy.isSerial() ? CREATING : book.getBookMetaData();
         synchronized (mutex) {
 
+            // An interrupted build is left where it is, so that it can carry on from its last checkpoint.
+            boolean keepTemp = checkpoint.isEnabled();
             try {
                 // When misconfigured, this can throw errors.
                 Analyzer analyzer = new LuceneAnalyzer(book);
@@ -211,26 +248,57 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
 
                 book.setIndexStatus(IndexStatus.CREATING);
 
-                IndexWriter writer = null;
-                try {
-                    // Write the core index to disk.
-                    final Directory destination = FSDirectory.open(new File(tempPath.getCanonicalPath()));
-                    writer = new IndexWriter(destination, analyzer, true, IndexWriter.MaxFieldLength.UNLIMITED);
-                    writer.setRAMBufferSizeMB(policy.getRAMBufferSize());
-
-                    generateSearchIndexImpl(job, errors, writer, book.getGlobalKeyList(), 0, policy);
+                Directory existing = getUpdatableIndex(finalPath, checkpoint);
+                if (existing != null) {
+                    // Only the keys whose text has changed need to be indexed again.
+                    try {
+                        updateSearchIndex(job, errors, existing, analyzer, policy, checkpoint);
+                    } finally {
+                        IOUtil.close(existing);
+                    }
+                } else {
+                    // Ensure that the temp path is gone, unless the build can carry on from it.
+                    // It is not good for it to have been leftover from before.
+                    if (tempPath.exists() && !canResume(tempPath, checkpoint)) {
+                        FileUtil.delete(tempPath);
+                    }
 
-                } finally {
-                    if (writer != null) {
-                        writer.close();
+                    IndexWriter writer = null;
+                    boolean complete = false;
+                    try {
+                        // Write the core index to disk.
+                        final Directory destination = FSDirectory.open(new File(tempPath.getCanonicalPath()));
+                        writer = new IndexWriter(destination, analyzer, !checkpoint.isResumed(), IndexWriter.MaxFieldLength.UNLIMITED);
+                        writer.setRAMBufferSizeMB(policy.getRAMBufferSize());
+
+                        if (policy.getIndexingThreads() > 1) {
+                            generateSearchIndexParallel(job, errors, writer, book.getGlobalKeyList(), policy, checkpoint);
+                        } else {
+                            generateSearchIndexImpl(job, errors, writer, book.getGlobalKeyList(), policy, checkpoint);
+                        }
+
+                        complete = !job.isFinished() && !Thread.currentThread().isInterrupted();
+                        if (complete) {
+                            checkpoint.finish(writer);
+                        }
+                    } finally {
+                        if (writer != null) {
+                            if (complete) {
+                                writer.close();
+                            } else {
+                                // Drop what was written since the last checkpoint.
+                                writer.rollback();
+                            }
+                        }
                     }
-                }
 
-                job.setCancelable(false);
-                if (!job.isFinished()) {
-                    if (!tempPath.renameTo(finalPath)) {
-                        // TRANSLATOR: The search index could not be moved to it's final location.
-                        throw new BookException(JSMsg.gettext("Installation failed."));
+                    job.setCancelable(false);
+                    if (complete) {
+                        keepTemp = false;
+                        if (!tempPath.renameTo(finalPath)) {
+                            // TRANSLATOR: The search index could not be moved to it's final location.
+                            throw new BookException(JSMsg.gettext("Installation failed."));
+                        }
                     }
                 }
 
@@ -249,6 +317,8 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                     Reporter.informUser(this, JSMsg.gettext("The following verses have errors and could not be indexed\n{0}", buf));
                 }
                 initDirectoryAndSearcher();
+                // Searches use the same analysis as was used to build the index.
+                this.analyzer = analyzer;
             } catch (IOException ex) {
                 job.cancel();
                 // TRANSLATOR: Common error condition: Some error happened while creating a search index.
@@ -257,7 +327,7 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                 book.setIndexStatus(finalStatus);
                 job.done();
                 // Ensure that the temp path is gone - errors can leave it there and cause further problems.
-                if (tempPath.exists()) {
+                if (!keepTemp && tempPath.exists()) {
                     FileUtil.delete(tempPath);
                 }
             }
@@ -271,75 +341,57 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
         try {
             directory = FSDirectory.open(new File(path));
             searcher = new IndexSearcher(directory, true);
+            docOrdinals = null;
         } catch (IOException ex) {
             log.warn("second load failure", ex);
         }
     }
 
     /* (non-Javadoc)
-     * @see org.crosswire.jsword.index.Index#find(java.lang.String)
+     * @see org.crosswire.jsword.index.Index#find(java.lang.String, org.crosswire.jsword.index.search.SearchContext)
      */
-    public Key find(String search) throws BookException {
+    public Key find(String search, SearchContext context) throws BookException {
         String v11nName = book.getBookMetaData().getProperty("Versification").toString();
         Versification v11n = Versifications.instance().getVersification(v11nName);
 
-        SearchModifier modifier = getSearchModifier();
         Key results = null;
 
         if (search != null) {
             Throwable theCause = null;
             try {
-                Analyzer analyzer = new LuceneAnalyzer(book);
-
-                QueryParser parser = new QueryParser(Version.LUCENE_29, LuceneIndex.FIELD_BODY, analyzer);
-                parser.setAllowLeadingWildcard(true);
-                Query query = parser.parse(search);
+                Query query = parse(search);
                 log.info("ParsedQuery- {}", query.toString());
+                int[] ordinals = getDocOrdinals(v11n);
 
                 // For ranking we use a PassageTally
-                if (modifier != null && modifier.isRanked()) {
+                if (context.isRanked()) {
                     PassageTally tally = new PassageTally(v11n);
                     tally.raiseEventSuppresion();
                     tally.raiseNormalizeProtection();
                     results = tally;
 
-                    TopScoreDocCollector collector = TopScoreDocCollector.create(modifier.getMaxResults(), false);
+                    ScoreCollector collector = new ScoreCollector(v11n, searcher, ordinals);
                     searcher.search(query, collector);
                     tally.setTotal(collector.getTotalHits());
-                    ScoreDoc[] hits = collector.topDocs().scoreDocs;
-                    for (int i = 0; i < hits.length; i++) {
-                        int docId = hits[i].doc;
-                        Document doc = searcher.doc(docId);
-                        Key key = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY));
-                        // PassageTally understands a score of 0 as the verse
-                        // not participating
-                        int score = (int) (hits[i].score * 100 + 1);
-                        tally.add(key, score);
-                    }
+                    tally.addTopScores(collector.getScores(), context.getMaxResults());
                     tally.lowerNormalizeProtection();
                     tally.lowerEventSuppressionAndTest();
                 } else {
                     results = book.createEmptyKeyList();
-                    // If we have an abstract passage,
-                    // make sure it does not try to fire change events.
-                    AbstractPassage passage = null;
-                    if (results instanceof AbstractPassage) {
-                        passage = (AbstractPassage) results;
-                        passage.raiseEventSuppresion();
-                        passage.raiseNormalizeProtection();
-                    }
-                    searcher.search(query, new VerseCollector(v11n, searcher, results));
-                    if (passage != null) {
-                        passage.lowerNormalizeProtection();
-                        passage.lowerEventSuppressionAndTest();
+                    if (results instanceof Passage) {
+                        // Gather the ordinals and add them all at once,
+                        // to a Passage that suits how many there are.
+                        long[] words = VerseBits.create(v11n);
+                        searcher.search(query, new VerseCollector(v11n, searcher, ordinals, words));
+                        results = VerseBits.toPassage(v11n, words);
+                    } else {
+                        searcher.search(query, new VerseCollector(v11n, searcher, ordinals, results));
                     }
                 }
             } catch (IOException e) {
-                // The VerseCollector may throw IOExceptions that merely wrap a NoSuchVerseException
+                // The collectors may throw IOExceptions that merely wrap a NoSuchVerseException
                 Throwable cause = e.getCause();
                 theCause = cause instanceof NoSuchVerseException ? cause : e;
-            } catch (NoSuchVerseException e) {
-                theCause = e;
             } catch (ParseException e) {
                 theCause = e;
             }
@@ -351,7 +403,7 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
         }
 
         if (results == null) {
-            if (modifier != null && modifier.isRanked()) {
+            if (context.isRanked()) {
                 results = new PassageTally(v11n);
             } else {
                 results = book.createEmptyKeyList();
@@ -360,6 +412,113 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
         return results;
     }
 
+    /**
+     * Get the analyzer used to search this index. Making one loads stemmers
+     * and stop words, so it is made when first needed and then shared by all
+     * searches. It is thread safe and reuses its token streams on each
+     * thread. When the index is rebuilt, it gets a new LuceneIndex and with
+     * it a new analyzer.
+     * 
+     * @return the analyzer for this index
+     */
+    private Analyzer getAnalyzer() {
+        Analyzer result = analyzer;
+        if (result == null) {
+            synchronized (this) {
+                result = analyzer;
+                if (result == null) {
+                    // When misconfigured, this can throw errors.
+                    result = new LuceneAnalyzer(book);
+                    analyzer = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the verse ordinal of each document in the index, so that hits can
+     * be turned into verses without reading the stored documents. The table
+     * is built the first time it is needed and lasts as long as the searcher.
+     * 
+     * @param v11n the versification of the book
+     * @return the verse ordinal of each document, -1 if it has none
+     * @throws IOException
+     */
+    private int[] getDocOrdinals(Versification v11n) throws IOException {
+        int[] result = docOrdinals;
+        if (result == null) {
+            synchronized (this) {
+                result = docOrdinals;
+                if (result == null) {
+                    result = VerseCollector.getOrdinals(((IndexSearcher) searcher).getIndexReader(), v11n);
+                    docOrdinals = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parse a search into a Lucene Query. A QueryParser is not thread safe,
+     * but the Query it makes is not changed by searching, so recently parsed
+     * queries are kept for when the same search is asked for again.
+     * 
+     * @param search the search as entered
+     * @return the Lucene Query for the search
+     * @throws ParseException if the search is not valid
+     */
+    private Query parse(String search) throws ParseException {
+        Query query = queries.get(search);
+        if (query == null) {
+            QueryParser parser = new QueryParser(Version.LUCENE_29, LuceneIndex.FIELD_BODY, getAnalyzer());
+            parser.setAllowLeadingWildcard(true);
+            query = parser.parse(search);
+            queries.put(search, query);
+        }
+        return query;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.OrdinalIndex#getVersification()
+     */
+    public Versification getVersification() {
+        if (book instanceof AbstractPassageBook) {
+            return ((AbstractPassageBook) book).getVersification();
+        }
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.OrdinalIndex#findOrdinals(java.lang.String)
+     */
+    public long[] findOrdinals(String search) throws BookException {
+        Versification v11n = getVersification();
+        long[] words = VerseBits.create(v11n);
+        if (search == null) {
+            return words;
+        }
+
+        Throwable theCause = null;
+        try {
+            Query query = parse(search);
+            log.info("ParsedQuery- {}", query.toString());
+            searcher.search(query, new VerseCollector(v11n, searcher, getDocOrdinals(v11n), words));
+        } catch (IOException e) {
+            // The VerseCollector may throw IOExceptions that merely wrap a NoSuchVerseException
+            Throwable cause = e.getCause();
+            theCause = cause instanceof NoSuchVerseException ? cause : e;
+        } catch (ParseException e) {
+            theCause = e;
+        }
+
+        if (theCause != null) {
+            // TRANSLATOR: Error condition: An unexpected error happened that caused search to fail.
+            throw new BookException(JSMsg.gettext("Search failed."), theCause);
+        }
+        return words;
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.index.Index#getKey(java.lang.String)
      */
@@ -373,110 +532,63 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
     public final void close() {
         IOUtil.close(searcher);
         searcher = null;
+        docOrdinals = null;
         IOUtil.close(directory);
         directory = null;
+        analyzer = null;
+        queries.clear();
     }
 
     /**
-     * Dig down into a Key indexing as we go.
-     * @param policy 
+     * Index the leaf keys of a Key in order, on the current thread. The leaf
+     * keys are walked as they are indexed, so a tree of any depth can be
+     * indexed without recursion.
+     * 
+     * @param job the progress of the build
+     * @param errors the keys that could not be indexed
+     * @param writer the destination of the documents
+     * @param key the keys to index
+     * @param policy how the index is built
+     * @param checkpoint the record of the keys that are done
      */
-    private void generateSearchIndexImpl(Progress job, List<Key> errors, IndexWriter writer, Key key, int count, IndexPolicy policy) throws BookException, IOException {
-        String v11nName = null;
-        if (book.getBookMetaData().getProperty("Versification") != null) {
-            v11nName = book.getBookMetaData().getProperty("Versification").toString();
-        }
-        Versification v11n = Versifications.instance().getVersification(v11nName);
-        boolean includeStrongs = book.getBookMetaData().hasFeature(FeatureType.STRONGS_NUMBERS) && policy.isStrongsIndexed();
-        boolean includeXrefs = book.getBookMetaData().hasFeature(FeatureType.SCRIPTURE_REFERENCES) && policy.isXrefIndexed();
-        boolean includeNotes = book.getBookMetaData().hasFeature(FeatureType.FOOTNOTES) && policy.isNoteIndexed();
-        boolean includeHeadings = book.getBookMetaData().hasFeature(FeatureType.HEADINGS) && policy.isTitleIndexed();
-        boolean includeMorphology = book.getBookMetaData().hasFeature(FeatureType.MORPHOLOGY) && policy.isMorphIndexed();
+    private void generateSearchIndexImpl(Progress job, List<Key> errors, IndexWriter writer, Key key, IndexPolicy policy, IndexCheckpoint checkpoint) throws IOException {
+        DocumentBuilder builder = new DocumentBuilder(policy, checkpoint.isEnabled());
 
         String oldRootName = "";
         int percent = 0;
         String rootName = "";
-        BookData data = null;
-        Element osis = null;
 
-        // Set up for reuse.
-        Document doc = new Document();
-        Field keyField = new Field(FIELD_KEY, "", Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO);
-        Field bodyField = new Field(FIELD_BODY, "", Field.Store.YES, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field bodyStemField = new Field(FIELD_BODY_STEM, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field introField = new Field(FIELD_INTRO, "", Field.Store.YES, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field introStemField = new Field(FIELD_INTRO_STEM, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field strongField = new Field(FIELD_STRONG, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.YES);
-        Field xrefField = new Field(FIELD_XREF, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field noteField = new Field(FIELD_NOTE, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field headingField = new Field(FIELD_HEADING, "", Field.Store.YES, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field headingStemField = new Field(FIELD_HEADING_STEM, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field morphologyField  = new Field(FIELD_MORPHOLOGY , "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-
-        int size = key.getCardinality();
-        int subCount = count;
+        // Bibles and verse based commentaries don't have keys with children.
+        // However, tree keyed Books do. So we only index the leaf keys.
+        int size = Math.max(1, LeafKeyIterator.count(key));
+        int count = 0;
         log.debug("Number of keys = {}", Integer.toString(size));
-        for (Key subkey : key) {
-            // Bibles and verse based commentaries don't have keys with children.
-            // However, tree keyed Books do. So we only index the leaf keys.
-            // FIXME(DMS): Should not use recursion!!!!
-            if (subkey.canHaveChildren()) {
-                generateSearchIndexImpl(job, errors, writer, subkey, subCount, policy);
+        Iterator<Key> leaves = new LeafKeyIterator(key);
+        while (leaves.hasNext()) {
+            Key subkey = leaves.next();
+
+            // Keys done by an earlier, interrupted build are already in the index.
+            int position = count++;
+            if (checkpoint.isDone(position)) {
                 continue;
             }
 
-            data = new BookData(book, subkey);
-
+            boolean hasContent = false;
             try {
-                osis = data.getOsisFragment(false);
+                builder.read(subkey);
+                hasContent = builder.build();
             } catch (BookException e) {
                 errors.add(subkey);
                 continue;
             }
 
-            // Remove all fields from the document
-            doc.getFields().clear();
-
-            // Do the actual indexing
-            // Always add the key
-            keyField.setValue(subkey.getOsisRef());
-            doc.add(keyField);
-
-            final String canonicalText = OSISUtil.getCanonicalText(osis);
-            if (subkey instanceof Verse && ((Verse) subkey).getVerse() == 0) {
-                addField(doc, introField, canonicalText);
-                addField(doc, introStemField, canonicalText);
-            } else {
-                addField(doc, bodyField, canonicalText);
-                addField(doc, bodyStemField, canonicalText);
-            }
-
-            if (includeStrongs) {
-                addField(doc, strongField, OSISUtil.getStrongsNumbers(osis));
-            }
-
-            if (includeXrefs) {
-                // We pass book and key because the xref may not be valid and it needs to be reported.
-                addField(doc, xrefField, OSISUtil.getReferences(this.book, subkey, v11n, osis));
-            }
-
-            if (includeNotes) {
-                addField(doc, noteField, OSISUtil.getNotes(osis));
-            }
-
-            if (includeHeadings) {
-                final String headings = OSISUtil.getHeadings(osis);
-                addField(doc, headingField, headings);
-                addField(doc, headingStemField, headings);
-            }
-
-            if (includeMorphology) {
-                addField(doc, morphologyField, OSISUtil.getMorphologiesWithStrong(osis));
+            // Add the document if we added more than just the key.
+            if (hasContent) {
+                builder.addTo(writer, checkpoint.isResumed());
             }
 
-            // Add the document if we added more than just the key.
-            if (doc.getFields().size() > 1) {
-                writer.addDocument(doc);
+            if (checkpoint.done(position, position + 1)) {
+                checkpoint.checkpoint(writer);
             }
 
             // report progress
@@ -488,9 +600,8 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                 job.setSectionName(rootName);
             }
 
-            subCount++;
             int oldPercent = percent;
-            percent = WORK_ESTIMATE * subCount / size;
+            percent = WORK_ESTIMATE * count / size;
 
             // Only send out a max of 95 progress updates
             if (oldPercent != percent) {
@@ -505,6 +616,337 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
         }
     }
 
+    /**
+     * Index the leaf keys of a Key using several threads. The keys are split
+     * into batches, generally a book of the Bible at a time, and each batch is
+     * read, has its fields extracted and is analyzed on a thread of its own. The
+     * IndexWriter is thread safe and is shared by all of them. Unlike the
+     * serial build, the documents are not added in key order.
+     * 
+     * @param job the progress of the build
+     * @param errors the keys that could not be indexed
+     * @param writer the destination of the documents
+     * @param key the keys to index
+     * @param policy how the index is built
+     * @param checkpoint the record of the keys that are done
+     */
+    private void generateSearchIndexParallel(Progress job, List<Key> errors, final IndexWriter writer, Key key, final IndexPolicy policy, final IndexCheckpoint checkpoint) throws BookException, IOException {
+        List<List<Key>> batches = getBatches(key);
+        int size = 0;
+        for (List<Key> batch : batches) {
+            size += batch.size();
+        }
+        log.debug("Number of keys = {}", Integer.toString(size));
+
+        final IndexProgress progress = new IndexProgress(job, size);
+        final List<Key> failures = Collections.synchronizedList(errors);
+        int threads = Math.max(1, Math.min(policy.getIndexingThreads(), batches.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<>(batches.size());
+            int position = 0;
+            for (final List<Key> batch : batches) {
+                final int start = position;
+                results.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws BookException, IOException {
+                        indexBatch(progress, failures, writer, batch, start, policy, checkpoint);
+                        return null;
+                    }
+                }));
+                position += batch.size();
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            // The job has been cancelled. Leave it for the caller to see.
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof BookException) {
+                throw (BookException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // TRANSLATOR: Common error condition: Some error happened while creating a search index.
+            throw new BookException(JSMsg.gettext("Failed to initialize Lucene search engine."), cause);
+        } finally {
+            shutdown(executor);
+        }
+
+        progress.report(book, threads);
+    }
+
+    /**
+     * Index one batch of leaf keys on the current thread.
+     * 
+     * @param progress the progress of the build
+     * @param errors the keys that could not be indexed
+     * @param writer the destination of the documents
+     * @param batch the keys to index
+     * @param position the position of the first key of the batch
+     * @param policy how the index is built
+     * @param checkpoint the record of the keys that are done
+     */
+    private void indexBatch(IndexProgress progress, List<Key> errors, IndexWriter writer, List<Key> batch, int position, IndexPolicy policy, IndexCheckpoint checkpoint) throws IOException {
+        DocumentBuilder builder = new DocumentBuilder(policy, checkpoint.isEnabled());
+        progress.beginBatch(batch.get(0).getRootName());
+        int size = batch.size();
+        for (int i = 0; i < size; i++) {
+            // Keys done by an earlier, interrupted build are already in the index.
+            if (checkpoint.isDone(position + i)) {
+                progress.keyDone(0, 0, 0);
+                continue;
+            }
+
+            Key subkey = batch.get(i);
+            long start = System.nanoTime();
+            long read = start;
+            boolean hasContent = false;
+            try {
+                builder.read(subkey);
+                read = System.nanoTime();
+                hasContent = builder.build();
+            } catch (BookException e) {
+                errors.add(subkey);
+            }
+            long built = System.nanoTime();
+
+            // Add the document if we added more than just the key.
+            if (hasContent) {
+                builder.addTo(writer, checkpoint.isResumed());
+            }
+            long written = System.nanoTime();
+
+            progress.keyDone(read - start, built - read, written - built);
+
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+
+        // Only a whole batch is recorded, as the others may still be adding documents.
+        if (checkpoint.done(position, position + size)) {
+            checkpoint.checkpoint(writer);
+        }
+    }
+
+    /**
+     * Open an existing index that can be brought up to date in place.
+     * 
+     * @param indexPath where the index is
+     * @param checkpoint the record of the build
+     * @return the index or null if it has to be built from the start
+     */
+    private static Directory getUpdatableIndex(File indexPath, IndexCheckpoint checkpoint) throws IOException {
+        if (!checkpoint.isEnabled() || !indexPath.exists()) {
+            return null;
+        }
+        Directory directory = FSDirectory.open(indexPath);
+        if (!checkpoint.canUpdate(directory)) {
+            IOUtil.close(directory);
+            return null;
+        }
+        return directory;
+    }
+
+    /**
+     * Determine whether an interrupted build can be carried on.
+     * 
+     * @param tempPath where the interrupted build was written
+     * @param checkpoint the record of the build
+     * @return true if the build can carry on
+     */
+    private static boolean canResume(File tempPath, IndexCheckpoint checkpoint) throws IOException {
+        if (!checkpoint.isEnabled()) {
+            return false;
+        }
+        Directory directory = FSDirectory.open(tempPath);
+        try {
+            return checkpoint.resume(directory);
+        } finally {
+            IOUtil.close(directory);
+        }
+    }
+
+    /**
+     * Bring an index up to date with the book, in place. The raw text of each
+     * leaf key is compared with that which the index was built from, by way of
+     * a hash, and only the keys that have changed are indexed again. Keys that
+     * are no longer in the book are removed. The work is committed at each
+     * checkpoint, so an interrupted update leaves less to do the next time.
+     * 
+     * @param job the progress of the update
+     * @param errors the keys that could not be indexed
+     * @param directory the index
+     * @param analyzer the analyzer of the index
+     * @param policy how the index is built
+     * @param checkpoint the record of the build
+     */
+    private void updateSearchIndex(Progress job, List<Key> errors, Directory directory, Analyzer analyzer, IndexPolicy policy, IndexCheckpoint checkpoint) throws IOException {
+        Map<String, String> hashes = getHashes(directory);
+        Key keys = book.getGlobalKeyList();
+        int size = Math.max(1, LeafKeyIterator.count(keys));
+        int count = 0;
+        int changed = 0;
+        int percent = 0;
+        String oldRootName = "";
+        DocumentBuilder builder = new DocumentBuilder(policy, checkpoint.isEnabled());
+
+        IndexWriter writer = new IndexWriter(directory, analyzer, false, IndexWriter.MaxFieldLength.UNLIMITED);
+        boolean complete = false;
+        try {
+            writer.setRAMBufferSizeMB(policy.getRAMBufferSize());
+            Iterator<Key> leaves = new LeafKeyIterator(keys);
+            while (leaves.hasNext()) {
+                Key subkey = leaves.next();
+                String rootName = subkey.getRootName();
+                if (!rootName.equals(oldRootName)) {
+                    oldRootName = rootName;
+                    job.setSectionName(rootName);
+                }
+
+                int position = count++;
+                String ref = subkey.getOsisRef();
+                String oldHash = hashes.remove(ref);
+                try {
+                    builder.read(subkey);
+                    if (!builder.getHash().equals(oldHash)) {
+                        // Add the document if we added more than just the key.
+                        if (builder.build()) {
+                            builder.addTo(writer, true);
+                        } else if (oldHash != null) {
+                            writer.deleteDocuments(new Term(FIELD_KEY, ref));
+                        }
+
+                        changed++;
+                        if (checkpoint.done(position, position + 1)) {
+                            checkpoint.checkpointUpdate(writer);
+                        }
+                    }
+                } catch (BookException e) {
+                    errors.add(subkey);
+                }
+
+                int oldPercent = percent;
+                percent = WORK_ESTIMATE * count / size;
+                if (oldPercent != percent) {
+                    job.setWork(percent);
+                }
+
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+            }
+
+            complete = !job.isFinished() && !Thread.currentThread().isInterrupted();
+            if (complete) {
+                // What is left is no longer in the book.
+                for (String ref : hashes.keySet()) {
+                    writer.deleteDocuments(new Term(FIELD_KEY, ref));
+                }
+                checkpoint.finish(writer);
+                log.info("{}: updated index, {} keys changed and {} removed", book.getInitials(), Integer.toString(changed), Integer.toString(hashes.size()));
+            }
+        } finally {
+            if (complete) {
+                writer.close();
+            } else {
+                writer.rollback();
+            }
+        }
+    }
+
+    /**
+     * Read the hash of the raw text of each document in an index.
+     * 
+     * @param directory the index
+     * @return the hash of each key in the index, empty if it has none
+     */
+    private static Map<String, String> getHashes(Directory directory) throws IOException {
+        IndexReader reader = IndexReader.open(directory, true);
+        try {
+            FieldSelector selector = new MapFieldSelector(FIELD_KEY, FIELD_HASH);
+            int maxDoc = reader.maxDoc();
+            Map<String, String> hashes = new HashMap<>();
+            for (int docId = 0; docId < maxDoc; docId++) {
+                if (reader.isDeleted(docId)) {
+                    continue;
+                }
+                Document doc = reader.document(docId, selector);
+                String ref = doc.get(FIELD_KEY);
+                if (ref != null) {
+                    String hash = doc.get(FIELD_HASH);
+                    hashes.put(ref, hash == null ? "" : hash);
+                }
+            }
+            return hashes;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Gather the leaf keys of a Key into batches to be indexed. A batch is
+     * ended when the root name changes, so long as it is not too small, or
+     * when it gets too big.
+     * 
+     * @param key the keys to index
+     * @return the batches of leaf keys
+     */
+    private static List<List<Key>> getBatches(Key key) {
+        List<List<Key>> batches = new ArrayList<>();
+        List<Key> batch = new ArrayList<>();
+        String batchRootName = null;
+        Iterator<Key> leaves = new LeafKeyIterator(key);
+        while (leaves.hasNext()) {
+            Key subkey = leaves.next();
+            String rootName = subkey.getRootName();
+            if (batch.size() >= MAX_BATCH_SIZE || (batch.size() >= MIN_BATCH_SIZE && !rootName.equals(batchRootName))) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+            if (batch.isEmpty()) {
+                batchRootName = rootName;
+            }
+            batch.add(subkey);
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Stop the threads of an executor and wait for them to finish, so that
+     * none is still adding documents when the IndexWriter is closed.
+     * 
+     * @param executor the executor to stop
+     */
+    private static void shutdown(ExecutorService executor) {
+        executor.shutdownNow();
+        boolean interrupted = Thread.interrupted();
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Add the text to the Field and put the Field in the document,
      * ignoring null and empty text.
@@ -532,6 +974,275 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
         return searcher;
     }
 
+    /**
+     * Makes the Lucene Document for each key. The Document and its Fields
+     * are reused from one key to the next, so a DocumentBuilder must only be
+     * used by one thread.
+     * 
+     * <p>When the book's source is OSIS, the fields are got from its raw text
+     * in a single pass, without building the OSIS fragment of the key. Other
+     * sources, and raw text that the pass cannot handle, are converted to an
+     * OSIS fragment first.</p>
+     */
+    private final class DocumentBuilder {
+        /**
+         * Set up to build Documents according to the policy.
+         * 
+         * @param policy how the index is built
+         * @param hashed whether the hash of the raw text is kept in the index
+         */
+        DocumentBuilder(IndexPolicy policy, boolean hashed) {
+            String v11nName = null;
+            if (book.getBookMetaData().getProperty("Versification") != null) {
+                v11nName = book.getBookMetaData().getProperty("Versification").toString();
+            }
+            v11n = Versifications.instance().getVersification(v11nName);
+            includeStrongs = book.getBookMetaData().hasFeature(FeatureType.STRONGS_NUMBERS) && policy.isStrongsIndexed();
+            includeXrefs = book.getBookMetaData().hasFeature(FeatureType.SCRIPTURE_REFERENCES) && policy.isXrefIndexed();
+            includeNotes = book.getBookMetaData().hasFeature(FeatureType.FOOTNOTES) && policy.isNoteIndexed();
+            includeHeadings = book.getBookMetaData().hasFeature(FeatureType.HEADINGS) && policy.isTitleIndexed();
+            includeMorphology = book.getBookMetaData().hasFeature(FeatureType.MORPHOLOGY) && policy.isMorphIndexed();
+            this.hashed = hashed;
+
+            // Dictionaries get a generated title, so they are left to the OSIS fragment.
+            BookCategory category = book.getBookCategory();
+            boolean osisSource = "OSIS".equalsIgnoreCase(book.getBookMetaData().getProperty("SourceType"));
+            passage = category == BookCategory.BIBLE || category == BookCategory.COMMENTARY;
+            if (osisSource && (passage || category == BookCategory.GENERAL_BOOK)) {
+                extractor = new OSISFieldExtractor(includeStrongs, includeMorphology, includeXrefs, includeNotes, includeHeadings);
+            } else {
+                extractor = null;
+            }
+        }
+
+        /**
+         * Read the raw text of a key, so far as it is needed.
+         * 
+         * @param key the key being indexed
+         * @throws BookException if the raw text cannot be read
+         */
+        void read(Key key) throws BookException {
+            subkey = key;
+            raw = null;
+            hash = null;
+            if (hashed || extractor != null) {
+                raw = book.getRawText(key);
+            }
+            if (hashed) {
+                hash = IndexCheckpoint.hash(raw);
+            }
+        }
+
+        /**
+         * @return the hash of the raw text of the key last read, or null if it is not kept
+         */
+        String getHash() {
+            return hash;
+        }
+
+        /**
+         * Fill the Document for the key last read.
+         * 
+         * @return true if more than just the key was added
+         * @throws BookException if the key cannot be converted to OSIS
+         */
+        boolean build() throws BookException {
+            // A psalm title is canonical in the verse of a Bible. See SwordBook.addOSIS.
+            boolean psalmTitles = passage && subkey instanceof Verse && ((Verse) subkey).getVerse() != 0;
+            if (extractor != null && extractor.extract(raw, psalmTitles)) {
+                return build(extractor.getCanonicalText(),
+                        includeStrongs ? extractor.getStrongsNumbers() : null,
+                        includeXrefs ? OSISUtil.getReferences(book, subkey, v11n, extractor.getReferences()) : null,
+                        includeNotes ? extractor.getNotes() : null,
+                        includeHeadings ? extractor.getHeadings() : null,
+                        includeMorphology ? extractor.getMorphologiesWithStrong() : null);
+            }
+
+            Element osis = new BookData(book, subkey).getOsisFragment(false);
+            return build(OSISUtil.getCanonicalText(osis),
+                    includeStrongs ? OSISUtil.getStrongsNumbers(osis) : null,
+                    // We pass book and key because the xref may not be valid and it needs to be reported.
+                    includeXrefs ? OSISUtil.getReferences(book, subkey, v11n, osis) : null,
+                    includeNotes ? OSISUtil.getNotes(osis) : null,
+                    includeHeadings ? OSISUtil.getHeadings(osis) : null,
+                    includeMorphology ? OSISUtil.getMorphologiesWithStrong(osis) : null);
+        }
+
+        /**
+         * Fill the Document from the text of its fields. Fields that are
+         * not indexed are null.
+         * 
+         * @return true if more than just the key was added
+         */
+        private boolean build(String canonicalText, String strongs, String xrefs, String notes, String headings, String morphologies) {
+            // Remove all fields from the document
+            doc.getFields().clear();
+
+            // Do the actual indexing
+            // Always add the key
+            keyField.setValue(subkey.getOsisRef());
+            doc.add(keyField);
+
+            if (subkey instanceof Verse && ((Verse) subkey).getVerse() == 0) {
+                addField(doc, introField, canonicalText);
+                addField(doc, introStemField, canonicalText);
+            } else {
+                addField(doc, bodyField, canonicalText);
+                addField(doc, bodyStemField, canonicalText);
+            }
+
+            addField(doc, strongField, strongs);
+            addField(doc, xrefField, xrefs);
+            addField(doc, noteField, notes);
+            addField(doc, headingField, headings);
+            addField(doc, headingStemField, headings);
+            addField(doc, morphologyField, morphologies);
+
+            boolean hasContent = doc.getFields().size() > 1;
+
+            if (hash != null) {
+                hashField.setValue(hash);
+                doc.add(hashField);
+            }
+
+            return hasContent;
+        }
+
+        /**
+         * Add the Document as last built to the index.
+         * 
+         * @param writer the destination of the Document
+         * @param replace whether it replaces any Document for the same key
+         */
+        void addTo(IndexWriter writer, boolean replace) throws IOException {
+            if (replace) {
+                writer.updateDocument(new Term(FIELD_KEY, keyField.stringValue()), doc);
+            } else {
+                writer.addDocument(doc);
+            }
+        }
+
+        private final Versification v11n;
+        private final boolean includeStrongs;
+        private final boolean includeXrefs;
+        private final boolean includeNotes;
+        private final boolean includeHeadings;
+        private final boolean includeMorphology;
+        private final boolean hashed;
+        private final boolean passage;
+        private final OSISFieldExtractor extractor;
+
+        // The key last read.
+        private Key subkey;
+        private String raw;
+        private String hash;
+
+        // Set up for reuse.
+        private final Document doc = new Document();
+        private final Field keyField = new Field(FIELD_KEY, "", Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO);
+        private final Field bodyField = new Field(FIELD_BODY, "", Field.Store.YES, Field.Index.ANALYZED, Field.TermVector.NO);
+        private final Field bodyStemField = new Field(FIELD_BODY_STEM, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private final Field introField = new Field(FIELD_INTRO, "", Field.Store.YES, Field.Index.ANALYZED, Field.TermVector.NO);
+        private final Field introStemField = new Field(FIELD_INTRO_STEM, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private final Field strongField = new Field(FIELD_STRONG, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.YES);
+        private final Field xrefField = new Field(FIELD_XREF, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private final Field noteField = new Field(FIELD_NOTE, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private final Field headingField = new Field(FIELD_HEADING, "", Field.Store.YES, Field.Index.ANALYZED, Field.TermVector.NO);
+        private final Field headingStemField = new Field(FIELD_HEADING_STEM, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private final Field morphologyField = new Field(FIELD_MORPHOLOGY, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
+        private final Field hashField = new Field(FIELD_HASH, "", Field.Store.YES, Field.Index.NO);
+    }
+
+    /**
+     * Keeps track of a parallel index build. Progress is reported to the job
+     * as keys are done, and the time spent in each stage is totalled over all
+     * the threads so that the throughput of the stages can be compared.
+     */
+    private static final class IndexProgress {
+        /**
+         * @param job the job to report to
+         * @param size the number of keys to be indexed
+         */
+        IndexProgress(Progress job, int size) {
+            this.job = job;
+            this.size = Math.max(1, size);
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Note that a thread has started on a batch.
+         * 
+         * @param rootName the root name of the first key in the batch
+         */
+        void beginBatch(String rootName) {
+            // Note, this does not cause progress to be updated
+            // It will show up the next time progress is updated.
+            job.setSectionName(rootName);
+        }
+
+        /**
+         * Note that a key has been indexed.
+         * 
+         * @param readTime the nanoseconds spent reading the raw text of the key
+         * @param buildTime the nanoseconds spent getting the fields from the raw text
+         * @param writeTime the nanoseconds spent analyzing and writing the document
+         */
+        void keyDone(long readTime, long buildTime, long writeTime) {
+            readNanos.addAndGet(readTime);
+            buildNanos.addAndGet(buildTime);
+            writeNanos.addAndGet(writeTime);
+            int done = count.incrementAndGet();
+            int percent = WORK_ESTIMATE * done / size;
+            int oldPercent = lastPercent.get();
+            // Only send out a max of 95 progress updates
+            if (percent > oldPercent && lastPercent.compareAndSet(oldPercent, percent)) {
+                job.setWork(percent);
+            }
+        }
+
+        /**
+         * Log how long the build took and where the time went.
+         * 
+         * @param book the book that was indexed
+         * @param threads the number of threads used
+         */
+        void report(Book book, int threads) {
+            long elapsed = (System.nanoTime() - start) / 1000000L;
+            log.info("Indexed {} keys of {} in {} ms using {} threads. Thread time: read {} ms, fields {} ms, analyze and write {} ms",
+                    Integer.toString(count.get()), book.getInitials(), Long.toString(elapsed), Integer.toString(threads),
+                    Long.toString(readNanos.get() / 1000000L), Long.toString(buildNanos.get() / 1000000L), Long.toString(writeNanos.get() / 1000000L));
+        }
+
+        private final Progress job;
+        private final int size;
+        private final long start;
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicInteger lastPercent = new AtomicInteger();
+        private final AtomicLong readNanos = new AtomicLong();
+        private final AtomicLong buildNanos = new AtomicLong();
+        private final AtomicLong writeNanos = new AtomicLong();
+    }
+
+    /**
+     * A map of searches to their parsed queries that forgets the least
+     * recently used when it gets full.
+     */
+    private static final class QueryCache extends LinkedHashMap<String, Query> {
+        QueryCache() {
+            super(QUERY_CACHE_SIZE, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+            return size() > QUERY_CACHE_SIZE;
+        }
+
+        /**
+         * Serialization ID
+         */
+        private static final long serialVersionUID = 1L;
+    }
+
     /**
      * The Book that we are indexing
      */
@@ -552,6 +1263,21 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
      */
     private Searcher searcher;
 
+    /**
+     * The verse ordinal of each document in the index, made when first needed.
+     */
+    private volatile int[] docOrdinals;
+
+    /**
+     * The analyzer used to search this index, made when first needed.
+     */
+    private volatile Analyzer analyzer;
+
+    /**
+     * The most recently parsed searches.
+     */
+    private final Map<String, Query> queries = Collections.synchronizedMap(new QueryCache());
+
     /**
      * A synchronization lock point to prevent us from doing 2 index runs at a
      * time.
@@ -39,6 +39,7 @@ import org.crosswire.jsword.index.IndexManager;
 import org.crosswire.jsword.index.IndexPolicy;
 import org.crosswire.jsword.index.IndexPolicyAdapter;
 import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.index.search.SearchCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -149,6 +150,7 @@ public class LuceneIndexManager implements IndexManager {
             if (NetUtil.getAsFile(storage).exists()) {
                 finalStatus = IndexStatus.DONE;
                 INDEXES.put(book, index);
+                SearchCache.instance().invalidate(book);
 
                 //update IndexVersion
                 InstalledIndex.instance().storeLatestVersionAsInstalledIndexMetadata(book);
@@ -170,6 +172,7 @@ public class LuceneIndexManager implements IndexManager {
             URI storage = getStorageArea(book);
             File zip = NetUtil.getAsFile(tempDest);
             IOUtil.unpackZip(zip, NetUtil.getAsFile(storage));
+            SearchCache.instance().invalidate(book);
             //todo Index.Version management??
         } catch (IOException ex) {
             // TRANSLATOR: The search index could not be moved to it's final location.
@@ -211,6 +214,7 @@ public class LuceneIndexManager implements IndexManager {
             book.setIndexStatus(IndexStatus.UNDONE);
             book.resetSearcher();
             INDEXES.remove(book);
+            SearchCache.instance().invalidate(book);
 
             //Delete index Version metadata (InstalledIndex)
             InstalledIndex.instance().removeFromInstalledIndexMetadata(book);
@@ -20,9 +20,12 @@ package org.crosswire.jsword.index.lucene;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.OrdinalIndex;
+import org.crosswire.jsword.index.query.OrdinalQueryEvaluator;
 import org.crosswire.jsword.index.query.Query;
 import org.crosswire.jsword.index.query.QueryBuilderFactory;
 import org.crosswire.jsword.index.search.DefaultSearchRequest;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.index.search.SearchRequest;
 import org.crosswire.jsword.index.search.Searcher;
 import org.crosswire.jsword.passage.Key;
@@ -78,11 +81,12 @@ public class LuceneSearcher implements Searcher {
      * .index.search.SearchRequest)
      */
     public Key search(SearchRequest request) throws BookException {
-        index.setSearchModifier(request.getSearchModifier());
+        SearchContext context = SearchContext.from(request.getSearchModifier());
         Query query = QueryBuilderFactory.getQueryBuilder().parse(request.getRequest());
-        Key results = search(query);
-        index.setSearchModifier(null);
-        return results;
+        if (index instanceof OrdinalIndex && OrdinalQueryEvaluator.canEvaluate((OrdinalIndex) index, context)) {
+            return OrdinalQueryEvaluator.find(query, (OrdinalIndex) index, context);
+        }
+        return query.find(index, context);
     }
 
     /*
@@ -0,0 +1,417 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2007 - 2016
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.crosswire.jsword.book.OSISUtil;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Gets the text of the fields of an index Document from the raw OSIS of a key
+ * in a single pass of a SAX parser, without building a JDOM tree for it. The
+ * results are those of the corresponding methods of {@link OSISUtil} applied
+ * to the OSIS fragment of the key, so long as the raw text is well formed, is
+ * not marked up with verse elements and has no pre-verse material after the
+ * text of the verse. When it is not, {@link #extract} says so and the caller
+ * has to fall back to the OSIS fragment.
+ * 
+ * <p>The parser and buffers are reused from one key to the next, so an
+ * OSISFieldExtractor must only be used by one thread.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class OSISFieldExtractor extends DefaultHandler {
+    /**
+     * Set up to get the fields that are wanted. The canonical text is always
+     * wanted.
+     * 
+     * @param lexical whether the Strong's numbers are wanted
+     * @param morphology whether the Strong's numbers with their morphology are wanted
+     * @param references whether the references are wanted
+     * @param notes whether the notes are wanted
+     * @param headings whether the headings are wanted
+     */
+    OSISFieldExtractor(boolean lexical, boolean morphology, boolean references, boolean notes, boolean headings) {
+        this.wantStrongs = lexical;
+        this.wantMorphology = morphology;
+        this.wantReferences = references;
+        this.wantNotes = notes;
+        this.wantHeadings = headings;
+    }
+
+    /**
+     * Get the fields from the raw OSIS of a key.
+     * 
+     * @param raw the raw OSIS of the key
+     * @param psalmTitles whether a psalm title without a canonical attribute
+     *            is canonical, as it is for a verse of a Bible
+     * @return false if the raw text has to be converted to an OSIS fragment
+     *         instead
+     */
+    boolean extract(String raw, boolean psalmTitles) {
+        // Verse markup is rearranged when it is converted to OSIS.
+        if (raw.indexOf("<" + OSISUtil.OSIS_ELEMENT_VERSE) >= 0) {
+            return false;
+        }
+
+        reset(psalmTitles);
+        try {
+            if (reader == null) {
+                SAXParserFactory factory = SAXParserFactory.newInstance();
+                factory.setNamespaceAware(true);
+                reader = factory.newSAXParser().getXMLReader();
+                reader.setFeature("http://xml.org/sax/features/external-general-entities", false);
+                reader.setContentHandler(this);
+                reader.setErrorHandler(this);
+            }
+
+            // Like the OSIS filter, house the fragment in an element of its own.
+            int length = ROOT_START.length() + raw.length() + ROOT_END.length();
+            if (input.length < length) {
+                input = new char[Math.max(length, input.length * 2)];
+            }
+            ROOT_START.getChars(0, ROOT_START.length(), input, 0);
+            raw.getChars(0, raw.length(), input, ROOT_START.length());
+            ROOT_END.getChars(0, ROOT_END.length(), input, ROOT_START.length() + raw.length());
+            reader.parse(new InputSource(new CharArrayReader(input, 0, length)));
+
+            // Pre-verse material after the text of a verse is moved ahead of it
+            // in the OSIS fragment, changing the order of the canonical text.
+            // See SwordBook.addOSIS.
+            return !psalmTitles || lastPreverse <= lastText;
+        } catch (SAXException e) {
+            // Bad entities and the like. The OSIS filter knows how to clean them up.
+            return false;
+        } catch (ParserConfigurationException e) {
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the canonical text, as {@link OSISUtil#getCanonicalText}
+     */
+    String getCanonicalText() {
+        return canonical.toString().trim();
+    }
+
+    /**
+     * @return the Strong's numbers, as {@link OSISUtil#getStrongsNumbers}
+     */
+    String getStrongsNumbers() {
+        return strongs.toString().trim();
+    }
+
+    /**
+     * @return the Strong's numbers and morphology, as {@link OSISUtil#getMorphologiesWithStrong}
+     */
+    String getMorphologiesWithStrong() {
+        return morphologies.toString().trim();
+    }
+
+    /**
+     * @return the osisRef attributes of the reference elements, for {@link OSISUtil#getReferences(org.crosswire.jsword.book.Book, org.crosswire.jsword.passage.Key, org.crosswire.jsword.versification.Versification, Iterable)}
+     */
+    List<String> getReferences() {
+        return references;
+    }
+
+    /**
+     * @return the text of the notes, as {@link OSISUtil#getNotes}
+     */
+    String getNotes() {
+        return join(notes);
+    }
+
+    /**
+     * @return the text of the titles, as {@link OSISUtil#getHeadings}
+     */
+    String getHeadings() {
+        return join(headings);
+    }
+
+    /* (non-Javadoc)
+     * @see org.xml.sax.helpers.DefaultHandler#startElement(java.lang.String, java.lang.String, java.lang.String, org.xml.sax.Attributes)
+     */
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attrs) throws SAXException {
+        flushText();
+
+        String name = localName.length() > 0 ? localName : qName;
+        if (depth == kinds.length) {
+            kinds = Arrays.copyOf(kinds, depth * 2);
+            names = Arrays.copyOf(names, depth * 2);
+        }
+        int kind = 0;
+
+        if (OSISUtil.OSIS_ELEMENT_NOTE.equals(name) || OSISUtil.OSIS_ELEMENT_TITLE.equals(name) || OSISUtil.OSIS_ELEMENT_REFERENCE.equals(name)) {
+            String canonicalAttr = attrs.getValue(OSISUtil.OSIS_ATTR_CANONICAL);
+            boolean isCanonical = Boolean.valueOf(canonicalAttr).booleanValue();
+            // A psalm title directly in the verse is made canonical, unless it says otherwise
+            // or is marked as pre-verse. See SwordBook.addOSIS.
+            if (psalmTitles && canonicalAttr == null && depth == 1 && OSISUtil.OSIS_ELEMENT_TITLE.equals(name)) {
+                isCanonical = "psalm".equals(attrs.getValue(OSISUtil.OSIS_ATTR_TYPE)) && !"x-preverse".equals(attrs.getValue(OSISUtil.OSIS_ATTR_SUBTYPE));
+            }
+            if (!isCanonical) {
+                kind |= NON_CANONICAL;
+                nonCanonical++;
+            }
+        }
+
+        if (wantNotes && OSISUtil.OSIS_ELEMENT_NOTE.equals(name) && !OSISUtil.NOTETYPE_REFERENCE.equals(attrs.getValue(OSISUtil.OSIS_ATTR_TYPE))) {
+            kind |= NOTE;
+            openNotes.add(open(notes));
+        } else if (wantHeadings && OSISUtil.OSIS_ELEMENT_TITLE.equals(name)) {
+            kind |= HEADING;
+            openHeadings.add(open(headings));
+        } else if (wantReferences && OSISUtil.OSIS_ELEMENT_REFERENCE.equals(name)) {
+            String osisRef = attrs.getValue(OSISUtil.OSIS_ATTR_REF);
+            if (osisRef != null) {
+                references.add(osisRef);
+            }
+        } else if ((wantStrongs || wantMorphology) && OSISUtil.OSIS_ELEMENT_W.equals(name)) {
+            String lemma = attrs.getValue(OSISUtil.ATTRIBUTE_W_LEMMA);
+            if (lemma != null) {
+                String morph = attrs.getValue(OSISUtil.ATTRIBUTE_W_MORPH);
+                if (wantStrongs) {
+                    OSISUtil.appendLexicalInformation(strongs, lemma, morph, false);
+                }
+                if (wantMorphology) {
+                    OSISUtil.appendLexicalInformation(morphologies, lemma, morph, true);
+                }
+            }
+        }
+
+        if (depth == 1) {
+            if (isPreverse(name, attrs)) {
+                lastPreverse = top;
+            }
+            top++;
+        }
+
+        kinds[depth] = kind;
+        names[depth] = name;
+        depth++;
+    }
+
+    /* (non-Javadoc)
+     * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        flushText();
+
+        int kind = kinds[--depth];
+        if ((kind & NON_CANONICAL) != 0) {
+            nonCanonical--;
+        }
+        if ((kind & NOTE) != 0) {
+            openNotes.remove(openNotes.size() - 1);
+        }
+        if ((kind & HEADING) != 0) {
+            openHeadings.remove(openHeadings.size() - 1);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
+     */
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        // The parser may hand over a text node in several pieces.
+        text.append(ch, start, length);
+    }
+
+    /**
+     * Deal with a whole text node, now that it is known.
+     */
+    private void flushText() {
+        int length = text.length();
+        if (length == 0) {
+            return;
+        }
+
+        if (depth == 1) {
+            lastText = top++;
+        }
+
+        if (nonCanonical == 0) {
+            // make sure that adjacent text elements are separated by
+            // whitespace, except within an OSIS seg
+            int lastIndex = canonical.length() - 1;
+            if (lastIndex >= 0 && !Character.isWhitespace(canonical.charAt(lastIndex)) && !Character.isWhitespace(text.charAt(0)) && !OSISUtil.OSIS_ELEMENT_SEG.equals(names[depth - 1])) {
+                canonical.append(' ');
+            }
+            canonical.append(text);
+        }
+
+        // The text belongs to every note and title that it is in.
+        for (StringBuilder note : openNotes) {
+            note.append(text);
+        }
+        for (StringBuilder heading : openHeadings) {
+            heading.append(text);
+        }
+
+        text.setLength(0);
+    }
+
+    /**
+     * Forget the fields of the previous key.
+     * 
+     * @param psalmTitlesAreCanonical whether a psalm title without a canonical attribute is canonical
+     */
+    private void reset(boolean psalmTitlesAreCanonical) {
+        this.psalmTitles = psalmTitlesAreCanonical;
+        depth = 0;
+        top = 0;
+        lastText = 0;
+        lastPreverse = -1;
+        nonCanonical = 0;
+        text.setLength(0);
+        canonical.setLength(0);
+        strongs.setLength(0);
+        morphologies.setLength(0);
+        references.clear();
+        notes.clear();
+        headings.clear();
+        openNotes.clear();
+        openHeadings.clear();
+    }
+
+    /**
+     * Whether a child of the verse marks material that goes before the verse,
+     * as SwordBook.addOSIS sees it.
+     * 
+     * @param name the name of the element
+     * @param attrs the attributes of the element
+     * @return true if the element is pre-verse material
+     */
+    private static boolean isPreverse(String name, Attributes attrs) {
+        String subType = attrs.getValue(OSISUtil.OSIS_ATTR_SUBTYPE);
+        if ("x-preverse".equals(subType)) {
+            return OSISUtil.OSIS_ELEMENT_DIV.equals(name) || OSISUtil.OSIS_ELEMENT_TITLE.equals(name);
+        }
+        // A psalm title is made pre-verse unless it has a subType of its own.
+        return subType == null && OSISUtil.OSIS_ELEMENT_TITLE.equals(name) && "psalm".equals(attrs.getValue(OSISUtil.OSIS_ATTR_TYPE));
+    }
+
+    /**
+     * Start the text of another note or title.
+     * 
+     * @param slots the notes or titles so far
+     * @return the buffer for its text
+     */
+    private static StringBuilder open(List<StringBuilder> slots) {
+        StringBuilder slot = new StringBuilder();
+        slots.add(slot);
+        return slot;
+    }
+
+    /**
+     * Join the text of notes or titles with spaces, as {@link OSISUtil} does.
+     * 
+     * @param slots the text of each note or title
+     * @return the joined text
+     */
+    private static String join(List<StringBuilder> slots) {
+        StringBuilder buffer = new StringBuilder();
+        for (StringBuilder slot : slots) {
+            if (buffer.length() > 0) {
+                buffer.append(' ');
+            }
+            buffer.append(slot);
+        }
+        return buffer.toString();
+    }
+
+    private final boolean wantStrongs;
+    private final boolean wantMorphology;
+    private final boolean wantReferences;
+    private final boolean wantNotes;
+    private final boolean wantHeadings;
+    private boolean psalmTitles;
+
+    /**
+     * The parser, made when first needed.
+     */
+    private XMLReader reader;
+
+    /**
+     * The raw text housed in the root element.
+     */
+    private char[] input = new char[1024];
+
+    /**
+     * The kind and the name of each open element.
+     */
+    private int[] kinds = new int[16];
+    private String[] names = new String[16];
+    private int depth;
+
+    /**
+     * The number of children of the root so far, and the positions among them
+     * of the last text and of the last pre-verse element, as SwordBook.addOSIS
+     * counts them.
+     */
+    private int top;
+    private int lastText;
+    private int lastPreverse;
+
+    /**
+     * The number of open elements that are not canonical.
+     */
+    private int nonCanonical;
+
+    // Set up for reuse.
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder canonical = new StringBuilder();
+    private final StringBuilder strongs = new StringBuilder();
+    private final StringBuilder morphologies = new StringBuilder();
+    private final List<String> references = new ArrayList<>();
+    private final List<StringBuilder> notes = new ArrayList<>();
+    private final List<StringBuilder> headings = new ArrayList<>();
+    private final List<StringBuilder> openNotes = new ArrayList<>();
+    private final List<StringBuilder> openHeadings = new ArrayList<>();
+
+    /**
+     * The kinds of element.
+     */
+    private static final int NON_CANONICAL = 0x01;
+    private static final int NOTE = 0x02;
+    private static final int HEADING = 0x04;
+
+    private static final String ROOT_START = "<xxx>";
+    private static final String ROOT_END = "</xxx>";
+}
@@ -0,0 +1,147 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2007 - 2016
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Searcher;
+import org.crosswire.jsword.passage.NoSuchVerseException;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * A collector of the score of every verse that is hit, held in a board
+ * indexed by verse ordinal. Unlike a TopScoreDocCollector, it does not hold a
+ * queue as long as the number of results wanted, so the best of the scores
+ * can be added to a PassageTally with {@link PassageTally#addTopScores(int[], int)}.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class ScoreCollector extends Collector {
+    /**
+     * Create a collector for the searcher.
+     * 
+     * @param v11n
+     *            the versification to which referenced pertains
+     * @param searcher
+     *            the searcher that finds the hits
+     * @param ordinals
+     *            the verse ordinal for each document, as from
+     *            {@link VerseCollector#getOrdinals(IndexReader, Versification)}, or null
+     */
+    ScoreCollector(Versification v11n, Searcher searcher, int[] ordinals) {
+        this.v11n = v11n;
+        this.searcher = searcher;
+        this.ordinals = ordinals;
+        this.scores = new int[v11n.maximumOrdinal() + 1];
+    }
+
+    /**
+     * @return the score of each verse, indexed by ordinal, with 0 for a verse
+     *         that was not hit
+     */
+    public int[] getScores() {
+        return scores;
+    }
+
+    /**
+     * @return the number of documents that were hit
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.lucene.search.Collector#acceptsDocsOutOfOrder()
+     */
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        // Order is unimportant
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.lucene.search.Collector#collect(int)
+     */
+    @Override
+    public void collect(int docId) throws IOException {
+        totalHits++;
+        int ordinal = ordinals != null ? ordinals[docBase + docId] : -1;
+        if (ordinal < 0) {
+            Document doc = searcher.doc(docBase + docId);
+            try {
+                ordinal = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY)).getOrdinal();
+            } catch (NoSuchVerseException e) {
+                // Wrap the NoSuchVerseException in an IOException so it can be
+                // gotten.
+                IOException ioe = new IOException();
+                ioe.initCause(e);
+                throw ioe;
+            }
+        }
+
+        // PassageTally understands a score of 0 as the verse
+        // not participating
+        int score = (int) (scorer.score() * 100 + 1);
+        scores[ordinal] = Math.min(scores[ordinal] + score, PassageTally.MAX_TALLY);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.lucene.search.Collector#setNextReader(org.apache.lucene.index
+     * .IndexReader, int)
+     */
+    @Override
+    public void setNextReader(IndexReader reader, int docBase) throws IOException {
+        this.docBase = docBase;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.lucene.search.Collector#setScorer(org.apache.lucene.search
+     * .Scorer)
+     */
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+        this.scorer = scorer;
+    }
+
+    private int docBase;
+    private int totalHits;
+    private Scorer scorer;
+    private Versification v11n;
+    private Searcher searcher;
+    private int[] ordinals;
+    private int[] scores;
+}
@@ -20,19 +20,27 @@
 package org.crosswire.jsword.index.lucene;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Searcher;
+import org.crosswire.jsword.passage.BitwisePassage;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.NoSuchVerseException;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseBits;
 import org.crosswire.jsword.passage.VerseFactory;
 import org.crosswire.jsword.versification.Versification;
 
 /**
- * A simple collector of verses that stores the verses in a Key.
+ * A simple collector of verses that stores the verses in a Key or in a set
+ * of verse ordinals.
  * 
  * @see gnu.lgpl.License The GNU Lesser General Public License for details.
  * @author DM Smith
@@ -47,9 +55,96 @@ public class VerseCollector extends Collector {
      * @param results 
      */
     public VerseCollector(Versification v11n, Searcher searcher, Key results) {
+        this(v11n, searcher, null, results);
+    }
+
+    /**
+     * Create a collector for the searcher that populates results, using a
+     * table of the verse ordinal of each document rather than reading each
+     * hit's key from the index.
+     * 
+     * @param v11n
+     *            the versification to which referenced pertains
+     * @param searcher
+     *            the searcher that finds the hits
+     * @param ordinals
+     *            the verse ordinal for each document, as from
+     *            {@link #getOrdinals(IndexReader, Versification)}, or null
+     * @param results
+     *            where the verses are collected
+     */
+    public VerseCollector(Versification v11n, Searcher searcher, int[] ordinals, Key results) {
         this.v11n = v11n;
         this.searcher = searcher;
+        this.ordinals = ordinals;
         this.results = results;
+        if (results instanceof BitwisePassage && v11n.equals(((BitwisePassage) results).getVersification())) {
+            this.passage = (BitwisePassage) results;
+        }
+    }
+
+    /**
+     * Create a collector for the searcher that sets the bit of each verse
+     * found in a set of verse ordinals.
+     * 
+     * @param v11n
+     *            the versification to which referenced pertains
+     * @param searcher
+     *            the searcher that finds the hits
+     * @param ordinals
+     *            the verse ordinal for each document, as from
+     *            {@link #getOrdinals(IndexReader, Versification)}, or null
+     * @param words
+     *            the set of verses, as described by {@link VerseBits}
+     */
+    public VerseCollector(Versification v11n, Searcher searcher, int[] ordinals, long[] words) {
+        this.v11n = v11n;
+        this.searcher = searcher;
+        this.ordinals = ordinals;
+        this.words = words;
+    }
+
+    /**
+     * Build a table of the verse ordinal of each document in an index. The
+     * table is made from the terms of the key field, so no stored document is
+     * read. Documents that are deleted or whose key is not a verse have an
+     * ordinal of -1.
+     * 
+     * @param reader
+     *            the reader of the index
+     * @param v11n
+     *            the versification of the indexed book
+     * @return the verse ordinal of each document
+     * @throws IOException
+     */
+    public static int[] getOrdinals(IndexReader reader, Versification v11n) throws IOException {
+        int[] ordinals = new int[reader.maxDoc()];
+        Arrays.fill(ordinals, -1);
+        TermEnum terms = reader.terms(new Term(LuceneIndex.FIELD_KEY, ""));
+        TermDocs termDocs = reader.termDocs();
+        try {
+            do {
+                Term term = terms.term();
+                if (term == null || !LuceneIndex.FIELD_KEY.equals(term.field())) {
+                    break;
+                }
+                int ordinal;
+                try {
+                    ordinal = VerseFactory.fromString(v11n, term.text()).getOrdinal();
+                } catch (NoSuchVerseException e) {
+                    // Leave it to collect to report.
+                    continue;
+                }
+                termDocs.seek(terms);
+                while (termDocs.next()) {
+                    ordinals[termDocs.doc()] = ordinal;
+                }
+            } while (terms.next());
+        } finally {
+            termDocs.close();
+            terms.close();
+        }
+        return ordinals;
     }
 
     /*
@@ -70,10 +165,28 @@ public class VerseCollector extends Collector {
      */
     @Override
     public void collect(int docId) throws IOException {
+        if (ordinals != null) {
+            int ordinal = ordinals[docBase + docId];
+            if (ordinal >= 0) {
+                if (words != null) {
+                    VerseBits.set(words, ordinal);
+                } else if (passage != null) {
+                    passage.addVersifiedOrdinal(ordinal);
+                } else {
+                    results.addAll(v11n.decodeOrdinal(ordinal));
+                }
+                return;
+            }
+        }
+
         Document doc = searcher.doc(docBase + docId);
         try {
-            Key key = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY));
-            results.addAll(key);
+            Verse verse = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY));
+            if (words != null) {
+                VerseBits.set(words, verse.getOrdinal());
+            } else {
+                results.addAll(verse);
+            }
         } catch (NoSuchVerseException e) {
             // Wrap the NoSuchVerseException in an IOException so it can be
             // gotten.
@@ -112,5 +225,8 @@ public class VerseCollector extends Collector {
     private int docBase;
     private Versification v11n;
     private Searcher searcher;
+    private int[] ordinals;
     private Key results;
+    private BitwisePassage passage;
+    private long[] words;
 }
@@ -19,6 +19,7 @@
  */
 package org.crosswire.jsword.index.lucene.analysis;
 
+import java.io.IOException;
 import java.io.Reader;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -90,10 +91,19 @@ public class LuceneAnalyzer extends Analyzer {
     }
 
     @Override
-    public TokenStream tokenStream(String fieldName, Reader reader) {
+    public final TokenStream tokenStream(String fieldName, Reader reader) {
         return analyzer.tokenStream(fieldName, reader);
     }
 
+    /* (non-Javadoc)
+     * @see org.apache.lucene.analysis.Analyzer#reusableTokenStream(java.lang.String, java.io.Reader)
+     */
+    @Override
+    public final TokenStream reusableTokenStream(String fieldName, Reader reader) throws IOException {
+        // Each field's analyzer keeps its own SavedStreams for each thread.
+        return analyzer.reusableTokenStream(fieldName, reader);
+    }
+
     private PerFieldAnalyzerWrapper analyzer;
     private static final Logger log = LoggerFactory.getLogger(LuceneAnalyzer.class);
 
@@ -20,7 +20,10 @@ package org.crosswire.jsword.index.query;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.OrdinalIndex;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.VerseBits;
 
 /**
  * An "And Not" query specifies that a result needs to be in the left but not in
@@ -47,16 +50,16 @@ public class AndNotQuery extends AbstractBinaryQuery {
      * 
      * @see
      * org.crosswire.jsword.index.search.parse.Query#find(org.crosswire.jsword
-     * .index.search.Index)
+     * .index.search.Index, org.crosswire.jsword.index.search.SearchContext)
      */
-    public Key find(Index index) throws BookException {
-        Key left = getLeftQuery().find(index);
+    public Key find(Index index, SearchContext context) throws BookException {
+        Key left = getLeftQuery().find(index, context);
 
         if (left.isEmpty()) {
             return left;
         }
 
-        Key right = getRightQuery().find(index);
+        Key right = getRightQuery().find(index, context);
 
         if (right.isEmpty()) {
             return left;
@@ -67,4 +70,17 @@ public class AndNotQuery extends AbstractBinaryQuery {
         return left;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.query.Query#findOrdinals(org.crosswire.jsword.index.OrdinalIndex, org.crosswire.jsword.index.search.SearchContext)
+     */
+    public long[] findOrdinals(OrdinalIndex index, SearchContext context) throws BookException {
+        long[] left = getLeftQuery().findOrdinals(index, context);
+
+        if (VerseBits.isEmpty(left)) {
+            return left;
+        }
+
+        return VerseBits.andNot(left, getRightQuery().findOrdinals(index, context));
+    }
+
 }
@@ -20,6 +20,8 @@ package org.crosswire.jsword.index.query;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.OrdinalIndex;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.passage.Key;
 
 /**
@@ -44,9 +46,16 @@ public class BaseQuery extends AbstractQuery {
      * 
      * @see
      * org.crosswire.jsword.index.search.parse.Query#find(org.crosswire.jsword
-     * .index.search.Index)
+     * .index.search.Index, org.crosswire.jsword.index.search.SearchContext)
      */
-    public Key find(Index index) throws BookException {
-        return index.find(getQuery());
+    public Key find(Index index, SearchContext context) throws BookException {
+        return index.find(getQuery(), context);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.query.Query#findOrdinals(org.crosswire.jsword.index.OrdinalIndex, org.crosswire.jsword.index.search.SearchContext)
+     */
+    public long[] findOrdinals(OrdinalIndex index, SearchContext context) throws BookException {
+        return index.findOrdinals(getQuery());
     }
 }
@@ -20,8 +20,11 @@ package org.crosswire.jsword.index.query;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.OrdinalIndex;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.RestrictionType;
+import org.crosswire.jsword.passage.VerseBits;
 
 /**
  * A blur query specifies how much to blur the results of the right query before
@@ -49,16 +52,16 @@ public class BlurQuery extends AbstractBinaryQuery {
      * 
      * @see
      * org.crosswire.jsword.index.search.parse.Query#find(org.crosswire.jsword
-     * .index.search.Index)
+     * .index.search.Index, org.crosswire.jsword.index.search.SearchContext)
      */
-    public Key find(Index index) throws BookException {
-        Key left = getLeftQuery().find(index);
+    public Key find(Index index, SearchContext context) throws BookException {
+        Key left = getLeftQuery().find(index, context);
 
         if (left.isEmpty()) {
             return left;
         }
 
-        Key right = getRightQuery().find(index);
+        Key right = getRightQuery().find(index, context);
 
         if (right.isEmpty()) {
             return right;
@@ -71,6 +74,26 @@ public class BlurQuery extends AbstractBinaryQuery {
         return left;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.query.Query#findOrdinals(org.crosswire.jsword.index.OrdinalIndex, org.crosswire.jsword.index.search.SearchContext)
+     */
+    public long[] findOrdinals(OrdinalIndex index, SearchContext context) throws BookException {
+        long[] left = getLeftQuery().findOrdinals(index, context);
+
+        if (VerseBits.isEmpty(left)) {
+            return left;
+        }
+
+        long[] right = getRightQuery().findOrdinals(index, context);
+
+        if (VerseBits.isEmpty(right)) {
+            return right;
+        }
+
+        VerseBits.blur(right, index.getVersification(), factor, RestrictionType.getDefaultBlurRestriction(), true, true);
+        return VerseBits.and(left, right);
+    }
+
     /**
      * @return the blur factor
      */
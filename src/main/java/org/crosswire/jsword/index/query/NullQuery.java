@@ -21,7 +21,10 @@ package org.crosswire.jsword.index.query;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.OrdinalIndex;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.VerseBits;
 
 /**
  * A null query searches for nothing and returns an empty Key.
@@ -41,10 +44,17 @@ public class NullQuery implements Query {
      * 
      * @see
      * org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index
-     * .search.Index)
+     * .search.Index, org.crosswire.jsword.index.search.SearchContext)
      */
-    public Key find(Index index) throws BookException {
-        return index.find(null);
+    public Key find(Index index, SearchContext context) throws BookException {
+        return index.find(null, context);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.query.Query#findOrdinals(org.crosswire.jsword.index.OrdinalIndex, org.crosswire.jsword.index.search.SearchContext)
+     */
+    public long[] findOrdinals(OrdinalIndex index, SearchContext context) throws BookException {
+        return VerseBits.create(index.getVersification());
     }
 
 }
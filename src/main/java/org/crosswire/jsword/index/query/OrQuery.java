@@ -20,8 +20,11 @@ package org.crosswire.jsword.index.query;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.OrdinalIndex;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.VerseBits;
 
 /**
  * An OR query specifies that a result is the union of the left and the right
@@ -41,11 +44,11 @@ public class OrQuery extends AbstractBinaryQuery {
     }
 
     /* (non-Javadoc)
-     * @see org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index.Index)
+     * @see org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index.Index, org.crosswire.jsword.index.search.SearchContext)
      */
-    public Key find(Index index) throws BookException {
-        Key left = getLeftQuery().find(index);
-        Key right = getRightQuery().find(index);
+    public Key find(Index index, SearchContext context) throws BookException {
+        Key left = getLeftQuery().find(index, context);
+        Key right = getRightQuery().find(index, context);
 
         if (left.isEmpty()) {
             return right;
@@ -65,4 +68,12 @@ public class OrQuery extends AbstractBinaryQuery {
 
         return left;
     }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.query.Query#findOrdinals(org.crosswire.jsword.index.OrdinalIndex, org.crosswire.jsword.index.search.SearchContext)
+     */
+    public long[] findOrdinals(OrdinalIndex index, SearchContext context) throws BookException {
+        long[] left = getLeftQuery().findOrdinals(index, context);
+        return VerseBits.or(left, getRightQuery().findOrdinals(index, context));
+    }
 }
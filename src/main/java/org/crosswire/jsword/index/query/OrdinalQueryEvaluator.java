@@ -0,0 +1,76 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ */
+package org.crosswire.jsword.index.query;
+
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.OrdinalIndex;
+import org.crosswire.jsword.index.search.SearchContext;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.VerseBits;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * Works out an unranked query against an {@link OrdinalIndex} using sets of
+ * verse ordinals from start to finish, by way of
+ * {@link Query#findOrdinals(OrdinalIndex, SearchContext)}. The AND, OR, AND
+ * NOT and blur of the query are done a word of verses at a time, and a
+ * Passage is made only from the final result. The results are the same as
+ * those of {@link Query#find(org.crosswire.jsword.index.Index, SearchContext)}.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class OrdinalQueryEvaluator {
+    /**
+     * Prevent instantiation
+     */
+    private OrdinalQueryEvaluator() {
+    }
+
+    /**
+     * Determine whether a search can be worked out here. Ranked searches need
+     * the scores that only a PassageTally holds.
+     * 
+     * @param index
+     *            the index to search
+     * @param context
+     *            how to modify the search and its results
+     * @return true if {@link #find(Query, OrdinalIndex, SearchContext)} can be used
+     */
+    public static boolean canEvaluate(OrdinalIndex index, SearchContext context) {
+        return !context.isRanked() && index.getVersification() != null;
+    }
+
+    /**
+     * Find the verses that match the query in the index.
+     * 
+     * @param query
+     *            the query to work out
+     * @param index
+     *            the index to search
+     * @param context
+     *            how to modify the search and its results
+     * @return the verses that match
+     * @throws BookException
+     */
+    public static Passage find(Query query, OrdinalIndex index, SearchContext context) throws BookException {
+        Versification v11n = index.getVersification();
+        return VerseBits.toPassage(v11n, query.findOrdinals(index, context));
+    }
+}
@@ -21,7 +21,11 @@ package org.crosswire.jsword.index.query;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.OrdinalIndex;
+import org.crosswire.jsword.index.search.SearchContext;
+import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.VerseBits;
 
 /**
  * The search.Searcher uses a Query to calculate a search result.
@@ -38,5 +42,54 @@ public interface Query {
      * @return the set of keys that match
      * @throws BookException
      */
-    Key find(Index index) throws BookException;
+    @SuppressWarnings("deprecation")
+    default Key find(Index index) throws BookException {
+        return find(index, SearchContext.from(index.getSearchModifier()));
+    }
+
+    /**
+     * Find the keys that match the query in the index, as modified by the
+     * context of the search. By default the context is set as the search
+     * modifier of the index for the duration of {@link #find(Index)}, so that
+     * a query written before contexts existed still honors it. A query must
+     * override at least one of the two.
+     * 
+     * @param index
+     *            the index to search
+     * @param context
+     *            how to modify the search and its results
+     * @return the set of keys that match
+     * @throws BookException
+     */
+    @SuppressWarnings("deprecation")
+    default Key find(Index index, SearchContext context) throws BookException {
+        synchronized (index) {
+            SearchModifier previous = index.getSearchModifier();
+            index.setSearchModifier(context);
+            try {
+                return find(index);
+            } finally {
+                index.setSearchModifier(previous);
+            }
+        }
+    }
+
+    /**
+     * Find the verses that match the query in an index of a Bible or other
+     * verse keyed Book, as a set of verse ordinals. Only unranked searches
+     * can be worked out this way. By default the keys found by
+     * {@link #find(Index, SearchContext)} are turned into ordinals. A query
+     * that can do better overrides this.
+     * 
+     * @param index
+     *            the index to search
+     * @param context
+     *            how to modify the search and its results
+     * @return the ordinals of the verses that match
+     * @throws BookException
+     * @see VerseBits
+     */
+    default long[] findOrdinals(OrdinalIndex index, SearchContext context) throws BookException {
+        return VerseBits.fromKey(index.getVersification(), find(index, context));
+    }
 }
@@ -21,6 +21,7 @@ package org.crosswire.jsword.index.query;
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.search.SearchContext;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.NoSuchKeyException;
 
@@ -47,9 +48,9 @@ public class RangeQuery extends AbstractQuery {
      * 
      * @see
      * org.crosswire.jsword.index.search.parse.Query#find(org.crosswire.jsword
-     * .index.search.Index)
+     * .index.search.Index, org.crosswire.jsword.index.search.SearchContext)
      */
-    public Key find(Index index) throws BookException {
+    public Key find(Index index, SearchContext context) throws BookException {
         String range = getQuery();
         try {
             return index.getKey(range);
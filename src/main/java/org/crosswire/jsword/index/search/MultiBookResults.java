@@ -0,0 +1,232 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ */
+package org.crosswire.jsword.index.search;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * The outcome of a search of several Books. The hits from all the Books are
+ * merged into a single list, best first for a ranked search, and the outcome
+ * of each Book is kept along with how long it took. When some Books were too
+ * slow, or could not be searched, the hits are those of the others.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class MultiBookResults {
+    /**
+     * @param hits
+     *            the merged hits, in order
+     * @param bookResults
+     *            the outcome of each Book, in the order they were given
+     * @param total
+     *            the number of hits before they were limited
+     */
+    MultiBookResults(List<Hit> hits, List<BookResult> bookResults, int total) {
+        this.hits = Collections.unmodifiableList(hits);
+        this.bookResults = Collections.unmodifiableList(bookResults);
+        this.total = total;
+    }
+
+    /**
+     * @return the merged hits, best first when ranked
+     */
+    public List<Hit> getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the outcome of each Book, in the order they were given
+     */
+    public List<BookResult> getBookResults() {
+        return bookResults;
+    }
+
+    /**
+     * The number of hits found, which may be more than were kept.
+     * 
+     * @return the total number of hits
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return true if some Books did not finish searching
+     */
+    public boolean isPartial() {
+        for (BookResult result : bookResults) {
+            Status status = result.getStatus();
+            if (status == Status.TIMED_OUT || status == Status.CANCELLED || status == Status.FAILED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * What became of the search of one Book.
+     */
+    public enum Status {
+        /** The Book was searched. */
+        DONE,
+        /** The Book has no search index. */
+        NOT_INDEXED,
+        /** The search did not finish in time. */
+        TIMED_OUT,
+        /** The wait for the search was interrupted. */
+        CANCELLED,
+        /** The search failed. */
+        FAILED
+    }
+
+    /**
+     * One verse or entry found in one Book.
+     */
+    public static final class Hit {
+        /**
+         * @param book
+         *            the Book in which it was found
+         * @param key
+         *            what was found
+         * @param score
+         *            how good a match it is, from 0 to 1
+         */
+        Hit(Book book, Key key, float score) {
+            this.book = book;
+            this.key = key;
+            this.score = score;
+        }
+
+        /**
+         * @return the Book in which it was found
+         */
+        public Book getBook() {
+            return book;
+        }
+
+        /**
+         * @return what was found
+         */
+        public Key getKey() {
+            return key;
+        }
+
+        /**
+         * The score relative to the best hit in the same Book, which has a
+         * score of 1. Every hit of an unranked search has a score of 1.
+         * 
+         * @return how good a match it is, from 0 to 1
+         */
+        public float getScore() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return book.getInitials() + ' ' + key.getName() + ' ' + score;
+        }
+
+        private final Book book;
+        private final Key key;
+        private final float score;
+    }
+
+    /**
+     * The outcome of the search of one Book.
+     */
+    public static final class BookResult {
+        /**
+         * @param book
+         *            the Book that was searched
+         * @param status
+         *            what became of the search
+         * @param results
+         *            what was found, or null if the search did not finish
+         * @param elapsed
+         *            the time taken in nanoseconds
+         * @param error
+         *            why the search failed, or null
+         */
+        BookResult(Book book, Status status, Key results, long elapsed, Throwable error) {
+            this.book = book;
+            this.status = status;
+            this.results = results;
+            this.elapsed = elapsed;
+            this.error = error;
+        }
+
+        /**
+         * @return the Book that was searched
+         */
+        public Book getBook() {
+            return book;
+        }
+
+        /**
+         * @return what became of the search
+         */
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return what was found, or null if the search did not finish
+         */
+        public Key getResults() {
+            return results;
+        }
+
+        /**
+         * The time spent searching the Book. For a search that did not
+         * finish in time, this is the time spent waiting for it.
+         * 
+         * @return the time taken in milliseconds
+         */
+        public long getElapsedMillis() {
+            return elapsed / 1000000L;
+        }
+
+        /**
+         * @return why the search failed, or null
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return book.getInitials() + ": " + status + " (" + getElapsedMillis() + " ms)";
+        }
+
+        private final Book book;
+        private final Status status;
+        private final Key results;
+        private final long elapsed;
+        private final Throwable error;
+    }
+
+    private final List<Hit> hits;
+    private final List<BookResult> bookResults;
+    private final int total;
+}
@@ -0,0 +1,301 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ */
+package org.crosswire.jsword.index.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.IndexManager;
+import org.crosswire.jsword.index.IndexManagerFactory;
+import org.crosswire.jsword.index.search.MultiBookResults.BookResult;
+import org.crosswire.jsword.index.search.MultiBookResults.Hit;
+import org.crosswire.jsword.index.search.MultiBookResults.Status;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Searches several Books at once, each on a thread of its own, and merges what
+ * they find. At most a given number of Books are searched at the same time.
+ * 
+ * <p>The scores of a ranked search are not comparable from one index to the
+ * next, so each Book's scores are divided by that of its best hit before they
+ * are merged. The search modifier's maximum number of results applies to the
+ * merged hits.</p>
+ * 
+ * <p>A search is given a time limit. Books that have not finished by then are
+ * reported as timed out and the hits are those of the others. If the thread
+ * waiting for the Books is interrupted, those not finished are reported as
+ * cancelled. A search that
+ * has started is left to finish in the background rather than being
+ * interrupted, as an interrupt would close the files of the Book's index.
+ * Its results still reach the {@link SearchCache}.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class MultiBookSearcher {
+    /**
+     * Search using as many threads as there are processors.
+     */
+    public MultiBookSearcher() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Search using at most the given number of threads.
+     * 
+     * @param maxThreads
+     *            the most Books to search at the same time
+     */
+    public MultiBookSearcher(int maxThreads) {
+        int threads = Math.max(1, maxThreads);
+        executor = new ThreadPoolExecutor(threads, threads, IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "MultiBookSearcher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // Let the threads go when there are no searches.
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Search several Books for the same thing, waiting no longer than the
+     * time limit.
+     * 
+     * @param books
+     *            the Books to search
+     * @param request
+     *            what to search for and how
+     * @param timeout
+     *            the longest to wait for the Books to be searched
+     * @param unit
+     *            the unit of the timeout
+     * @return the merged hits and the outcome of each Book
+     */
+    public MultiBookResults search(Collection<Book> books, final SearchRequest request, long timeout, TimeUnit unit) {
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(timeout);
+        IndexManager indexManager = IndexManagerFactory.getIndexManager();
+
+        // Books without an index are not searched. Searching them would build one.
+        List<Future<BookResult>> futures = new ArrayList<>(books.size());
+        for (final Book book : books) {
+            if (!indexManager.isIndexed(book)) {
+                futures.add(null);
+                continue;
+            }
+            futures.add(executor.submit(new Callable<BookResult>() {
+                public BookResult call() {
+                    return search(book, request);
+                }
+            }));
+        }
+
+        return merge(collect(books, futures, request, start, deadline), SearchContext.from(request.getSearchModifier()));
+    }
+
+    /**
+     * Wait for the search of each Book until the deadline. A Book whose
+     * search has not finished by then is timed out. Should the wait be
+     * interrupted, the Books not yet finished are cancelled and the interrupt
+     * is left for the caller to see.
+     * 
+     * @param books
+     *            the Books that were searched
+     * @param futures
+     *            the search of each Book, null for one that is not indexed
+     * @param request
+     *            what was searched for
+     * @param start
+     *            when the search started, from {@link System#nanoTime()}
+     * @param deadline
+     *            when to stop waiting, from {@link System#nanoTime()}
+     * @return the outcome of each Book
+     */
+    static List<BookResult> collect(Collection<Book> books, List<Future<BookResult>> futures, SearchRequest request, long start, long deadline) {
+        List<BookResult> bookResults = new ArrayList<>(books.size());
+        boolean interrupted = Thread.interrupted();
+        Iterator<Book> bookIter = books.iterator();
+        for (Future<BookResult> future : futures) {
+            Book book = bookIter.next();
+            if (future == null) {
+                bookResults.add(new BookResult(book, Status.NOT_INDEXED, null, 0L, null));
+                continue;
+            }
+
+            BookResult result = null;
+            try {
+                // Once interrupted, only those that are finished are taken.
+                if (!interrupted || future.isDone()) {
+                    result = future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+            } catch (TimeoutException e) {
+                // Fall through and give up on it.
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                result = new BookResult(book, Status.FAILED, null, System.nanoTime() - start, e.getCause());
+            }
+            if (result == null) {
+                // Those still waiting to start never will.
+                future.cancel(false);
+                if (interrupted) {
+                    result = new BookResult(book, Status.CANCELLED, null, System.nanoTime() - start, null);
+                    log.info("{}: search for \"{}\" cancelled", book.getInitials(), request.getRequest());
+                } else {
+                    result = new BookResult(book, Status.TIMED_OUT, null, System.nanoTime() - start, null);
+                    log.info("{}: search for \"{}\" timed out", book.getInitials(), request.getRequest());
+                }
+            }
+            bookResults.add(result);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return bookResults;
+    }
+
+    /**
+     * Stop the threads once the searches that have started are done. No more
+     * searches can be made.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Search one Book on the current thread.
+     * 
+     * @param book
+     *            the Book to search
+     * @param request
+     *            what to search for and how
+     * @return the outcome of the search
+     */
+    private static BookResult search(Book book, SearchRequest request) {
+        long start = System.nanoTime();
+        try {
+            Key results = book.find(request);
+            return new BookResult(book, Status.DONE, results, System.nanoTime() - start, null);
+        } catch (BookException e) {
+            log.warn("{}: search for \"{}\" failed", book.getInitials(), request.getRequest(), e);
+            return new BookResult(book, Status.FAILED, null, System.nanoTime() - start, e);
+        }
+    }
+
+    /**
+     * Merge the hits of the Books that were searched.
+     * 
+     * @param bookResults
+     *            the outcome of each Book
+     * @param context
+     *            how the search was modified
+     * @return the merged results
+     */
+    static MultiBookResults merge(List<BookResult> bookResults, SearchContext context) {
+        List<Hit> hits = new ArrayList<>();
+        int max = context.getMaxResults();
+        int total = 0;
+        for (BookResult result : bookResults) {
+            Key results = result.getResults();
+            if (results == null) {
+                continue;
+            }
+
+            if (context.isRanked() && results instanceof PassageTally) {
+                PassageTally tally = (PassageTally) results;
+                total += tally.getTotal();
+                tally.setOrdering(PassageTally.Order.TALLY);
+                float best = 0;
+                // No more than the best max of any one Book can be kept.
+                Iterator<Key> it = tally.rankedIterator(context.getMaxResults());
+                while (it.hasNext()) {
+                    Verse verse = (Verse) it.next();
+                    int score = tally.getTallyOf(verse);
+                    if (best == 0) {
+                        best = score;
+                    }
+                    hits.add(new Hit(result.getBook(), verse, score / best));
+                }
+            } else {
+                total += results.getCardinality();
+                // Unranked hits stay in the order of the Books, so none past the limit are kept.
+                boolean limited = !context.isRanked();
+                for (Key key : results) {
+                    if (limited && hits.size() >= max) {
+                        break;
+                    }
+                    hits.add(new Hit(result.getBook(), key, 1.0f));
+                }
+            }
+        }
+
+        if (context.isRanked()) {
+            // The sort is stable, so equal scores stay in the order of the Books.
+            Collections.sort(hits, BY_SCORE);
+        }
+        if (hits.size() > max) {
+            hits = new ArrayList<>(hits.subList(0, max));
+        }
+        return new MultiBookResults(hits, bookResults, total);
+    }
+
+    /**
+     * The most Books searched at the same time.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * How long an idle thread waits for another search.
+     */
+    private static final long IDLE_SECONDS = 60L;
+
+    /**
+     * Best first.
+     */
+    private static final Comparator<Hit> BY_SCORE = new Comparator<Hit>() {
+        public int compare(Hit o1, Hit o2) {
+            return Float.compare(o2.getScore(), o1.getScore());
+        }
+    };
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(MultiBookSearcher.class);
+}
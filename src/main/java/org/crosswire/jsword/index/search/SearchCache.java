@@ -0,0 +1,434 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ */
+package org.crosswire.jsword.index.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Versification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A cache of the results of recent searches. Results are held in the compact
+ * binary form of a Passage, and each time one is asked for a new Passage is
+ * made from it, so the caller is free to change what it is given. The cache
+ * is bounded by the number of bytes held and forgets the least recently used
+ * results first. Only results that are Passages are cached.
+ * 
+ * <p>The results for a Book have to be dropped by calling
+ * {@link #invalidate(Book)} whenever its search index is built, installed or
+ * deleted. A search that is running at the time is not cached, as its
+ * generation is then out of date.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class SearchCache {
+    /**
+     * Create an empty cache.
+     * 
+     * @param maxBytes
+     *            the most bytes of results to hold, 0 to hold none
+     */
+    public SearchCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the cache shared by all Books
+     */
+    public static SearchCache instance() {
+        return instance;
+    }
+
+    /**
+     * Get a copy of the results of an earlier search.
+     * 
+     * @param book
+     *            the book that was searched
+     * @param request
+     *            the search as entered
+     * @param context
+     *            how the search was modified
+     * @return the results or null if they are not in the cache
+     */
+    public Key get(Book book, String request, SearchContext context) {
+        if (getMaxBytes() <= 0 || request == null) {
+            return null;
+        }
+
+        CacheEntry entry;
+        synchronized (this) {
+            entry = entries.get(new CacheKey(book, request, context));
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+
+        try {
+            return entry.toKey();
+        } catch (NoSuchKeyException e) {
+            log.warn("Unable to restore cached search results for {}", request, e);
+            return null;
+        }
+    }
+
+    /**
+     * Get the generation of the results for a Book. It changes each time the
+     * Book's results are invalidated. Get it before searching and give it to
+     * {@link #put(Book, String, SearchContext, Key, long)} so that results
+     * from an index that changed during the search are not kept.
+     * 
+     * @param book
+     *            the book to be searched
+     * @return the generation of its results
+     */
+    public synchronized long getGeneration(Book book) {
+        Long generation = generations.get(book);
+        return generation == null ? 0L : generation.longValue();
+    }
+
+    /**
+     * Remember the results of a search, unless the results for the Book were
+     * invalidated since the search began.
+     * 
+     * @param book
+     *            the book that was searched
+     * @param request
+     *            the search as entered
+     * @param context
+     *            how the search was modified
+     * @param results
+     *            the results of the search
+     * @param generation
+     *            the generation of the Book's results before the search
+     */
+    public void put(Book book, String request, SearchContext context, Key results, long generation) {
+        long limit = getMaxBytes();
+        if (limit <= 0 || request == null || !(results instanceof Passage)) {
+            return;
+        }
+
+        CacheKey key = new CacheKey(book, request, context);
+        CacheEntry entry = new CacheEntry((Passage) results);
+        long size = entry.size() + key.size();
+        if (size > limit) {
+            return;
+        }
+
+        synchronized (this) {
+            if (generation != getGeneration(book)) {
+                return;
+            }
+            CacheEntry old = entries.put(key, entry);
+            bytes += size;
+            if (old != null) {
+                bytes -= old.size() + key.size();
+            }
+            trim(limit);
+        }
+    }
+
+    /**
+     * Forget all the results for a Book. This must be called whenever the
+     * search index of the Book changes.
+     * 
+     * @param book
+     *            the book whose results are no longer valid
+     */
+    public synchronized void invalidate(Book book) {
+        generations.put(book, Long.valueOf(getGeneration(book) + 1));
+        Iterator<Map.Entry<CacheKey, CacheEntry>> iter = entries.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<CacheKey, CacheEntry> mapEntry = iter.next();
+            if (mapEntry.getKey().book.equals(book)) {
+                bytes -= mapEntry.getValue().size() + mapEntry.getKey().size();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget all results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return the most bytes of results that will be held
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Set the most bytes of results that will be held. Setting it to 0 turns
+     * the cache off.
+     * 
+     * @param maxBytes
+     *            the most bytes of results to hold
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim(maxBytes);
+    }
+
+    /**
+     * @return the number of bytes of results now held
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of results now held
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of searches that were found in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of searches that were not found in the cache
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of searches that were found in the cache, 0 if
+     *         there have been none
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Forget the least recently used results until no more than limit bytes
+     * are held.
+     * 
+     * @param limit
+     *            the most bytes to hold
+     */
+    private void trim(long limit) {
+        Iterator<Map.Entry<CacheKey, CacheEntry>> iter = entries.entrySet().iterator();
+        while (bytes > limit && iter.hasNext()) {
+            Map.Entry<CacheKey, CacheEntry> mapEntry = iter.next();
+            bytes -= mapEntry.getValue().size() + mapEntry.getKey().size();
+            iter.remove();
+        }
+    }
+
+    /**
+     * Identifies a search: the book, the search with its white space
+     * normalized, and the modifiers that change its results.
+     */
+    private static final class CacheKey {
+        CacheKey(Book book, String request, SearchContext context) {
+            this.book = book;
+            this.request = WHITE_SPACE.matcher(request.trim()).replaceAll(" ");
+            this.ranked = context.isRanked();
+            // The limit only applies to ranked searches
+            this.maxResults = ranked ? context.getMaxResults() : Integer.MAX_VALUE;
+        }
+
+        /**
+         * @return an estimate of the bytes used
+         */
+        long size() {
+            return OVERHEAD + 2L * request.length();
+        }
+
+        @Override
+        public int hashCode() {
+            int result = book.hashCode();
+            result = 31 * result + request.hashCode();
+            result = 31 * result + (ranked ? 1 : 0);
+            return 31 * result + maxResults;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) obj;
+            return ranked == that.ranked && maxResults == that.maxResults && request.equals(that.request) && book.equals(that.book);
+        }
+
+        private final Book book;
+        private final String request;
+        private final boolean ranked;
+        private final int maxResults;
+    }
+
+    /**
+     * The results of a search in binary form. For a ranked search the tally of
+     * each verse is kept in order of the verses' ordinals.
+     */
+    private static final class CacheEntry {
+        CacheEntry(Passage results) {
+            v11n = results.getVersification();
+            binary = PassageKeyFactory.toBinaryRepresentation(results);
+            if (results instanceof PassageTally) {
+                PassageTally tally = (PassageTally) results;
+                total = tally.getTotal();
+                int[] ordinals = getOrdinals(tally);
+                tallies = new int[ordinals.length];
+                for (int i = 0; i < ordinals.length; i++) {
+                    tallies[i] = tally.getTallyOf(v11n.decodeOrdinal(ordinals[i]));
+                }
+            } else {
+                total = 0;
+                tallies = null;
+            }
+        }
+
+        /**
+         * Make a new copy of the results.
+         * 
+         * @return the results
+         * @throws NoSuchKeyException
+         */
+        Key toKey() throws NoSuchKeyException {
+            Passage ref = PassageKeyFactory.fromBinaryRepresentation(v11n, binary);
+            if (tallies == null) {
+                return ref;
+            }
+
+            PassageTally tally = new PassageTally(v11n);
+            tally.raiseEventSuppresion();
+            tally.raiseNormalizeProtection();
+            int[] ordinals = getOrdinals(ref);
+            for (int i = 0; i < ordinals.length; i++) {
+                tally.add(v11n.decodeOrdinal(ordinals[i]), tallies[i]);
+            }
+            tally.setTotal(total);
+            tally.lowerNormalizeProtection();
+            tally.lowerEventSuppressionAndTest();
+            return tally;
+        }
+
+        /**
+         * @return an estimate of the bytes used
+         */
+        long size() {
+            return OVERHEAD + binary.length + (tallies == null ? 0 : 4L * tallies.length);
+        }
+
+        /**
+         * Get the ordinals of the verses of a passage in ascending order.
+         * 
+         * @param ref
+         *            the passage
+         * @return the ordinals
+         */
+        private static int[] getOrdinals(Passage ref) {
+            int[] ordinals = new int[ref.countVerses()];
+            int count = 0;
+            for (Key key : ref) {
+                ordinals[count++] = ((Verse) key).getOrdinal();
+            }
+            Arrays.sort(ordinals, 0, count);
+            return count == ordinals.length ? ordinals : Arrays.copyOf(ordinals, count);
+        }
+
+        private final Versification v11n;
+        private final byte[] binary;
+        private final int total;
+        private final int[] tallies;
+    }
+
+    /**
+     * The results, least recently used first.
+     */
+    private final LinkedHashMap<CacheKey, CacheEntry> entries;
+
+    /**
+     * The generation of the results of each Book that has been invalidated.
+     */
+    private final Map<Book, Long> generations = new HashMap<Book, Long>();
+
+    /**
+     * The most bytes of results to hold.
+     */
+    private long maxBytes;
+
+    /**
+     * The bytes of results held.
+     */
+    private long bytes;
+
+    /**
+     * The number of searches found in the cache.
+     */
+    private long hits;
+
+    /**
+     * The number of searches not found in the cache.
+     */
+    private long misses;
+
+    /**
+     * An estimate of the bytes used by an object beyond its arrays.
+     */
+    private static final long OVERHEAD = 64;
+
+    /**
+     * Runs of white space in a search.
+     */
+    private static final Pattern WHITE_SPACE = Pattern.compile("\\s+");
+
+    /**
+     * The cache shared by all Books, holding up to 4MB of results.
+     */
+    private static SearchCache instance = new SearchCache(4L * 1024 * 1024);
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(SearchCache.class);
+}
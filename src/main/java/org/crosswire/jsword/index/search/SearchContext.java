@@ -0,0 +1,101 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ */
+package org.crosswire.jsword.index.search;
+
+/**
+ * A SearchContext holds everything about a single search request that
+ * affects how an index performs it. It cannot be changed once made, so it
+ * can be handed down through a query to the index without any state being
+ * left on the index itself. This allows one index to serve many searches at
+ * the same time.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class SearchContext implements SearchModifier {
+    /**
+     * Create a context for a search.
+     * 
+     * @param ranked
+     *            true if the results should be ranked
+     * @param maxResults
+     *            the maximum number of results, with Integer.MAX_VALUE
+     *            meaning all
+     */
+    public SearchContext(boolean ranked, int maxResults) {
+        this.ranked = ranked;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Get a context that does what a SearchModifier asks. As the modifier may
+     * be changed afterward, its settings are copied.
+     * 
+     * @param modifier
+     *            how to modify the search, may be null
+     * @return the context for the search
+     */
+    public static SearchContext from(SearchModifier modifier) {
+        if (modifier == null) {
+            return DEFAULT;
+        }
+        if (modifier instanceof SearchContext) {
+            return (SearchContext) modifier;
+        }
+        return new SearchContext(modifier.isRanked(), modifier.getMaxResults());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.crosswire.jsword.index.search.SearchModifier#isRanked()
+     */
+    public boolean isRanked() {
+        return ranked;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.crosswire.jsword.index.search.SearchModifier#getMaxResults()
+     */
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    /**
+     * A context that returns all hits and does not rank the results.
+     */
+    public static final SearchContext DEFAULT = new SearchContext(false, Integer.MAX_VALUE);
+
+    /**
+     * Whether the results should be ranked.
+     */
+    private final boolean ranked;
+
+    /**
+     * The maximum number of results.
+     */
+    private final int maxResults;
+
+    /**
+     * Serialization ID
+     */
+    private static final long serialVersionUID = 0L;
+}
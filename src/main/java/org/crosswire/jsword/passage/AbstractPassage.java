@@ -499,6 +499,29 @@ public abstract class AbstractPassage implements Passage {
         return null;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#addOrdinals(int[])
+     */
+    public void addOrdinals(int[] ordinals) {
+        if (ordinals.length == 0) {
+            return;
+        }
+
+        optimizeWrites();
+        raiseEventSuppresion();
+        raiseNormalizeProtection();
+
+        Versification v11n = getVersification();
+        for (int ordinal : ordinals) {
+            add(v11n.decodeOrdinal(ordinal));
+        }
+
+        lowerNormalizeProtection();
+        if (lowerEventSuppressionAndTest()) {
+            fireIntervalAdded(this, null, null);
+        }
+    }
+
     /* Now supports adding keys from different versifications.
      * (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#addAll(org.crosswire.jsword.passage.Key)
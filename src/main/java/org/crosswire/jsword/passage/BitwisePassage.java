@@ -25,6 +25,8 @@ import java.io.ObjectOutputStream;
 import java.util.BitSet;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
 
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
@@ -136,11 +138,34 @@ public class BitwisePassage extends AbstractPassage {
         return new VerseIterator();
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalIterator()
+     */
+    public PrimitiveIterator.OfInt ordinalIterator() {
+        return store.stream().iterator();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#forEachOrdinal(java.util.function.IntConsumer)
+     */
+    public void forEachOrdinal(IntConsumer action) {
+        for (int i = store.nextSetBit(0); i >= 0; i = store.nextSetBit(i + 1)) {
+            action.accept(i);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#toOrdinalArray()
+     */
+    public int[] toOrdinalArray() {
+        return store.stream().toArray();
+    }
+
     @Override
     public boolean contains(Key obj) {
-        for (Key aKey : obj) {
-            Verse verse = (Verse) aKey;
-            if (!store.get(verse.getOrdinal())) {
+        PrimitiveIterator.OfInt iter = KeyUtil.getOrdinals(obj);
+        while (iter.hasNext()) {
+            if (!store.get(iter.nextInt())) {
                 return false;
             }
         }
@@ -190,6 +215,30 @@ public class BitwisePassage extends AbstractPassage {
         }
     }
 
+    @Override
+    public void addOrdinals(int[] ordinals) {
+        if (ordinals.length == 0) {
+            return;
+        }
+
+        optimizeWrites();
+
+        int first = ordinals[0];
+        int last = ordinals[0];
+        for (int ordinal : ordinals) {
+            store.set(ordinal);
+            first = Math.min(first, ordinal);
+            last = Math.max(last, ordinal);
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            Versification v11n = getVersification();
+            fireIntervalAdded(this, v11n.decodeOrdinal(first), v11n.decodeOrdinal(last));
+        }
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Passage#remove(org.crosswire.jsword.passage.Key)
      */
@@ -226,6 +275,8 @@ public class BitwisePassage extends AbstractPassage {
         if (key instanceof BitwisePassage) {
             BitwisePassage thatRef = (BitwisePassage) key;
             store.or(thatRef.store);
+        } else if (key instanceof VerseKey) {
+            ((VerseKey<?>) key).forEachOrdinal(store::set);
         } else {
             super.addAll(key);
         }
@@ -254,6 +305,8 @@ public class BitwisePassage extends AbstractPassage {
             BitwisePassage thatRef = (BitwisePassage) key;
 
             store.andNot(thatRef.store);
+        } else if (key instanceof VerseKey) {
+            ((VerseKey<?>) key).forEachOrdinal(store::clear);
         } else {
             super.removeAll(key);
         }
@@ -285,8 +338,9 @@ public class BitwisePassage extends AbstractPassage {
             Versification v11n = getVersification();
             thatStore = new BitSet(v11n.maximumOrdinal() + 1);
 
-            for (Key aKey : key) {
-                int ord = ((Verse) aKey).getOrdinal();
+            PrimitiveIterator.OfInt iter = KeyUtil.getOrdinals(key);
+            while (iter.hasNext()) {
+                int ord = iter.nextInt();
                 if (store.get(ord)) {
                     thatStore.set(ord);
                 }
@@ -321,34 +375,19 @@ public class BitwisePassage extends AbstractPassage {
     public synchronized void blur(int verses, RestrictionType restrict, boolean blurDown, boolean blurUp) {
         assert verses >= 0;
         optimizeWrites();
+        raiseEventSuppresion();
         raiseNormalizeProtection();
 
-        if (!restrict.equals(RestrictionType.NONE)) {
-            super.blur(verses, restrict, blurDown, blurUp);
-        } else {
-            optimizeWrites();
-            raiseEventSuppresion();
-            raiseNormalizeProtection();
-
-            int maximumOrdinal = getVersification().maximumOrdinal();
-            BitSet newStore = new BitSet(maximumOrdinal + 1);
+        // Blur a word at a time, using the chapter boundaries if restricted
+        long[] words = VerseBits.create(getVersification());
+        long[] bits = store.toLongArray();
+        System.arraycopy(bits, 0, words, 0, Math.min(bits.length, words.length));
+        VerseBits.blur(words, getVersification(), verses, restrict, blurDown, blurUp);
+        store = BitSet.valueOf(words);
 
-            for (int i = store.nextSetBit(0); i >= 0; i = store.nextSetBit(i + 1)) {
-                // Ordinal values go from 0 to maximumOrdinal.
-                int start = Math.max(0, i - (blurDown ? verses : 0));
-                int end = Math.min(maximumOrdinal, i + (blurUp ? verses : 0));
-
-                for (int j = start; j <= end; j++) {
-                    newStore.set(j);
-                }
-            }
-
-            store = newStore;
-
-            lowerNormalizeProtection();
-            if (lowerEventSuppressionAndTest()) {
-                fireIntervalAdded(this, null, null);
-            }
+        lowerNormalizeProtection();
+        if (lowerEventSuppressionAndTest()) {
+            fireIntervalAdded(this, null, null);
         }
     }
 
@@ -0,0 +1,1046 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * A Passage that splits the ordinals of the Versification into chunks of 4096
+ * and stores each chunk in the smaller of two forms. A chunk with few verses
+ * holds a sorted array of the low bits of their ordinals. One with many verses
+ * holds a bitmap. An empty chunk holds nothing at all. The attributes of the
+ * style are:
+ * <ul>
+ * <li>Fairly fast manipulation
+ * <li>Fast union, intersection and difference with another CompressedPassage
+ * <li>Small size for small Passages, and no bigger than a BitwisePassage for
+ * large ones
+ * </ul>
+ * 
+ * <p>
+ * A chunk switches to a bitmap when its array would be bigger than the bitmap,
+ * and back again when it is no longer.
+ * </p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class CompressedPassage extends AbstractPassage {
+    /**
+     * Create an empty CompressedPassage. There are no ctors from either Verse
+     * or VerseRange so you need to do
+     * <code>new CompressedPassage().add(...);</code>
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     */
+    public CompressedPassage(Versification v11n) {
+        super(v11n);
+        createStore(v11n);
+    }
+
+    /**
+     * Create a Verse from a human readable string. The opposite of toString(),
+     * Given any CompressedPassage v1, and the following
+     * <code>CompressedPassage v2 = new CompressedPassage(v1.toString());</code>
+     * Then <code>v1.equals(v2);</code> Theoretically, since there are many ways
+     * of representing a CompressedPassage as text string comparison along the
+     * lines of: <code>v1.toString().equals(v2.toString())</code> could be
+     * false. Practically since toString() is standardized this will be true
+     * however. We don't need to worry about thread safety in a ctor since we
+     * don't exist yet.
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     * @param refs
+     *            A String containing the text of the CompressedPassage
+     * @param basis
+     *           The basis by which to interpret refs
+     * @throws NoSuchVerseException
+     *             If the string is not parsable
+     */
+    protected CompressedPassage(Versification v11n, String refs, Key basis) throws NoSuchVerseException {
+        super(v11n, refs);
+        createStore(v11n);
+        addVerses(refs, basis);
+    }
+
+    /**
+     * Create a Verse from a human readable string. The opposite of toString(),
+     * Given any CompressedPassage v1, and the following
+     * <code>CompressedPassage v2 = new CompressedPassage(v1.toString());</code>
+     * Then <code>v1.equals(v2);</code>
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     * @param refs
+     *            A String containing the text of the CompressedPassage
+     * @throws NoSuchVerseException
+     *             If the string is not parsable
+     */
+    protected CompressedPassage(Versification v11n, String refs) throws NoSuchVerseException {
+        this(v11n, refs, null);
+    }
+
+    @Override
+    public CompressedPassage clone() {
+        // This gets us a shallow copy
+        CompressedPassage copy = (CompressedPassage) super.clone();
+
+        copy.containers = new Object[containers.length];
+        for (int chunk = 0; chunk < containers.length; chunk++) {
+            copy.containers[chunk] = copyContainer(containers[chunk]);
+        }
+        copy.counts = counts.clone();
+
+        return copy;
+    }
+
+    @Override
+    public int countVerses() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Iterable#iterator()
+     */
+    public Iterator<Key> iterator() {
+        return new VerseIterator();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalIterator()
+     */
+    public PrimitiveIterator.OfInt ordinalIterator() {
+        return new OrdinalIterator();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#forEachOrdinal(java.util.function.IntConsumer)
+     */
+    public void forEachOrdinal(IntConsumer action) {
+        for (int chunk = 0; chunk < containers.length; chunk++) {
+            Object container = containers[chunk];
+            int base = chunk << CHUNK_BITS;
+            if (container instanceof short[]) {
+                short[] array = (short[]) container;
+                int count = counts[chunk];
+                for (int i = 0; i < count; i++) {
+                    action.accept(base | array[i]);
+                }
+            } else if (container instanceof long[]) {
+                long[] bitmap = (long[]) container;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    long bits = bitmap[i];
+                    while (bits != 0) {
+                        action.accept(base | (i << 6) | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#toOrdinalArray()
+     */
+    public int[] toOrdinalArray() {
+        int[] ordinals = new int[size];
+        PrimitiveIterator.OfInt iter = ordinalIterator();
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = iter.nextInt();
+        }
+        return ordinals;
+    }
+
+    @Override
+    public boolean contains(Key obj) {
+        PrimitiveIterator.OfInt iter = KeyUtil.getOrdinals(obj);
+        while (iter.hasNext()) {
+            if (!isSet(iter.nextInt())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#add(org.crosswire.jsword.passage.Key)
+     */
+    public void add(Key obj) {
+        optimizeWrites();
+
+        Verse firstVerse = null;
+        Verse lastVerse = null;
+        for (Key aKey : obj) {
+            lastVerse = (Verse) aKey;
+            if (firstVerse == null) {
+                firstVerse = lastVerse;
+            }
+            set(lastVerse.getOrdinal());
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            fireIntervalAdded(this, firstVerse, lastVerse);
+        }
+    }
+
+    @Override
+    public void addOrdinals(int[] ordinals) {
+        if (ordinals.length == 0) {
+            return;
+        }
+
+        optimizeWrites();
+
+        int first = ordinals[0];
+        int last = ordinals[0];
+        for (int ordinal : ordinals) {
+            set(ordinal);
+            first = Math.min(first, ordinal);
+            last = Math.max(last, ordinal);
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            Versification v11n = getVersification();
+            fireIntervalAdded(this, v11n.decodeOrdinal(first), v11n.decodeOrdinal(last));
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#remove(org.crosswire.jsword.passage.Key)
+     */
+    public void remove(Key obj) {
+        optimizeWrites();
+
+        Verse firstVerse = null;
+        Verse lastVerse = null;
+        for (Key aKey : obj) {
+            lastVerse = (Verse) aKey;
+            if (firstVerse == null) {
+                firstVerse = lastVerse;
+            }
+            unset(lastVerse.getOrdinal());
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            fireIntervalRemoved(this, firstVerse, lastVerse);
+        }
+    }
+
+    @Override
+    public void addAll(Key key) {
+        //check for key empty. This avoids the AIOBounds with that.getVerseAt, during event firing
+        if (key.isEmpty()) {
+            //nothing to add
+            return;
+        }
+
+        optimizeWrites();
+
+        if (isCompatible(key)) {
+            or((CompressedPassage) key);
+        } else if (key instanceof VerseKey) {
+            ((VerseKey<?>) key).forEachOrdinal(this::set);
+        } else {
+            super.addAll(key);
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0 && !key.isEmpty()) {
+            if (key instanceof Passage) {
+                Passage that = (Passage) key;
+                fireIntervalAdded(this, that.getVerseAt(0), that.getVerseAt(that.countVerses() - 1));
+            } else if (key instanceof VerseRange) {
+                VerseRange that = (VerseRange) key;
+                fireIntervalAdded(this, that.getStart(), that.getEnd());
+            } else if (key instanceof Verse) {
+                Verse that = (Verse) key;
+                fireIntervalAdded(this, that, that);
+            }
+        }
+    }
+
+    @Override
+    public void removeAll(Key key) {
+        optimizeWrites();
+
+        if (isCompatible(key)) {
+            andNot((CompressedPassage) key);
+        } else if (key instanceof VerseKey) {
+            ((VerseKey<?>) key).forEachOrdinal(this::unset);
+        } else {
+            super.removeAll(key);
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0 && !key.isEmpty()) {
+            if (key instanceof Passage) {
+                Passage that = (Passage) key;
+                fireIntervalRemoved(this, that.getVerseAt(0), that.getVerseAt(that.countVerses() - 1));
+            } else if (key instanceof VerseRange) {
+                VerseRange that = (VerseRange) key;
+                fireIntervalRemoved(this, that.getStart(), that.getEnd());
+            } else if (key instanceof Verse) {
+                Verse that = (Verse) key;
+                fireIntervalRemoved(this, that, that);
+            }
+        }
+    }
+
+    @Override
+    public void retainAll(Key key) {
+        optimizeWrites();
+
+        CompressedPassage that = null;
+        if (isCompatible(key)) {
+            that = (CompressedPassage) key;
+        } else {
+            that = new CompressedPassage(getVersification());
+
+            PrimitiveIterator.OfInt iter = KeyUtil.getOrdinals(key);
+            while (iter.hasNext()) {
+                int ord = iter.nextInt();
+                if (isSet(ord)) {
+                    that.set(ord);
+                }
+            }
+        }
+        and(that);
+
+        fireIntervalRemoved(this, null, null);
+    }
+
+    @Override
+    public void clear() {
+        optimizeWrites();
+
+        Arrays.fill(containers, null);
+        Arrays.fill(counts, 0);
+        size = 0;
+
+        fireIntervalRemoved(this, null, null);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#blur(int, org.crosswire.jsword.passage.RestrictionType)
+     */
+    @Override
+    public void blur(int verses, RestrictionType restrict) {
+        blur(verses, restrict, true, true);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#blur(int, org.crosswire.jsword.passage.RestrictionType, boolean, boolean)
+     */
+    @Override
+    public synchronized void blur(int verses, RestrictionType restrict, boolean blurDown, boolean blurUp) {
+        assert verses >= 0;
+        optimizeWrites();
+        raiseEventSuppresion();
+        raiseNormalizeProtection();
+
+        // Blur a word at a time, using the chapter boundaries if restricted
+        long[] words = VerseBits.create(getVersification());
+        for (int chunk = 0; chunk < containers.length; chunk++) {
+            Object container = containers[chunk];
+            if (container instanceof short[]) {
+                short[] array = (short[]) container;
+                int count = counts[chunk];
+                for (int i = 0; i < count; i++) {
+                    VerseBits.set(words, (chunk << CHUNK_BITS) | array[i]);
+                }
+            } else if (container instanceof long[]) {
+                int base = chunk * BITMAP_WORDS;
+                System.arraycopy(container, 0, words, base, Math.min(BITMAP_WORDS, words.length - base));
+            }
+        }
+
+        VerseBits.blur(words, getVersification(), verses, restrict, blurDown, blurUp);
+
+        for (int chunk = 0; chunk < containers.length; chunk++) {
+            int base = chunk * BITMAP_WORDS;
+            long[] bitmap = Arrays.copyOfRange(words, base, base + BITMAP_WORDS);
+            putBitmap(chunk, bitmap, cardinality(bitmap));
+        }
+
+        lowerNormalizeProtection();
+        if (lowerEventSuppressionAndTest()) {
+            fireIntervalAdded(this, null, null);
+        }
+    }
+
+    /**
+     * Whether the Key is a CompressedPassage whose chunks line up with ours.
+     * 
+     * @param key
+     *            the key to check
+     * @return true if its chunks can be combined with ours
+     */
+    private boolean isCompatible(Key key) {
+        return key instanceof CompressedPassage && getVersification().equals(((CompressedPassage) key).getVersification());
+    }
+
+    /**
+     * Determine whether a verse is in this Passage.
+     * 
+     * @param ordinal
+     *            the ordinal of the verse
+     * @return true if it is present
+     */
+    private boolean isSet(int ordinal) {
+        int chunk = ordinal >>> CHUNK_BITS;
+        if (ordinal < 0 || chunk >= containers.length) {
+            return false;
+        }
+        return inChunk(containers[chunk], counts[chunk], ordinal & CHUNK_MASK);
+    }
+
+    /**
+     * Add a verse to this Passage.
+     * 
+     * @param ordinal
+     *            the ordinal of the verse
+     */
+    private void set(int ordinal) {
+        int chunk = ordinal >>> CHUNK_BITS;
+        int low = ordinal & CHUNK_MASK;
+        Object container = containers[chunk];
+        int count = counts[chunk];
+
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0) {
+                return;
+            }
+            bitmap[low >>> 6] |= bit;
+        } else {
+            short[] array = (short[]) container;
+            int pos = 0;
+            if (array == null) {
+                array = new short[INITIAL_CAPACITY];
+            } else {
+                pos = Arrays.binarySearch(array, 0, count, (short) low);
+                if (pos >= 0) {
+                    return;
+                }
+                pos = -pos - 1;
+            }
+
+            if (count == ARRAY_MAX) {
+                // The array would be bigger than a bitmap
+                long[] bitmap = toBitmap(array, count);
+                bitmap[low >>> 6] |= 1L << low;
+                containers[chunk] = bitmap;
+            } else {
+                if (count == array.length) {
+                    array = Arrays.copyOf(array, Math.min(count * 2, ARRAY_MAX));
+                }
+                System.arraycopy(array, pos, array, pos + 1, count - pos);
+                array[pos] = (short) low;
+                containers[chunk] = array;
+            }
+        }
+
+        counts[chunk]++;
+        size++;
+    }
+
+    /**
+     * Remove a verse from this Passage.
+     * 
+     * @param ordinal
+     *            the ordinal of the verse
+     */
+    private void unset(int ordinal) {
+        int chunk = ordinal >>> CHUNK_BITS;
+        if (ordinal < 0 || chunk >= containers.length) {
+            return;
+        }
+        int low = ordinal & CHUNK_MASK;
+        Object container = containers[chunk];
+        int count = counts[chunk];
+
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0) {
+                bitmap[low >>> 6] &= ~bit;
+                putBitmap(chunk, bitmap, count - 1);
+            }
+        } else if (container instanceof short[]) {
+            short[] array = (short[]) container;
+            int pos = Arrays.binarySearch(array, 0, count, (short) low);
+            if (pos >= 0) {
+                System.arraycopy(array, pos + 1, array, pos, count - pos - 1);
+                putArray(chunk, array, count - 1);
+            }
+        }
+    }
+
+    /**
+     * Add all the verses of another CompressedPassage, chunk by chunk.
+     * 
+     * @param that
+     *            the verses to add
+     */
+    private void or(CompressedPassage that) {
+        for (int chunk = 0; chunk < containers.length; chunk++) {
+            Object other = that.containers[chunk];
+            int otherCount = that.counts[chunk];
+            if (other == null) {
+                continue;
+            }
+
+            Object container = containers[chunk];
+            int count = counts[chunk];
+            if (container == null) {
+                containers[chunk] = copyContainer(other);
+                size += otherCount;
+                counts[chunk] = otherCount;
+            } else if (container instanceof short[] && other instanceof short[]) {
+                // Merge the two sorted arrays
+                short[] array = (short[]) container;
+                short[] otherArray = (short[]) other;
+                short[] merged = new short[count + otherCount];
+                int i = 0;
+                int j = 0;
+                int n = 0;
+                while (i < count && j < otherCount) {
+                    short a = array[i];
+                    short b = otherArray[j];
+                    if (a <= b) {
+                        i++;
+                        if (a == b) {
+                            j++;
+                        }
+                        merged[n++] = a;
+                    } else {
+                        j++;
+                        merged[n++] = b;
+                    }
+                }
+                while (i < count) {
+                    merged[n++] = array[i++];
+                }
+                while (j < otherCount) {
+                    merged[n++] = otherArray[j++];
+                }
+                putArray(chunk, merged, n);
+            } else {
+                long[] bitmap = container instanceof long[] ? (long[]) container : toBitmap((short[]) container, count);
+                if (other instanceof long[]) {
+                    long[] otherBitmap = (long[]) other;
+                    for (int i = 0; i < BITMAP_WORDS; i++) {
+                        bitmap[i] |= otherBitmap[i];
+                    }
+                } else {
+                    short[] otherArray = (short[]) other;
+                    for (int i = 0; i < otherCount; i++) {
+                        bitmap[otherArray[i] >>> 6] |= 1L << otherArray[i];
+                    }
+                }
+                putBitmap(chunk, bitmap, cardinality(bitmap));
+            }
+        }
+    }
+
+    /**
+     * Keep only the verses that are also in another CompressedPassage, chunk
+     * by chunk.
+     * 
+     * @param that
+     *            the verses to keep
+     */
+    private void and(CompressedPassage that) {
+        for (int chunk = 0; chunk < containers.length; chunk++) {
+            Object container = containers[chunk];
+            if (container == null) {
+                continue;
+            }
+
+            Object other = that.containers[chunk];
+            int otherCount = that.counts[chunk];
+            if (other == null) {
+                putArray(chunk, null, 0);
+            } else if (container instanceof short[]) {
+                putArray(chunk, (short[]) container, filter((short[]) container, counts[chunk], other, otherCount, true));
+            } else if (other instanceof short[]) {
+                short[] array = ((short[]) other).clone();
+                putArray(chunk, array, filter(array, otherCount, container, counts[chunk], true));
+            } else {
+                long[] bitmap = (long[]) container;
+                long[] otherBitmap = (long[]) other;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    bitmap[i] &= otherBitmap[i];
+                }
+                putBitmap(chunk, bitmap, cardinality(bitmap));
+            }
+        }
+    }
+
+    /**
+     * Remove the verses that are in another CompressedPassage, chunk by chunk.
+     * 
+     * @param that
+     *            the verses to remove
+     */
+    private void andNot(CompressedPassage that) {
+        for (int chunk = 0; chunk < containers.length; chunk++) {
+            Object container = containers[chunk];
+            Object other = that.containers[chunk];
+            int otherCount = that.counts[chunk];
+            if (container == null || other == null) {
+                continue;
+            }
+
+            if (container instanceof short[]) {
+                putArray(chunk, (short[]) container, filter((short[]) container, counts[chunk], other, otherCount, false));
+            } else {
+                long[] bitmap = (long[]) container;
+                if (other instanceof long[]) {
+                    long[] otherBitmap = (long[]) other;
+                    for (int i = 0; i < BITMAP_WORDS; i++) {
+                        bitmap[i] &= ~otherBitmap[i];
+                    }
+                } else {
+                    short[] otherArray = (short[]) other;
+                    for (int i = 0; i < otherCount; i++) {
+                        bitmap[otherArray[i] >>> 6] &= ~(1L << otherArray[i]);
+                    }
+                }
+                putBitmap(chunk, bitmap, cardinality(bitmap));
+            }
+        }
+    }
+
+    /**
+     * Store a chunk given as a sorted array, switching to a bitmap if the
+     * array is too big.
+     * 
+     * @param chunk
+     *            the chunk to store
+     * @param array
+     *            the low bits of the ordinals in the chunk
+     * @param count
+     *            how many of the array are used
+     */
+    private void putArray(int chunk, short[] array, int count) {
+        size += count - counts[chunk];
+        counts[chunk] = count;
+        if (count == 0) {
+            containers[chunk] = null;
+        } else if (count > ARRAY_MAX) {
+            containers[chunk] = toBitmap(array, count);
+        } else if (count < array.length / 2) {
+            containers[chunk] = Arrays.copyOf(array, count);
+        } else {
+            containers[chunk] = array;
+        }
+    }
+
+    /**
+     * Store a chunk given as a bitmap, switching to a sorted array if that is
+     * no bigger.
+     * 
+     * @param chunk
+     *            the chunk to store
+     * @param bitmap
+     *            the bits of the ordinals in the chunk
+     * @param count
+     *            how many bits are set
+     */
+    private void putBitmap(int chunk, long[] bitmap, int count) {
+        size += count - counts[chunk];
+        counts[chunk] = count;
+        if (count == 0) {
+            containers[chunk] = null;
+        } else if (count <= ARRAY_MAX) {
+            short[] array = new short[count];
+            int n = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long bits = bitmap[i];
+                while (bits != 0) {
+                    array[n++] = (short) ((i << 6) | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            containers[chunk] = array;
+        } else {
+            containers[chunk] = bitmap;
+        }
+    }
+
+    /**
+     * Create the empty chunks for the Versification.
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     */
+    private void createStore(Versification v11n) {
+        int chunks = (v11n.maximumOrdinal() >>> CHUNK_BITS) + 1;
+        containers = new Object[chunks];
+        counts = new int[chunks];
+        size = 0;
+    }
+
+    /**
+     * Pack the entries of a sorted array that are, or are not, in another
+     * chunk to the front of the array.
+     * 
+     * @param array
+     *            the low bits of the ordinals in a chunk
+     * @param count
+     *            how many of the array are used
+     * @param other
+     *            the other chunk
+     * @param otherCount
+     *            how many verses the other chunk has
+     * @param keep
+     *            true to keep those in the other chunk, false to keep the rest
+     * @return how many entries were kept
+     */
+    private static int filter(short[] array, int count, Object other, int otherCount, boolean keep) {
+        int n = 0;
+        if (other instanceof long[]) {
+            long[] bitmap = (long[]) other;
+            for (int i = 0; i < count; i++) {
+                short low = array[i];
+                if (((bitmap[low >>> 6] & (1L << low)) != 0) == keep) {
+                    array[n++] = low;
+                }
+            }
+            return n;
+        }
+
+        // Walk the two sorted arrays together
+        short[] otherArray = (short[]) other;
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            short low = array[i];
+            while (j < otherCount && otherArray[j] < low) {
+                j++;
+            }
+            if ((j < otherCount && otherArray[j] == low) == keep) {
+                array[n++] = low;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Determine whether a chunk holds an ordinal.
+     * 
+     * @param container
+     *            the chunk
+     * @param count
+     *            how many verses the chunk has
+     * @param low
+     *            the low bits of the ordinal
+     * @return true if it is present
+     */
+    private static boolean inChunk(Object container, int count, int low) {
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        if (container instanceof short[]) {
+            return Arrays.binarySearch((short[]) container, 0, count, (short) low) >= 0;
+        }
+        return false;
+    }
+
+    /**
+     * Convert a sorted array to a bitmap.
+     * 
+     * @param array
+     *            the low bits of the ordinals in a chunk
+     * @param count
+     *            how many of the array are used
+     * @return the bitmap
+     */
+    private static long[] toBitmap(short[] array, int count) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (int i = 0; i < count; i++) {
+            bitmap[array[i] >>> 6] |= 1L << array[i];
+        }
+        return bitmap;
+    }
+
+    /**
+     * Count the bits set in a bitmap.
+     * 
+     * @param bitmap
+     *            the bitmap
+     * @return the number of bits set
+     */
+    private static int cardinality(long[] bitmap) {
+        int count = 0;
+        for (long bits : bitmap) {
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    /**
+     * Copy a chunk so that it can be changed independently of the original.
+     * 
+     * @param container
+     *            the chunk to copy
+     * @return the copy
+     */
+    private static Object copyContainer(Object container) {
+        if (container instanceof short[]) {
+            return ((short[]) container).clone();
+        }
+        if (container instanceof long[]) {
+            return ((long[]) container).clone();
+        }
+        return null;
+    }
+
+    /**
+     * Iterate over the ordinals, chunk by chunk.
+     */
+    private final class OrdinalIterator implements PrimitiveIterator.OfInt {
+        /**
+         * Find the first ordinal
+         */
+        OrdinalIterator() {
+            calculateNext();
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.PrimitiveIterator.OfInt#nextInt()
+         */
+        public int nextInt() throws NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            int retcode = next;
+            calculateNext();
+
+            return retcode;
+        }
+
+        /**
+         * Find the next ordinal
+         */
+        private void calculateNext() {
+            while (chunk < containers.length) {
+                Object container = containers[chunk];
+                if (container instanceof short[]) {
+                    if (position < counts[chunk]) {
+                        next = (chunk << CHUNK_BITS) | ((short[]) container)[position++];
+                        return;
+                    }
+                } else if (container instanceof long[]) {
+                    long[] bitmap = (long[]) container;
+                    int word = position >>> 6;
+                    if (word < BITMAP_WORDS) {
+                        long bits = bitmap[word] & (-1L << position);
+                        while (bits == 0 && ++word < BITMAP_WORDS) {
+                            bits = bitmap[word];
+                        }
+                        if (bits != 0) {
+                            int low = (word << 6) | Long.numberOfTrailingZeros(bits);
+                            next = (chunk << CHUNK_BITS) | low;
+                            position = low + 1;
+                            return;
+                        }
+                    }
+                }
+                chunk++;
+                position = 0;
+            }
+            next = -1;
+        }
+
+        /**
+         * The chunk being iterated
+         */
+        private int chunk;
+
+        /**
+         * The next entry of an array or bit of a bitmap to consider
+         */
+        private int position;
+
+        /**
+         * The next ordinal or -1 if there are no more
+         */
+        private int next;
+    }
+
+    /**
+     * Iterate over the Verses
+     */
+    private final class VerseIterator implements Iterator<Key> {
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            return ordinals.hasNext();
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#next()
+         */
+        public Key next() throws NoSuchElementException {
+            return getVersification().decodeOrdinal(ordinals.nextInt());
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#remove()
+         */
+        public void remove() throws UnsupportedOperationException {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * The ordinals of the Verses
+         */
+        private PrimitiveIterator.OfInt ordinals = new OrdinalIterator();
+    }
+
+    /**
+     * Call the support mechanism in AbstractPassage
+     * 
+     * @param out
+     *            The stream to write our state to
+     * @serialData Write the ordinal number of this verse
+     * @see AbstractPassage#writeObjectSupport(ObjectOutputStream)
+     * @throws IOException
+     *             if the read fails
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        // Save off the versification by name
+        out.writeUTF(getVersification().getName());
+
+        writeObjectSupport(out);
+    }
+
+    /**
+     * Call the support mechanism in AbstractPassage
+     * 
+     * @param in
+     *            The stream to read our state from
+     * @throws IOException
+     *             if the read fails
+     * @throws ClassNotFoundException
+     *             If the read data is incorrect
+     * @serialData Write the ordinal number of this verse
+     * @see AbstractPassage#readObjectSupport(ObjectInputStream)
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        optimizeWrites();
+
+        in.defaultReadObject();
+
+        // Read the versification by name
+        String v11nName = in.readUTF();
+        Versification v11n = Versifications.instance().getVersification(v11nName);
+
+        createStore(v11n);
+
+        readObjectSupport(in);
+    }
+
+    /**
+     * The number of bits of an ordinal that pick its place within a chunk.
+     */
+    private static final int CHUNK_BITS = 12;
+
+    /**
+     * Picks the place of an ordinal within its chunk.
+     */
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    /**
+     * The number of longs in the bitmap of a chunk.
+     */
+    private static final int BITMAP_WORDS = 1 << (CHUNK_BITS - 6);
+
+    /**
+     * The most verses a chunk holds as an array. Beyond this the array would
+     * be bigger than a bitmap.
+     */
+    private static final int ARRAY_MAX = BITMAP_WORDS * 4;
+
+    /**
+     * The size of the array for the first verse of a chunk.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * To make serialization work across new versions
+     */
+    private static final long serialVersionUID = 6150324962157617349L;
+
+    /**
+     * For each chunk, null when it is empty, a sorted short[] of the low bits
+     * of its ordinals or a long[] bitmap of them.
+     */
+    private transient Object[] containers;
+
+    /**
+     * The number of verses in each chunk.
+     */
+    private transient int[] counts;
+
+    /**
+     * The number of verses in this Passage.
+     */
+    private transient int size;
+}
@@ -19,6 +19,9 @@
  */
 package org.crosswire.jsword.passage;
 
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
 
@@ -111,6 +114,41 @@ public final class KeyUtil {
         throw new ClassCastException("Expected key to be a Verse, VerseRange or Passage");
     }
 
+    /**
+     * Iterate over the ordinals of the Verses in a Key. Only those keys that
+     * are a Verse or can contain Verses (i.e. Passage and VerseRange) have
+     * ordinals.
+     * 
+     * @param key The key whose ordinals are wanted
+     * @return an iterator over the ordinals
+     * @throws ClassCastException
+     */
+    public static PrimitiveIterator.OfInt getOrdinals(Key key) {
+        if (key instanceof VerseKey) {
+            return ((VerseKey<?>) key).ordinalIterator();
+        }
+        return getOrdinals(key.iterator());
+    }
+
+    /**
+     * Turn an iterator over Verses into one over their ordinals.
+     * 
+     * @param iter The iterator over Verses
+     * @return an iterator over the ordinals
+     * @throws ClassCastException
+     */
+    public static PrimitiveIterator.OfInt getOrdinals(final Iterator<Key> iter) {
+        return new PrimitiveIterator.OfInt() {
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            public int nextInt() {
+                return getVerse(iter.next()).getOrdinal();
+            }
+        };
+    }
+
     /**
      * Get the versification for the key or the default versification.
      * 
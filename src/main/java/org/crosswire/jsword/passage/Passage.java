@@ -225,6 +225,20 @@ public interface Passage extends VerseKey<Passage> {
      */
     void remove(Key that);
 
+    /**
+     * Add the Verses with these ordinals to this Passage. The ordinals need
+     * to be taken from the versification of this Passage.
+     * 
+     * @param ordinals
+     *            The ordinals of the Verses to be added to this Passage
+     */
+    default void addOrdinals(int[] ordinals) {
+        Versification v11n = getVersification();
+        for (int ordinal : ordinals) {
+            add(v11n.decodeOrdinal(ordinal));
+        }
+    }
+
     /**
      * Returns true if this Passage contains all of the verses in that Passage
      * 
@@ -92,6 +92,26 @@ public final class PassageKeyFactory {
         return defaultType.createEmptyPassage(v11n);
     }
 
+    /**
+     * Create an empty list of keys for the v11n that is about to be filled
+     * with the given number of verses. When the default PassageType holds a
+     * bit for every verse in the Versification and there are only a few
+     * verses, this gives a {@link CompressedPassage} instead, which is
+     * smaller.
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     * @param cardinality
+     *            The number of verses that will be added
+     * @return an empty Passage
+     */
+    public Key createEmptyKeyList(Versification v11n, int cardinality) {
+        if ((defaultType == PassageType.SPEED || defaultType == PassageType.WRITE_SPEED) && cardinality < v11n.maximumOrdinal() / SPARSE_RATIO) {
+            return PassageType.COMPRESSED.createEmptyPassage(v11n);
+        }
+        return defaultType.createEmptyPassage(v11n);
+    }
+
     /**
      * Get a Passage containing all the Verses in this Versification.
      * This differs from {@link org.crosswire.jsword.book.Book#getGlobalKeyList} which gets the
@@ -214,6 +234,7 @@ public final class PassageKeyFactory {
      * <li>PassageType.SIZE
      * <li>PassageType.MIX
      * <li>PassageType.TALLY
+     * <li>PassageType.COMPRESSED
      * </ul>
      * 
      * @param newDefaultType
@@ -268,7 +289,7 @@ public final class PassageKeyFactory {
      *            The Passage to convert
      * @return a byte array
      */
-    static byte[] toBinaryRepresentation(Passage ref) {
+    public static byte[] toBinaryRepresentation(Passage ref) {
         Versification v11n = ref.getVersification();
         int maxOrdinal = v11n.maximumOrdinal();
         // store these locally we use them so often
@@ -296,7 +317,7 @@ public final class PassageKeyFactory {
                 int idx0 = (ord / 8) + index;
 
                 // Which bit within that byte (0-7)
-                int bit = (ord % 8) - 1;
+                int bit = ord % 8;
 
                 buffer[idx0] |= 1 << bit;
             }
@@ -357,17 +378,28 @@ public final class PassageKeyFactory {
      */
     static Passage fromBinaryRepresentation(byte[] buffer) throws NoSuchKeyException {
         // AV11N(DMS): This is wrong, but toBinaryRepresentation does not write the v11n name
-        Versification rs = Versifications.instance().getVersification("KJV");
+        return fromBinaryRepresentation(Versifications.instance().getVersification("KJV"), buffer);
+    }
+
+    /**
+     * Convert a binary representation back into a Passage. The binary
+     * representation does not record the versification, so it has to be the
+     * one of the Passage that was converted.
+     * 
+     * @param rs
+     *            The versification of the converted Passage
+     * @param buffer
+     *            The binary representation
+     * @return The converted Passage
+     * @throws NoSuchKeyException
+     *             If the buffer is invalid
+     */
+    public static Passage fromBinaryRepresentation(Versification rs, byte[] buffer) throws NoSuchKeyException {
         int maxOrdinal = rs.maximumOrdinal();
-        Passage ref = (Passage) keyf.createEmptyKeyList(rs);
 
-        // Some speedups
-        AbstractPassage aref = null;
-        if (ref instanceof AbstractPassage) {
-            aref = (AbstractPassage) ref;
-            aref.raiseEventSuppresion();
-            aref.raiseNormalizeProtection();
-        }
+        // Gather the verses first, so that the Passage can be chosen by
+        // how many there are and filled all at once.
+        long[] words = VerseBits.create(rs);
 
         int[] index = new int[] {
             0
@@ -381,10 +413,10 @@ public final class PassageKeyFactory {
                 int idx0 = (ord / 8) + index[0];
 
                 // Which bit within that byte (0-7)
-                int bit = (ord % 8) - 1;
+                int bit = ord % 8;
 
                 if ((buffer[idx0] & (1 << bit)) != 0) {
-                    ref.add(rs.decodeOrdinal(ord));
+                    VerseBits.set(words, ord);
                 }
             }
             // index gets left behind here, but we dont care
@@ -394,16 +426,19 @@ public final class PassageKeyFactory {
             int verses = fromBinary(buffer, index, maxOrdinal);
             for (int i = 0; i < verses; i++) {
                 int ord = fromBinary(buffer, index, maxOrdinal);
-                ref.add(rs.decodeOrdinal(ord));
+                VerseBits.set(words, Math.min(ord, maxOrdinal));
             }
             break;
 
         case AbstractPassage.RANGED:
             int ranges = fromBinary(buffer, index, maxOrdinal / 2);
             for (int i = 0; i < ranges; i++) {
-                int ord = fromBinary(buffer, index, maxOrdinal);
+                int ord = Math.min(fromBinary(buffer, index, maxOrdinal), maxOrdinal);
                 int len = fromBinary(buffer, index, maxOrdinal);
-                ref.add(RestrictionType.NONE.toRange(rs, rs.decodeOrdinal(ord), len));
+                int end = Math.min(ord + Math.max(len, 1) - 1, maxOrdinal);
+                for (; ord <= end; ord++) {
+                    VerseBits.set(words, ord);
+                }
             }
             break;
 
@@ -411,12 +446,7 @@ public final class PassageKeyFactory {
             throw new NoSuchKeyException(JSOtherMsg.lookupText("Unknown passage type."));
         }
 
-        // Some speedups
-        if (aref != null) {
-            aref.lowerEventSuppressionAndTest();
-            aref.lowerNormalizeProtection();
-        }
-
+        Passage ref = VerseBits.toPassage(rs, words);
         return ref;
     }
 
@@ -657,6 +687,12 @@ public final class PassageKeyFactory {
      */
     private static PassageType defaultType = PassageType.SPEED;
 
+    /**
+     * A Passage with fewer than one verse in this many is smaller when
+     * compressed than as a bit for every verse.
+     */
+    private static final int SPARSE_RATIO = 16;
+
     /**
      * How we create Passages
      */
@@ -23,6 +23,7 @@ package org.crosswire.jsword.passage;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -235,7 +236,7 @@ public class PassageTally extends AbstractPassage {
                 maxCount = Integer.MAX_VALUE;
             }
 
-            Iterator<Key> it = new OrderedVerseIterator(getVersification(), board);
+            Iterator<Key> it = new OrderedVerseIterator(getVersification(), board, maxCount);
             Key current = null;
             int count = 0;
 
@@ -280,7 +281,7 @@ public class PassageTally extends AbstractPassage {
             maxCount = Integer.MAX_VALUE;
         }
 
-        OrderedVerseIterator it = new OrderedVerseIterator(getVersification(), board);
+        OrderedVerseIterator it = new OrderedVerseIterator(getVersification(), board, maxCount);
         int count = 0;
 
         while (it.hasNext() && count < maxCount) {
@@ -309,7 +310,21 @@ public class PassageTally extends AbstractPassage {
         if (order == Order.BIBLICAL) {
             return new VerseIterator();
         }
-        return new OrderedVerseIterator(getVersification(), board);
+        return new OrderedVerseIterator(getVersification(), board, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Iterate through no more than count of the highest ranked verses, best
+     * first, whatever the current ordering. Only the verses wanted are held
+     * while ranking, so when a few are wanted from a large tally this is much
+     * cheaper than iterating in Order.TALLY.
+     * 
+     * @param count
+     *            The largest number of verses wanted
+     * @return A verse Iterator
+     */
+    public Iterator<Key> rankedIterator(int count) {
+        return new OrderedVerseIterator(getVersification(), board, count);
     }
 
     @Override
@@ -394,6 +409,29 @@ public class PassageTally extends AbstractPassage {
         fireIntervalAdded(this, null, null);
     }
 
+    /**
+     * Add no more than count of the highest scoring verses to the rankings,
+     * each incremented by its score. This gives the same tally as adding the
+     * best verses one at a time, but they are found without ordering all the
+     * scores.
+     * 
+     * @param scores
+     *            The score of each verse, indexed by ordinal, with 0 for
+     *            verses that are not to be added
+     * @param count
+     *            The largest number of verses to add
+     */
+    public void addTopScores(int[] scores, int count) {
+        optimizeWrites();
+
+        for (long entry : rank(scores, count)) {
+            int tally = getRank(entry);
+            increment(getOrdinal(entry), tally);
+            incrementMax(tally);
+        }
+        fireIntervalAdded(this, null, null);
+    }
+
     /**
      * Remove/Decrement this verses in the rankings
      * 
@@ -535,6 +573,10 @@ public class PassageTally extends AbstractPassage {
     public Passage trimVerses(int count) {
         optimizeWrites();
 
+        if (order == Order.TALLY) {
+            return trimRankedVerses(count);
+        }
+
         int i = 0;
         boolean overflow = false;
 
@@ -557,6 +599,33 @@ public class PassageTally extends AbstractPassage {
         return null;
     }
 
+    /**
+     * Keep the count highest ranked verses, moving the rest to the remainder.
+     * 
+     * @param count
+     *            The maximum number of Verses to allow in this collection
+     * @return A new Passage containing the remaining verses or null
+     */
+    private Passage trimRankedVerses(int count) {
+        long[] kept = rank(board, count);
+        if (kept.length >= size) {
+            return null;
+        }
+
+        PassageTally remainder = this.clone();
+        int[] trimmed = new int[board.length];
+        for (long entry : kept) {
+            int ord = getOrdinal(entry);
+            trimmed[ord] = board[ord];
+            remainder.kill(ord);
+        }
+        board = trimmed;
+        size = kept.length;
+
+        fireIntervalRemoved(this, null, null);
+        return remainder;
+    }
+
     /**
      * Take the verses in the tally and give them all and equal rank of 1. After
      * this method has executed then both sorting methods for a.
@@ -586,59 +655,146 @@ public class PassageTally extends AbstractPassage {
         raiseEventSuppresion();
         raiseNormalizeProtection();
 
+        int down = blurDown ? verses : 0;
+        int up = blurUp ? verses : 0;
         if (!restrict.equals(RestrictionType.NONE)) {
-            // This is a bit of a cheat, but there is no way I'm going
-            // to do the math to speed up the restricted version
-            PassageTally temp = this.clone();
-            Iterator<VerseRange> it = temp.rangeIterator(RestrictionType.NONE);
-
-            while (it.hasNext()) {
-                VerseRange range = it.next();
-                for (int i = 0; i <= verses; i++) {
-                    add(restrict.blur(getVersification(), range, blurDown ? verses : 0, blurUp ? verses : 0));
-                }
-            }
+            blurRestricted(verses, down, up);
         } else {
-            int[] newBoard = new int[board.length];
-
-            for (int i = 0; i < board.length; i++) {
-                if (board[i] != 0) {
-                    // This could be re-written more simply:
-                    // for (int j = -verses; j <= verses; j++) {
-                    //     int k = i + j;
-                    //     if (k >= 0 && k <= BibleInfo.maximumOrdinal()) {
-                    //         new_board[k] += board[i] + verses - mod(j);
-                    //     }
-                    // }
-                    // However splitting the loop in 2 will speed it up quite a bit.
-
-                    for (int j = (blurDown ? -verses : 0); j < 0; j++) {
-                        int k = i + j;
-                        if (k >= 0) {
-                            newBoard[k] += board[i] + verses + j;
-                        }
-                    }
+            blurUnrestricted(verses, down, up);
+        }
 
-                    newBoard[i] += board[i] + verses;
+        resetMax();
 
-                    for (int j = 1; j <= (blurUp ? verses : 0); j++) {
-                        int k = i + j;
-                        if (k < board.length) {
-                            newBoard[k] += board[i] + verses - j;
-                        }
+        lowerNormalizeProtection();
+        if (lowerEventSuppressionAndTest()) {
+            fireIntervalAdded(this, null, null);
+        }
+    }
+
+    /**
+     * Blur each run of adjacent verses within its chapters. Every verse that
+     * the blurred run covers has its rank raised by verses + 1, so a verse
+     * near several runs is raised for each of them. The number of runs
+     * covering each verse is counted in one pass by noting where each
+     * blurred run starts and ends.
+     * 
+     * @param verses
+     *            The amount to blur by
+     * @param down
+     *            How far to blur toward the start of the Bible
+     * @param up
+     *            How far to blur toward the end of the Bible
+     */
+    private void blurRestricted(int verses, int down, int up) {
+        long[][] masks = VerseBits.getChapterMasks(getVersification());
+        long[] firsts = masks[0];
+        long[] lasts = masks[1];
+
+        // The change in the number of covering runs at each verse
+        int[] changes = new int[board.length + 1];
+        Versification v11n = getVersification();
+        int chapterStart = 0;
+        int runChapterStart = 0;
+        int runStart = -1;
+        int runEnd = -1;
+        for (int i = 0; i <= board.length; i++) {
+            if (i < board.length) {
+                if (VerseBits.get(firsts, i)) {
+                    chapterStart = i;
+                }
+                if (board[i] == 0 || (runStart >= 0 && VerseBits.isAdjacent(v11n, runEnd, i))) {
+                    if (board[i] != 0) {
+                        runEnd = i;
                     }
+                    continue;
                 }
             }
 
-            board = newBoard;
+            // The run, if any, has ended
+            if (runStart >= 0) {
+                int chapterEnd = VerseBits.nextSetBit(lasts, runEnd);
+                if (chapterEnd < 0) {
+                    chapterEnd = board.length - 1;
+                }
+                changes[Math.max(runStart - down, runChapterStart)]++;
+                changes[Math.min(runEnd + up, chapterEnd) + 1]--;
+            }
+            runStart = i;
+            runEnd = i;
+            runChapterStart = chapterStart;
         }
 
-        resetMax();
+        int covering = 0;
+        for (int i = 0; i < board.length; i++) {
+            covering += changes[i];
+            if (covering > 0) {
+                board[i] = (int) Math.min((long) board[i] + (long) (verses + 1) * covering, MAX_TALLY);
+            }
+        }
+    }
 
-        lowerNormalizeProtection();
-        if (lowerEventSuppressionAndTest()) {
-            fireIntervalAdded(this, null, null);
+    /**
+     * Blur each verse, giving the verses around it its rank plus verses, less
+     * their distance from it. The sums over the verses within reach of each
+     * verse are kept as two windows, one up to and including the verse and
+     * one after it, that slide along the board.
+     * 
+     * @param verses
+     *            The amount to blur by
+     * @param down
+     *            How far to blur toward the start of the Bible
+     * @param up
+     *            How far to blur toward the end of the Bible
+     */
+    private void blurUnrestricted(int verses, int down, int up) {
+        int[] newBoard = new int[board.length];
+
+        // A verse at i adds to the verses from i - down to i + up,
+        // so the verse at k gets from those from k - up to k + down.
+        long beforeSum = 0;
+        long beforeCount = 0;
+        long beforeOrdinals = 0;
+        long afterSum = 0;
+        long afterCount = 0;
+        long afterOrdinals = 0;
+        for (int i = 1; i <= down && i < board.length; i++) {
+            if (board[i] != 0) {
+                afterSum += board[i] + verses;
+                afterCount++;
+                afterOrdinals += i;
+            }
         }
+
+        for (int k = 0; k < board.length; k++) {
+            // The verse at k moves from the window after to the one before
+            if (board[k] != 0) {
+                beforeSum += board[k] + verses;
+                beforeCount++;
+                beforeOrdinals += k;
+                if (k > 0 && down > 0) {
+                    afterSum -= board[k] + verses;
+                    afterCount--;
+                    afterOrdinals -= k;
+                }
+            }
+            int leaving = k - up - 1;
+            if (leaving >= 0 && board[leaving] != 0) {
+                beforeSum -= board[leaving] + verses;
+                beforeCount--;
+                beforeOrdinals -= leaving;
+            }
+            int entering = k + down;
+            if (k > 0 && down > 0 && entering < board.length && board[entering] != 0) {
+                afterSum += board[entering] + verses;
+                afterCount++;
+                afterOrdinals += entering;
+            }
+
+            long total = beforeSum - (k * beforeCount - beforeOrdinals) + afterSum - (afterOrdinals - k * afterCount);
+            newBoard[k] = (int) total;
+        }
+
+        board = newBoard;
     }
 
     /**
@@ -735,6 +891,93 @@ public class PassageTally extends AbstractPassage {
         board[ord] = 0;
     }
 
+    /**
+     * Find no more than limit of the highest ranked verses on a board, best
+     * first. A min-heap holds the best verses seen so far, so only as many are
+     * held as are wanted. Each entry packs the rank above the ordinal so that
+     * entries compare as numbers: a higher rank is better and, between equal
+     * ranks, so is the lower ordinal.
+     * 
+     * @param board
+     *            The rank of each verse, indexed by ordinal
+     * @param limit
+     *            The largest number of verses wanted
+     * @return The ranked entries, best first
+     */
+    private static long[] rank(int[] board, int limit) {
+        int wanted = Math.min(Math.max(limit, 0), board.length);
+        long[] heap = new long[Math.min(wanted, 64)];
+        int count = 0;
+        for (int ord = 0; ord < board.length; ord++) {
+            if (board[ord] <= 0) {
+                continue;
+            }
+
+            long entry = ((long) board[ord] << 32) | (Integer.MAX_VALUE - ord);
+            if (count < wanted) {
+                if (count == heap.length) {
+                    heap = Arrays.copyOf(heap, Math.min(wanted, count * 2));
+                }
+                // Sift the new entry up from the bottom
+                int child = count++;
+                while (child > 0) {
+                    int parent = (child - 1) >>> 1;
+                    if (heap[parent] <= entry) {
+                        break;
+                    }
+                    heap[child] = heap[parent];
+                    child = parent;
+                }
+                heap[child] = entry;
+            } else if (count > 0 && entry > heap[0]) {
+                // Replace the worst entry and sift it down
+                int parent = 0;
+                while (true) {
+                    int child = 2 * parent + 1;
+                    if (child >= count) {
+                        break;
+                    }
+                    if (child + 1 < count && heap[child + 1] < heap[child]) {
+                        child++;
+                    }
+                    if (entry <= heap[child]) {
+                        break;
+                    }
+                    heap[parent] = heap[child];
+                    parent = child;
+                }
+                heap[parent] = entry;
+            }
+        }
+
+        long[] ranked = count == heap.length ? heap : Arrays.copyOf(heap, count);
+        Arrays.sort(ranked);
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            long temp = ranked[i];
+            ranked[i] = ranked[j];
+            ranked[j] = temp;
+        }
+        return ranked;
+    }
+
+    /**
+     * @param entry
+     *            An entry from {@link #rank(int[], int)}
+     * @return The rank of the entry
+     */
+    private static int getRank(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    /**
+     * @param entry
+     *            An entry from {@link #rank(int[], int)}
+     * @return The ordinal of the entry
+     */
+    private static int getOrdinal(long entry) {
+        return Integer.MAX_VALUE - (int) entry;
+    }
+
     /**
      * Call the support mechanism in AbstractPassage
      * 
@@ -887,36 +1130,35 @@ public class PassageTally extends AbstractPassage {
      */
     private static final class OrderedVerseIterator implements Iterator<Key> {
         /**
-         * Find the first unused verse
+         * Rank the verses on the board
+         * 
+         * @param v11n
+         *            the versification to which this reference pertains
+         * @param board
+         *            the rank of each verse, indexed by ordinal
+         * @param limit
+         *            the largest number of verses wanted
          */
-        protected OrderedVerseIterator(Versification v11n, int[] board) {
+        protected OrderedVerseIterator(Versification v11n, int[] board, int limit) {
             referenceSystem = v11n;
-            TreeSet<TalliedVerse> output = new TreeSet<>();
-
-            int vib = board.length - 1;
-            for (int i = 0; i <= vib; i++) {
-                if (board[i] != 0) {
-                    output.add(new TalliedVerse(i, board[i]));
-                }
-            }
-
-            it = output.iterator();
-            last = null;
+            ranked = rank(board, limit);
         }
 
         /* (non-Javadoc)
          * @see java.util.Iterator#hasNext()
          */
         public boolean hasNext() {
-            return it.hasNext();
+            return next < ranked.length;
         }
 
         /* (non-Javadoc)
          * @see java.util.Iterator#next()
          */
         public Key next() throws NoSuchElementException {
-            last = it.next();
-            return referenceSystem.decodeOrdinal(last.ord);
+            if (next >= ranked.length) {
+                throw new NoSuchElementException();
+            }
+            return referenceSystem.decodeOrdinal(getOrdinal(ranked[next++]));
         }
 
         /* (non-Javadoc)
@@ -932,8 +1174,8 @@ public class PassageTally extends AbstractPassage {
          *             if hasNext() == false
          */
         public int lastRank() throws NoSuchElementException {
-            if (last != null) {
-                return last.tally;
+            if (next > 0) {
+                return getRank(ranked[next - 1]);
             }
             throw new NoSuchElementException(JSOtherMsg.lookupText("nextElement() has not been called yet."));
         }
@@ -942,82 +1184,16 @@ public class PassageTally extends AbstractPassage {
          * The Versification is needed to decode board positions.
          */
         private Versification referenceSystem;
-        /**
-         * So that we can get at the ranking of the given verse
-         */
-        private TalliedVerse last;
-
-        /**
-         * The Iterator we are converting
-         */
-        private Iterator<TalliedVerse> it;
-    }
-
-    /**
-     * Hack to make this work with J2SE 1.1 as well as J2SE 1.2 This compared 2
-     * Integers
-     */
-    private static class TalliedVerse implements Comparable<TalliedVerse> {
-        /**
-         * Convenience ctor to set the public variables
-         * 
-         * @param ord
-         *            the verse id
-         * @param tally
-         *            the rank of the verse
-         */
-        protected TalliedVerse(int ord, int tally) {
-            this.ord = ord;
-            this.tally = tally;
-        }
-
-        @Override
-        public int hashCode() {
-            int result = 31 + ord;
-            return 31 * result + tally;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final TalliedVerse other = (TalliedVerse) obj;
-            if (tally != other.tally) {
-                return false;
-            }
-            if (ord != other.ord) {
-                return false;
-            }
-            return true;
-        }
-
-        /* (non-Javadoc)
-         * @see java.lang.Comparable#compareTo(java.lang.Object)
-         */
-        public int compareTo(TalliedVerse that) {
-            if (that.tally == this.tally) {
-                return this.ord - that.ord;
-            }
-
-            return that.tally - this.tally;
-        }
 
         /**
-         * The verse id
+         * The ranked entries, best first
          */
-        protected int ord;
+        private long[] ranked;
 
         /**
-         * The rank of the verse
+         * The position of the next entry
          */
-        protected int tally;
+        private int next;
     }
 
     /**
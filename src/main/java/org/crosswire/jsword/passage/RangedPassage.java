@@ -24,8 +24,11 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import org.crosswire.jsword.versification.Versification;
 
@@ -142,6 +145,22 @@ public class RangedPassage extends AbstractPassage {
         return new VerseIterator(getVersification(), rangeIterator(RestrictionType.NONE));
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalIterator()
+     */
+    public PrimitiveIterator.OfInt ordinalIterator() {
+        return store.stream().flatMapToInt(range -> IntStream.rangeClosed(range.getStart().getOrdinal(), range.getEnd().getOrdinal())).iterator();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#forEachOrdinal(java.util.function.IntConsumer)
+     */
+    public void forEachOrdinal(IntConsumer action) {
+        for (VerseRange range : store) {
+            range.forEachOrdinal(action);
+        }
+    }
+
     @Override
     public final Iterator<VerseRange> rangeIterator(RestrictionType restrict) {
         if (restrict.equals(RestrictionType.NONE)) {
@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
 
 import org.crosswire.jsword.JSOtherMsg;
 import org.crosswire.jsword.versification.Versification;
@@ -147,6 +149,27 @@ final class ReadOnlyPassage implements Passage {
         return ref.iterator();
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalIterator()
+     */
+    public PrimitiveIterator.OfInt ordinalIterator() {
+        return ref.ordinalIterator();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#forEachOrdinal(java.util.function.IntConsumer)
+     */
+    public void forEachOrdinal(IntConsumer action) {
+        ref.forEachOrdinal(action);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#toOrdinalArray()
+     */
+    public int[] toOrdinalArray() {
+        return ref.toOrdinalArray();
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#get(int)
      */
@@ -291,6 +314,17 @@ final class ReadOnlyPassage implements Passage {
         throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#addOrdinals(int[])
+     */
+    public void addOrdinals(int[] ordinals) {
+        if (ignore) {
+            return;
+        }
+
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Passage#remove(org.crosswire.jsword.passage.Key)
      */
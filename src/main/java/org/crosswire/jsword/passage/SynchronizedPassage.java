@@ -23,6 +23,8 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
 
 import org.crosswire.jsword.versification.Versification;
 
@@ -129,6 +131,27 @@ final class SynchronizedPassage implements Passage {
         return ref.iterator();
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalIterator()
+     */
+    public synchronized PrimitiveIterator.OfInt ordinalIterator() {
+        return ref.ordinalIterator();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#forEachOrdinal(java.util.function.IntConsumer)
+     */
+    public synchronized void forEachOrdinal(IntConsumer action) {
+        ref.forEachOrdinal(action);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#toOrdinalArray()
+     */
+    public synchronized int[] toOrdinalArray() {
+        return ref.toOrdinalArray();
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#get(int)
      */
@@ -269,6 +292,13 @@ final class SynchronizedPassage implements Passage {
         ref.add(that);
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#addOrdinals(int[])
+     */
+    public synchronized void addOrdinals(int[] ordinals) {
+        ref.addOrdinals(ordinals);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Passage#remove(org.crosswire.jsword.passage.Key)
      */
@@ -24,6 +24,8 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
 
 import org.crosswire.common.icu.NumberShaper;
 import org.crosswire.common.util.ItemIterator;
@@ -558,6 +560,13 @@ public final class Verse implements VerseKey<Verse> {
         return new ItemIterator<>(this);
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalIterator()
+     */
+    public PrimitiveIterator.OfInt ordinalIterator() {
+        return IntStream.of(getOrdinal()).iterator();
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#addAll(org.crosswire.jsword.passage.Key)
      */
@@ -0,0 +1,460 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * Operations on sets of verses held as bits in a long[], where bit n of the
+ * set is bit (n % 64) of word (n / 64) and n is the ordinal of a verse. Whole
+ * words are combined at a time, so these are much quicker than the
+ * equivalent operations on a Passage.
+ * 
+ * <p>The arrays for a versification have {@link #getWordCount(Versification)}
+ * words. Operations that combine two sets change the first and return it.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class VerseBits {
+    /**
+     * Prevent instantiation
+     */
+    private VerseBits() {
+    }
+
+    /**
+     * @param v11n
+     *            the versification of the verses
+     * @return the number of words needed to hold every verse
+     */
+    public static int getWordCount(Versification v11n) {
+        return (v11n.maximumOrdinal() >> 6) + 1;
+    }
+
+    /**
+     * @param v11n
+     *            the versification of the verses
+     * @return an empty set of verses
+     */
+    public static long[] create(Versification v11n) {
+        return new long[getWordCount(v11n)];
+    }
+
+    /**
+     * Add a verse to a set.
+     * 
+     * @param words
+     *            the set of verses
+     * @param ordinal
+     *            the ordinal of the verse
+     */
+    public static void set(long[] words, int ordinal) {
+        words[ordinal >> 6] |= 1L << ordinal;
+    }
+
+    /**
+     * @param words
+     *            the set of verses
+     * @param ordinal
+     *            the ordinal of the verse
+     * @return whether the verse is in the set
+     */
+    public static boolean get(long[] words, int ordinal) {
+        return (words[ordinal >> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * @param words
+     *            the set of verses
+     * @return whether there are no verses in the set
+     */
+    public static boolean isEmpty(long[] words) {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param words
+     *            the set of verses
+     * @return the number of verses in the set
+     */
+    public static int cardinality(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Find the next verse in a set.
+     * 
+     * @param words
+     *            the set of verses
+     * @param from
+     *            the ordinal at which to start looking
+     * @return the ordinal of the next verse at or after from, or -1 if there
+     *         is none
+     */
+    public static int nextSetBit(long[] words, int from) {
+        int index = from >> 6;
+        if (from < 0 || index >= words.length) {
+            return -1;
+        }
+        long word = words[index] & (-1L << from);
+        while (word == 0) {
+            if (++index == words.length) {
+                return -1;
+            }
+            word = words[index];
+        }
+        return (index << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Get the ordinals of the verses in a set, in order.
+     * 
+     * @param words
+     *            the set of verses
+     * @return the ordinals
+     */
+    public static int[] toOrdinalArray(long[] words) {
+        int[] ordinals = new int[cardinality(words)];
+        int count = 0;
+        for (int index = 0; index < words.length; index++) {
+            long word = words[index];
+            while (word != 0) {
+                ordinals[count++] = (index << 6) + Long.numberOfTrailingZeros(word);
+                // Clear the lowest set bit
+                word &= word - 1;
+            }
+        }
+        return ordinals;
+    }
+
+    /**
+     * Keep only the verses that are in both sets.
+     * 
+     * @param words
+     *            the set that is changed
+     * @param other
+     *            the set to intersect with
+     * @return the changed set
+     */
+    public static long[] and(long[] words, long[] other) {
+        int common = Math.min(words.length, other.length);
+        for (int i = 0; i < common; i++) {
+            words[i] &= other[i];
+        }
+        for (int i = common; i < words.length; i++) {
+            words[i] = 0;
+        }
+        return words;
+    }
+
+    /**
+     * Add the verses of another set.
+     * 
+     * @param words
+     *            the set that is changed
+     * @param other
+     *            the set to add
+     * @return the changed set
+     */
+    public static long[] or(long[] words, long[] other) {
+        int common = Math.min(words.length, other.length);
+        for (int i = 0; i < common; i++) {
+            words[i] |= other[i];
+        }
+        return words;
+    }
+
+    /**
+     * Remove the verses of another set.
+     * 
+     * @param words
+     *            the set that is changed
+     * @param other
+     *            the set to remove
+     * @return the changed set
+     */
+    public static long[] andNot(long[] words, long[] other) {
+        int common = Math.min(words.length, other.length);
+        for (int i = 0; i < common; i++) {
+            words[i] &= ~other[i];
+        }
+        return words;
+    }
+
+    /**
+     * Widen each verse in a set by a number of verses before and after it.
+     * With a restriction of CHAPTER, a verse is not widened beyond its
+     * chapter. This gives the same verses as blurring a Passage.
+     * 
+     * @param words
+     *            the set that is changed
+     * @param v11n
+     *            the versification of the verses
+     * @param verses
+     *            how many verses to widen by
+     * @param restrict
+     *            how the widening is bounded
+     * @param blurDown
+     *            whether to widen toward the start of the Bible
+     * @param blurUp
+     *            whether to widen toward the end of the Bible
+     * @return the changed set
+     */
+    public static long[] blur(long[] words, Versification v11n, int verses, RestrictionType restrict, boolean blurDown, boolean blurUp) {
+        if (restrict == RestrictionType.CHAPTER) {
+            // A restricted blur widens each range of the set, so the gaps
+            // that a range steps over are filled first.
+            joinAdjacent(words, v11n);
+            long[][] masks = getChapterMasks(v11n);
+            long[] firsts = masks[0];
+            long[] lasts = masks[1];
+            long[] down = blurDown ? words.clone() : null;
+            long[] up = blurUp ? words.clone() : null;
+            for (int step = 0; step < verses; step++) {
+                // A verse moves one step at a time, so it cannot jump a boundary.
+                if (down != null) {
+                    andNot(down, firsts);
+                    shiftDown(down, 1);
+                    or(words, down);
+                }
+                if (up != null) {
+                    andNot(up, lasts);
+                    shiftUp(up, 1);
+                    or(words, up);
+                }
+                // Once every verse has reached the edge of its chapter there
+                // is nothing left to move.
+                if ((down == null || isEmpty(down)) && (up == null || isEmpty(up))) {
+                    break;
+                }
+            }
+        } else if (verses > 0 && (blurDown || blurUp)) {
+            // Without boundaries, the verses within n of a set are found by
+            // doubling the distance covered with each shift.
+            long[] original = words.clone();
+            long[] spread = new long[words.length];
+            long[] shifted = new long[words.length];
+            for (int pass = 0; pass < 2; pass++) {
+                boolean isDown = pass == 0;
+                if (isDown ? !blurDown : !blurUp) {
+                    continue;
+                }
+                System.arraycopy(original, 0, spread, 0, original.length);
+                int covered = 1;
+                while (covered <= verses) {
+                    int by = Math.min(covered, verses + 1 - covered);
+                    System.arraycopy(spread, 0, shifted, 0, spread.length);
+                    if (isDown) {
+                        shiftDown(shifted, by);
+                    } else {
+                        shiftUp(shifted, by);
+                    }
+                    or(spread, shifted);
+                    covered += by;
+                }
+                or(words, spread);
+            }
+        }
+
+        // Nothing may go beyond the last verse of the Bible.
+        int maximumOrdinal = v11n.maximumOrdinal();
+        int last = words.length - 1;
+        if (last >= 0 && last == maximumOrdinal >> 6) {
+            words[last] &= -1L >>> (63 - (maximumOrdinal & 63));
+        }
+        return words;
+    }
+
+    /**
+     * Determine whether a Passage would put two verses, with none between
+     * them, in one range. The last verse of a chapter is next to verse 1 of
+     * the following chapter, so a range can step over a verse 0 or a book
+     * introduction.
+     * 
+     * @param v11n
+     *            the versification of the verses
+     * @param first
+     *            the ordinal of the earlier verse
+     * @param second
+     *            the ordinal of the later verse
+     * @return true if they are in one range
+     */
+    static boolean isAdjacent(Versification v11n, int first, int second) {
+        return second - first <= 3 && v11n.isAdjacentVerse(v11n.decodeOrdinal(first), v11n.decodeOrdinal(second));
+    }
+
+    /**
+     * Add to a set the verses that a Passage's ranges step over.
+     * 
+     * @param words
+     *            the set that is changed
+     * @param v11n
+     *            the versification of the verses
+     * @see #isAdjacent(Versification, int, int)
+     */
+    static void joinAdjacent(long[] words, Versification v11n) {
+        for (int i = nextSetBit(words, 0); i >= 0; ) {
+            int next = nextSetBit(words, i + 1);
+            if (next > i + 1 && isAdjacent(v11n, i, next)) {
+                for (int gap = i + 1; gap < next; gap++) {
+                    set(words, gap);
+                }
+            }
+            i = next;
+        }
+    }
+
+    /**
+     * Get the verses of a Key as a set.
+     * 
+     * @param v11n
+     *            the versification of the verses
+     * @param key
+     *            the verses
+     * @return the set of verses
+     */
+    public static long[] fromKey(Versification v11n, Key key) {
+        long[] words = create(v11n);
+        PrimitiveIterator.OfInt iter = KeyUtil.getOrdinals(key);
+        while (iter.hasNext()) {
+            set(words, iter.nextInt());
+        }
+        return words;
+    }
+
+    /**
+     * Make a Passage of the default type from a set of verses. A set with
+     * few verses may be given a more compact type.
+     * 
+     * @param v11n
+     *            the versification of the verses
+     * @param words
+     *            the set of verses
+     * @return the passage
+     */
+    public static Passage toPassage(Versification v11n, long[] words) {
+        int[] ordinals = toOrdinalArray(words);
+        Passage ref = (Passage) PassageKeyFactory.instance().createEmptyKeyList(v11n, ordinals.length);
+        AbstractPassage aref = null;
+        if (ref instanceof AbstractPassage) {
+            aref = (AbstractPassage) ref;
+            aref.raiseEventSuppresion();
+            aref.raiseNormalizeProtection();
+        }
+
+        ref.addOrdinals(ordinals);
+
+        if (aref != null) {
+            aref.lowerNormalizeProtection();
+            aref.lowerEventSuppressionAndTest();
+        }
+        return ref;
+    }
+
+    /**
+     * Move every verse in a set to the one a number of verses before it.
+     * 
+     * @param words
+     *            the set that is changed
+     * @param by
+     *            how many verses to move
+     */
+    private static void shiftDown(long[] words, int by) {
+        int wordShift = by >>> 6;
+        int bitShift = by & 63;
+        int len = words.length;
+        for (int i = 0; i < len; i++) {
+            int src = i + wordShift;
+            long low = src < len ? words[src] : 0L;
+            long high = src + 1 < len ? words[src + 1] : 0L;
+            words[i] = bitShift == 0 ? low : (low >>> bitShift) | (high << (64 - bitShift));
+        }
+    }
+
+    /**
+     * Move every verse in a set to the one a number of verses after it.
+     * 
+     * @param words
+     *            the set that is changed
+     * @param by
+     *            how many verses to move
+     */
+    private static void shiftUp(long[] words, int by) {
+        int wordShift = by >>> 6;
+        int bitShift = by & 63;
+        for (int i = words.length - 1; i >= 0; i--) {
+            int src = i - wordShift;
+            long high = src >= 0 ? words[src] : 0L;
+            long low = src > 0 ? words[src - 1] : 0L;
+            words[i] = bitShift == 0 ? high : (high << bitShift) | (low >>> (64 - bitShift));
+        }
+    }
+
+    /**
+     * Get the first and last verses of every chapter, including the
+     * introductions, of a versification. These are worked out once for each
+     * versification.
+     * 
+     * @param v11n
+     *            the versification
+     * @return the set of first verses followed by the set of last verses
+     */
+    static long[][] getChapterMasks(Versification v11n) {
+        long[][] masks = CHAPTER_MASKS.get(v11n.getName());
+        if (masks == null) {
+            long[] firsts = create(v11n);
+            long[] lasts = create(v11n);
+            int maximumOrdinal = v11n.maximumOrdinal();
+            for (int ordinal = 0; ordinal <= maximumOrdinal; ordinal++) {
+                Verse verse = v11n.decodeOrdinal(ordinal);
+                if (verse.getVerse() == 0) {
+                    set(firsts, ordinal);
+                }
+                if (verse.getVerse() == v11n.getLastVerse(verse.getBook(), verse.getChapter())) {
+                    set(lasts, ordinal);
+                }
+            }
+            masks = new long[][] {
+                    firsts, lasts
+            };
+            CHAPTER_MASKS.put(v11n.getName(), masks);
+        }
+        return masks;
+    }
+
+    /**
+     * The chapter boundaries of each versification, by name.
+     */
+    private static final Map<String, long[][]> CHAPTER_MASKS = new ConcurrentHashMap<String, long[][]>();
+}
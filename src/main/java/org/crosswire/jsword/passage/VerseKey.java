@@ -19,6 +19,10 @@
  */
 package org.crosswire.jsword.passage;
 
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
 import org.crosswire.jsword.versification.Versification;
 
 /**
@@ -75,4 +79,46 @@ public interface VerseKey<T extends VerseKey> extends Key {
      */
      T getWhole();
 
+    /**
+     * Iterate over the ordinals of the Verses in this VerseKey, in the same
+     * order as {@link #iterator()}. Where it can, this is done without making
+     * a Verse for each ordinal.
+     * 
+     * @return an iterator over the ordinals
+     */
+    default PrimitiveIterator.OfInt ordinalIterator() {
+        return KeyUtil.getOrdinals(iterator());
+    }
+
+    /**
+     * Perform an action on the ordinal of each Verse in this VerseKey, in the
+     * same order as {@link #iterator()}.
+     * 
+     * @param action the action to perform
+     */
+    default void forEachOrdinal(IntConsumer action) {
+        PrimitiveIterator.OfInt iter = ordinalIterator();
+        while (iter.hasNext()) {
+            action.accept(iter.nextInt());
+        }
+    }
+
+    /**
+     * Get the ordinals of the Verses in this VerseKey, in the same order as
+     * {@link #iterator()}.
+     * 
+     * @return the ordinals
+     */
+    default int[] toOrdinalArray() {
+        int[] ordinals = new int[getCardinality()];
+        int count = 0;
+        PrimitiveIterator.OfInt iter = ordinalIterator();
+        while (iter.hasNext()) {
+            if (count == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, count * 2 + 1);
+            }
+            ordinals[count++] = iter.nextInt();
+        }
+        return count == ordinals.length ? ordinals : Arrays.copyOf(ordinals, count);
+    }
 }
@@ -25,6 +25,9 @@ import java.io.ObjectOutputStream;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import org.crosswire.common.icu.NumberShaper;
 import org.crosswire.jsword.versification.BibleBook;
@@ -896,6 +899,41 @@ public final class VerseRange implements VerseKey<VerseRange> {
         return new VerseIterator(this);
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#ordinalIterator()
+     */
+    public PrimitiveIterator.OfInt ordinalIterator() {
+        return ordinals().iterator();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#forEachOrdinal(java.util.function.IntConsumer)
+     */
+    public void forEachOrdinal(IntConsumer action) {
+        int first = start.getOrdinal();
+        int last = first + verseCount;
+        for (int ordinal = first; ordinal < last; ordinal++) {
+            action.accept(ordinal);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#toOrdinalArray()
+     */
+    public int[] toOrdinalArray() {
+        return ordinals().toArray();
+    }
+
+    /**
+     * The verses of a range have consecutive ordinals.
+     * 
+     * @return the ordinals of the verses
+     */
+    private IntStream ordinals() {
+        int first = start.getOrdinal();
+        return IntStream.range(first, first + verseCount);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#addAll(org.crosswire.jsword.passage.Key)
      */
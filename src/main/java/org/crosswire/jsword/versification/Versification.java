@@ -960,72 +960,47 @@ public class Versification implements ReferenceSystem, Serializable {
             ord = ntMaxOrdinal;
         }
 
-        // Handle three special cases
-        // Book/Module introduction
-        if (ord == 0) {
-            return new Verse(this, BibleBook.INTRO_BIBLE, 0, 0);
-        }
-
-        // OT introduction
-        if (ord == 1) {
-            return new Verse(this, BibleBook.INTRO_OT, 0, 0);
+        OrdinalTable table = getOrdinalTable();
+        if (table.verses != null) {
+            return table.verses[ord];
         }
+        return new Verse(this, bookList.getBook(table.books[ord]), table.chapters[ord], table.verseNumbers[ord]);
+    }
 
-        // NT introduction
-        if (ord == otMaxOrdinal + 1) {
-            return new Verse(this, BibleBook.INTRO_NT, 0, 0);
-        }
+    /**
+     * Whether each Versification keeps a Verse for every ordinal, so that
+     * {@link #decodeOrdinal(int)} does not need to create one.
+     *
+     * @return true if verses are cached
+     */
+    public static boolean isCachingVerses() {
+        return cachingVerses;
+    }
 
-        // To find the book, do a binary search in chapterStarts against chapter 0
-        int low = 0;
-        int high = chapterStarts.length;
-        int match = -1;
-
-        while (high - low > 1) {
-            // use >>> to keep mid always in range
-            int mid = (low + high) >>> 1;
-
-            // Compare the for the item at "mid"
-            int cmp = chapterStarts[mid][0] - ord;
-            if (cmp < 0) {
-                low = mid;
-            } else if (cmp > 0) {
-                high = mid;
-            } else {
-                match = mid;
-                break;
-            }
-        }
+    /**
+     * Set whether each Versification keeps a Verse for every ordinal. This
+     * costs about a megabyte for each Versification that is used. By default
+     * verses are cached.
+     *
+     * @param cachingVerses
+     *            true to cache verses
+     */
+    public static void setCachingVerses(boolean cachingVerses) {
+        Versification.cachingVerses = cachingVerses;
+    }
 
-        // If we didn't have an exact match then use the low value
-        int bookIndex = match >= 0 ? match : low;
-        BibleBook book = bookList.getBook(bookIndex);
-
-        // To find the chapter, do a binary search in chapterStarts against bookIndex
-        low = 0;
-        high = chapterStarts[bookIndex].length;
-        match = -1;
-
-        while (high - low > 1) {
-            // use >>> to keep mid always in range
-            int mid = (low + high) >>> 1;
-
-            // Compare the for the item at "mid"
-            int cmp = chapterStarts[bookIndex][mid] - ord;
-            if (cmp < 0) {
-                low = mid;
-            } else if (cmp > 0) {
-                high = mid;
-            } else {
-                match = mid;
-                break;
-            }
+    /**
+     * Get the table for decoding ordinals, building it on first use.
+     *
+     * @return the table for decoding ordinals
+     */
+    private OrdinalTable getOrdinalTable() {
+        OrdinalTable table = ordinalTable;
+        if (table == null || (cachingVerses && table.verses == null)) {
+            table = new OrdinalTable(this, cachingVerses);
+            ordinalTable = table;
         }
-
-        // If we didn't have an exact match then use the low value
-        int chapterIndex = match >= 0 ? match : low;
-        int verse = chapterIndex == 0 ? 0 : ord - chapterStarts[bookIndex][chapterIndex];
-        return new Verse(this, book, chapterIndex, verse);
+        return table;
     }
 
     /**
@@ -1334,8 +1309,67 @@ public class Versification implements ReferenceSystem, Serializable {
      * The number of chapters in the NT, not counting chapter 0
      */
     private int ntChapterCount;
+
+    /**
+     * The book, chapter and verse of each ordinal, built when it is first
+     * needed.
+     */
+    private transient volatile OrdinalTable ordinalTable;
+
+    /**
+     * Whether a Verse is kept for every ordinal.
+     */
+    private static volatile boolean cachingVerses = true;
+
     /**
      * Serialization ID
      */
     private static final long serialVersionUID = -6226916242596368765L;
+
+    /**
+     * The parts of each verse, indexed by ordinal. Building this once turns
+     * decoding an ordinal into array lookups rather than two binary searches.
+     */
+    private static final class OrdinalTable {
+        OrdinalTable(Versification v11n, boolean withVerses) {
+            int size = v11n.ntMaxOrdinal + 1;
+            books = new short[size];
+            chapters = new short[size];
+            verseNumbers = new short[size];
+            for (int bookIndex = 0; bookIndex < v11n.chapterStarts.length; bookIndex++) {
+                int[] starts = v11n.chapterStarts[bookIndex];
+                for (int chapter = 0; chapter < starts.length; chapter++) {
+                    // Including verse 0, a chapter has one more verse than its last
+                    int count = v11n.lastVerse[bookIndex][chapter] + 1;
+                    for (int verse = 0; verse < count; verse++) {
+                        int ordinal = starts[chapter] + verse;
+                        books[ordinal] = (short) bookIndex;
+                        chapters[ordinal] = (short) chapter;
+                        verseNumbers[ordinal] = (short) verse;
+                    }
+                }
+            }
+
+            if (withVerses) {
+                verses = new Verse[size];
+                for (int ordinal = 0; ordinal < size; ordinal++) {
+                    verses[ordinal] = new Verse(v11n, v11n.bookList.getBook(books[ordinal]), chapters[ordinal], verseNumbers[ordinal]);
+                }
+            } else {
+                verses = null;
+            }
+        }
+
+        /** The position of the book of each ordinal in the book list */
+        final short[] books;
+
+        /** The chapter of each ordinal */
+        final short[] chapters;
+
+        /** The verse number of each ordinal */
+        final short[] verseNumbers;
+
+        /** The verse for each ordinal, if verses are cached */
+        final Verse[] verses;
+    }
 }
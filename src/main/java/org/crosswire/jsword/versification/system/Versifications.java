@@ -19,17 +19,18 @@
  */
 package org.crosswire.jsword.versification.system;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.crosswire.jsword.versification.Versification;
 
 /**
  * The Versifications class manages the creation of Versifications as needed.
  * It delays the construction of the Versification until getVersification(String name) is called.
+ * Looking up a Versification that has already been built does not lock, as it is done for every verse read.
  *
  * @see gnu.lgpl.License The GNU Lesser General Public License for details.
  * @author DM Smith
@@ -58,7 +59,7 @@ public final class Versifications {
      * @deprecated Use {@link #getVersification(String)} instead.
      */
     @Deprecated
-    public synchronized Versification getDefaultVersification() {
+    public Versification getDefaultVersification() {
         return getVersification(DEFAULT_V11N);
     }
 
@@ -68,7 +69,7 @@ public final class Versifications {
      * @param name the name of the Versification
      * @return the Versification or null if it is not known.
      */
-    public synchronized Versification getVersification(String name) {
+    public Versification getVersification(String name) {
         String actual = name;
         if (actual == null) {
             actual = DEFAULT_V11N;
@@ -78,9 +79,15 @@ public final class Versifications {
         // actually needed.
         Versification rs = fluffed.get(actual);
         if (rs == null) {
-            rs = fluff(actual);
-            if (rs != null) {
-                fluffed.put(actual, rs);
+            // Only build it once
+            synchronized (this) {
+                rs = fluffed.get(actual);
+                if (rs == null) {
+                    rs = fluff(actual);
+                    if (rs != null) {
+                        fluffed.put(actual, rs);
+                    }
+                }
             }
         }
 
@@ -93,7 +100,7 @@ public final class Versifications {
      * @param name the name of the Versification
      * @return true when the Versification is available for use
      */
-    public synchronized boolean isDefined(String name) {
+    public boolean isDefined(String name) {
         return name == null || known.contains(name);
     }
 
@@ -189,7 +196,7 @@ public final class Versifications {
      * This class is a singleton, enforced by a private constructor.
      */
     private Versifications() {
-        known = new HashSet<>();
+        known = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
         known.add(SystemCalvin.V11N_NAME);
         known.add(SystemCatholic.V11N_NAME);
         known.add(SystemCatholic2.V11N_NAME);
@@ -208,18 +215,18 @@ public final class Versifications {
         known.add(SystemSynodal.V11N_NAME);
         known.add(SystemSynodalProt.V11N_NAME);
         known.add(SystemVulg.V11N_NAME);
-        fluffed = new HashMap<>();
+        fluffed = new ConcurrentHashMap<>();
     }
 
     /**
      * The set of v11n names.
      */
-    private Set<String> known;
+    private final Set<String> known;
 
     /**
      * The map of instantiated Versifications, given by their names.
      */
-    private Map<String, Versification> fluffed;
+    private final ConcurrentMap<String, Versification> fluffed;
 
     private static final Versifications instance = new Versifications();
 }
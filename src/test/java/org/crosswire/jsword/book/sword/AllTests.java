@@ -32,11 +32,17 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
     BackendTest.class,
+    BlockCacheTest.class,
     ConfigEntryTableTest.class,
+    DictionaryKeyIndexTest.class,
+    GlobalKeyListStoreTest.class,
+    RawBackendTest.class,
     RawFileBackendTest.class,
     SwordBookDriverTest.class,
     SwordBookMetaDataTest.class,
-    SwordBookTest.class
+    SwordBookTest.class,
+    SwordDictionaryTest.class,
+    ZVerseBackendTest.class
 })
 public class AllTests {
 }
@@ -0,0 +1,112 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.versification.Testament;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test for the shared cache of uncompressed blocks.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class BlockCacheTest {
+    private BlockCache cache;
+    private BookMetaData bmd;
+    private long oldMaxBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = BlockCache.instance();
+        oldMaxBytes = cache.getMaxBytes();
+        cache.clear();
+        bmd = new SwordBookMetaData("[Test]\nModDrv=zText\nDescription=Test\n".getBytes("UTF-8"), "test.conf");
+    }
+
+    @After
+    public void tearDown() {
+        cache.setMaxBytes(oldMaxBytes);
+        cache.clear();
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        byte[] block = new byte[10];
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        Assert.assertNull(cache.get(bmd, Testament.OLD, 1));
+        cache.put(bmd, Testament.OLD, 1, block);
+        Assert.assertSame(block, cache.get(bmd, Testament.OLD, 1));
+        Assert.assertNull(cache.get(bmd, Testament.NEW, 1));
+        Assert.assertEquals(hits + 1, cache.getHitCount());
+        Assert.assertEquals(misses + 2, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction() {
+        cache.setMaxBytes(25);
+        long evictions = cache.getEvictionCount();
+        cache.put(bmd, null, 1, new byte[10]);
+        cache.put(bmd, null, 2, new byte[10]);
+        // touch block 1 so that block 2 is the least recently used
+        Assert.assertNotNull(cache.get(bmd, null, 1));
+        cache.put(bmd, null, 3, new byte[10]);
+        Assert.assertEquals(20, cache.getSize());
+        Assert.assertEquals(evictions + 1, cache.getEvictionCount());
+        Assert.assertNotNull(cache.get(bmd, null, 1));
+        Assert.assertNull(cache.get(bmd, null, 2));
+        Assert.assertNotNull(cache.get(bmd, null, 3));
+
+        // too big to cache
+        cache.put(bmd, null, 4, new byte[30]);
+        Assert.assertNull(cache.get(bmd, null, 4));
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.put(bmd, Testament.NEW, 1, new byte[10]);
+        cache.invalidate(bmd);
+        Assert.assertNull(cache.get(bmd, Testament.NEW, 1));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInstallAndRemove() throws BookException {
+        Book book = BookType.fromString("zText").createBook((SwordBookMetaData) bmd);
+        cache.put(bmd, Testament.NEW, 1, new byte[10]);
+        Books.installed().addBook(book);
+        try {
+            Assert.assertNull(cache.get(bmd, Testament.NEW, 1));
+            cache.put(bmd, Testament.NEW, 1, new byte[10]);
+        } finally {
+            Books.installed().removeBook(book);
+        }
+        Assert.assertNull(cache.get(bmd, Testament.NEW, 1));
+        Assert.assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit Test for the in-memory key index of dictionaries.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class DictionaryKeyIndexTest {
+
+    @Test
+    public void testSearchKeys() {
+        DictionaryKeyIndex folded = new DictionaryKeyIndex(KEYS, OFFSETS, SIZES, true);
+        Assert.assertEquals(4, folded.size());
+        Assert.assertEquals("alpha", folded.getKey(1));
+        Assert.assertEquals("ALPHA", folded.getSearchKey(1));
+        Assert.assertEquals(10, folded.getOffset(1));
+        Assert.assertEquals(5, folded.getSize(1));
+
+        DictionaryKeyIndex exact = new DictionaryKeyIndex(KEYS, OFFSETS, SIZES, false);
+        Assert.assertEquals("alpha", exact.getSearchKey(1));
+    }
+
+    @Test
+    public void testFind() {
+        DictionaryKeyIndex index = new DictionaryKeyIndex(KEYS, OFFSETS, SIZES, false);
+        Assert.assertEquals(0, index.find("Title"));
+        Assert.assertEquals(1, index.find("alpha"));
+        Assert.assertEquals(2, index.find("Beta"));
+        Assert.assertEquals(-1, index.find("beta"));
+        Assert.assertEquals(-1, index.find("gamma"));
+    }
+
+    @Test
+    public void testLowerBound() {
+        String[] keys = {
+                "Title", "AB", "ABC", "", "ABD", "B"
+        };
+        int[] offsets = new int[keys.length];
+        int[] sizes = {
+                1, 1, 1, 0, 1, 1
+        };
+        DictionaryKeyIndex index = new DictionaryKeyIndex(keys, offsets, sizes, true);
+        Assert.assertEquals(1, index.lowerBound("AB", 1));
+        Assert.assertEquals(2, index.lowerBound("ABC", 1));
+        Assert.assertEquals(5, index.lowerBound("B", 1));
+        Assert.assertEquals(6, index.lowerBound("C", 1));
+    }
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        File idxFile = File.createTempFile("dict", SwordConstants.EXTENSION_INDEX);
+        String path = idxFile.getPath();
+        File storeFile = new File(path.substring(0, path.length() - SwordConstants.EXTENSION_INDEX.length()) + SwordConstants.EXTENSION_KEY_INDEX);
+        try {
+            Assert.assertNull(DictionaryKeyIndex.load(idxFile, true));
+
+            new DictionaryKeyIndex(KEYS, OFFSETS, SIZES, true).store(idxFile);
+            DictionaryKeyIndex loaded = DictionaryKeyIndex.load(idxFile, true);
+            Assert.assertNotNull(loaded);
+            Assert.assertEquals(KEYS.length, loaded.size());
+            for (int i = 0; i < KEYS.length; i++) {
+                Assert.assertEquals(KEYS[i], loaded.getKey(i));
+                Assert.assertEquals(OFFSETS[i], loaded.getOffset(i));
+                Assert.assertEquals(SIZES[i], loaded.getSize(i));
+            }
+
+            // A change to the module's index makes the saved copy stale.
+            FileOutputStream out = new FileOutputStream(idxFile);
+            out.write(new byte[8]);
+            out.close();
+            Assert.assertNull(DictionaryKeyIndex.load(idxFile, true));
+        } finally {
+            idxFile.delete();
+            storeFile.delete();
+        }
+    }
+
+    private static final String[] KEYS = {
+            "Title", "alpha", "Beta", ""
+    };
+    private static final int[] OFFSETS = {
+            0, 10, 15, 0
+    };
+    private static final int[] SIZES = {
+            10, 5, 7, 0
+    };
+}
@@ -19,6 +19,14 @@
  */
 package org.crosswire.jsword.book.sword;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.crosswire.common.util.FileUtil;
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.Books;
@@ -77,4 +85,108 @@ public class GenBookTest {
         }
     }
 
+    @Test
+    public void testGetKeyHasChildren() throws Exception {
+        File root = createGenBook();
+        try {
+            SwordBookMetaData sbmd = new SwordBookMetaData(new File(root, "mods.d/testgen.conf"), root.toURI());
+            Book book = BookType.fromString("RawGenBook").createBook(sbmd);
+
+            Key key = book.getKey("a/b");
+            Assert.assertEquals("a/b", key.getOsisRef());
+            Assert.assertEquals(2, key.getChildCount());
+            Assert.assertEquals("c", key.get(0).getName());
+            Assert.assertEquals("d", key.get(1).getName());
+            Assert.assertEquals("a", key.getParent().getName());
+
+            // The key is the node in the book's tree, not a copy of it
+            Key a = book.getGlobalKeyList().get(0);
+            Assert.assertSame(a.get(0), key);
+            Assert.assertSame(a, book.getKey("a"));
+            Assert.assertEquals("text of d", book.getRawText(book.getKey("a/b/d")));
+        } finally {
+            FileUtil.delete(root);
+        }
+    }
+
+    /**
+     * Write a small general book with this tree:
+     * <pre>
+     * a
+     *   b
+     *     c
+     *     d
+     * e
+     * </pre>
+     * 
+     * @return the directory holding the book
+     * @throws IOException
+     */
+    private static File createGenBook() throws IOException {
+        File root = File.createTempFile("genbook", "");
+        root.delete();
+        File data = new File(root, "modules/genbook/rawgenbook/testgen");
+        data.mkdirs();
+        new File(root, "mods.d").mkdirs();
+        write(new File(root, "mods.d/testgen.conf"), ("[TestGen]\nDataPath=./modules/genbook/rawgenbook/testgen/testgen\n"
+                + "ModDrv=RawGenBook\nEncoding=UTF-8\nSourceType=Plaintext\nDescription=Test GenBook\n").getBytes(StandardCharsets.UTF_8));
+
+        // Each node is known by the position of its entry in the idx file.
+        // The root is followed by the others in pre-order.
+        String[] names = {
+                "", "a", "b", "c", "d", "e"
+        };
+        int[] parents = {
+                -1, 0, 4, 8, 8, 0
+        };
+        int[] nextSiblings = {
+                -1, 20, -1, 16, -1, -1
+        };
+        int[] firstChildren = {
+                4, 8, 12, -1, -1, -1
+        };
+        ByteArrayOutputStream idx = new ByteArrayOutputStream();
+        ByteArrayOutputStream dat = new ByteArrayOutputStream();
+        ByteArrayOutputStream bdt = new ByteArrayOutputStream();
+        for (int i = 0; i < names.length; i++) {
+            writeInt(idx, dat.size());
+            writeInt(dat, parents[i]);
+            writeInt(dat, nextSiblings[i]);
+            writeInt(dat, firstChildren[i]);
+            byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+            dat.write(name, 0, name.length);
+            dat.write(0);
+            if (i == 0) {
+                dat.write(0);
+                dat.write(0);
+            } else {
+                byte[] text = ("text of " + names[i]).getBytes(StandardCharsets.UTF_8);
+                dat.write(8);
+                dat.write(0);
+                writeInt(dat, bdt.size());
+                writeInt(dat, text.length);
+                bdt.write(text, 0, text.length);
+            }
+        }
+        write(new File(data, "testgen.idx"), idx.toByteArray());
+        write(new File(data, "testgen.dat"), dat.toByteArray());
+        write(new File(data, "testgen.bdt"), bdt.toByteArray());
+        return root;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >> 24);
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
 }
@@ -0,0 +1,65 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit Test for the saved global key lists of versified modules.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class GlobalKeyListStoreTest {
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        File dir = File.createTempFile("module", "");
+        Assert.assertTrue(dir.delete() && dir.mkdir());
+        File source = new File(dir, SwordConstants.FILE_OT + SwordConstants.EXTENSION_VSS);
+        File storeFile = new File(dir, SwordConstants.FILE_GLOBAL_KEY_LIST);
+        try {
+            Assert.assertTrue(source.createNewFile());
+            Assert.assertNull(GlobalKeyListStore.load(dir, source));
+
+            BitSet ordinals = new BitSet();
+            ordinals.set(4);
+            ordinals.set(5);
+            ordinals.set(31102);
+            GlobalKeyListStore.store(dir, ordinals, source);
+            Assert.assertEquals(ordinals, GlobalKeyListStore.load(dir, source));
+
+            // A change to the source makes the saved copy stale.
+            FileOutputStream out = new FileOutputStream(source);
+            out.write(new byte[6]);
+            out.close();
+            Assert.assertNull(GlobalKeyListStore.load(dir, source));
+        } finally {
+            source.delete();
+            storeFile.delete();
+            dir.delete();
+        }
+    }
+}
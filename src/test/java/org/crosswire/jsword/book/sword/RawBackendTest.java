@@ -0,0 +1,134 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that reading a range of verses at once from a RawText Bible gives the
+ * same text as reading each verse on its own.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class RawBackendTest {
+
+    @Before
+    public void setUp() throws IOException, BookException {
+        v11n = Versifications.instance().getVersification("KJV");
+        Map<Verse, String> verses = new LinkedHashMap<>();
+        // A chapter whose text is together, but for one verse that has none.
+        for (int verse = 1; verse <= 31; verse++) {
+            if (verse != 5) {
+                verses.put(new Verse(v11n, BibleBook.GEN, 1, verse), "Genesis 1:" + verse + " is א verse.");
+            }
+        }
+        // Verses whose text is spread far apart by that of verses outside of them,
+        // so that reading all that lies between them would be wasteful.
+        StringBuilder filler = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            filler.append('x');
+        }
+        for (int verse = 1; verse <= 3; verse++) {
+            verses.put(new Verse(v11n, BibleBook.GEN, 2, verse), "Genesis 2:" + verse);
+            verses.put(new Verse(v11n, BibleBook.EXOD, 1, verse), filler.toString());
+        }
+        // Both sides of the end of the Old Testament
+        verses.put(new Verse(v11n, BibleBook.MAL, 4, 5), "Behold, I will send you Elijah the prophet.");
+        verses.put(new Verse(v11n, BibleBook.MAL, 4, 6), "And he shall turn the heart of the fathers.");
+        verses.put(new Verse(v11n, BibleBook.MATT, 1, 1), "The book of the generation of Jesus Christ.");
+        verses.put(new Verse(v11n, BibleBook.MATT, 1, 2), "Abraham begat Isaac.");
+
+        root = File.createTempFile("rawbackend", "");
+        root.delete();
+        TestBible.write(root, INITIALS, "", verses);
+        book = TestBible.open(root, INITIALS);
+    }
+
+    @After
+    public void tearDown() {
+        OpenFileStateManager.instance().closeStates(book.getBookMetaData());
+        FileUtil.delete(root);
+    }
+
+    @Test
+    public void testContiguous() throws BookException {
+        String[] texts = check(new VerseRange(v11n, new Verse(v11n, BibleBook.GEN, 1, 1), new Verse(v11n, BibleBook.GEN, 1, 31)));
+        Assert.assertEquals("Genesis 1:1 is א verse.", texts[0]);
+        Assert.assertEquals("", texts[4]);
+        Assert.assertEquals("Genesis 1:31 is א verse.", texts[30]);
+    }
+
+    @Test
+    public void testScattered() throws BookException {
+        String[] texts = check(new VerseRange(v11n, new Verse(v11n, BibleBook.GEN, 2, 1), new Verse(v11n, BibleBook.GEN, 2, 3)));
+        Assert.assertEquals(Arrays.asList("Genesis 2:1", "Genesis 2:2", "Genesis 2:3"), Arrays.asList(texts));
+    }
+
+    @Test
+    public void testTestaments() throws BookException {
+        // The range includes the introductions to the New Testament and to Matthew.
+        String[] texts = check(new VerseRange(v11n, new Verse(v11n, BibleBook.MAL, 4, 5), new Verse(v11n, BibleBook.MATT, 1, 2)));
+        Assert.assertEquals("Behold, I will send you Elijah the prophet.", texts[0]);
+        Assert.assertEquals("Abraham begat Isaac.", texts[texts.length - 1]);
+    }
+
+    /**
+     * Check that the range is read as its verses are read one by one.
+     *
+     * @param range the verses to read
+     * @return the text of the verses
+     * @throws BookException
+     */
+    private String[] check(VerseRange range) throws BookException {
+        Backend<?> backend = ((SwordBook) book).getBackend();
+        String[] texts = backend.getRawTexts(range);
+        Verse[] verses = range.toVerseArray();
+        Assert.assertEquals(verses.length, texts.length);
+        for (int i = 0; i < verses.length; i++) {
+            Assert.assertEquals(verses[i].getOsisRef(), backend.getRawText(verses[i]), texts[i]);
+        }
+        return texts;
+    }
+
+    private static final String INITIALS = "TestRaw";
+
+    private Versification v11n;
+    private File root;
+    private Book book;
+}
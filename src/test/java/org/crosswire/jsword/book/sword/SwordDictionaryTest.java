@@ -0,0 +1,154 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.passage.Key;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the lookup of the keys of a Sword dictionary.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class SwordDictionaryTest {
+
+    @Before
+    public void setUp() throws IOException, BookException {
+        root = createStrongsDictionary();
+        SwordBookMetaData sbmd = new SwordBookMetaData(new File(root, "mods.d/teststrongs.conf"), root.toURI());
+        book = BookType.fromString("RawLD").createBook(sbmd);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.delete(root);
+    }
+
+    @Test
+    public void testStrongsPrefixIsPadded() {
+        // A prefix matches every number that starts with its digits, however they are padded.
+        Assert.assertEquals("00012, 00120, 00121, 01200", names(book.getKeysWithPrefix("H12", 10)));
+        Assert.assertEquals("00120, 01200", names(book.getKeysWithPrefix("H120", 10)));
+        Assert.assertEquals("01200", names(book.getKeysWithPrefix("H1200", 10)));
+        Assert.assertEquals("00012, 00120", names(book.getKeysWithPrefix("H12", 2)));
+
+        // Leading zeros that are typed are kept.
+        Assert.assertEquals("00012", names(book.getKeysWithPrefix("H00012", 10)));
+        Assert.assertEquals("00010, 00012", names(book.getKeysWithPrefix("H0001", 10)));
+        Assert.assertEquals("00012, 00120, 00121", names(book.getKeysWithPrefix("H0012", 10)));
+    }
+
+    @Test
+    public void testPlainPrefix() {
+        Assert.assertEquals("00120, 00121", names(book.getKeysWithPrefix("0012", 10)));
+        Assert.assertEquals("00120", names(book.getKeysWithPrefix("0012", 1)));
+        Assert.assertEquals("", names(book.getKeysWithPrefix("H99", 10)));
+    }
+
+    @Test
+    public void testKeysAndText() throws BookException {
+        Key keys = book.getGlobalKeyList();
+        Assert.assertEquals("00010, 00012, 00120, 00121, 01200", names(keys));
+        for (Key key : keys) {
+            String text = book.getRawText(key);
+            Assert.assertTrue(text, text.endsWith("text of " + key.getName()));
+        }
+    }
+
+    private static String names(Key keys) {
+        StringBuilder buf = new StringBuilder();
+        for (Key key : keys) {
+            if (buf.length() > 0) {
+                buf.append(", ");
+            }
+            buf.append(key.getName());
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Write a small Hebrew Strong's dictionary whose keys are padded to five
+     * digits, as StrongsHebrew is.
+     *
+     * @return the directory holding the book
+     * @throws IOException
+     */
+    private static File createStrongsDictionary() throws IOException {
+        File root = File.createTempFile("rawld", "");
+        root.delete();
+        File data = new File(root, "modules/lexdict/rawld/teststrongs");
+        data.mkdirs();
+        new File(root, "mods.d").mkdirs();
+        write(new File(root, "mods.d/teststrongs.conf"), ("[TestStrongs]\nDataPath=./modules/lexdict/rawld/teststrongs/teststrongs\n"
+                + "ModDrv=RawLD\nEncoding=UTF-8\nSourceType=Plaintext\nFeature=HebrewDef\nDescription=Test Strong's\n").getBytes(StandardCharsets.UTF_8));
+
+        String[] keys = {
+                "00010", "00012", "00120", "00121", "01200"
+        };
+        // The entries are held in the data in the opposite order to their keys.
+        ByteArrayOutputStream dat = new ByteArrayOutputStream();
+        int[] offsets = new int[keys.length];
+        for (int i = keys.length - 1; i >= 0; i--) {
+            offsets[i] = dat.size();
+            byte[] entry = (keys[i] + "\r\ntext of " + keys[i]).getBytes(StandardCharsets.UTF_8);
+            dat.write(entry, 0, entry.length);
+        }
+        ByteArrayOutputStream idx = new ByteArrayOutputStream();
+        for (int i = 0; i < keys.length; i++) {
+            int offset = offsets[i];
+            int size = (i == 0 ? dat.size() : offsets[i - 1]) - offset;
+            idx.write(offset);
+            idx.write(offset >> 8);
+            idx.write(offset >> 16);
+            idx.write(offset >> 24);
+            idx.write(size);
+            idx.write(size >> 8);
+        }
+        write(new File(data, "teststrongs.idx"), idx.toByteArray());
+        write(new File(data, "teststrongs.dat"), dat.toByteArray());
+        return root;
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    private File root;
+    private Book book;
+}
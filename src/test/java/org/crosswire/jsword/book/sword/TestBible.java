@@ -0,0 +1,233 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Testament;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * Writes a small Bible in the RawText or zText format of a Sword module, so that the
+ * reading and indexing of a Bible can be tested without any installed books.
+ * 
+ * <p>
+ * The text of the verses is written in the order of the map that is given,
+ * so the text of a range of verses can be spread apart by giving the verses
+ * out of order. A testament without any verses is not written, as in a
+ * module holding only one testament.
+ * </p>
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class TestBible {
+    /**
+     * Prevent instantiation
+     */
+    private TestBible() {
+    }
+
+    /**
+     * Write a Bible holding the given verses, all of which are in the KJV
+     * versification.
+     *
+     * @param root the directory to hold the module and its conf
+     * @param initials the initials of the module
+     * @param conf more lines for its conf, each ending in a newline
+     * @param verses the raw text of each verse
+     * @throws IOException
+     */
+    public static void write(File root, String initials, String conf, Map<Verse, String> verses) throws IOException {
+        String name = initials.toLowerCase();
+        File data = new File(root, "modules/texts/rawtext/" + name);
+        data.mkdirs();
+        new File(root, "mods.d").mkdirs();
+        write(new File(root, "mods.d/" + name + ".conf"), ("[" + initials + "]\nDataPath=./modules/texts/rawtext/" + name + "/\n"
+                + "ModDrv=RawText\nEncoding=UTF-8\nSourceType=OSIS\nDescription=Test Bible\n" + conf).getBytes(StandardCharsets.UTF_8));
+
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        for (Testament testament : new Testament[] { Testament.OLD, Testament.NEW }) {
+            // The index covers the whole testament, as that is what is read of it.
+            int last = v11n.getCount(testament);
+
+            int[] offsets = new int[last + 1];
+            int[] sizes = new int[last + 1];
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            for (Map.Entry<Verse, String> entry : verses.entrySet()) {
+                int ordinal = entry.getKey().getOrdinal();
+                if (v11n.getTestament(ordinal) != testament) {
+                    continue;
+                }
+                int index = v11n.getTestamentOrdinal(ordinal);
+                byte[] raw = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                offsets[index] = text.size();
+                sizes[index] = raw.length;
+                text.write(raw, 0, raw.length);
+            }
+            if (text.size() == 0) {
+                continue;
+            }
+
+            ByteArrayOutputStream vss = new ByteArrayOutputStream();
+            for (int i = 0; i <= last; i++) {
+                vss.write(offsets[i]);
+                vss.write(offsets[i] >> 8);
+                vss.write(offsets[i] >> 16);
+                vss.write(offsets[i] >> 24);
+                vss.write(sizes[i]);
+                vss.write(sizes[i] >> 8);
+            }
+            String file = testament == Testament.OLD ? SwordConstants.FILE_OT : SwordConstants.FILE_NT;
+            write(new File(data, file), text.toByteArray());
+            write(new File(data, file + SwordConstants.EXTENSION_VSS), vss.toByteArray());
+        }
+    }
+
+    /**
+     * Write a Bible holding the given verses, all of which are in the KJV
+     * versification, in the zText format with each block holding the given
+     * number of verses. The index of each testament ends with its last verse
+     * that is given.
+     *
+     * @param root the directory to hold the module and its conf
+     * @param initials the initials of the module
+     * @param conf more lines for its conf, each ending in a newline
+     * @param verses the raw text of each verse
+     * @param versesPerBlock how many verses are compressed together
+     * @throws IOException
+     */
+    public static void writeCompressed(File root, String initials, String conf, Map<Verse, String> verses, int versesPerBlock) throws IOException {
+        String name = initials.toLowerCase();
+        File data = new File(root, "modules/texts/ztext/" + name);
+        data.mkdirs();
+        new File(root, "mods.d").mkdirs();
+        write(new File(root, "mods.d/" + name + ".conf"), ("[" + initials + "]\nDataPath=./modules/texts/ztext/" + name + "/\n"
+                + "ModDrv=zText\nBlockType=BOOK\nCompressType=ZIP\nEncoding=UTF-8\nSourceType=OSIS\nDescription=Test Bible\n" + conf).getBytes(StandardCharsets.UTF_8));
+
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        for (Testament testament : new Testament[] { Testament.OLD, Testament.NEW }) {
+            int last = -1;
+            for (Verse verse : verses.keySet()) {
+                if (v11n.getTestament(verse.getOrdinal()) == testament) {
+                    last = Math.max(last, v11n.getTestamentOrdinal(verse.getOrdinal()));
+                }
+            }
+            if (last < 0) {
+                continue;
+            }
+
+            int[] blocks = new int[last + 1];
+            int[] starts = new int[last + 1];
+            int[] sizes = new int[last + 1];
+            ByteArrayOutputStream comp = new ByteArrayOutputStream();
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            int inBlock = 0;
+            for (Map.Entry<Verse, String> entry : verses.entrySet()) {
+                int ordinal = entry.getKey().getOrdinal();
+                if (v11n.getTestament(ordinal) != testament) {
+                    continue;
+                }
+                int index = v11n.getTestamentOrdinal(ordinal);
+                byte[] raw = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                blocks[index] = comp.size() / 12;
+                starts[index] = block.size();
+                sizes[index] = raw.length;
+                block.write(raw, 0, raw.length);
+                if (++inBlock == versesPerBlock) {
+                    writeBlock(block, comp, text);
+                    inBlock = 0;
+                }
+            }
+            if (inBlock > 0) {
+                writeBlock(block, comp, text);
+            }
+
+            ByteArrayOutputStream idx = new ByteArrayOutputStream();
+            for (int i = 0; i <= last; i++) {
+                writeInt(idx, blocks[i]);
+                writeInt(idx, starts[i]);
+                idx.write(sizes[i]);
+                idx.write(sizes[i] >> 8);
+            }
+            String file = (testament == Testament.OLD ? SwordConstants.FILE_OT : SwordConstants.FILE_NT) + '.' + BlockType.BLOCK_BOOK.getIndicator();
+            write(new File(data, file + "zs"), comp.toByteArray());
+            write(new File(data, file + "zv"), idx.toByteArray());
+            write(new File(data, file + "zz"), text.toByteArray());
+        }
+    }
+
+    /**
+     * Open a Bible written by {@link #write} or {@link #writeCompressed}.
+     *
+     * @param root the directory holding the module and its conf
+     * @param initials the initials of the module
+     * @return the Bible
+     * @throws IOException
+     * @throws BookException
+     */
+    public static Book open(File root, String initials) throws IOException, BookException {
+        SwordBookMetaData sbmd = new SwordBookMetaData(new File(root, "mods.d/" + initials.toLowerCase() + ".conf"), root.toURI());
+        return sbmd.getBookType().createBook(sbmd);
+    }
+
+    /**
+     * Compress a block onto the text and add its entry to the block index.
+     */
+    private static void writeBlock(ByteArrayOutputStream block, ByteArrayOutputStream comp, ByteArrayOutputStream text) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        DeflaterOutputStream out = new DeflaterOutputStream(compressed);
+        block.writeTo(out);
+        out.close();
+        writeInt(comp, text.size());
+        writeInt(comp, compressed.size());
+        writeInt(comp, block.size());
+        compressed.writeTo(text);
+        block.reset();
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >> 24);
+    }
+
+    private static void write(File file, byte[] content) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+}
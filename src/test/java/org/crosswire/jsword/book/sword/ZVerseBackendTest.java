@@ -0,0 +1,181 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
+import org.crosswire.jsword.book.sword.state.ZVerseBackendState;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Testament;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the reading of a zText Bible, verse by verse and a range at a time,
+ * with its files memory mapped and not.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class ZVerseBackendTest {
+
+    @Before
+    public void setUp() throws IOException, BookException {
+        wasMapped = ZVerseBackendState.isMemoryMapped();
+        v11n = Versifications.instance().getVersification("KJV");
+        verses = new LinkedHashMap<>();
+        for (int chapter = 1; chapter <= 2; chapter++) {
+            for (int verse = 1; verse <= 10; verse++) {
+                if (verse != 4) {
+                    verses.put(new Verse(v11n, BibleBook.GEN, chapter, verse), "Genesis " + chapter + ':' + verse + " is א verse.");
+                }
+            }
+        }
+        verses.put(new Verse(v11n, BibleBook.MAL, 4, 6), "And he shall turn the heart of the fathers.");
+        verses.put(new Verse(v11n, BibleBook.MATT, 1, 1), "The book of the generation of Jesus Christ.");
+        verses.put(new Verse(v11n, BibleBook.MATT, 1, 2), "Abraham begat Isaac.");
+
+        root = File.createTempFile("zverse", "");
+        root.delete();
+        TestBible.writeCompressed(root, INITIALS, "", verses, 3);
+        book = TestBible.open(root, INITIALS);
+    }
+
+    @After
+    public void tearDown() {
+        ZVerseBackendState.setMemoryMapped(wasMapped);
+        close();
+        FileUtil.delete(root);
+    }
+
+    @Test
+    public void testMapped() throws BookException {
+        // Verses with text, one without and ones beyond the end of each index
+        List<Verse> toRead = new ArrayList<>(verses.keySet());
+        toRead.add(new Verse(v11n, BibleBook.GEN, 1, 4));
+        toRead.add(new Verse(v11n, BibleBook.GEN, 3, 1));
+        toRead.add(new Verse(v11n, BibleBook.MATT, 1, 3));
+        toRead.add(new Verse(v11n, BibleBook.REV, 22, 21));
+
+        List<String> read = read(false, toRead);
+        Assert.assertEquals(read, read(true, toRead));
+
+        for (int i = 0; i < toRead.size(); i++) {
+            String expected = verses.get(toRead.get(i));
+            Assert.assertEquals(toRead.get(i).getOsisRef(), expected == null ? "" : expected, read.get(i));
+        }
+    }
+
+    @Test
+    public void testRanges() throws BookException {
+        for (boolean mapped : new boolean[] { false, true }) {
+            ZVerseBackendState.setMemoryMapped(mapped);
+            close();
+            // Over several blocks and a verse without text
+            check(new VerseRange(v11n, new Verse(v11n, BibleBook.GEN, 1, 1), new Verse(v11n, BibleBook.GEN, 2, 10)));
+            // Across the testaments, and past the end of the New Testament's index
+            String[] texts = check(new VerseRange(v11n, new Verse(v11n, BibleBook.MAL, 4, 5), new Verse(v11n, BibleBook.MATT, 1, 3)));
+            Assert.assertEquals("", texts[0]);
+            Assert.assertEquals("And he shall turn the heart of the fathers.", texts[1]);
+            Assert.assertEquals("Abraham begat Isaac.", texts[texts.length - 2]);
+            Assert.assertEquals("", texts[texts.length - 1]);
+        }
+    }
+
+    /**
+     * Check that the range is read as its verses are read one by one.
+     *
+     * @param range the verses to read
+     * @return the text of the verses
+     * @throws BookException
+     */
+    private String[] check(VerseRange range) throws BookException {
+        Backend<?> backend = ((SwordBook) book).getBackend();
+        String[] texts = backend.getRawTexts(range);
+        Verse[] rangeVerses = range.toVerseArray();
+        Assert.assertEquals(rangeVerses.length, texts.length);
+        for (int i = 0; i < rangeVerses.length; i++) {
+            String expected = verses.get(rangeVerses[i]);
+            Assert.assertEquals(rangeVerses[i].getOsisRef(), expected == null ? "" : expected, texts[i]);
+            Assert.assertEquals(rangeVerses[i].getOsisRef(), backend.getRawText(rangeVerses[i]), texts[i]);
+        }
+        return texts;
+    }
+
+    /**
+     * Read the verses one by one, each from a newly opened and uncompressed block.
+     *
+     * @param mapped whether the files are to be memory mapped
+     * @param toRead the verses to read
+     * @return the text of the verses
+     * @throws BookException
+     */
+    private List<String> read(boolean mapped, List<Verse> toRead) throws BookException {
+        ZVerseBackendState.setMemoryMapped(mapped);
+        close();
+
+        ZVerseBackend backend = (ZVerseBackend) ((SwordBook) book).getBackend();
+        ZVerseBackendState state = backend.initState();
+        try {
+            Assert.assertEquals(mapped, state.getIdxBuffer(Testament.OLD) != null);
+            Assert.assertEquals(mapped, state.getCompBuffer(Testament.NEW) != null);
+            Assert.assertEquals(mapped, state.getTextBuffer(Testament.NEW) != null);
+        } finally {
+            OpenFileStateManager.instance().release(state);
+        }
+
+        List<String> read = new ArrayList<>();
+        for (Verse verse : toRead) {
+            read.add(backend.getRawText(verse));
+        }
+        return read;
+    }
+
+    /**
+     * Close the open files of the book and forget its uncompressed blocks.
+     */
+    private void close() {
+        OpenFileStateManager.instance().closeStates(book.getBookMetaData());
+        BlockCache.instance().invalidate(book.getBookMetaData());
+    }
+
+    private static final String INITIALS = "TestZText";
+
+    private boolean wasMapped;
+    private Versification v11n;
+    private Map<Verse, String> verses;
+    private File root;
+    private Book book;
+}
@@ -0,0 +1,224 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.book.sword.state;
+
+import java.util.concurrent.TimeUnit;
+
+import org.crosswire.jsword.book.BookCategory;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.basic.DefaultBookMetaData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the bounds of the pools of open file states.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class OpenFileStateManagerTest {
+
+    @Before
+    public void setUp() {
+        manager = new OpenFileStateManager(3600, 3600);
+        bmd = new DefaultBookMetaData(null, "OpenFileStateManagerTest", BookCategory.BIBLE);
+    }
+
+    @After
+    public void tearDown() {
+        manager.shutDown();
+    }
+
+    @Test
+    public void testMaxIdle() throws BookException {
+        manager.setMaxIdleStates(2);
+        TestState[] states = new TestState[4];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = acquire();
+        }
+        Assert.assertEquals(4, manager.getOpenStateCount(bmd));
+        Assert.assertEquals(4, manager.getOpenFileCount(bmd));
+        Assert.assertEquals(0, manager.getIdleStateCount(bmd));
+
+        for (TestState state : states) {
+            manager.release(state);
+        }
+
+        // The oldest are closed
+        Assert.assertEquals(2, manager.getIdleStateCount(bmd));
+        Assert.assertEquals(2, manager.getOpenStateCount(bmd));
+        Assert.assertEquals(2, manager.getOpenFileCount(bmd));
+        Assert.assertEquals(1, states[0].released);
+        Assert.assertEquals(1, states[1].released);
+        Assert.assertEquals(0, states[2].released);
+        Assert.assertEquals(0, states[3].released);
+
+        // The most recently used is reused
+        Assert.assertSame(states[3], acquire());
+        Assert.assertSame(states[2], acquire());
+        Assert.assertEquals(0, manager.getIdleStateCount(bmd));
+        Assert.assertEquals(0, manager.getWaitCount(bmd));
+    }
+
+    @Test
+    public void testMaxOpenTimesOut() throws BookException {
+        manager.setMaxOpenStates(2);
+        manager.setMaxWait(200);
+        acquire();
+        acquire();
+        Assert.assertEquals(0, manager.getWaitCount(bmd));
+
+        // None is released, so another is opened after waiting
+        long start = System.nanoTime();
+        TestState extra = acquire();
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue("waited " + waited, waited >= 150);
+        Assert.assertEquals(1, manager.getWaitCount(bmd));
+        Assert.assertTrue(manager.getWaitTime(bmd) >= 150);
+        Assert.assertEquals(3, manager.getOpenStateCount(bmd));
+
+        // It is closed rather than kept
+        manager.release(extra);
+        Assert.assertEquals(1, extra.released);
+        Assert.assertEquals(2, manager.getOpenStateCount(bmd));
+        Assert.assertEquals(0, manager.getIdleStateCount(bmd));
+    }
+
+    @Test
+    public void testMaxOpenWaitsForRelease() throws Exception {
+        manager.setMaxOpenStates(1);
+        manager.setMaxWait(10000);
+        final TestState first = acquire();
+
+        Thread releaser = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                manager.release(first);
+            }
+        });
+        releaser.start();
+
+        long start = System.nanoTime();
+        Assert.assertSame(first, acquire());
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        releaser.join();
+        Assert.assertTrue("waited " + waited, waited < 5000);
+        Assert.assertEquals(1, manager.getWaitCount(bmd));
+        Assert.assertEquals(1, manager.getOpenStateCount(bmd));
+        Assert.assertEquals(0, first.released);
+    }
+
+    @Test
+    public void testReleaseFromElsewhere() throws BookException {
+        // A state that the pool did not open is taken over
+        TestState stray = new TestState(bmd);
+        manager.release(stray);
+        Assert.assertEquals(1, manager.getOpenStateCount(bmd));
+        Assert.assertEquals(1, manager.getIdleStateCount(bmd));
+        Assert.assertEquals(0, stray.released);
+        Assert.assertSame(stray, acquire());
+
+        // Unless it would be more than may be open
+        manager.setMaxOpenStates(1);
+        TestState another = new TestState(bmd);
+        manager.release(another);
+        Assert.assertEquals(1, another.released);
+        Assert.assertEquals(1, manager.getOpenStateCount(bmd));
+        Assert.assertEquals(0, manager.getIdleStateCount(bmd));
+    }
+
+    @Test
+    public void testCloseReleasesToSingleton() {
+        // close() gives the state to the pool of the singleton
+        OpenFileStateManager instance = OpenFileStateManager.instance();
+        TestState state = new TestState(bmd);
+        state.close();
+        Assert.assertEquals(1, instance.getIdleStateCount(bmd));
+        Assert.assertEquals(0, state.released);
+
+        instance.closeStates(bmd);
+        Assert.assertEquals(0, instance.getIdleStateCount(bmd));
+        Assert.assertEquals(0, instance.getOpenStateCount(bmd));
+        Assert.assertEquals(1, state.released);
+    }
+
+    @Test
+    public void testCloseStates() throws BookException {
+        TestState idle = acquire();
+        TestState busy = acquire();
+        manager.release(idle);
+        Assert.assertEquals(1, manager.getIdleStateCount(bmd));
+
+        // The idle state is closed when the book is
+        manager.closeStates(bmd);
+        Assert.assertEquals(1, idle.released);
+        Assert.assertEquals(0, busy.released);
+        Assert.assertEquals(0, manager.getOpenStateCount(bmd));
+
+        // The busy one goes to a new pool when it is released
+        manager.release(busy);
+        Assert.assertEquals(0, busy.released);
+        Assert.assertEquals(1, manager.getIdleStateCount(bmd));
+
+        // Other books are left alone
+        BookMetaData other = new DefaultBookMetaData(null, "Other", BookCategory.BIBLE);
+        manager.release(new TestState(other));
+        manager.closeStates(bmd);
+        Assert.assertEquals(1, manager.getIdleStateCount(other));
+        Assert.assertEquals(0, manager.getIdleStateCount(bmd));
+    }
+
+    private TestState acquire() throws BookException {
+        return manager.getInstance(bmd, new OpenFileStateManager.StateFactory<TestState>() {
+            public TestState create() {
+                return new TestState(bmd);
+            }
+        });
+    }
+
+    /**
+     * A state with a single file, that counts how often it is closed.
+     */
+    private static final class TestState extends AbstractOpenFileState {
+        TestState(BookMetaData bmd) {
+            super(bmd);
+        }
+
+        public void releaseResources() {
+            released++;
+        }
+
+        public int getOpenFileCount() {
+            return released == 0 ? 1 : 0;
+        }
+
+        private int released;
+    }
+
+    private OpenFileStateManager manager;
+    private BookMetaData bmd;
+}
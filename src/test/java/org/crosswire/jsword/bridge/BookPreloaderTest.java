@@ -0,0 +1,157 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.bridge;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.crosswire.common.progress.JobManager;
+import org.crosswire.common.progress.Progress;
+import org.crosswire.common.progress.WorkEvent;
+import org.crosswire.common.progress.WorkListener;
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.sword.SwordBookDriver;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.book.sword.TestBible;
+import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the preloading of books and the progress that it reports.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class BookPreloaderTest {
+
+    @Before
+    public void setUp() throws IOException, BookException {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        Map<Verse, String> verses = new LinkedHashMap<>();
+        verses.put(new Verse(v11n, BibleBook.GEN, 1, 1), "In the beginning God created the heaven and the earth.");
+        verses.put(new Verse(v11n, BibleBook.GEN, 1, 2), "And the earth was without form, and void.");
+        root = File.createTempFile("preload", "");
+        root.delete();
+        TestBible.write(root, INITIALS, "", verses);
+        book = TestBible.open(root, INITIALS);
+        // As if it were installed, so that it has a place for a search index
+        ((SwordBookMetaData) book.getBookMetaData()).setDriver(SwordBookDriver.instance());
+        Books.installed().addBook(book);
+
+        sections = Collections.synchronizedList(new ArrayList<String>());
+        listener = new WorkListener() {
+            public void workProgressed(WorkEvent ev) {
+                Progress job = ev.getJob();
+                if (JOB_NAME.equals(job.getJobName()) && !job.isFinished()) {
+                    totalWork = job.getTotalWork();
+                    workDone = Math.max(workDone, job.getWorkDone());
+                    sections.add(job.getSectionName());
+                }
+            }
+
+            public void workStateChanged(WorkEvent ev) {
+            }
+        };
+        JobManager.addWorkListener(listener);
+    }
+
+    @After
+    public void tearDown() throws BookException {
+        JobManager.removeWorkListener(listener);
+        Books.installed().removeBook(book);
+        OpenFileStateManager.instance().closeStates(book.getBookMetaData());
+        FileUtil.delete(root);
+    }
+
+    @Test
+    public void testUnknownInitials() {
+        List<Book> loaded = new BookPreloader(2).preload(Arrays.asList("NoSuchBook", "NoSuchBook", "NorThisOne"));
+        Assert.assertTrue(loaded.isEmpty());
+        // Each book counts for its five stages, even when it is not found, and duplicates are dropped.
+        Assert.assertEquals(10, totalWork);
+        Assert.assertEquals(10, workDone);
+        Assert.assertTrue(new BookPreloader().preload(Collections.<String>emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testStages() {
+        List<Book> loaded = new BookPreloader(2).preload(Arrays.asList(INITIALS, "NoSuchBook"));
+        Assert.assertEquals(Collections.singletonList(book), loaded);
+        Assert.assertEquals(10, totalWork);
+        Assert.assertEquals(10, workDone);
+
+        // Each stage of the book is reported, perhaps more than once
+        // as the progress of the other book is reported.
+        Set<String> stages = new LinkedHashSet<>();
+        synchronized (sections) {
+            for (String section : sections) {
+                if (section.startsWith(INITIALS + ": ")) {
+                    stages.add(section.substring(INITIALS.length() + 2, section.indexOf(" (")));
+                }
+            }
+        }
+        Assert.assertEquals(Arrays.asList("configuration", "versification", "keys", "files", "search index"), new ArrayList<>(stages));
+    }
+
+    @Test
+    public void testCommandLine() {
+        PrintStream out = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true));
+        try {
+            BookInstaller.main(new String[] { "preload", "NoSuchBook", INITIALS });
+        } finally {
+            System.setOut(out);
+        }
+        // Only the books that were prepared are listed.
+        Assert.assertEquals(INITIALS, new String(printed.toByteArray(), StandardCharsets.UTF_8).trim());
+    }
+
+    private static final String INITIALS = "TestPreload";
+    private static final String JOB_NAME = "Preparing books";
+
+    private File root;
+    private Book book;
+    private List<String> sections;
+    private WorkListener listener;
+    private volatile int totalWork;
+    private volatile int workDone;
+}
@@ -0,0 +1,133 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.ReadOnlyKeyList;
+import org.crosswire.jsword.passage.TreeKey;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the walk of the leaf keys of a Key.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class LeafKeyIteratorTest {
+
+    @Before
+    public void setUp() {
+        // A, with A1 and A2, which has A2a and A2b; B; C with C1; and D, which is empty
+        root = new TreeKey("");
+        TreeKey a = add(root, "A");
+        add(a, "A1");
+        TreeKey a2 = add(a, "A2");
+        add(a2, "A2a");
+        add(a2, "A2b");
+        add(root, "B");
+        TreeKey c = add(root, "C");
+        add(c, "C1");
+        add(root, "D");
+    }
+
+    @Test
+    public void testTree() {
+        Assert.assertEquals("A1, A2a, A2b, B, C1, D", names(new LeafKeyIterator(root)));
+        Assert.assertEquals(6, LeafKeyIterator.count(root));
+
+        // Only what is below a node is walked.
+        Assert.assertEquals("A1, A2a, A2b", names(new LeafKeyIterator(root.get(0))));
+        Assert.assertEquals(3, LeafKeyIterator.count(root.get(0)));
+    }
+
+    @Test
+    public void testReadOnly() {
+        // As a SwordGenBook gives its keys
+        Key global = new ReadOnlyKeyList(root, false);
+        Assert.assertEquals("A1, A2a, A2b, B, C1, D", names(new LeafKeyIterator(global)));
+        Assert.assertEquals(6, LeafKeyIterator.count(global));
+    }
+
+    @Test
+    public void testDeep() {
+        // Deeper than the stack is at first
+        TreeKey top = new TreeKey("");
+        TreeKey node = top;
+        for (int i = 0; i < 40; i++) {
+            add(node, "leaf" + i);
+            node = add(node, "node" + i);
+        }
+        add(node, "bottom");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            expected.append("leaf").append(i).append(", ");
+        }
+        expected.append("bottom");
+        Assert.assertEquals(expected.toString(), names(new LeafKeyIterator(top)));
+        Assert.assertEquals(41, LeafKeyIterator.count(top));
+    }
+
+    @Test
+    public void testFlat() throws NoSuchKeyException {
+        Key verses = PassageKeyFactory.instance().getKey(Versifications.instance().getVersification("KJV"), "Gen 1:1-3, Exod 2:1");
+        Assert.assertEquals(4, LeafKeyIterator.count(verses));
+        Iterator<Key> iter = new LeafKeyIterator(verses);
+        Assert.assertEquals("Gen.1.1", iter.next().getOsisRef());
+        Assert.assertEquals("Gen.1.2", iter.next().getOsisRef());
+        Assert.assertEquals("Gen.1.3", iter.next().getOsisRef());
+        Assert.assertEquals("Exod.2.1", iter.next().getOsisRef());
+        Assert.assertFalse(iter.hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testEmpty() {
+        Iterator<Key> iter = new LeafKeyIterator(new TreeKey(""));
+        Assert.assertTrue(iter.hasNext());
+        Assert.assertEquals("", iter.next().getName());
+        iter.next();
+    }
+
+    private static TreeKey add(TreeKey parent, String name) {
+        TreeKey child = new TreeKey(name, parent);
+        parent.addAll(child);
+        return child;
+    }
+
+    private static String names(Iterator<Key> iter) {
+        StringBuilder buf = new StringBuilder();
+        while (iter.hasNext()) {
+            if (buf.length() > 0) {
+                buf.append(", ");
+            }
+            buf.append(iter.next().getName());
+        }
+        return buf.toString();
+    }
+
+    private TreeKey root;
+}
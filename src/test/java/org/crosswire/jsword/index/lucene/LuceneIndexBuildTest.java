@@ -0,0 +1,270 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Fieldable;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.crosswire.common.progress.JobManager;
+import org.crosswire.common.progress.Progress;
+import org.crosswire.common.progress.WorkEvent;
+import org.crosswire.common.progress.WorkListener;
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.sword.TestBible;
+import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
+import org.crosswire.jsword.index.IndexPolicy;
+import org.crosswire.jsword.index.IndexPolicyAdapter;
+import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that an index built on several threads, carried on after an
+ * interruption or brought up to date in place holds the same documents as
+ * one built afresh on a single thread.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class LuceneIndexBuildTest {
+
+    @Before
+    public void setUp() throws IOException {
+        v11n = Versifications.instance().getVersification("KJV");
+        verses = new LinkedHashMap<>();
+        // Enough books of enough verses for the parallel build to have several batches.
+        BibleBook[] books = {
+                BibleBook.GEN, BibleBook.EXOD, BibleBook.LEV, BibleBook.NUM, BibleBook.DEUT, BibleBook.JOSH, BibleBook.JUDG, BibleBook.RUTH
+        };
+        int strongs = 1;
+        for (BibleBook bibleBook : books) {
+            for (int chapter = 1; chapter <= 4; chapter++) {
+                int lastVerse = v11n.getLastVerse(bibleBook, chapter);
+                for (int verse = 1; verse <= lastVerse; verse++) {
+                    StringBuilder raw = new StringBuilder();
+                    if (verse == 1) {
+                        raw.append("<title>Chapter ").append(chapter).append(" of ").append(bibleBook.getOSIS()).append("</title>");
+                    }
+                    raw.append("<w lemma=\"strong:H").append(String.format("%05d", Integer.valueOf(strongs++))).append("\" morph=\"strongMorph:TH8799\">In</w> ");
+                    raw.append("the words of ").append(bibleBook.getOSIS()).append(" verse ").append(verse);
+                    if (verse % 7 == 0) {
+                        raw.append("<note type=\"study\">Or, seven <reference osisRef=\"Gen.1.1\">Gen 1:1</reference></note>");
+                    }
+                    raw.append('.');
+                    verses.put(new Verse(v11n, bibleBook, chapter, verse), raw.toString());
+                }
+            }
+        }
+
+        root = File.createTempFile("indexbuild", "");
+        root.delete();
+        TestBible.write(root, INITIALS, "", verses);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.delete(root);
+    }
+
+    @Test
+    public void testParallel() throws IOException, BookException {
+        File expected = build(new File(root, "serial"), new TestPolicy(1));
+        File actual = build(new File(root, "parallel"), new TestPolicy(3));
+        Assert.assertEquals(getContents(expected), getContents(actual));
+    }
+
+    @Test
+    public void testResume() throws IOException, BookException {
+        File expected = build(new File(root, "serial"), new TestPolicy(1));
+        SortedSet<String> contents = getContents(expected);
+
+        // Cancel the build once half of it is done.
+        final File actual = new File(root, "parallel");
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        WorkListener canceller = new WorkListener() {
+            public void workProgressed(WorkEvent ev) {
+                Progress job = ev.getJob();
+                if (job.getJobID().equals(String.format(Progress.CREATE_INDEX, INITIALS)) && job.getWork() >= 50 && !cancelled.getAndSet(true)) {
+                    job.cancel();
+                }
+            }
+
+            public void workStateChanged(WorkEvent ev) {
+            }
+        };
+        JobManager.addWorkListener(canceller);
+        try {
+            build(actual, new TestPolicy(2));
+        } finally {
+            JobManager.removeWorkListener(canceller);
+            // The build leaves the interruption for its caller to see.
+            Thread.interrupted();
+        }
+        Assert.assertTrue(cancelled.get());
+        Assert.assertFalse(actual.exists());
+
+        // What was done up to the last checkpoint is kept.
+        File temp = new File(actual.getPath() + '.' + IndexStatus.CREATING);
+        Assert.assertTrue(temp.exists());
+        int kept = getContents(temp).size();
+        Assert.assertTrue(kept > 0);
+        Assert.assertTrue(kept < contents.size());
+
+        // And the build carries on from there.
+        build(actual, new TestPolicy(2));
+        Assert.assertFalse(temp.exists());
+        Assert.assertEquals(contents, getContents(actual));
+    }
+
+    @Test
+    public void testUpdate() throws IOException, BookException {
+        File actual = build(new File(root, "parallel"), new TestPolicy(3));
+
+        // Change the text of one verse, take one away and add another.
+        verses.put(new Verse(v11n, BibleBook.EXOD, 2, 3), "<w lemma=\"strong:H09999\">Changed</w> words.<note type=\"study\">A new note</note>");
+        verses.remove(new Verse(v11n, BibleBook.LEV, 3, 5));
+        verses.put(new Verse(v11n, BibleBook.JUDG, 5, 1), "<title>Added</title>Then sang Deborah.");
+        TestBible.write(root, INITIALS, "", verses);
+
+        File expected = build(new File(root, "serial"), new TestPolicy(1));
+        SortedSet<String> contents = getContents(expected);
+        Assert.assertFalse(contents.equals(getContents(actual)));
+
+        // The finished index is brought up to date in place.
+        Assert.assertSame(actual, build(actual, new TestPolicy(3)));
+        Assert.assertEquals(contents, getContents(actual));
+    }
+
+    /**
+     * Build an index of the test Bible.
+     *
+     * @param path where the index is to be
+     * @param policy how it is to be built
+     * @return the path of the index
+     * @throws IOException
+     * @throws BookException
+     */
+    private File build(File path, IndexPolicy policy) throws IOException, BookException {
+        // The Book is opened each time, as it holds on to its keys,
+        // and its open files are closed as it is not one of the installed Books.
+        Book book = TestBible.open(root, INITIALS);
+        try {
+            new LuceneIndex(book, path.toURI(), policy).close();
+        } finally {
+            OpenFileStateManager.instance().closeStates(book.getBookMetaData());
+        }
+        return path;
+    }
+
+    /**
+     * Describe each document of an index by its stored fields and the terms
+     * that are in it, and how often, so that indexes can be compared whatever
+     * the order of their documents.
+     *
+     * @param path where the index is
+     * @return the description of its documents
+     * @throws IOException
+     */
+    private static SortedSet<String> getContents(File path) throws IOException {
+        SortedSet<String> contents = new TreeSet<>();
+        Directory directory = FSDirectory.open(path);
+        IndexReader reader = IndexReader.open(directory, true);
+        try {
+            String[] keys = new String[reader.maxDoc()];
+            for (int docId = 0; docId < keys.length; docId++) {
+                if (reader.isDeleted(docId)) {
+                    continue;
+                }
+                Document doc = reader.document(docId);
+                keys[docId] = doc.get(LuceneIndex.FIELD_KEY);
+                for (Fieldable field : doc.getFields()) {
+                    contents.add(keys[docId] + ' ' + field.name() + '=' + field.stringValue());
+                }
+            }
+
+            TermEnum terms = reader.terms();
+            TermDocs termDocs = reader.termDocs();
+            try {
+                while (terms.next()) {
+                    Term term = terms.term();
+                    termDocs.seek(term);
+                    while (termDocs.next()) {
+                        contents.add(keys[termDocs.doc()] + ' ' + term.field() + ':' + term.text() + 'x' + termDocs.freq());
+                    }
+                }
+            } finally {
+                termDocs.close();
+                terms.close();
+            }
+        } finally {
+            reader.close();
+            directory.close();
+        }
+        return contents;
+    }
+
+    /**
+     * Index everything, taking a checkpoint after each batch of a parallel build.
+     */
+    private static final class TestPolicy extends IndexPolicyAdapter {
+        TestPolicy(int threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public int getIndexingThreads() {
+            return threads;
+        }
+
+        @Override
+        public int getCheckpointInterval() {
+            return 64;
+        }
+
+        private final int threads;
+    }
+
+    private static final String INITIALS = "TestIndex";
+
+    private Versification v11n;
+    private Map<Verse, String> verses;
+    private File root;
+}
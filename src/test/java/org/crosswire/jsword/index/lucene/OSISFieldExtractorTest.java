@@ -0,0 +1,146 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookData;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.OSISUtil;
+import org.crosswire.jsword.book.sword.TestBible;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.jdom2.Element;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compare the fields that OSISFieldExtractor gets from raw OSIS with those
+ * that OSISUtil gets from the OSIS fragment of the same verse.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class OSISFieldExtractorTest {
+
+    @Before
+    public void setUp() throws IOException, BookException {
+        v11n = Versifications.instance().getVersification("KJV");
+        verses = new LinkedHashMap<>();
+        // Words, and segments of a word that are not to be spaced apart
+        add(BibleBook.GEN, 1, 1, "In the <seg>begin</seg><seg>ning</seg> God<seg>created</seg>the heaven and the earth.");
+        // Notes that are not canonical, one of them holding references
+        add(BibleBook.GEN, 1, 2, "And the earth<note type=\"study\">Or, <hi type=\"italic\">empty</hi> and void</note> was without form"
+                + "<note type=\"crossReference\"><reference osisRef=\"Jer.4.23\">Jer 4:23</reference></note>, and void;"
+                + "<note n=\"a\">see <reference osisRef=\"Ps.104.30\">Ps 104:30</reference> also</note> and darkness.");
+        // Titles before the text
+        add(BibleBook.GEN, 1, 3, "<title>The Creation</title><title subType=\"x-preverse\" type=\"section\">Light</title>And God said, Let there be light.");
+        add(BibleBook.GEN, 1, 4, "<div type=\"x-milestone\" subType=\"x-preverse\" sID=\"pv1\"/><title>Day <hi>one</hi></title>"
+                + "<div type=\"x-milestone\" subType=\"x-preverse\" eID=\"pv1\"/>And God saw the light,<title canonical=\"true\">that it was good</title>");
+        // Psalm titles, which are canonical in a verse unless they say otherwise
+        add(BibleBook.PS, 3, 1, "<title type=\"psalm\">A Psalm of David, when he fled from Absalom his son.</title>LORD, how are they increased!");
+        add(BibleBook.PS, 4, 1, "<title type=\"psalm\" canonical=\"false\">To the chief Musician on Neginoth.</title>Hear me when I call.");
+        add(BibleBook.PS, 5, 1, "<title type=\"psalm\" subType=\"x-preverse\">To the chief Musician upon Nehiloth.</title>Give ear to my words.");
+        // Strong's numbers and morphology
+        add(BibleBook.GEN, 1, 5, "<w lemma=\"strong:H07121\" morph=\"strongMorph:TH8799\">And God called</w> "
+                + "<w lemma=\"strong:H0216 lemma.TR:or\">the light</w> <w lemma=\"strong:H03117\">Day</w>, "
+                + "<w lemma=\"strong:H02822 strong:H0853\" morph=\"strongMorph:TH8804 x:y\">and the darkness</w> <w>he called</w> Night.");
+        add(BibleBook.GEN, 1, 6, "<w lemma=\"strong:H0430\"><seg>Go</seg><seg>d</seg></w> said<note type=\"x-strongsMarkup\"><w lemma=\"strong:H0559\">said</w></note>.");
+        // Pre-verse material after the text belongs to the next verse, and is moved ahead of this one
+        add(BibleBook.PS, 3, 8, "<w>Salvation</w> belongeth <w>unto the LORD</w><w>Selah.</w><title type=\"psalm\">To the chief Musician on Neginoth, A Psalm of David.</title>");
+        add(BibleBook.GEN, 1, 7, "And God made the firmament.<div type=\"x-milestone\" subType=\"x-preverse\" sID=\"pv2\"/><title>Next</title>"
+                + "<div type=\"x-milestone\" subType=\"x-preverse\" eID=\"pv2\"/>");
+
+        root = File.createTempFile("osisfields", "");
+        root.delete();
+        TestBible.write(root, "TestOSIS", "", verses);
+        book = TestBible.open(root, "TestOSIS");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.delete(root);
+    }
+
+    @Test
+    public void testSameFields() throws BookException {
+        OSISFieldExtractor extractor = new OSISFieldExtractor(true, true, true, true, true);
+        for (Verse verse : verses.keySet()) {
+            String name = verse.getOsisRef();
+            String raw = book.getRawText(verse);
+            Assert.assertEquals(name, verses.get(verse), raw);
+            if (!extractor.extract(raw, true)) {
+                Assert.assertTrue(name, verse.getOsisRef().equals("Ps.3.8") || verse.getOsisRef().equals("Gen.1.7"));
+                continue;
+            }
+
+            Element osis = new BookData(book, verse).getOsisFragment(false);
+            Assert.assertEquals(name, OSISUtil.getCanonicalText(osis), extractor.getCanonicalText());
+            Assert.assertEquals(name, OSISUtil.getStrongsNumbers(osis), extractor.getStrongsNumbers());
+            Assert.assertEquals(name, OSISUtil.getMorphologiesWithStrong(osis), extractor.getMorphologiesWithStrong());
+            Assert.assertEquals(name, OSISUtil.getNotes(osis), extractor.getNotes());
+            Assert.assertEquals(name, OSISUtil.getHeadings(osis), extractor.getHeadings());
+            Assert.assertEquals(name, OSISUtil.getReferences(book, verse, v11n, osis), OSISUtil.getReferences(book, verse, v11n, extractor.getReferences()));
+        }
+    }
+
+    @Test
+    public void testPreverseAfterText() throws BookException {
+        // The order of the canonical text is changed, so these are left to the OSIS fragment.
+        OSISFieldExtractor extractor = new OSISFieldExtractor(false, false, false, false, false);
+        Assert.assertFalse(extractor.extract(verses.get(new Verse(v11n, BibleBook.PS, 3, 8)), true));
+        Assert.assertFalse(extractor.extract(verses.get(new Verse(v11n, BibleBook.GEN, 1, 7)), true));
+
+        Verse verse = new Verse(v11n, BibleBook.PS, 3, 8);
+        Element osis = new BookData(book, verse).getOsisFragment(false);
+        Assert.assertEquals("Salvation Selah. To the chief Musician on Neginoth, A Psalm of David. belongeth unto the LORD", OSISUtil.getCanonicalText(osis));
+
+        // Outside of a verse nothing is moved, and a psalm title is not canonical.
+        Assert.assertTrue(extractor.extract(verses.get(verse), false));
+        Assert.assertEquals("Salvation belongeth unto the LORD Selah.", extractor.getCanonicalText());
+    }
+
+    @Test
+    public void testNotWellFormed() {
+        OSISFieldExtractor extractor = new OSISFieldExtractor(true, true, true, true, true);
+        Assert.assertFalse(extractor.extract("In the <hi>beginning", true));
+        Assert.assertFalse(extractor.extract("<verse osisID=\"Gen.1.1\">In the beginning</verse>", true));
+        Assert.assertTrue(extractor.extract("In the beginning", true));
+        Assert.assertEquals("In the beginning", extractor.getCanonicalText());
+    }
+
+    private void add(BibleBook bibleBook, int chapter, int verse, String raw) {
+        verses.put(new Verse(v11n, bibleBook, chapter, verse), raw);
+    }
+
+    private Versification v11n;
+    private Map<Verse, String> verses;
+    private File root;
+    private Book book;
+}
@@ -0,0 +1,158 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.index.query;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.OrdinalIndex;
+import org.crosswire.jsword.index.search.SearchContext;
+import org.crosswire.jsword.index.search.SearchModifier;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.VerseBits;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that working out a query on verse ordinals finds the same verses as
+ * working it out on Keys.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class OrdinalQueryEvaluatorTest {
+
+    @Before
+    public void setUp() {
+        v11n = Versifications.instance().getVersification("KJV");
+        index = new TestIndex();
+        index.put("light", "Gen 1:3-5, Gen 1:14-18, John 1:4-9");
+        index.put("darkness", "Gen 1:2, Gen 1:4-5, Gen 1:18, John 1:5");
+        index.put("word", "John 1:1, John 1:14, Ps 119:105");
+        index.put("lamp", "Ps 119:105");
+        index.put("none", "");
+    }
+
+    @Test
+    public void testSameAsKeys() throws BookException {
+        Query light = new BaseQuery("light");
+        Query darkness = new BaseQuery("darkness");
+        Query word = new BaseQuery("word");
+        check(light);
+        check(new NullQuery());
+        check(new AndQuery(light, darkness));
+        check(new OrQuery(light, word));
+        check(new AndNotQuery(light, darkness));
+        check(new BlurQuery(word, new BaseQuery("lamp"), 2));
+        check(new BlurQuery(darkness, light, 1));
+        check(new AndQuery(new OrQuery(light, word), new RangeQuery("John 1")));
+        check(new AndNotQuery(new OrQuery(darkness, word), new BlurQuery(light, darkness, 0)));
+        check(new AndQuery(new BaseQuery("none"), light));
+        check(new OrQuery(new BaseQuery("none"), new NullQuery()));
+
+        Passage both = OrdinalQueryEvaluator.find(new AndQuery(light, darkness), index, SearchContext.DEFAULT);
+        Assert.assertEquals("Gen.1.4-Gen.1.5 Gen.1.18 John.1.5", both.getOsisRef());
+    }
+
+    @Test
+    public void testOtherQuery() throws BookException {
+        // A query that only finds Keys is turned into ordinals.
+        Query other = new Query() {
+            public Key find(Index in, SearchContext context) throws BookException {
+                try {
+                    return in.getKey("Gen 1:1-2");
+                } catch (NoSuchKeyException e) {
+                    throw new BookException("bad range", e);
+                }
+            }
+        };
+        check(other);
+        check(new OrQuery(other, new BaseQuery("word")));
+        Assert.assertEquals("Gen.1.1-Gen.1.2", OrdinalQueryEvaluator.find(other, index, SearchContext.DEFAULT).getOsisRef());
+    }
+
+    @Test
+    public void testCanEvaluate() {
+        Assert.assertTrue(OrdinalQueryEvaluator.canEvaluate(index, SearchContext.DEFAULT));
+        Assert.assertFalse(OrdinalQueryEvaluator.canEvaluate(index, new SearchContext(true, 10)));
+    }
+
+    private void check(Query query) throws BookException {
+        Passage expected = (Passage) query.find(index, SearchContext.DEFAULT);
+        Passage actual = OrdinalQueryEvaluator.find(query, index, SearchContext.DEFAULT);
+        Assert.assertEquals(expected.getOsisRef(), actual.getOsisRef());
+    }
+
+    /**
+     * An index that finds a fixed passage for each word.
+     */
+    private final class TestIndex implements OrdinalIndex {
+        void put(String word, String refs) {
+            words.put(word, refs);
+        }
+
+        public Key find(String query) throws BookException {
+            try {
+                return getKey(query == null ? "" : words.get(query));
+            } catch (NoSuchKeyException e) {
+                throw new BookException(query, e);
+            }
+        }
+
+        public Key getKey(String name) throws NoSuchKeyException {
+            return PassageKeyFactory.instance().getKey(v11n, name);
+        }
+
+        public Versification getVersification() {
+            return v11n;
+        }
+
+        public long[] findOrdinals(String query) throws BookException {
+            return VerseBits.fromKey(v11n, find(query));
+        }
+
+        @SuppressWarnings("deprecation")
+        public void setSearchModifier(SearchModifier modifier) {
+            this.modifier = modifier;
+        }
+
+        @SuppressWarnings("deprecation")
+        public SearchModifier getSearchModifier() {
+            return modifier;
+        }
+
+        public void close() {
+        }
+
+        private final Map<String, String> words = new HashMap<>();
+        private SearchModifier modifier;
+    }
+
+    private Versification v11n;
+    private TestIndex index;
+}
@@ -0,0 +1,206 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.search.MultiBookResults.BookResult;
+import org.crosswire.jsword.index.search.MultiBookResults.Hit;
+import org.crosswire.jsword.index.search.MultiBookResults.Status;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the merging of the results of several Books and the waiting for them.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class MultiBookSearcherTest {
+
+    @Before
+    public void setUp() {
+        v11n = Versifications.instance().getVersification("KJV");
+        first = TestBooks.create("First");
+        second = TestBooks.create("Second");
+        request = new DefaultSearchRequest("light");
+    }
+
+    @After
+    public void tearDown() {
+        // Leave no interrupt for the next test.
+        Thread.interrupted();
+    }
+
+    @Test
+    public void testUnrankedLimit() throws NoSuchKeyException {
+        List<BookResult> bookResults = new ArrayList<>();
+        bookResults.add(done(first, PassageKeyFactory.instance().getKey(v11n, "Gen 1:1-5")));
+        bookResults.add(done(second, PassageKeyFactory.instance().getKey(v11n, "Exod 2:1-5")));
+
+        // The hits stop at the limit, in the order of the Books, but all are counted.
+        MultiBookResults results = MultiBookSearcher.merge(bookResults, new SearchContext(false, 7));
+        Assert.assertEquals(10, results.getTotal());
+        Assert.assertEquals("Gen.1.1, Gen.1.2, Gen.1.3, Gen.1.4, Gen.1.5, Exod.2.1, Exod.2.2", names(results.getHits()));
+        Assert.assertSame(first, results.getHits().get(4).getBook());
+        Assert.assertSame(second, results.getHits().get(5).getBook());
+        Assert.assertFalse(results.isPartial());
+
+        results = MultiBookSearcher.merge(bookResults, new SearchContext(false, 3));
+        Assert.assertEquals(10, results.getTotal());
+        Assert.assertEquals("Gen.1.1, Gen.1.2, Gen.1.3", names(results.getHits()));
+
+        results = MultiBookSearcher.merge(bookResults, SearchContext.DEFAULT);
+        Assert.assertEquals(10, results.getHits().size());
+    }
+
+    @Test
+    public void testRanked() {
+        PassageTally firstTally = new PassageTally(v11n);
+        firstTally.add(new Verse(v11n, BibleBook.GEN, 1, 1), 10);
+        firstTally.add(new Verse(v11n, BibleBook.GEN, 1, 2), 5);
+        firstTally.add(new Verse(v11n, BibleBook.GEN, 1, 3), 1);
+        PassageTally secondTally = new PassageTally(v11n);
+        secondTally.add(new Verse(v11n, BibleBook.EXOD, 2, 1), 4);
+        secondTally.add(new Verse(v11n, BibleBook.EXOD, 2, 2), 3);
+        List<BookResult> bookResults = new ArrayList<>();
+        bookResults.add(done(first, firstTally));
+        bookResults.add(done(second, secondTally));
+
+        // Scores are relative to the best of each Book, and the best of both come first.
+        MultiBookResults results = MultiBookSearcher.merge(bookResults, new SearchContext(true, 3));
+        List<Hit> hits = results.getHits();
+        Assert.assertEquals("Gen.1.1, Exod.2.1, Exod.2.2", names(hits));
+        Assert.assertEquals(1.0f, hits.get(0).getScore(), 0.0001f);
+        Assert.assertEquals(1.0f, hits.get(1).getScore(), 0.0001f);
+        Assert.assertEquals(0.75f, hits.get(2).getScore(), 0.0001f);
+        Assert.assertEquals(firstTally.getTotal() + secondTally.getTotal(), results.getTotal());
+    }
+
+    @Test
+    public void testCollect() {
+        List<Book> books = Arrays.asList(first, second, TestBooks.create("Failing"), TestBooks.create("Unindexed"));
+        List<Future<BookResult>> futures = new ArrayList<>();
+        futures.add(finished(first));
+        futures.add(new FutureTask<BookResult>(new Search(second)));
+        futures.add(failed());
+        futures.add(null);
+
+        long now = System.nanoTime();
+        List<BookResult> bookResults = MultiBookSearcher.collect(books, futures, request, now, now + TimeUnit.MILLISECONDS.toNanos(50));
+        Assert.assertEquals(Status.DONE, bookResults.get(0).getStatus());
+        Assert.assertEquals(Status.TIMED_OUT, bookResults.get(1).getStatus());
+        Assert.assertTrue(futures.get(1).isCancelled());
+        Assert.assertEquals(Status.FAILED, bookResults.get(2).getStatus());
+        Assert.assertTrue(bookResults.get(2).getError() instanceof BookException);
+        Assert.assertEquals(Status.NOT_INDEXED, bookResults.get(3).getStatus());
+        Assert.assertFalse(Thread.currentThread().isInterrupted());
+        Assert.assertTrue(MultiBookSearcher.merge(bookResults, SearchContext.DEFAULT).isPartial());
+    }
+
+    @Test
+    public void testInterrupted() {
+        List<Book> books = Arrays.asList(first, second);
+        List<Future<BookResult>> futures = new ArrayList<>();
+        futures.add(finished(first));
+        futures.add(new FutureTask<BookResult>(new Search(second)));
+
+        // The Books that are not finished are cancelled rather than timed out,
+        // without waiting for the deadline, and the interrupt is kept.
+        Thread.currentThread().interrupt();
+        long now = System.nanoTime();
+        List<BookResult> bookResults = MultiBookSearcher.collect(books, futures, request, now, now + TimeUnit.SECONDS.toNanos(60));
+        Assert.assertTrue(Thread.interrupted());
+        Assert.assertTrue(System.nanoTime() - now < TimeUnit.SECONDS.toNanos(30));
+        Assert.assertEquals(Status.DONE, bookResults.get(0).getStatus());
+        Assert.assertEquals(Status.CANCELLED, bookResults.get(1).getStatus());
+        Assert.assertTrue(futures.get(1).isCancelled());
+        Assert.assertTrue(MultiBookSearcher.merge(bookResults, SearchContext.DEFAULT).isPartial());
+    }
+
+    private BookResult done(Book book, Key results) {
+        return new BookResult(book, Status.DONE, results, 0L, null);
+    }
+
+    private Future<BookResult> finished(Book book) {
+        FutureTask<BookResult> future = new FutureTask<BookResult>(new Search(book));
+        future.run();
+        return future;
+    }
+
+    private Future<BookResult> failed() {
+        FutureTask<BookResult> future = new FutureTask<BookResult>(new Callable<BookResult>() {
+            public BookResult call() throws BookException {
+                throw new BookException("failed");
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    private static String names(List<Hit> hits) {
+        StringBuilder buf = new StringBuilder();
+        for (Hit hit : hits) {
+            if (buf.length() > 0) {
+                buf.append(", ");
+            }
+            buf.append(hit.getKey().getOsisRef());
+        }
+        return buf.toString();
+    }
+
+    /**
+     * A search that finds nothing. It is only run when it is to have finished.
+     */
+    private final class Search implements Callable<BookResult> {
+        Search(Book book) {
+            this.book = book;
+        }
+
+        public BookResult call() {
+            return done(book, null);
+        }
+
+        private final Book book;
+    }
+
+    private Versification v11n;
+    private Book first;
+    private Book second;
+    private SearchRequest request;
+}
@@ -0,0 +1,211 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the caching of search results.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class SearchCacheTest {
+
+    @Before
+    public void setUp() throws NoSuchKeyException {
+        v11n = Versifications.instance().getVersification("KJV");
+        book = TestBooks.create("Book");
+        other = TestBooks.create("Other");
+        results = (Passage) PassageKeyFactory.instance().getKey(v11n, "Gen 1:1-5, Exod 2:3");
+
+        // The bytes taken by one result of a one letter search
+        SearchCache measure = new SearchCache(Long.MAX_VALUE);
+        measure.put(book, "a", SearchContext.DEFAULT, results, 0);
+        one = measure.getBytes();
+        Assert.assertTrue(one > results.countVerses());
+    }
+
+    @Test
+    public void testEviction() {
+        SearchCache cache = new SearchCache(3 * one);
+        put(cache, "a");
+        put(cache, "b");
+        put(cache, "c");
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(3 * one, cache.getBytes());
+
+        // Using a result keeps it, and the least recently used is dropped.
+        Assert.assertNotNull(cache.get(book, "a", SearchContext.DEFAULT));
+        put(cache, "d");
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(3 * one, cache.getBytes());
+        Assert.assertNull(cache.get(book, "b", SearchContext.DEFAULT));
+        Assert.assertNotNull(cache.get(book, "c", SearchContext.DEFAULT));
+        Assert.assertNotNull(cache.get(book, "a", SearchContext.DEFAULT));
+        Assert.assertNotNull(cache.get(book, "d", SearchContext.DEFAULT));
+
+        // Putting the same search again replaces it.
+        put(cache, "d");
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(3 * one, cache.getBytes());
+
+        // Shrinking the cache keeps the most recently used.
+        cache.setMaxBytes(one);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(one, cache.getBytes());
+        Assert.assertNotNull(cache.get(book, "d", SearchContext.DEFAULT));
+
+        // A result bigger than the cache is not kept.
+        put(cache, "ab");
+        Assert.assertNull(cache.get(book, "ab", SearchContext.DEFAULT));
+        Assert.assertNotNull(cache.get(book, "d", SearchContext.DEFAULT));
+
+        // Nothing is kept once it is turned off.
+        cache.setMaxBytes(0);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getBytes());
+        put(cache, "a");
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        SearchCache cache = new SearchCache(Long.MAX_VALUE);
+        put(cache, "a");
+        put(cache, "b");
+        cache.put(other, "a", SearchContext.DEFAULT, results, cache.getGeneration(other));
+        Assert.assertEquals(3, cache.size());
+
+        // Only the results of the Book are forgotten.
+        long generation = cache.getGeneration(book);
+        cache.invalidate(book);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(one, cache.getBytes());
+        Assert.assertNull(cache.get(book, "a", SearchContext.DEFAULT));
+        Assert.assertNull(cache.get(book, "b", SearchContext.DEFAULT));
+        Assert.assertNotNull(cache.get(other, "a", SearchContext.DEFAULT));
+        Assert.assertEquals(0, cache.getGeneration(other));
+
+        // The results of a search that began before are not kept.
+        Assert.assertFalse(generation == cache.getGeneration(book));
+        cache.put(book, "a", SearchContext.DEFAULT, results, generation);
+        Assert.assertNull(cache.get(book, "a", SearchContext.DEFAULT));
+        put(cache, "a");
+        Assert.assertNotNull(cache.get(book, "a", SearchContext.DEFAULT));
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        SearchCache cache = new SearchCache(Long.MAX_VALUE);
+        Assert.assertEquals(0.0, cache.getHitRate(), 0.0);
+        Assert.assertNull(cache.get(book, "a b", SearchContext.DEFAULT));
+        put(cache, "a b");
+
+        // White space does not matter, but the book and how the search is ranked do.
+        Assert.assertNotNull(cache.get(book, "a b", SearchContext.DEFAULT));
+        Assert.assertNotNull(cache.get(book, " a \t b ", SearchContext.DEFAULT));
+        Assert.assertNull(cache.get(other, "a b", SearchContext.DEFAULT));
+        Assert.assertNull(cache.get(book, "a b", new SearchContext(true, 10)));
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+        Assert.assertEquals(0.4, cache.getHitRate(), 0.0001);
+
+        // The limit of an unranked search does not matter.
+        Assert.assertNotNull(cache.get(book, "a b", new SearchContext(false, 10)));
+        Assert.assertEquals(3, cache.getHits());
+    }
+
+    @Test
+    public void testCopies() {
+        SearchCache cache = new SearchCache(Long.MAX_VALUE);
+        put(cache, "a");
+        Passage copy = (Passage) cache.get(book, "a", SearchContext.DEFAULT);
+        Assert.assertNotSame(results, copy);
+        Assert.assertEquals(results, copy);
+
+        // Changing what is given does not change what is cached.
+        copy.clear();
+        Assert.assertEquals(results, cache.get(book, "a", SearchContext.DEFAULT));
+    }
+
+    @Test
+    public void testTally() {
+        Verse gen11 = new Verse(v11n, BibleBook.GEN, 1, 1);
+        Verse gen12 = new Verse(v11n, BibleBook.GEN, 1, 2);
+        Verse exod23 = new Verse(v11n, BibleBook.EXOD, 2, 3);
+        Verse rev2221 = new Verse(v11n, BibleBook.REV, 22, 21);
+        PassageTally tally = new PassageTally(v11n);
+        tally.add(exod23, 7);
+        tally.add(gen11, 3);
+        tally.add(gen12);
+        tally.add(rev2221, 2);
+        tally.setTotal(20);
+
+        SearchCache cache = new SearchCache(Long.MAX_VALUE);
+        SearchContext ranked = new SearchContext(true, 50);
+        cache.put(book, "light", ranked, tally, 0);
+        Key key = cache.get(book, "light", ranked);
+        Assert.assertTrue(key instanceof PassageTally);
+        PassageTally copy = (PassageTally) key;
+        Assert.assertNotSame(tally, copy);
+        Assert.assertEquals(4, copy.countVerses());
+        Assert.assertEquals(20, copy.getTotal());
+        Assert.assertEquals(3, copy.getTallyOf(gen11));
+        Assert.assertEquals(1, copy.getTallyOf(gen12));
+        Assert.assertEquals(7, copy.getTallyOf(exod23));
+        Assert.assertEquals(2, copy.getTallyOf(rev2221));
+        Assert.assertEquals(tally.getName(), copy.getName());
+
+        // The copy can be changed without changing the cache.
+        copy.add(gen11, 5);
+        copy = (PassageTally) cache.get(book, "light", ranked);
+        Assert.assertEquals(3, copy.getTallyOf(gen11));
+
+        // A ranked search for more results is another search.
+        Assert.assertNull(cache.get(book, "light", new SearchContext(true, 100)));
+    }
+
+    private void put(SearchCache cache, String request) {
+        cache.put(book, request, SearchContext.DEFAULT, results, cache.getGeneration(book));
+    }
+
+    private Versification v11n;
+    private Book book;
+    private Book other;
+    private Passage results;
+    private long one;
+}
@@ -0,0 +1,67 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2016
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.crosswire.jsword.book.Book;
+
+/**
+ * Makes stand-ins for Books, for tests that only need a Book to be told apart
+ * from others.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class TestBooks {
+    /**
+     * Prevent instantiation
+     */
+    private TestBooks() {
+    }
+
+    /**
+     * Make a Book that is only equal to itself and knows nothing but its
+     * initials.
+     *
+     * @param initials
+     *            the initials of the Book
+     * @return the Book
+     */
+    static Book create(final String initials) {
+        return (Book) Proxy.newProxyInstance(Book.class.getClassLoader(), new Class<?>[] { Book.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("equals".equals(name)) {
+                    return Boolean.valueOf(proxy == args[0]);
+                }
+                if ("hashCode".equals(name)) {
+                    return Integer.valueOf(System.identityHashCode(proxy));
+                }
+                if ("toString".equals(name) || "getInitials".equals(name)) {
+                    return initials;
+                }
+                throw new UnsupportedOperationException(name);
+            }
+        });
+    }
+}
@@ -32,6 +32,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
     AccuracyTypeTest.class,
+    PassageCompressedTest.class,
     PassageConstantsTest.class,
     PassageMixTest.class,
     PassageSizeTest.class,
@@ -44,6 +45,7 @@ import org.junit.runners.Suite.SuiteClasses;
     OsisParserTest.class,
     VerseTest.class,
     VerseRangeTest.class,
+    VerseBitsTest.class,
     TreeKeyTest.class
 })
 public class AllTests {
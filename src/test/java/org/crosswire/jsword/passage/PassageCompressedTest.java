@@ -0,0 +1,112 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class PassageCompressedTest extends PassageParentTst {
+    public PassageCompressedTest() {
+        super(PassageType.COMPRESSED, false);
+    }
+
+    @Test
+    public void testSetOperations() throws NoSuchKeyException {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        // Dense and sparse chunks, and those that change from one to the other
+        String[] refs = {
+                "", "Gen 1:1", "Gen-Exo", "Gen 1-10, Lev 3:4", "Gen 1:1, Gen 3:1, Psa, Mat 1:1", "Exo 40:38-Lev 8:10", "Psa 119", "Gen-Rev", "Rev 22:21"
+        };
+        for (String left : refs) {
+            for (String right : refs) {
+                Passage compressed = PassageType.COMPRESSED.createPassage(v11n, left);
+                Passage other = PassageType.COMPRESSED.createPassage(v11n, right);
+                Passage bitwise = PassageType.WRITE_SPEED.createPassage(v11n, left);
+                Passage otherBitwise = PassageType.WRITE_SPEED.createPassage(v11n, right);
+                String message = left + " with " + right;
+
+                Passage expected = (Passage) bitwise.clone();
+                expected.addAll(otherBitwise);
+                Passage actual = (Passage) compressed.clone();
+                actual.addAll(other);
+                Assert.assertEquals(message, expected, actual);
+                Assert.assertEquals(message, expected.countVerses(), actual.countVerses());
+
+                expected = (Passage) bitwise.clone();
+                expected.retainAll(otherBitwise);
+                actual = (Passage) compressed.clone();
+                actual.retainAll(other);
+                Assert.assertEquals(message, expected, actual);
+                Assert.assertEquals(message, expected.countVerses(), actual.countVerses());
+
+                expected = (Passage) bitwise.clone();
+                expected.removeAll(otherBitwise);
+                actual = (Passage) compressed.clone();
+                actual.removeAll(other);
+                Assert.assertEquals(message, expected, actual);
+                Assert.assertEquals(message, expected.countVerses(), actual.countVerses());
+
+                // The originals are not changed
+                Assert.assertEquals(message, bitwise, compressed);
+                Assert.assertEquals(message, otherBitwise, other);
+            }
+        }
+    }
+
+    @Test
+    public void testRemove() throws NoSuchKeyException {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        Passage compressed = PassageType.COMPRESSED.createPassage(v11n, "Gen-Exo");
+        Passage bitwise = PassageType.WRITE_SPEED.createPassage(v11n, "Gen-Exo");
+        Passage removed = PassageType.COMPRESSED.createPassage(v11n, "Gen 2-50, Exo 1:1-5");
+        for (Key verse : removed) {
+            compressed.remove(verse);
+            bitwise.remove(verse);
+            Assert.assertFalse(compressed.contains(verse));
+        }
+        Assert.assertEquals(bitwise, compressed);
+        Assert.assertArrayEquals(bitwise.toOrdinalArray(), compressed.toOrdinalArray());
+    }
+
+    @Test
+    public void testChosenByCardinality() {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        PassageType saved = PassageKeyFactory.getDefaultType();
+        try {
+            PassageKeyFactory.setDefaultType(PassageType.SPEED);
+            PassageKeyFactory keyf = PassageKeyFactory.instance();
+            Assert.assertTrue(keyf.createEmptyKeyList(v11n, 3) instanceof CompressedPassage);
+            Assert.assertTrue(keyf.createEmptyKeyList(v11n, v11n.maximumOrdinal()) instanceof RocketPassage);
+
+            PassageKeyFactory.setDefaultType(PassageType.MIX);
+            Assert.assertTrue(keyf.createEmptyKeyList(v11n, 3) instanceof RangedPassage);
+        } finally {
+            PassageKeyFactory.setDefaultType(saved);
+        }
+    }
+}
@@ -189,6 +189,42 @@ public class PassageTally2Test {
         Assert.assertTrue(!it.hasNext());
     }
 
+    @Test
+    public void testRankedIterator() throws Exception {
+        tally.setOrdering(PassageTally.Order.BIBLICAL);
+        Iterator<Key> it = tally.rankedIterator(3);
+        Assert.assertEquals(VerseFactory.fromString(v11n, "Gen 1:1"), it.next());
+        Assert.assertEquals(VerseFactory.fromString(v11n, "Gen 1:5"), it.next());
+        Assert.assertEquals(VerseFactory.fromString(v11n, "Gen 1:3"), it.next());
+        Assert.assertTrue(!it.hasNext());
+        Assert.assertTrue(!tally.rankedIterator(0).hasNext());
+        Assert.assertTrue(!empty.rankedIterator(3).hasNext());
+    }
+
+    @Test
+    public void testTrimVerses() throws Exception {
+        temp = tally.clone();
+        Passage remainder = temp.trimVerses(2);
+        Assert.assertEquals("Gen 1:1, 5", temp.getName());
+        Assert.assertEquals(keyf.getKey(v11n, "Gen 1:3, Gen 1:7, Gen 2:1, Gen 3:1"), remainder);
+        Assert.assertNull(temp.trimVerses(2));
+    }
+
+    @Test
+    public void testAddTopScores() throws Exception {
+        int[] scores = new int[v11n.maximumOrdinal() + 1];
+        scores[genC1V1.getOrdinal()] = 2;
+        scores[genC1V2.getOrdinal()] = 7;
+        scores[genC1V3.getOrdinal()] = 5;
+        scores[genC1V5.getOrdinal()] = 2;
+        temp = new PassageTally(v11n);
+        temp.setOrdering(PassageTally.Order.TALLY);
+        temp.addTopScores(scores, 3);
+        Assert.assertEquals("Gen 1:2, 3, 1", temp.getName());
+        Assert.assertEquals(7, temp.getTallyOf(genC1V2));
+        Assert.assertEquals(0, temp.getTallyOf(genC1V5));
+    }
+
     @Test
     public void testRangeIterator() throws Exception {
         Iterator<VerseRange> it = tally.rangeIterator(RestrictionType.NONE);
@@ -301,6 +337,95 @@ public class PassageTally2Test {
                 temp.getNameAndTally());
     }
 
+    @Test
+    public void testBlurAsBefore() throws Exception {
+        // Runs, lone verses, chapter and book boundaries, and the end of the Bible
+        PassageTally source = new PassageTally(v11n);
+        source.addAll(keyf.getKey(v11n, "Gen 1:1-3, Gen 1:30-2:2, Gen 50:26, Exod 1:1, Ps 117, Ps 119:1, Matt 1:1, Rev 22:19-21"));
+        source.add(keyf.getKey(v11n, "Gen 1:2, Ps 117:2, Rev 22:21"), 3);
+
+        int[] distances = {
+                0, 1, 2, 3, 5, 10
+        };
+        boolean[][] directions = {
+                {
+                        true, true
+                }, {
+                        true, false
+                }, {
+                        false, true
+                }
+        };
+        for (int verses : distances) {
+            for (boolean[] direction : directions) {
+                String name = verses + " " + direction[0] + " " + direction[1];
+
+                temp = source.clone();
+                temp.blur(verses, RestrictionType.NONE, direction[0], direction[1]);
+                int[] expected = blurAsBefore(source, verses, direction[0], direction[1]);
+                for (int i = 0; i < expected.length; i++) {
+                    Assert.assertEquals(name + " at " + i, expected[i], temp.getTallyOf(v11n.decodeOrdinal(i)));
+                }
+
+                temp = source.clone();
+                temp.blur(verses, RestrictionType.CHAPTER, direction[0], direction[1]);
+                PassageTally before = blurAsBefore(source, verses, RestrictionType.CHAPTER, direction[0], direction[1]);
+                for (int i = 0; i < expected.length; i++) {
+                    Verse verse = v11n.decodeOrdinal(i);
+                    Assert.assertEquals(name + " in chapter at " + i, before.getTallyOf(verse), temp.getTallyOf(verse));
+                }
+            }
+        }
+    }
+
+    /**
+     * Blur a tally without restriction as it was done before the ranks were
+     * summed over a sliding window.
+     */
+    private int[] blurAsBefore(PassageTally source, int verses, boolean blurDown, boolean blurUp) {
+        int[] board = new int[v11n.maximumOrdinal() + 1];
+        for (int i = 0; i < board.length; i++) {
+            board[i] = source.getTallyOf(v11n.decodeOrdinal(i));
+        }
+
+        int[] newBoard = new int[board.length];
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] != 0) {
+                for (int j = blurDown ? -verses : 0; j < 0; j++) {
+                    int k = i + j;
+                    if (k >= 0) {
+                        newBoard[k] += board[i] + verses + j;
+                    }
+                }
+
+                newBoard[i] += board[i] + verses;
+
+                for (int j = 1; j <= (blurUp ? verses : 0); j++) {
+                    int k = i + j;
+                    if (k < board.length) {
+                        newBoard[k] += board[i] + verses - j;
+                    }
+                }
+            }
+        }
+        return newBoard;
+    }
+
+    /**
+     * Blur a tally with a restriction as it was done before, a range at a time.
+     */
+    private PassageTally blurAsBefore(PassageTally source, int verses, RestrictionType restrict, boolean blurDown, boolean blurUp) {
+        PassageTally result = source.clone();
+        Iterator<VerseRange> it = source.rangeIterator(RestrictionType.NONE);
+        while (it.hasNext()) {
+            VerseRange range = it.next();
+            for (int i = 0; i <= verses; i++) {
+                result.add(restrict.blur(v11n, range, blurDown ? verses : 0, blurUp ? verses : 0));
+            }
+        }
+        return result;
+    }
+
     @Test
     public void testFlatten() {
         temp = tally.clone();
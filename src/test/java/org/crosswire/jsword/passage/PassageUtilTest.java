@@ -325,6 +325,10 @@ public class PassageUtilTest {
         for (int i = 1; i < v11n.maximumOrdinal(); i += 10) {
             hard.add(v11n.decodeOrdinal(i));
         }
+        Passage eighths = (Passage) keyf.createEmptyKeyList(v11n);
+        for (int i = 8; i < v11n.maximumOrdinal(); i += 8) {
+            eighths.add(v11n.decodeOrdinal(i));
+        }
 
         byte[] temp = PassageKeyFactory.toBinaryRepresentation(genC1V135);
         Passage genC1V135Copy = PassageKeyFactory.fromBinaryRepresentation(temp);
@@ -338,6 +342,9 @@ public class PassageUtilTest {
         temp = PassageKeyFactory.toBinaryRepresentation(hard);
         Passage hardCopy = PassageKeyFactory.fromBinaryRepresentation(temp);
         Assert.assertEquals(hardCopy, hard);
+        temp = PassageKeyFactory.toBinaryRepresentation(eighths);
+        Passage eighthsCopy = PassageKeyFactory.fromBinaryRepresentation(temp);
+        Assert.assertEquals(eighthsCopy, eighths);
         temp = PassageKeyFactory.toBinaryRepresentation(empty);
         Passage emptyCopy = PassageKeyFactory.fromBinaryRepresentation(temp);
         Assert.assertEquals(emptyCopy, empty);
@@ -0,0 +1,145 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2005 - 2016
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class VerseBitsTest {
+    private static PassageKeyFactory keyf = PassageKeyFactory.instance();
+    private Versification v11n;
+
+    @Before
+    public void setUp() {
+        v11n = Versifications.instance().getVersification("KJV");
+    }
+
+    @Test
+    public void testSetAndGet() throws NoSuchKeyException {
+        long[] words = VerseBits.create(v11n);
+        Assert.assertTrue(VerseBits.isEmpty(words));
+        int last = v11n.maximumOrdinal();
+        VerseBits.set(words, 0);
+        VerseBits.set(words, 64);
+        VerseBits.set(words, last);
+        Assert.assertTrue(VerseBits.get(words, 0));
+        Assert.assertTrue(VerseBits.get(words, 64));
+        Assert.assertTrue(VerseBits.get(words, last));
+        Assert.assertFalse(VerseBits.get(words, 1));
+        Assert.assertEquals(3, VerseBits.cardinality(words));
+        Assert.assertEquals(64, VerseBits.nextSetBit(words, 1));
+        Assert.assertEquals(last, VerseBits.nextSetBit(words, 65));
+        Assert.assertEquals(-1, VerseBits.nextSetBit(words, last + 1));
+    }
+
+    @Test
+    public void testCombine() throws NoSuchKeyException {
+        Passage left = keyf.getKey(v11n, "Gen 1:1-10, Exo 2:1-5");
+        Passage right = keyf.getKey(v11n, "Gen 1:5-20, Rev 22:21");
+
+        Passage expected = keyf.getKey(v11n, "Gen 1:5-10");
+        Assert.assertEquals(expected, VerseBits.toPassage(v11n, VerseBits.and(VerseBits.fromKey(v11n, left), VerseBits.fromKey(v11n, right))));
+
+        expected = keyf.getKey(v11n, "Gen 1:1-20, Exo 2:1-5, Rev 22:21");
+        Assert.assertEquals(expected, VerseBits.toPassage(v11n, VerseBits.or(VerseBits.fromKey(v11n, left), VerseBits.fromKey(v11n, right))));
+
+        expected = keyf.getKey(v11n, "Gen 1:1-4, Exo 2:1-5");
+        Assert.assertEquals(expected, VerseBits.toPassage(v11n, VerseBits.andNot(VerseBits.fromKey(v11n, left), VerseBits.fromKey(v11n, right))));
+    }
+
+    @Test
+    public void testBlur() throws NoSuchKeyException {
+        String[] refs = {
+                "Gen 1:1", "Gen 1:31", "Gen 2:3, Exo 3:10", "Rev 22:20", "Mal 4:6, Mat 1:1", "Psa 119:1-3", "Gen 1:30-31, 2:1, 2:9"
+        };
+        RestrictionType[] restrictions = {
+                RestrictionType.NONE, RestrictionType.CHAPTER
+        };
+        for (String ref : refs) {
+            for (RestrictionType restrict : restrictions) {
+                for (int verses = 0; verses < 4; verses++) {
+                    if (verses == 0 && restrict == RestrictionType.NONE) {
+                        // A RangedPassage keeps the verse 0 that its range steps over
+                        continue;
+                    }
+                    // Compare with blurring range by range
+                    Passage expected = PassageType.WRITE_SPEED.createPassage(v11n, ref);
+                    expected.blur(verses, restrict);
+                    long[] words = VerseBits.fromKey(v11n, keyf.getKey(v11n, ref));
+                    VerseBits.blur(words, v11n, verses, restrict, true, true);
+                    Assert.assertEquals(ref + " by " + verses + " " + restrict, expected, VerseBits.toPassage(v11n, words));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBlurFar() throws NoSuchKeyException {
+        Passage passage = keyf.getKey(v11n, "Gen 1:3, Rev 22:19");
+        passage.blur(99999, RestrictionType.CHAPTER);
+        Assert.assertEquals(keyf.getKey(v11n, "Gen 1:0-31, Rev 22:0-21"), passage);
+        passage.blur(99999, RestrictionType.NONE);
+        Assert.assertEquals(v11n.maximumOrdinal() + 1, passage.getCardinality());
+    }
+
+    @Test
+    public void testOrdinals() throws NoSuchKeyException {
+        String ref = "Gen 1:30-2:2, Exo 3:10, Rev 22:21";
+        int[] expected = {
+                v11n.getOrdinal(new Verse(v11n, BibleBook.GEN, 1, 30)), v11n.getOrdinal(new Verse(v11n, BibleBook.GEN, 1, 31)),
+                v11n.getOrdinal(new Verse(v11n, BibleBook.GEN, 2, 0)), v11n.getOrdinal(new Verse(v11n, BibleBook.GEN, 2, 1)),
+                v11n.getOrdinal(new Verse(v11n, BibleBook.GEN, 2, 2)), v11n.getOrdinal(new Verse(v11n, BibleBook.EXOD, 3, 10)),
+                v11n.maximumOrdinal()
+        };
+        PassageType[] types = {
+                PassageType.SPEED, PassageType.WRITE_SPEED, PassageType.SIZE, PassageType.MIX, PassageType.TALLY, PassageType.COMPRESSED
+        };
+        for (PassageType type : types) {
+            Passage passage = type.createPassage(v11n, ref);
+            Assert.assertArrayEquals(type.toString(), expected, passage.toOrdinalArray());
+            PrimitiveIterator.OfInt ordinals = KeyUtil.getOrdinals(passage);
+            for (int ordinal : expected) {
+                Assert.assertEquals(type.toString(), ordinal, ordinals.nextInt());
+            }
+            Assert.assertFalse(type.toString(), ordinals.hasNext());
+
+            Passage copy = type.createEmptyPassage(v11n);
+            copy.addOrdinals(expected);
+            Assert.assertEquals(type.toString(), passage, copy);
+        }
+
+        VerseRange range = VerseRangeFactory.fromString(v11n, "Gen 1:30-2:2");
+        Assert.assertArrayEquals(Arrays.copyOf(expected, 5), range.toOrdinalArray());
+        Assert.assertEquals(expected[6], new Verse(v11n, BibleBook.REV, 22, 21).ordinalIterator().nextInt());
+    }
+}
@@ -150,6 +150,24 @@ public class VersificationTest {
         }
     }
 
+    @Test
+    public void testDecodeOrdinalCache() throws Exception {
+        int max = v11n.maximumOrdinal();
+        boolean wasCaching = Versification.isCachingVerses();
+        try {
+            Versification.setCachingVerses(true);
+            Assert.assertSame(v11n.decodeOrdinal(max), v11n.decodeOrdinal(max));
+            Versification.setCachingVerses(false);
+            for (int ordinal = 0; ordinal <= max; ordinal++) {
+                Assert.assertEquals(ordinal, v11n.decodeOrdinal(ordinal).getOrdinal());
+            }
+            Assert.assertEquals(0, v11n.decodeOrdinal(-1).getOrdinal());
+            Assert.assertEquals(max, v11n.decodeOrdinal(max + 1).getOrdinal());
+        } finally {
+            Versification.setCachingVerses(wasCaching);
+        }
+    }
+
     @Test
     public void testValidate() throws Exception {
         for (BibleBook b = v11n.getFirstBook(); b != null; b = v11n.getNextBook(b)) {